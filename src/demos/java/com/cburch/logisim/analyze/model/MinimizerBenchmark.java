@@ -0,0 +1,153 @@
+/* Copyright (c) 2010, Carl Burch. License information is located in the
+ * com.cburch.logisim.Main source code and at www.cburch.com/logisim/. */
+
+package com.cburch.logisim.analyze.model;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Compares the exact and the heuristic minimizers on random tables and
+ * on tables of familiar functions, checking that each answer covers
+ * exactly the rows it should.
+ *
+ * <p>The exact method is only tried up to 10 inputs, beyond which it
+ * takes too long.</p>
+ *
+ * <p>Usage: <code>MinimizerBenchmark [max inputs]</code></p>
+ */
+public class MinimizerBenchmark {
+    private static final int EXACT_LIMIT = 10;
+    private static final long TIME_LIMIT = 2000;
+
+    private interface Function {
+        Entry compute(int row, int inputs);
+    }
+
+    public static void main(String[] args) {
+        int maxInputs = args.length > 0 ? Integer.parseInt(args[0]) : 20;
+        final Random rand = new Random(0);
+        Function random = new Function() {
+            @Override
+            public Entry compute(int row, int inputs) {
+                int r = rand.nextInt(8);
+                return r < 2 ? Entry.DONT_CARE : r < 5 ? Entry.ONE : Entry.ZERO;
+            }
+        };
+        Function sparse = new Function() {
+            @Override
+            public Entry compute(int row, int inputs) {
+                return rand.nextInt(16) == 0 ? Entry.ONE : Entry.ZERO;
+            }
+        };
+        Function carry = new Function() {
+            @Override
+            public Entry compute(int row, int inputs) {
+                int half = inputs / 2;
+                int a = row >>> (inputs - half);
+                int b = row & ((1 << half) - 1);
+                return ((a + b) >>> half) != 0 ? Entry.ONE : Entry.ZERO;
+            }
+        };
+        Function greater = new Function() {
+            @Override
+            public Entry compute(int row, int inputs) {
+                int half = inputs / 2;
+                int a = row >>> (inputs - half);
+                int b = row & ((1 << half) - 1);
+                return a > b ? Entry.ONE : Entry.ZERO;
+            }
+        };
+        Function mux = new Function() {
+            @Override
+            public Entry compute(int row, int inputs) {
+                int select = 0;
+                while (select + (1 << select) < inputs) {
+                    select++;
+                }
+                int data = inputs - select;
+                int which = (row >>> data) % data;
+                return ((row >>> which) & 1) != 0 ? Entry.ONE : Entry.ZERO;
+            }
+        };
+        Function parity = new Function() {
+            @Override
+            public Entry compute(int row, int inputs) {
+                return (Integer.bitCount(row) & 1) != 0 ? Entry.ONE : Entry.ZERO;
+            }
+        };
+
+        String[] names = { "random", "sparse", "carry", "a>b", "mux", "parity" };
+        Function[] functions = { random, sparse, carry, greater, mux, parity };
+        for (int inputs = 4; inputs <= maxInputs; inputs += 2) {
+            for (int f = 0; f < functions.length; f++) {
+                if (functions[f] == parity && inputs > 16) {
+                    continue;
+                }
+                AnalyzerModel model = makeModel(inputs, functions[f]);
+                StringBuilder line = new StringBuilder();
+                line.append(inputs).append(" inputs ").append(names[f]).append(':');
+                if (inputs <= EXACT_LIMIT) {
+                    long t0 = System.nanoTime();
+                    List<Implicant> exact = Implicant.computeMinimal(
+                            AnalyzerModel.FORMAT_SUM_OF_PRODUCTS, model, "y");
+                    long t1 = System.nanoTime();
+                    line.append(" exact ").append(describe(model, exact, t1 - t0));
+                }
+                long t0 = System.nanoTime();
+                List<Implicant> heuristic = HeuristicMinimizer.computeMinimal(
+                        AnalyzerModel.FORMAT_SUM_OF_PRODUCTS, model, "y", TIME_LIMIT);
+                long t1 = System.nanoTime();
+                line.append(" heuristic ").append(describe(model, heuristic, t1 - t0));
+                System.out.println(line);
+            }
+        }
+    }
+
+    private static AnalyzerModel makeModel(int inputs, Function function) {
+        ArrayList<String> inputNames = new ArrayList<String>();
+        for (int i = 0; i < inputs; i++) {
+            inputNames.add("x" + i);
+        }
+        ArrayList<String> outputNames = new ArrayList<String>();
+        outputNames.add("y");
+        AnalyzerModel model = new AnalyzerModel();
+        model.setVariables(inputNames, outputNames);
+        EntryColumn column = new EntryColumn(1 << inputs);
+        for (int i = 0; i < column.getRowCount(); i++) {
+            column.set(i, function.compute(i, inputs));
+        }
+        model.getTruthTable().setOutputColumn(0, column);
+        return model;
+    }
+
+    private static String describe(AnalyzerModel model, List<Implicant> cover,
+            long elapsed) {
+        int inputs = model.getInputs().size();
+        int literals = 0;
+        for (Implicant imp : cover) {
+            literals += inputs - imp.getUnknownCount();
+        }
+        return cover.size() + " terms " + literals + " literals "
+            + elapsed / 1000000 + " ms" + (check(model, cover) ? "" : " WRONG");
+    }
+
+    private static boolean check(AnalyzerModel model, List<Implicant> cover) {
+        TruthTable table = model.getTruthTable();
+        boolean[] covered = new boolean[table.getRowCount()];
+        for (Implicant imp : cover) {
+            for (Implicant term : imp.getTerms()) {
+                covered[term.getRow()] = true;
+            }
+        }
+        for (int i = 0; i < covered.length; i++) {
+            Entry entry = table.getOutputEntry(i, 0);
+            if (entry == Entry.ONE && !covered[i]
+                    || entry == Entry.ZERO && covered[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,169 @@
+/* Copyright (c) 2010, Carl Burch. License information is located in the
+ * com.cburch.logisim.Main source code and at www.cburch.com/logisim/. */
+
+package com.cburch.logisim.circuit;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CopyOnWriteArraySet;
+
+import com.cburch.logisim.comp.Component;
+import com.cburch.logisim.comp.ComponentFactory;
+import com.cburch.logisim.data.AttributeSet;
+import com.cburch.logisim.data.Location;
+import com.cburch.logisim.file.Loader;
+import com.cburch.logisim.file.LogisimFile;
+import com.cburch.logisim.proj.Project;
+import com.cburch.logisim.tools.AddTool;
+import com.cburch.logisim.tools.Library;
+
+/**
+ * Measures how the simulator's dirty-tracking structures behave on a
+ * circuit of 10,000 gates.
+ *
+ * <p>The first part replays the marking pattern of a wide circuit, where
+ * hundreds of elements go dirty in each step, against the
+ * <code>CopyOnWriteArraySet</code> previously used and the structures
+ * that replaced it. The second part builds 100 chains of 100 NOT gates,
+ * each driven by a clock, and times whole clock ticks.</p>
+ *
+ * <p>Usage: <code>DirtySetBenchmark [ticks]</code></p>
+ */
+public class DirtySetBenchmark {
+    private static final int GATES = 10000;
+    private static final int ROWS = 100;
+
+    public static void main(String[] args) throws Exception {
+        int ticks = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+        compareSets();
+        timeCircuit(ticks);
+        System.exit(0);
+    }
+
+    private static void compareSets() {
+        Object[] elements = new Object[GATES];
+        for (int i = 0; i < elements.length; i++) {
+            elements[i] = new Object();
+        }
+        int[] perStep = { 100, 500, 2000 };
+        for (int dirty : perStep) {
+            int[] marks = randomMarks(dirty, 200);
+            for (int round = 0; round < 3; round++) {
+                long cow = timeCopyOnWrite(elements, marks, dirty);
+                long linked = timeLinked(elements, marks, dirty);
+                long bits = timeDirtySet(elements, marks, dirty);
+                if (round == 2) {
+                    System.out.println(dirty + " dirty per step:"
+                        + " CopyOnWriteArraySet " + cow / 1000000 + " ms,"
+                        + " LinkedHashSet " + linked / 1000000 + " ms,"
+                        + " DirtySet " + bits / 1000000 + " ms");
+                }
+            }
+        }
+    }
+
+    private static int[] randomMarks(int dirty, int steps) {
+        // each element is marked twice per step, as a component is when
+        // several of its inputs change
+        Random rand = new Random(dirty);
+        int[] ret = new int[2 * dirty * steps];
+        for (int i = 0; i < ret.length; i += 2) {
+            ret[i] = rand.nextInt(GATES);
+            ret[i + 1] = ret[i];
+        }
+        return ret;
+    }
+
+    private static long timeCopyOnWrite(Object[] elements, int[] marks, int dirty) {
+        long start = System.nanoTime();
+        CopyOnWriteArraySet<Object> set = new CopyOnWriteArraySet<Object>();
+        int step = 2 * dirty;
+        for (int i = 0; i < marks.length; i++) {
+            set.add(elements[marks[i]]);
+            if ((i + 1) % step == 0) {
+                set.toArray();
+                set.clear();
+            }
+        }
+        return System.nanoTime() - start;
+    }
+
+    private static long timeLinked(Object[] elements, int[] marks, int dirty) {
+        long start = System.nanoTime();
+        LinkedHashSet<Object> set = new LinkedHashSet<Object>();
+        int step = 2 * dirty;
+        for (int i = 0; i < marks.length; i++) {
+            set.add(elements[marks[i]]);
+            if ((i + 1) % step == 0) {
+                set.toArray();
+                set.clear();
+            }
+        }
+        return System.nanoTime() - start;
+    }
+
+    private static long timeDirtySet(Object[] elements, int[] marks, int dirty) {
+        long start = System.nanoTime();
+        DirtySet<Object> set = new DirtySet<Object>();
+        int step = 2 * dirty;
+        for (int i = 0; i < marks.length; i++) {
+            set.add(marks[i], elements[marks[i]]);
+            if ((i + 1) % step == 0) {
+                for (int j = 0; j < set.size(); j++) {
+                    set.get(j);
+                }
+                set.clear();
+            }
+        }
+        return System.nanoTime() - start;
+    }
+
+    private static void timeCircuit(int ticks) throws Exception {
+        Loader loader = new Loader(null);
+        LogisimFile file = LogisimFile.createNew(loader);
+        Project proj = new Project(file);
+        Library gates = loader.getBuiltin().getLibrary("Gates");
+        Library wiring = loader.getBuiltin().getLibrary("Wiring");
+        ComponentFactory not = ((AddTool) gates.getTool("NOT Gate")).getFactory();
+        ComponentFactory clock = ((AddTool) wiring.getTool("Clock")).getFactory();
+        AttributeSet notAttrs = not.createAttributeSet();
+        AttributeSet clockAttrs = clock.createAttributeSet();
+
+        // each gate's input lies on the output of the one before, so the
+        // chains need no wires
+        Component probe = not.createComponent(Location.create(0, 0), notAttrs);
+        int length = -probe.getEnd(1).getLocation().getX();
+
+        Circuit circ = file.getMainCircuit();
+        List<Component> comps = new ArrayList<Component>();
+        for (int row = 0; row < ROWS; row++) {
+            int y = 100 + 40 * row;
+            comps.add(clock.createComponent(Location.create(100, y), clockAttrs));
+            for (int i = 1; i <= GATES / ROWS; i++) {
+                Location loc = Location.create(100 + length * i, y);
+                comps.add(not.createComponent(loc, (AttributeSet) notAttrs.clone()));
+            }
+        }
+        CircuitMutation xn = new CircuitMutation(circ);
+        xn.addAll(comps);
+        proj.doAction(xn.toAction(null));
+
+        CircuitState state = new CircuitState(proj, circ);
+        Propagator prop = state.getPropagator();
+        prop.propagate();
+        for (int round = 0; round < 2; round++) {
+            long start = System.nanoTime();
+            for (int i = 0; i < ticks; i++) {
+                prop.tick();
+                prop.propagate();
+            }
+            long elapsed = System.nanoTime() - start;
+            if (round == 1) {
+                System.out.println(circ.getNonWires().size() + " components, "
+                    + ticks + " ticks: " + elapsed / 1000000 + " ms");
+            }
+        }
+    }
+}
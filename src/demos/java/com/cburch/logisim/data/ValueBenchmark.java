@@ -0,0 +1,134 @@
+/* Copyright (c) 2010, Carl Burch. License information is located in the
+ * com.cburch.logisim.Main source code and at www.cburch.com/logisim/. */
+
+package com.cburch.logisim.data;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Times the bitwise operations on values, in the manner of a JMH
+ * benchmark: each operation is run for several warmup iterations, whose
+ * times are discarded, then for several measured iterations, reporting
+ * the median time per operation. The results are folded into a sink
+ * that is printed, so that the work cannot be optimized away.
+ *
+ * <p>The operands for each width are a fixed mix of fully defined
+ * values, values with some unknown bits, and uniform values such as
+ * all zeros, as gates see them in a typical circuit.</p>
+ *
+ * <p>Usage: <code>ValueBenchmark [milliseconds per iteration]</code></p>
+ */
+public class ValueBenchmark {
+    private static final int WARMUP_ITERATIONS = 3;
+    private static final int MEASURED_ITERATIONS = 5;
+    private static final int OPERANDS = 1024;
+    private static final int[] WIDTHS = { 1, 8, 32, 64, 128 };
+    private static final String[] OPERATIONS = { "and", "or", "xor", "not",
+        "combine", "get", "create(Value[])" };
+
+    private static int sink = 0;
+
+    public static void main(String[] args) {
+        long iterationMillis = args.length > 0 ? Long.parseLong(args[0]) : 200;
+        System.out.println("width  operation        ns/op");
+        for (int width : WIDTHS) {
+            Value[] operands = makeOperands(width);
+            for (String op : OPERATIONS) {
+                double[] times = new double[MEASURED_ITERATIONS];
+                for (int i = 0; i < WARMUP_ITERATIONS + MEASURED_ITERATIONS; i++) {
+                    double t = runIteration(op, operands, iterationMillis);
+                    if (i >= WARMUP_ITERATIONS) {
+                        times[i - WARMUP_ITERATIONS] = t;
+                    }
+                }
+                Arrays.sort(times);
+                System.out.println(String.format("%5d  %-15s %6.1f",
+                    width, op, times[MEASURED_ITERATIONS / 2]));
+            }
+        }
+        System.out.println("(sink " + sink + ")");
+    }
+
+    private static Value[] makeOperands(int width) {
+        Random rand = new Random(width);
+        BitWidth bits = BitWidth.create(width);
+        Value[] ret = new Value[OPERANDS];
+        for (int i = 0; i < ret.length; i++) {
+            switch (rand.nextInt(8)) {
+            case 0:
+                ret[i] = Value.createKnown(bits, 0);
+                break;
+            case 1:
+                ret[i] = Value.createKnown(bits, -1);
+                break;
+            case 2:
+                ret[i] = Value.createUnknown(bits);
+                break;
+            case 3:
+                Value[] vals = new Value[width];
+                for (int j = 0; j < width; j++) {
+                    vals[j] = rand.nextInt(4) == 0 ? Value.UNKNOWN
+                        : rand.nextBoolean() ? Value.TRUE : Value.FALSE;
+                }
+                ret[i] = Value.create(vals);
+                break;
+            default:
+                ret[i] = Value.createKnown(bits, rand.nextLong());
+            }
+        }
+        return ret;
+    }
+
+    // returns the time per operation in nanoseconds
+    private static double runIteration(String op, Value[] operands, long millis) {
+        long deadline = System.nanoTime() + millis * 1000000L;
+        long count = 0;
+        long start = System.nanoTime();
+        long now;
+        do {
+            sink += runBatch(op, operands);
+            count += operands.length;
+            now = System.nanoTime();
+        } while (now < deadline);
+        return (double) (now - start) / count;
+    }
+
+    private static int runBatch(String op, Value[] operands) {
+        int n = operands.length;
+        int ret = 0;
+        if (op.equals("and")) {
+            for (int i = 0; i < n; i++) {
+                ret += operands[i].and(operands[(i + 1) & (n - 1)]).getWidth();
+            }
+        } else if (op.equals("or")) {
+            for (int i = 0; i < n; i++) {
+                ret += operands[i].or(operands[(i + 1) & (n - 1)]).getWidth();
+            }
+        } else if (op.equals("xor")) {
+            for (int i = 0; i < n; i++) {
+                ret += operands[i].xor(operands[(i + 1) & (n - 1)]).getWidth();
+            }
+        } else if (op.equals("not")) {
+            for (int i = 0; i < n; i++) {
+                ret += operands[i].not().getWidth();
+            }
+        } else if (op.equals("combine")) {
+            for (int i = 0; i < n; i++) {
+                ret += operands[i].combine(operands[(i + 1) & (n - 1)]).getWidth();
+            }
+        } else if (op.equals("get")) {
+            for (int i = 0; i < n; i++) {
+                Value v = operands[i];
+                ret += v.get(i % v.getWidth()) == Value.TRUE ? 1 : 0;
+            }
+        } else {
+            Value[] bits = operands[0].getAll();
+            for (int i = 0; i < n; i++) {
+                bits[i % bits.length] = operands[i].get(0);
+                ret += Value.create(bits).getWidth();
+            }
+        }
+        return ret;
+    }
+}
@@ -0,0 +1,62 @@
+/* Copyright (c) 2010, Carl Burch. License information is located in the
+ * com.cburch.logisim.Main source code and at www.cburch.com/logisim/. */
+
+package com.cburch.logisim.util;
+
+import java.io.File;
+import java.util.HashMap;
+
+import com.cburch.logisim.circuit.CircuitState;
+import com.cburch.logisim.circuit.Propagator;
+import com.cburch.logisim.file.Loader;
+import com.cburch.logisim.file.LogisimFile;
+import com.cburch.logisim.proj.Project;
+
+/**
+ * Reports how often the interning tables of values and locations find
+ * an object already made, while loading and then simulating circuits.
+ * Each hit is an object that did not have to be allocated.
+ *
+ * <p>Usage: <code>InternBenchmark ticks file.circ...</code></p>
+ */
+public class InternBenchmark {
+    public static void main(String[] args) throws Exception {
+        int ticks = Integer.parseInt(args[0]);
+        for (int i = 1; i < args.length; i++) {
+            File f = new File(args[i]);
+            System.out.println(f.getName() + ":");
+
+            resetCounts();
+            Loader loader = new Loader(null);
+            LogisimFile file = loader.openLogisimFile(f, new HashMap<File,File>());
+            report("  loading");
+
+            resetCounts();
+            Project proj = new Project(file);
+            CircuitState state = new CircuitState(proj, file.getMainCircuit());
+            Propagator prop = state.getPropagator();
+            long start = System.nanoTime();
+            prop.propagate();
+            for (int t = 0; t < ticks; t++) {
+                prop.tick();
+                prop.propagate();
+            }
+            long elapsed = System.nanoTime() - start;
+            report("  " + ticks + " ticks, " + elapsed / 1000000 + " ms");
+        }
+        System.exit(0);
+    }
+
+    private static void resetCounts() {
+        for (InternTable<?> table : InternTable.getTables()) {
+            table.resetCounts();
+        }
+    }
+
+    private static void report(String phase) {
+        System.out.println(phase);
+        for (InternTable<?> table : InternTable.getTables()) {
+            System.out.println("    " + table);
+        }
+    }
+}
@@ -0,0 +1,12 @@
+/* Copyright (c) 2010, Carl Burch. License information is located in the
+ * com.cburch.logisim.Main source code and at www.cburch.com/logisim/. */
+
+package com.cburch.hex;
+
+/**
+ * A listener that needs the old values of every change to a model, as
+ * for undoing it. Other listeners may be told of several changes at once,
+ * as a single range and without the old values.
+ */
+public interface HexModelHistoryListener extends HexModelListener {
+}
@@ -0,0 +1,18 @@
+/* Copyright (c) 2010, Carl Burch. License information is located in the
+ * com.cburch.logisim.Main source code and at www.cburch.com/logisim/. */
+
+package com.cburch.hex;
+
+/**
+ * A model that knows where its nonzero values are, so that a reader can
+ * skip long stretches of zeroes without asking for each value.
+ */
+public interface SparseHexModel extends HexModel {
+    /** Returns the offset of the last nonzero value, or one before the
+     * first offset if every value is zero. */
+    public long getLastNonzeroOffset();
+
+    /** Returns the offset of the first nonzero value at or after the
+     * given address, or one past the last offset if there is none. */
+    public long getNextNonzeroOffset(long address);
+}
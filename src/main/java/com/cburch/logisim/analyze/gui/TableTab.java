@@ -10,6 +10,7 @@ import java.awt.FontMetrics;
 import java.awt.Graphics;
 import java.awt.Rectangle;
 import java.awt.event.MouseEvent;
+import java.util.Arrays;
 
 import javax.swing.JPanel;
 import javax.swing.JScrollBar;
@@ -31,7 +32,10 @@ class TableTab extends JPanel implements TruthTablePanel, TabInterface {
     private class MyListener implements TruthTableListener {
         @Override
         public void cellsChanged(TruthTableEvent event) {
-            repaint();
+            int first = event.getFirstRow();
+            int top = Math.max(0, (getHeight() - tableHeight) / 2) + cellHeight
+                + HEADER_SEP + first * cellHeight;
+            repaint(0, top, getWidth(), (event.getLastRow() - first + 1) * cellHeight);
         }
 
         @Override
@@ -331,12 +335,10 @@ class TableTab extends JPanel implements TruthTablePanel, TabInterface {
         if (r1 < r0) { int t = r0; r0 = r1; r1 = t; }
         if (c1 < c0) { int t = c0; c0 = c1; c1 = t; }
         int inputs = table.getInputColumnCount();
-        for (int c = c0; c <= c1; c++) {
-            if (c >= inputs) {
-                for (int r = r0; r <= r1; r++) {
-                    table.setOutputEntry(r, c - inputs, Entry.DONT_CARE);
-                }
-            }
+        Entry[] blank = new Entry[r1 - r0 + 1];
+        Arrays.fill(blank, Entry.DONT_CARE);
+        for (int c = Math.max(c0, inputs); c <= c1; c++) {
+            table.setOutputEntries(r0, c - inputs, blank);
         }
     }
 
@@ -9,12 +9,16 @@ import com.cburch.logisim.circuit.Circuit;
 import com.cburch.logisim.proj.Project;
 
 public class AnalyzerModel {
-    public static final int MAX_INPUTS = 12;
-    public static final int MAX_OUTPUTS = 12;
+    public static final int MAX_INPUTS = 24;
+    public static final int MAX_OUTPUTS = 32;
 
     public static final int FORMAT_SUM_OF_PRODUCTS = 0;
     public static final int FORMAT_PRODUCT_OF_SUMS = 1;
 
+    public static final int MINIMIZE_AUTOMATIC = 0;
+    public static final int MINIMIZE_EXACT = 1;
+    public static final int MINIMIZE_HEURISTIC = 2;
+
     private VariableList inputs = new VariableList(MAX_INPUTS);
     private VariableList outputs = new VariableList(MAX_OUTPUTS);
     private TruthTable table;
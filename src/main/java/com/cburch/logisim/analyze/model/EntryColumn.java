@@ -0,0 +1,110 @@
+/* Copyright (c) 2010, Carl Burch. License information is located in the
+ * com.cburch.logisim.Main source code and at www.cburch.com/logisim/. */
+
+package com.cburch.logisim.analyze.model;
+
+/**
+ * One output column of a truth table, packed two bits to a row so that
+ * tables with many inputs stay small.
+ *
+ * <p>The codes are chosen so that a new column holds only don't-cares,
+ * and so that the code is the <code>ones</code> bit beside the
+ * <code>zeros</code> bit in the encoding the circuit uses for vectors.
+ * An error is recorded as a bus error unless the row is also marked in
+ * a separate bitmap of oscillating rows, made only once it is needed.</p>
+ */
+public class EntryColumn {
+    private static final int ROW_SHIFT = 5; // 32 rows to a word
+    private static final int CODE_DONT_CARE = 0;
+    private static final int CODE_ZERO = 1;
+    private static final int CODE_ONE = 2;
+    private static final int CODE_ERROR = 3;
+    private static final Entry[] ENTRIES = { Entry.DONT_CARE, Entry.ZERO,
+        Entry.ONE, Entry.BUS_ERROR };
+
+    private final int rows;
+    private final long[] codes;
+    private long[] oscillating;
+
+    /** Creates a column of the given number of rows, all don't-cares. */
+    public EntryColumn(int rows) {
+        this.rows = rows;
+        this.codes = new long[(rows + (1 << ROW_SHIFT) - 1) >>> ROW_SHIFT];
+        this.oscillating = null;
+    }
+
+    public EntryColumn(Entry[] values) {
+        this(values.length);
+        for (int i = 0; i < values.length; i++) {
+            set(i, values[i]);
+        }
+    }
+
+    public EntryColumn(EntryColumn other) {
+        this.rows = other.rows;
+        this.codes = other.codes.clone();
+        this.oscillating = other.oscillating == null ? null
+            : other.oscillating.clone();
+    }
+
+    public int getRowCount() {
+        return rows;
+    }
+
+    public Entry get(int row) {
+        int code = (int) (codes[row >>> ROW_SHIFT] >>> shift(row)) & 3;
+        if (code == CODE_ERROR && isOscillating(row)) {
+            return Entry.OSCILLATE_ERROR;
+        }
+        return ENTRIES[code];
+    }
+
+    /** Sets the entry at a row, returning whether it changed. */
+    public boolean set(int row, Entry value) {
+        int shift = shift(row);
+        int index = row >>> ROW_SHIFT;
+        long old = codes[index];
+        long word = (old & ~(3L << shift)) | ((long) codeOf(value) << shift);
+        boolean osc = value == Entry.OSCILLATE_ERROR;
+        boolean oldOsc = isOscillating(row);
+        if (word == old && osc == oldOsc) {
+            return false;
+        }
+        codes[index] = word;
+        if (osc != oldOsc) {
+            if (oscillating == null) {
+                oscillating = new long[(rows + 63) >>> 6];
+            }
+            oscillating[row >>> 6] ^= 1L << row;
+        }
+        return true;
+    }
+
+    public Entry[] toArray() {
+        Entry[] ret = new Entry[rows];
+        for (int i = 0; i < rows; i++) {
+            ret[i] = get(i);
+        }
+        return ret;
+    }
+
+    private boolean isOscillating(int row) {
+        return oscillating != null && ((oscillating[row >>> 6] >>> row) & 1) != 0;
+    }
+
+    private static int shift(int row) {
+        return (row & ((1 << ROW_SHIFT) - 1)) << 1;
+    }
+
+    private static int codeOf(Entry value) {
+        if (value == Entry.ZERO) {
+            return CODE_ZERO;
+        } else if (value == Entry.ONE) {
+            return CODE_ONE;
+        } else if (value == Entry.DONT_CARE) {
+            return CODE_DONT_CARE;
+        } else {
+            return CODE_ERROR;
+        }
+    }
+}
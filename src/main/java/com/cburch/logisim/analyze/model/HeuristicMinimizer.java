@@ -0,0 +1,308 @@
+/* Copyright (c) 2010, Carl Burch. License information is located in the
+ * com.cburch.logisim.Main source code and at www.cburch.com/logisim/. */
+
+package com.cburch.logisim.analyze.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Finds a small, though not always minimal, set of implicants covering
+ * an output column, in the manner of the Espresso minimizer.
+ *
+ * <p>Each row of the column is one bit of the <code>on</code> or
+ * <code>off</code> sets, and each implicant a cube given by the mask of
+ * its free inputs and the values of the rest, laid out like a row number.
+ * Every row to be covered is first grown into a prime implicant. The
+ * cover is then improved by repeatedly shrinking each implicant to the
+ * rows only it covers (reduce), growing it again in what may be a better
+ * direction (expand), and dropping implicants that others make needless
+ * (irredundant), until that no longer helps or the time runs out.</p>
+ */
+class HeuristicMinimizer {
+    private static final int REMOVED = -1;
+
+    private final int rowCount;
+    private final long[] on;
+    private final long[] off;
+    // the number of implicants in the cover containing each row
+    private final int[] coverCount;
+    private int[] unknowns = new int[16];
+    private int[] values = new int[16];
+    private int size = 0;
+
+    private HeuristicMinimizer(int inputs) {
+        rowCount = 1 << inputs;
+        on = new long[(rowCount + 63) >>> 6];
+        off = new long[on.length];
+        coverCount = new int[rowCount];
+    }
+
+    /**
+     * Computes implicants for the output like
+     * {@link Implicant#computeMinimal}, giving up once
+     * <code>System.nanoTime</code> reaches <code>deadline</code>: rows not
+     * yet grown into prime implicants are then covered one by one, and the
+     * cover is not improved. The cover found is always complete.
+     */
+    static List<Implicant> computeMinimal(int format, AnalyzerModel model,
+            String variable, long deadline) {
+        TruthTable table = model.getTruthTable();
+        int column = model.getOutputs().indexOf(variable);
+        if (column < 0) {
+            return Collections.emptyList();
+        }
+
+        Entry desired = format == AnalyzerModel.FORMAT_SUM_OF_PRODUCTS
+            ? Entry.ONE : Entry.ZERO;
+        Entry undesired = desired == Entry.ONE ? Entry.ZERO : Entry.ONE;
+
+        // any other entry is free to be covered or not
+        HeuristicMinimizer ret = new HeuristicMinimizer(table.getInputColumnCount());
+        EntryColumn entries = table.getOutputEntries(column);
+        boolean knownFound = false;
+        for (int i = 0; i < ret.rowCount; i++) {
+            Entry entry = entries.get(i);
+            if (entry == desired) {
+                ret.on[i >>> 6] |= 1L << i;
+                knownFound = true;
+            } else if (entry == undesired) {
+                ret.off[i >>> 6] |= 1L << i;
+                knownFound = true;
+            }
+        }
+        if (!knownFound) {
+            return null;
+        }
+
+        ret.minimize(deadline);
+        return ret.getImplicants();
+    }
+
+    private void minimize(long deadline) {
+        boolean late = false;
+        for (int w = 0; w < on.length; w++) {
+            for (long bits = on[w]; bits != 0; bits &= bits - 1) {
+                int row = (w << 6) | Long.numberOfTrailingZeros(bits);
+                if (coverCount[row] == 0) {
+                    if (size == unknowns.length) {
+                        unknowns = Arrays.copyOf(unknowns, 2 * size);
+                        values = Arrays.copyOf(values, 2 * size);
+                    }
+                    unknowns[size] = 0;
+                    values[size] = row;
+                    size++;
+                    if (!late && System.nanoTime() - deadline >= 0) {
+                        late = true;
+                    }
+                    if (late) {
+                        updateCounts(0, row, 1);
+                    } else {
+                        expand(size - 1);
+                    }
+                }
+            }
+        }
+        irredundant();
+
+        long cost = getCost();
+        while (System.nanoTime() - deadline < 0) {
+            int[] oldUnknowns = Arrays.copyOf(unknowns, size);
+            int[] oldValues = Arrays.copyOf(values, size);
+            reduce();
+            for (int i = 0; i < size; i++) {
+                updateCounts(unknowns[i], values[i], -1);
+                expand(i);
+            }
+            irredundant();
+            long newCost = getCost();
+            if (newCost >= cost) {
+                if (newCost > cost) {
+                    // the counts are not needed any more
+                    unknowns = oldUnknowns;
+                    values = oldValues;
+                    size = oldUnknowns.length;
+                }
+                break;
+            }
+            cost = newCost;
+        }
+    }
+
+    private List<Implicant> getImplicants() {
+        ArrayList<Implicant> ret = new ArrayList<Implicant>(size);
+        for (int i = 0; i < size; i++) {
+            ret.add(new Implicant(unknowns[i], values[i]));
+        }
+        Collections.sort(ret);
+        return ret;
+    }
+
+    /** Returns the cost of the cover, counting implicants first and
+     * literals second. */
+    private long getCost() {
+        int inputs = Integer.numberOfTrailingZeros(rowCount);
+        long literals = 0;
+        for (int i = 0; i < size; i++) {
+            literals += inputs - Integer.bitCount(unknowns[i]);
+        }
+        return ((long) size << 32) | literals;
+    }
+
+    /** Grows an implicant not counted in the cover into a prime
+     * implicant and counts it, at each step freeing the input that takes
+     * in the most rows not yet covered. */
+    private void expand(int index) {
+        int u = unknowns[index];
+        int v = values[index];
+        int candidates = (rowCount - 1) & ~u;
+        while (candidates != 0) {
+            int best = 0;
+            int bestCount = -1;
+            for (int bits = candidates; bits != 0; bits &= bits - 1) {
+                int bit = bits & -bits;
+                int count = countUncovered(u, v ^ bit);
+                if (count < 0) {
+                    // the cube only grows, so this input stays bound
+                    candidates &= ~bit;
+                } else if (count > bestCount) {
+                    best = bit;
+                    bestCount = count;
+                }
+            }
+            if (best == 0) {
+                break;
+            }
+            candidates &= ~best;
+            u |= best;
+            v &= ~best;
+        }
+        unknowns[index] = u;
+        values[index] = v;
+        updateCounts(u, v, 1);
+    }
+
+    /** Shrinks each implicant, largest first, to the smallest cube
+     * holding the rows that no other implicant covers. */
+    private void reduce() {
+        sortBySize(false);
+        for (int i = 0; i < size; i++) {
+            int u = unknowns[i];
+            int v = values[i];
+            int and = rowCount - 1;
+            int or = 0;
+            boolean found = false;
+            int sub = 0;
+            do {
+                int row = v | sub;
+                if (isOn(row) && coverCount[row] == 1) {
+                    and &= row;
+                    or |= row;
+                    found = true;
+                }
+                sub = (sub - u) & u;
+            } while (sub != 0);
+
+            updateCounts(u, v, -1);
+            if (found) {
+                unknowns[i] = and ^ or;
+                values[i] = and;
+                updateCounts(and ^ or, and, 1);
+            } else {
+                unknowns[i] = REMOVED; // nothing depends on it
+            }
+        }
+        compact();
+    }
+
+    /** Removes implicants, smallest first, whose rows all lie within
+     * other implicants. */
+    private void irredundant() {
+        sortBySize(true);
+        for (int i = 0; i < size; i++) {
+            int u = unknowns[i];
+            int v = values[i];
+            boolean needed = false;
+            int sub = 0;
+            do {
+                int row = v | sub;
+                if (isOn(row) && coverCount[row] == 1) {
+                    needed = true;
+                    break;
+                }
+                sub = (sub - u) & u;
+            } while (sub != 0);
+
+            if (!needed) {
+                updateCounts(u, v, -1);
+                unknowns[i] = REMOVED;
+            }
+        }
+        compact();
+    }
+
+    /** Returns how many of the cube's rows to be covered are not yet
+     * covered, or -1 if the cube includes a row that must not be. */
+    private int countUncovered(int u, int v) {
+        int ret = 0;
+        int sub = 0;
+        do {
+            int row = v | sub;
+            if (((off[row >>> 6] >>> row) & 1) != 0) {
+                return -1;
+            }
+            if (isOn(row) && coverCount[row] == 0) {
+                ret++;
+            }
+            sub = (sub - u) & u;
+        } while (sub != 0);
+        return ret;
+    }
+
+    private boolean isOn(int row) {
+        return ((on[row >>> 6] >>> row) & 1) != 0;
+    }
+
+    private void updateCounts(int u, int v, int delta) {
+        int sub = 0;
+        do {
+            coverCount[v | sub] += delta;
+            sub = (sub - u) & u;
+        } while (sub != 0);
+    }
+
+    private void compact() {
+        int j = 0;
+        for (int i = 0; i < size; i++) {
+            if (unknowns[i] != REMOVED) {
+                unknowns[j] = unknowns[i];
+                values[j] = values[i];
+                j++;
+            }
+        }
+        size = j;
+    }
+
+    /** Orders the implicants by their number of free inputs. */
+    private void sortBySize(boolean ascending) {
+        int[] start = new int[34];
+        for (int i = 0; i < size; i++) {
+            start[Integer.bitCount(unknowns[i]) + 2]++;
+        }
+        for (int k = 2; k < start.length; k++) {
+            start[k] += start[k - 1];
+        }
+        int[] newUnknowns = new int[unknowns.length];
+        int[] newValues = new int[values.length];
+        for (int i = 0; i < size; i++) {
+            int k = start[Integer.bitCount(unknowns[i]) + 1]++;
+            int j = ascending ? k : size - 1 - k;
+            newUnknowns[j] = unknowns[i];
+            newValues[j] = values[i];
+        }
+        unknowns = newUnknowns;
+        values = newValues;
+    }
+}
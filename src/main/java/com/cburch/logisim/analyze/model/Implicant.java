@@ -16,6 +16,12 @@ public class Implicant implements Comparable<Implicant> {
     static Implicant MINIMAL_IMPLICANT = new Implicant(0, -1);
     static List<Implicant> MINIMAL_LIST = Arrays.asList(new Implicant[] { MINIMAL_IMPLICANT });
 
+    // the most inputs for which the automatic choice is the exact method,
+    // whose time and memory grow quickly beyond that
+    private static final int EXACT_INPUT_LIMIT = 10;
+    // milliseconds the heuristic method spends improving its answers
+    static final long HEURISTIC_TIME_LIMIT = 2000;
+
     private static class TermIterator
             implements Iterable<Implicant>, Iterator<Implicant> {
         Implicant source;
@@ -55,7 +61,7 @@ public class Implicant implements Comparable<Implicant> {
     private int unknowns;
     private int values;
 
-    private Implicant(int unknowns, int values) {
+    Implicant(int unknowns, int values) {
         this.unknowns = unknowns;
         this.values = values;
     }
@@ -171,6 +177,24 @@ public class Implicant implements Comparable<Implicant> {
         }
     }
 
+    /**
+     * Computes implicants for the output by the given method. The
+     * heuristic method stops improving its answer at
+     * <code>deadline</code>, a time from <code>System.nanoTime</code>.
+     */
+    static List<Implicant> computeMinimal(int format, int method,
+            AnalyzerModel model, String variable, long deadline) {
+        int inputs = model.getInputs().size();
+        if (method == AnalyzerModel.MINIMIZE_HEURISTIC
+                || (method == AnalyzerModel.MINIMIZE_AUTOMATIC
+                    && inputs > EXACT_INPUT_LIMIT)) {
+            return HeuristicMinimizer.computeMinimal(format, model, variable,
+                    deadline);
+        } else {
+            return computeMinimal(format, model, variable);
+        }
+    }
+
     static List<Implicant> computeMinimal(int format, AnalyzerModel model,
             String variable) {
         TruthTable table = model.getTruthTable();
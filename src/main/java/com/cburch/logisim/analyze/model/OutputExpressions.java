@@ -4,7 +4,6 @@
 package com.cburch.logisim.analyze.model;
 
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
@@ -71,7 +70,7 @@ public class OutputExpressions {
 
             // for efficiency to avoid recomputation
             if (expr != minimalExpr) {
-                Entry[] values = computeColumn(model.getTruthTable(), expr);
+                EntryColumn values = computeColumn(model.getTruthTable(), expr);
                 int outputColumn = model.getOutputs().indexOf(output);
                 updatingTable = true;
                 try {
@@ -131,6 +130,14 @@ public class OutputExpressions {
 
         private boolean invalidating = false;
         private void invalidate(boolean initializing, boolean formatChanged) {
+            invalidate(initializing, formatChanged, 0,
+                    model.getTruthTable().getRowCount() - 1);
+        }
+
+        // Only the rows from firstRow to lastRow can have changed since the
+        // expression last agreed with the table, so only they are checked.
+        private void invalidate(boolean initializing, boolean formatChanged,
+                int firstRow, int lastRow) {
             if (invalidating) {
                 return;
             }
@@ -139,19 +146,17 @@ public class OutputExpressions {
             try {
                 List<Implicant> oldImplicants = minimalImplicants;
                 Expression oldMinExpr = minimalExpr;
-                minimalImplicants = Implicant.computeMinimal(format, model, output);
+                minimalImplicants = Implicant.computeMinimal(format, minimizer,
+                        model, output, getMinimizeDeadline());
                 minimalExpr = Implicant.toExpression(format, model, minimalImplicants);
                 boolean minChanged = !implicantsSame(oldImplicants, minimalImplicants);
 
                 if (!updatingTable) {
                     // see whether the expression is still consistent with the truth table
-                    TruthTable table = model.getTruthTable();
-                    Entry[] outputColumn = computeColumn(model.getTruthTable(), expr);
                     int outputIndex = model.getOutputs().indexOf(output);
-
-                    Entry[] currentColumn = table.getOutputColumn(outputIndex);
-                    if (!columnsMatch(currentColumn, outputColumn)
-                            || isAllUndefined(outputColumn) || formatChanged) {
+                    if (expr == null || formatChanged
+                            || !rowsMatch(model.getTruthTable(), outputIndex,
+                                expr, firstRow, lastRow)) {
                         // if not, then we need to change the expression to maintain consistency
                         boolean exprChanged = expr != oldMinExpr || minChanged;
                         expr = minimalExpr;
@@ -244,7 +249,11 @@ public class OutputExpressions {
         @Override
         public void cellsChanged(TruthTableEvent event) {
             String output = model.getOutputs().get(event.getColumn());
-            invalidate(output, false);
+            OutputData data = getOutputData(output, false);
+            if (data != null) {
+                data.invalidate(false, false, event.getFirstRow(),
+                        event.getLastRow());
+            }
         }
 
         @Override
@@ -258,6 +267,8 @@ public class OutputExpressions {
     private ArrayList<OutputExpressionsListener> listeners
         = new ArrayList<OutputExpressionsListener>();
     private boolean updatingTable = false;
+    private int minimizer = AnalyzerModel.MINIMIZE_AUTOMATIC;
+    private long minimizeDeadline = System.nanoTime();
 
     public OutputExpressions(AnalyzerModel model) {
         this.model = model;
@@ -340,9 +351,27 @@ public class OutputExpressions {
         return getOutputData(output, true).getMinimizedFormat();
     }
 
+    public int getMinimizer() {
+        return minimizer;
+    }
+
     //
     // modifier methods
     //
+    /**
+     * Selects how minimal expressions are found: exactly, heuristically
+     * (which scales to many more inputs), or automatically by the number
+     * of inputs. Outputs whose expression was minimal keep it minimal.
+     */
+    public void setMinimizer(int value) {
+        if (minimizer != value) {
+            minimizer = value;
+            for (OutputData data : new ArrayList<OutputData>(outputData.values())) {
+                data.invalidate(false, data.isExpressionMinimal());
+            }
+        }
+    }
+
     public void setMinimizedFormat(String output, int format) {
         int oldFormat = getMinimizedFormat(output);
         if (format != oldFormat) {
@@ -371,6 +400,18 @@ public class OutputExpressions {
 
     }
 
+    // Minimizations begun before the last one's time is up share its
+    // deadline, so that invalidating many outputs together, or the views
+    // asking for each output in turn, costs one time limit and not one
+    // per output.
+    private long getMinimizeDeadline() {
+        long now = System.nanoTime();
+        if (now - minimizeDeadline >= 0) {
+            minimizeDeadline = now + Implicant.HEURISTIC_TIME_LIMIT * 1000000L;
+        }
+        return minimizeDeadline;
+    }
+
     private OutputData getOutputData(String output, boolean create) {
         if (output == null) {
             throw new IllegalArgumentException("null output name");
@@ -387,51 +428,42 @@ public class OutputExpressions {
         return ret;
     }
 
-    private static Entry[] computeColumn(TruthTable table, Expression expr) {
+    private static EntryColumn computeColumn(TruthTable table, Expression expr) {
         int rows = table.getRowCount();
         int cols = table.getInputColumnCount();
-        Entry[] values = new Entry[rows];
-        if (expr == null) {
-            Arrays.fill(values, Entry.DONT_CARE);
-        } else {
+        EntryColumn values = new EntryColumn(rows);
+        if (expr != null) {
             Assignments assn = new Assignments();
             for (int i = 0; i < rows; i++) {
-                for (int j = 0; j < cols; j++) {
-                    assn.put(table.getInputHeader(j),
-                            TruthTable.isInputSet(i, j, cols));
-                }
-                values[i] = expr.evaluate(assn) ? Entry.ONE : Entry.ZERO;
+                setInputs(assn, table, i, cols);
+                values.set(i, expr.evaluate(assn) ? Entry.ONE : Entry.ZERO);
             }
         }
         return values;
     }
 
-    private static boolean columnsMatch(Entry[] a, Entry[] b) {
-        if (a.length != b.length) {
-            return false;
-        }
-
-        for (int i = 0; i < a.length; i++) {
-            if (a[i] != b[i]) {
-                boolean bothDefined = (a[i] == Entry.ZERO || a[i] == Entry.ONE)
-                                    && (b[i] == Entry.ZERO || b[i] == Entry.ONE);
-                if (bothDefined) {
+    // whether the expression gives every entry the table defines in the rows
+    private static boolean rowsMatch(TruthTable table, int column,
+            Expression expr, int firstRow, int lastRow) {
+        int cols = table.getInputColumnCount();
+        Assignments assn = new Assignments();
+        for (int i = firstRow; i <= lastRow; i++) {
+            Entry entry = table.getOutputEntry(i, column);
+            if (entry == Entry.ZERO || entry == Entry.ONE) {
+                setInputs(assn, table, i, cols);
+                if (expr.evaluate(assn) != (entry == Entry.ONE)) {
                     return false;
                 }
-
             }
         }
         return true;
     }
 
-    private static boolean isAllUndefined(Entry[] a) {
-        for (int i = 0; i < a.length; i++) {
-            if (a[i] == Entry.ZERO || a[i] == Entry.ONE) {
-                return false;
-            }
-
+    private static void setInputs(Assignments assn, TruthTable table,
+            int row, int cols) {
+        for (int j = 0; j < cols; j++) {
+            assn.put(table.getInputHeader(j), TruthTable.isInputSet(row, j, cols));
         }
-        return true;
     }
 
     private static boolean implicantsSame(List<Implicant> a, List<Implicant> b) {
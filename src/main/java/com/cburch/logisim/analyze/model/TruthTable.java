@@ -4,7 +4,6 @@
 package com.cburch.logisim.analyze.model;
 
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -26,31 +25,32 @@ public class TruthTable {
         private void inputsChanged(VariableListEvent event) {
             int action = event.getType();
             if (action == VariableListEvent.ADD) {
-                for (Map.Entry<String,Entry[]> curEntry : outputColumns.entrySet()) {
+                for (Map.Entry<String,EntryColumn> curEntry : outputColumns.entrySet()) {
                     String output = curEntry.getKey();
-                    Entry[] column = curEntry.getValue();
-                    Entry[] newColumn = new Entry[2 * column.length];
-                    for (int i = 0; i < column.length; i++) {
-                        newColumn[2 * i] = column[i];
-                        newColumn[2 * i + 1] = column[i];
+                    EntryColumn column = curEntry.getValue();
+                    EntryColumn newColumn = new EntryColumn(2 * column.getRowCount());
+                    for (int i = 0; i < column.getRowCount(); i++) {
+                        Entry value = column.get(i);
+                        newColumn.set(2 * i, value);
+                        newColumn.set(2 * i + 1, value);
                     }
                     outputColumns.put(output, newColumn);
                 }
             } else if (action == VariableListEvent.REMOVE) {
                 int index = ((Integer) event.getData()).intValue();
-                for (Map.Entry<String,Entry[]> curEntry : outputColumns.entrySet()) {
+                for (Map.Entry<String,EntryColumn> curEntry : outputColumns.entrySet()) {
                     String output = curEntry.getKey();
-                    Entry[] column = curEntry.getValue();
-                    Entry[] newColumn = removeInput(column, index);
+                    EntryColumn column = curEntry.getValue();
+                    EntryColumn newColumn = removeInput(column, index);
                     outputColumns.put(output, newColumn);
                 }
             } else if (action == VariableListEvent.MOVE) {
                 int delta = ((Integer) event.getData()).intValue();
                 int newIndex = model.getInputs().indexOf(event.getVariable());
-                for (Map.Entry<String,Entry[]> curEntry : outputColumns.entrySet()) {
+                for (Map.Entry<String,EntryColumn> curEntry : outputColumns.entrySet()) {
                     String output = curEntry.getKey();
-                    Entry[] column = curEntry.getValue();
-                    Entry[] newColumn = moveInput(column, newIndex - delta, newIndex);
+                    EntryColumn column = curEntry.getValue();
+                    EntryColumn newColumn = moveInput(column, newIndex - delta, newIndex);
                     outputColumns.put(output, newColumn);
                 }
             }
@@ -63,7 +63,7 @@ public class TruthTable {
             } else if (action == VariableListEvent.REMOVE) {
                 outputColumns.remove(event.getVariable());
             } else if (action == VariableListEvent.REPLACE) {
-                Entry[] column = outputColumns.remove(event.getVariable());
+                EntryColumn column = outputColumns.remove(event.getVariable());
                 if (column != null) {
                     int index = ((Integer) event.getData()).intValue();
                     String newVariable = model.getOutputs().get(index);
@@ -72,28 +72,30 @@ public class TruthTable {
             }
         }
 
-        private Entry[] removeInput(Entry[] old, int index) {
+        private EntryColumn removeInput(EntryColumn old, int index) {
             int oldInputCount = model.getInputs().size() + 1;
-            Entry[] ret = new Entry[old.length / 2];
+            int length = old.getRowCount();
+            EntryColumn ret = new EntryColumn(length / 2);
             int j = 0;
             int mask = 1 << (oldInputCount - 1 - index);
-            for (int i = 0; i < old.length; i++) {
+            for (int i = 0; i < length; i++) {
                 if ((i & mask) == 0) {
-                    Entry e0 = old[i];
-                    Entry e1 = old[i | mask];
-                    ret[j] = (e0 == e1 ? e0 : Entry.DONT_CARE);
+                    Entry e0 = old.get(i);
+                    Entry e1 = old.get(i | mask);
+                    ret.set(j, e0 == e1 ? e0 : Entry.DONT_CARE);
                     j++;
                 }
             }
             return ret;
         }
 
-        private Entry[] moveInput(Entry[] old, int oldIndex, int newIndex) {
+        private EntryColumn moveInput(EntryColumn old, int oldIndex, int newIndex) {
             int inputs = model.getInputs().size();
             oldIndex = inputs - 1 - oldIndex;
             newIndex = inputs - 1 - newIndex;
-            Entry[] ret = new Entry[old.length];
-            int sameMask = (old.length - 1) ^ ((1 << (1 + Math.max(oldIndex, newIndex))) - 1)
+            int length = old.getRowCount();
+            EntryColumn ret = new EntryColumn(length);
+            int sameMask = (length - 1) ^ ((1 << (1 + Math.max(oldIndex, newIndex))) - 1)
                 // bits that don't change
                 ^ ((1 << Math.min(oldIndex, newIndex)) - 1);
             // bit that moves
@@ -101,8 +103,8 @@ public class TruthTable {
             int moveDist = Math.abs(newIndex - oldIndex);
             boolean moveLeft = newIndex > oldIndex;
             // bits that move by one
-            int blockMask = (old.length - 1) ^ sameMask ^ moveMask;
-            for (int i = 0; i < old.length; i++) {
+            int blockMask = (length - 1) ^ sameMask ^ moveMask;
+            for (int i = 0; i < length; i++) {
                 // new index
                 int j;
                 if (moveLeft) {
@@ -112,7 +114,7 @@ public class TruthTable {
                     j = (i & sameMask) | ((i & moveMask) >> moveDist)
                         | ((i & blockMask) << 1);
                 }
-                ret[j] = old[i];
+                ret.set(j, old.get(i));
             }
             return ret;
         }
@@ -121,7 +123,7 @@ public class TruthTable {
     private MyListener myListener = new MyListener();
     private List<TruthTableListener> listeners = new ArrayList<TruthTableListener>();
     private AnalyzerModel model;
-    private HashMap<String,Entry[]> outputColumns = new HashMap<String,Entry[]>();
+    private HashMap<String,EntryColumn> outputColumns = new HashMap<String,EntryColumn>();
 
     public TruthTable(AnalyzerModel model) {
         this.model = model;
@@ -137,8 +139,8 @@ public class TruthTable {
         listeners.remove(l);
     }
 
-    private void fireCellsChanged(int column) {
-        TruthTableEvent event = new TruthTableEvent(this, column);
+    private void fireCellsChanged(int column, int firstRow, int lastRow) {
+        TruthTableEvent event = new TruthTableEvent(this, column, firstRow, lastRow);
         for (TruthTableListener l : listeners) {
             l.cellsChanged(event);
         }
@@ -199,72 +201,97 @@ public class TruthTable {
             return Entry.DONT_CARE;
         } else {
             String outputName = model.getOutputs().get(column);
-            Entry[] columnData = outputColumns.get(outputName);
+            EntryColumn columnData = outputColumns.get(outputName);
             if (columnData == null) {
                 return DEFAULT_ENTRY;
             }
 
-            if (row < 0 || row >= columnData.length) {
+            if (row < 0 || row >= columnData.getRowCount()) {
                 return Entry.DONT_CARE;
             }
 
-            return columnData[row];
+            return columnData.get(row);
         }
     }
 
     public void setOutputEntry(int row, int column, Entry value) {
+        setOutputEntries(row, column, new Entry[] { value });
+    }
+
+    /**
+     * Sets a run of consecutive rows of an output column, starting at
+     * <code>firstRow</code>, notifying the listeners once for the rows
+     * that changed.
+     */
+    public void setOutputEntries(int firstRow, int column, Entry[] values) {
         int rows = getRowCount();
         int outputs = model.getOutputs().size();
-        if (row < 0 || row >= rows) {
-            throw new IllegalArgumentException("row index: " + row + " size: " + rows);
+        if (firstRow < 0 || firstRow + values.length > rows) {
+            throw new IllegalArgumentException("row index: " + firstRow + " size: " + rows);
         }
         if (column < 0 || column >= outputs) {
             throw new IllegalArgumentException("column index: " + column + " size: " + outputs);
         }
 
         String outputName = model.getOutputs().get(column);
-        Entry[] columnData = outputColumns.get(outputName);
-
-        if (columnData == null) {
-            if (value == DEFAULT_ENTRY) {
-                return;
+        EntryColumn columnData = outputColumns.get(outputName);
+        int changedFirst = -1;
+        int changedLast = -1;
+        for (int i = 0; i < values.length; i++) {
+            if (columnData == null) {
+                if (values[i] == DEFAULT_ENTRY) {
+                    continue;
+                }
+                columnData = new EntryColumn(rows);
+                outputColumns.put(outputName, columnData);
             }
 
-            columnData = new Entry[getRowCount()];
-            outputColumns.put(outputName, columnData);
-            Arrays.fill(columnData, DEFAULT_ENTRY);
-            columnData[row] = value;
-        } else {
-            if (columnData[row] == value) {
-                return;
+            if (columnData.set(firstRow + i, values[i])) {
+                if (changedFirst < 0) {
+                    changedFirst = firstRow + i;
+                }
+                changedLast = firstRow + i;
             }
-
-            columnData[row] = value;
         }
 
-        fireCellsChanged(column);
+        if (changedFirst >= 0) {
+            fireCellsChanged(column, changedFirst, changedLast);
+        }
     }
 
     public Entry[] getOutputColumn(int column) {
+        return getOutputEntries(column).toArray();
+    }
+
+    /** Returns a copy of the entries of an output column. */
+    public EntryColumn getOutputEntries(int column) {
         int outputs = model.getOutputs().size();
         if (column < 0 || column >= outputs) {
             throw new IllegalArgumentException("index: " + column + " size: " + outputs);
         }
 
         String outputName = model.getOutputs().get(column);
-        Entry[] columnData = outputColumns.get(outputName);
+        EntryColumn columnData = outputColumns.get(outputName);
         if (columnData == null) {
-            columnData = new Entry[getRowCount()];
-            Arrays.fill(columnData, DEFAULT_ENTRY);
-            outputColumns.put(outputName, columnData);
+            return new EntryColumn(getRowCount());
         }
-        return columnData;
+        return new EntryColumn(columnData);
     }
 
     public void setOutputColumn(int column, Entry[] values) {
         if (values != null && values.length != getRowCount()) {
             throw new IllegalArgumentException("argument to setOutputColumn is wrong length");
         }
+        setOutputColumn(column, values == null ? null : new EntryColumn(values));
+    }
+
+    /** Replaces an output column; the table keeps <code>values</code>
+     * rather than a copy of it. */
+    public void setOutputColumn(int column, EntryColumn values) {
+        int rows = getRowCount();
+        if (values != null && values.getRowCount() != rows) {
+            throw new IllegalArgumentException("argument to setOutputColumn is wrong length");
+        }
 
         int outputs = model.getOutputs().size();
         if (column < 0 || column >= outputs) {
@@ -272,7 +299,7 @@ public class TruthTable {
         }
 
         String outputName = model.getOutputs().get(column);
-        Entry[] oldValues = outputColumns.get(outputName);
+        EntryColumn oldValues = outputColumns.get(outputName);
         if (oldValues == values) {
             return;
         }
@@ -285,7 +312,7 @@ public class TruthTable {
             outputColumns.put(outputName, values);
         }
 
-        fireCellsChanged(column);
+        fireCellsChanged(column, 0, rows - 1);
     }
 
     public static boolean isInputSet(int row, int column, int inputs) {
@@ -7,6 +7,8 @@ package com.cburch.logisim.analyze.model;
 public class TruthTableEvent {
     private TruthTable source;
     private int column;
+    private int firstRow;
+    private int lastRow;
     private Object data;
 
     public TruthTableEvent(TruthTable source, VariableListEvent event) {
@@ -15,14 +17,31 @@ public class TruthTableEvent {
     }
 
     public TruthTableEvent(TruthTable source, int column) {
+        this(source, column, 0, source.getRowCount() - 1);
+    }
+
+    public TruthTableEvent(TruthTable source, int column, int firstRow,
+            int lastRow) {
         this.source = source;
         this.column = column;
+        this.firstRow = firstRow;
+        this.lastRow = lastRow;
     }
 
     public int getColumn() {
         return column;
     }
 
+    /** Returns the first of the rows whose cells changed. */
+    public int getFirstRow() {
+        return firstRow;
+    }
+
+    /** Returns the last of the rows whose cells changed. */
+    public int getLastRow() {
+        return lastRow;
+    }
+
     public TruthTable getSource() {
         return source;
     }
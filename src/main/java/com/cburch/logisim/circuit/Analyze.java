@@ -8,13 +8,20 @@ import java.util.Collection;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.SortedMap;
 import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import com.cburch.logisim.analyze.model.AnalyzerModel;
 import com.cburch.logisim.analyze.model.Entry;
+import com.cburch.logisim.analyze.model.EntryColumn;
 import com.cburch.logisim.analyze.model.Expression;
 import com.cburch.logisim.analyze.model.Expressions;
 import com.cburch.logisim.analyze.model.TruthTable;
@@ -32,6 +39,15 @@ import static com.cburch.logisim.util.LocaleString.*;
 @SuppressWarnings("serial")
 public class Analyze {
     private static final int MAX_ITERATIONS = 100;
+    // rows a worker takes at a time when simulating a truth table
+    private static final int ROWS_PER_TASK = 16;
+
+    /** Follows the computation of a truth table, which may take a while
+     * for larger circuits. The methods may be called from any thread. */
+    public static interface TableProgress {
+        public void setProgress(int rowsDone, int rowCount);
+        public boolean isCanceled();
+    }
 
     private Analyze() { }
 
@@ -346,6 +362,17 @@ public class Analyze {
     /** Returns a truth table corresponding to the circuit. */
     public static void computeTable(AnalyzerModel model, Project proj,
             Circuit circuit, Map<Instance, String> pinLabels) {
+        computeTable(model, proj, circuit, pinLabels, null);
+    }
+
+    /**
+     * Fills in the model with the truth table of the circuit, reporting
+     * to progress if it is not null. Returns false, leaving the model
+     * unchanged, if the computation was canceled through progress.
+     */
+    public static boolean computeTable(AnalyzerModel model, Project proj,
+            Circuit circuit, Map<Instance, String> pinLabels,
+            TableProgress progress) {
         ArrayList<Instance> inputPins = new ArrayList<Instance>();
         ArrayList<String> inputNames = new ArrayList<String>();
         ArrayList<Instance> outputPins = new ArrayList<Instance>();
@@ -361,12 +388,181 @@ public class Analyze {
             }
         }
 
-        int inputCount = inputPins.size();
-        int rowCount = 1 << inputCount;
-        Entry[][] columns = new Entry[outputPins.size()][rowCount];
+        int rowCount = 1 << inputPins.size();
+        EntryColumn[] columns = new EntryColumn[outputPins.size()];
+        for (int i = 0; i < columns.length; i++) {
+            columns[i] = new EntryColumn(rowCount);
+        }
+
+        // circuits built only from components that can evaluate many rows
+        // at once are computed 64 rows at a time; the rest row by row
+        VectorEvaluator vectors = VectorEvaluator.create(proj, circuit,
+                inputPins, outputPins);
+        if (vectors != null) {
+            vectors.computeTable(columns);
+        } else if (!computeRows(proj, circuit, inputPins, outputPins,
+                columns, progress)) {
+            return false;
+        }
+
+        model.setVariables(inputNames, outputNames);
+        for (int i = 0; i < columns.length; i++) {
+            model.getTruthTable().setOutputColumn(i, columns[i]);
+        }
+        return true;
+    }
+
+    /** Simulates each row, spreading the rows over the available
+     * processors, each with a state of its own. */
+    private static boolean computeRows(Project proj, Circuit circuit,
+            List<Instance> inputPins, List<Instance> outputPins,
+            EntryColumn[] columns, TableProgress progress) {
+        int rowCount = 1 << inputPins.size();
+        int workers = Math.min(Runtime.getRuntime().availableProcessors(),
+                (rowCount + ROWS_PER_TASK - 1) / ROWS_PER_TASK);
+
+        // the states are made here and the wires of each circuit computed
+        // up front, as neither is safe to do from several threads at once
+        prepareWires(circuit);
+        RowProgress rows = new RowProgress(rowCount, progress);
+        ArrayList<RowWorker> tasks = new ArrayList<RowWorker>();
+        for (int i = 0; i < workers; i++) {
+            CircuitState state = new CircuitState(proj, circuit);
+            state.getPropagator();
+            tasks.add(new RowWorker(state, inputPins, outputPins, columns, rows));
+        }
+
+        if (workers <= 1) {
+            tasks.get(0).call();
+        } else {
+            ForkJoinPool pool = new ForkJoinPool(workers);
+            try {
+                for (Future<Void> result : pool.invokeAll(tasks)) {
+                    result.get();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                }
+                throw new IllegalStateException(cause);
+            } finally {
+                pool.shutdownNow();
+            }
+        }
+        return !rows.isCanceled();
+    }
+
+    /** Computes the wires of the circuit and of its subcircuits, so that
+     * states of them may be simulated from several threads at once. */
+    public static void prepareWires(Circuit circuit) {
+        prepareWires(circuit, new HashSet<Circuit>());
+    }
+
+    private static void prepareWires(Circuit circuit, Set<Circuit> done) {
+        if (done.add(circuit)) {
+            circuit.wires.ensureComputed();
+            for (Component comp : circuit.getNonWires()) {
+                if (comp.getFactory() instanceof SubcircuitFactory) {
+                    SubcircuitFactory factory = (SubcircuitFactory) comp.getFactory();
+                    prepareWires(factory.getSubcircuit(), done);
+                }
+            }
+        }
+    }
+
+    /** Hands out the rows to the workers and tallies their progress. */
+    private static class RowProgress {
+        private final int rowCount;
+        private final TableProgress progress;
+        private final AtomicInteger nextRow = new AtomicInteger();
+        private final AtomicInteger rowsDone = new AtomicInteger();
+        private volatile boolean canceled = false;
+
+        RowProgress(int rowCount, TableProgress progress) {
+            this.rowCount = rowCount;
+            this.progress = progress;
+        }
+
+        /** Returns the first of the next rows to compute, or -1 if none
+         * remain. */
+        int nextRows() {
+            if (canceled) {
+                return -1;
+            }
+            int ret = nextRow.getAndAdd(ROWS_PER_TASK);
+            return ret < rowCount ? ret : -1;
+        }
+
+        void rowsDone(int count) {
+            int done = rowsDone.addAndGet(count);
+            if (progress != null) {
+                progress.setProgress(done, rowCount);
+                if (progress.isCanceled()) {
+                    canceled = true;
+                }
+            }
+        }
+
+        boolean isCanceled() {
+            return canceled;
+        }
+
+        int getRowCount() {
+            return rowCount;
+        }
+    }
 
-        for (int i = 0; i < rowCount; i++) {
-            CircuitState circuitState = new CircuitState(proj, circuit);
+    private static class RowWorker implements Callable<Void> {
+        private final CircuitState circuitState;
+        private final List<Instance> inputPins;
+        private final List<Instance> outputPins;
+        private final EntryColumn[] columns;
+        private final Entry[][] results;
+        private final RowProgress rows;
+        private boolean used = false;
+
+        RowWorker(CircuitState circuitState, List<Instance> inputPins,
+                List<Instance> outputPins, EntryColumn[] columns, RowProgress rows) {
+            this.circuitState = circuitState;
+            this.inputPins = inputPins;
+            this.outputPins = outputPins;
+            this.columns = columns;
+            this.results = new Entry[columns.length][ROWS_PER_TASK];
+            this.rows = rows;
+        }
+
+        @Override
+        public Void call() {
+            for (int start = rows.nextRows(); start >= 0; start = rows.nextRows()) {
+                int end = Math.min(start + ROWS_PER_TASK, rows.getRowCount());
+                for (int i = start; i < end; i++) {
+                    computeRow(i, i - start);
+                }
+                // neighbouring rows share words in the packed columns
+                synchronized (columns) {
+                    for (int j = 0; j < columns.length; j++) {
+                        for (int i = start; i < end; i++) {
+                            columns[j].set(i, results[j][i - start]);
+                        }
+                    }
+                }
+                rows.rowsDone(end - start);
+            }
+            return null;
+        }
+
+        private void computeRow(int i, int slot) {
+            // the state is reset between rows rather than made anew
+            Propagator prop = circuitState.getPropagator();
+            if (used) {
+                prop.reset();
+            }
+            used = true;
+            int inputCount = inputPins.size();
             for (int j = 0; j < inputCount; j++) {
                 Instance pin = inputPins.get(j);
                 InstanceState pinState = circuitState.getInstanceState(pin);
@@ -374,7 +570,6 @@ public class Analyze {
                 Pin.FACTORY.setValue(pinState, value ? Value.TRUE : Value.FALSE);
             }
 
-            Propagator prop = circuitState.getPropagator();
             prop.propagate();
             /* TODO for the SimulatorPrototype class
             do {
@@ -384,7 +579,7 @@ public class Analyze {
 
             if (prop.isOscillating()) {
                 for (int j = 0; j < columns.length; j++) {
-                    columns[j][i] = Entry.OSCILLATE_ERROR;
+                    results[j][slot] = Entry.OSCILLATE_ERROR;
                 }
             } else {
                 for (int j = 0; j < columns.length; j++) {
@@ -408,14 +603,9 @@ public class Analyze {
                         out = Entry.DONT_CARE;
                     }
 
-                    columns[j][i] = out;
+                    results[j][slot] = out;
                 }
             }
         }
-
-        model.setVariables(inputNames, outputNames);
-        for (int i = 0; i < columns.length; i++) {
-            model.getTruthTable().setOutputColumn(i, columns[i]);
-        }
     }
 }
@@ -117,6 +117,8 @@ public class Circuit {
     private ArrayList<Component> clocks = new ArrayList<Component>();
     private CircuitLocker locker;
     private WeakHashMap<Component, Circuit> circuitsUsingThis;
+    // levels for zero-delay simulation, computed when first asked for
+    private volatile CombinationalLevels levels = null;
 
     public Circuit(String name) {
         appearance = new CircuitAppearance(this);
@@ -175,6 +177,9 @@ public class Circuit {
     }
 
     private void fireEvent(CircuitEvent event) {
+        if (event.getAction() != CircuitEvent.ACTION_INVALIDATE) {
+            levels = null;
+        }
         for (CircuitListener l : listeners) {
             l.circuitChanged(event);
         }
@@ -195,6 +200,19 @@ public class Circuit {
         return subcircuitFactory;
     }
 
+    /** Returns the levels of the combinational components, computing them
+     * afresh if the circuit or its bundle map has changed since. */
+    CombinationalLevels getCombinationalLevels() {
+        CombinationalLevels ret = levels;
+        if (ret == null || ret.getBundleMap() != wires.getCurrentBundleMap()) {
+            ret = CombinationalLevels.compute(this);
+            if (ret != CombinationalLevels.EMPTY) {
+                levels = ret;
+            }
+        }
+        return ret;
+    }
+
     public Set<WidthIncompatibilityData> getWidthIncompatibilityData() {
         return wires.getWidthIncompatibilityData();
     }
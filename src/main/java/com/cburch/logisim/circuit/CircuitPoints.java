@@ -8,6 +8,8 @@ import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
 import java.util.Set;
 
 import com.cburch.logisim.comp.Component;
@@ -17,6 +19,8 @@ import com.cburch.logisim.data.Location;
 
 class CircuitPoints {
     private static class LocationData {
+        Location loc;
+        int index;
         BitWidth width = BitWidth.UNKNOWN;
         ArrayList<Component> components = new ArrayList<Component>(4);
         ArrayList<EndData> ends = new ArrayList<EndData>(4);
@@ -25,8 +29,68 @@ class CircuitPoints {
 
     private HashMap<Location,LocationData> map
         = new HashMap<Location,LocationData>();
+    // the point at each end of a component other than a wire, found by
+    // the end itself so that the simulator need not hash its location
+    private IdentityHashMap<EndData,LocationData> endPoints
+        = new IdentityHashMap<EndData,LocationData>();
     private HashMap<Location,WidthIncompatibilityData> incompatibilityData
         = new HashMap<Location,WidthIncompatibilityData>();
+    private IndexLayout layout = new IndexLayout(16);
+    private int liveCount = 0;
+
+    /**
+     * Assigns each point of the circuit a dense integer index, so that
+     * per-point simulation data can be kept in arrays. A point keeps its
+     * index for as long as it exists, and indices of removed points are
+     * not handed out again. Once most indices are unused, the points are
+     * renumbered into a fresh layout, and the old layout records where
+     * each of its surviving indices went; holders of per-point arrays
+     * notice the change and follow these records to remap their entries.
+     */
+    static class IndexLayout {
+        // the point holding each index, or null once it is removed
+        private LocationData[] points;
+        private int count = 0;
+        // set once the points are renumbered into a newer layout
+        private IndexLayout next = null;
+        private int[] forward = null;
+
+        private IndexLayout(int capacity) {
+            points = new LocationData[capacity];
+        }
+
+        /** Returns the number of indices handed out in this layout. */
+        int getIndexCount() {
+            return count;
+        }
+
+        /** Returns the location that has the index in this layout, or
+         * null if its point was removed. */
+        Location getLocation(int index) {
+            LocationData locData = points[index];
+            return locData == null ? null : locData.loc;
+        }
+
+        /** Returns the layout that replaced this one, or null if it is
+         * still current. */
+        IndexLayout getNext() {
+            return next;
+        }
+
+        /** Returns the index in the next layout for an index of this one,
+         * or -1 if the point no longer exists. */
+        int getForwardIndex(int index) {
+            return index < forward.length ? forward[index] : -1;
+        }
+
+        private int add(LocationData locData) {
+            if (count == points.length) {
+                points = Arrays.copyOf(points, 2 * count);
+            }
+            points[count] = locData;
+            return count++;
+        }
+    }
 
     public CircuitPoints() { }
 
@@ -37,6 +101,39 @@ class CircuitPoints {
         return map.keySet();
     }
 
+    IndexLayout getIndexLayout() {
+        return layout;
+    }
+
+    int getIndex(Location loc) {
+        LocationData locData = map.get(loc);
+        return locData == null ? -1 : locData.index;
+    }
+
+    /**
+     * Returns the location's index as getIndex does, where the hint is an
+     * index that the location had before, or -1. A hint that still holds
+     * is returned without looking the location up, so callers that keep
+     * the index they were last given rarely pay for the lookup.
+     */
+    int getIndex(Location loc, int hint) {
+        IndexLayout cur = layout;
+        if (hint >= 0 && hint < cur.count) {
+            LocationData locData = cur.points[hint];
+            if (locData != null && locData.loc.equals(loc)) {
+                return hint;
+            }
+        }
+        return getIndex(loc);
+    }
+
+    /** Returns the index of the point at the end of a component, as
+     * getIndex does for the end's location. */
+    int getIndex(EndData end) {
+        LocationData locData = endPoints.get(end);
+        return locData != null ? locData.index : getIndex(end.getLocation());
+    }
+
     BitWidth getWidth(Location loc) {
         LocationData locData = map.get(loc);
         return locData == null ? BitWidth.UNKNOWN : locData.width;
@@ -75,6 +172,18 @@ class CircuitPoints {
 
     }
 
+    /** Returns the components at the point with the index in the current
+     * layout. */
+    Collection<? extends Component> getComponents(int index) {
+        IndexLayout cur = layout;
+        LocationData locData = index < cur.count ? cur.points[index] : null;
+        if (locData == null) {
+            return Collections.emptySet();
+        } else {
+            return locData.components;
+        }
+    }
+
     Collection<? extends Component> getSplitCauses(Location loc) {
         return getComponents(loc);
     }
@@ -200,10 +309,16 @@ class CircuitPoints {
         LocationData locData = map.get(loc);
         if (locData == null) {
             locData = new LocationData();
+            locData.loc = loc;
+            locData.index = layout.add(locData);
             map.put(loc, locData);
+            liveCount++;
         }
         locData.components.add(comp);
         locData.ends.add(endData);
+        if (endData != null) {
+            endPoints.put(endData, locData);
+        }
         computeIncompatibilityData(loc, locData);
     }
 
@@ -219,10 +334,19 @@ class CircuitPoints {
             return;
         }
 
+        EndData endData = locData.ends.get(index);
+        if (endData != null && endPoints.get(endData) == locData) {
+            endPoints.remove(endData);
+        }
 
         if (locData.components.size() == 1) {
             map.remove(loc);
+            layout.points[locData.index] = null;
             incompatibilityData.remove(loc);
+            liveCount--;
+            if (layout.count > 64 && liveCount < layout.count / 2) {
+                compactIndices();
+            }
         } else {
             locData.components.remove(index);
             locData.ends.remove(index);
@@ -230,6 +354,21 @@ class CircuitPoints {
         }
     }
 
+    private void compactIndices() {
+        IndexLayout newLayout = new IndexLayout(Math.max(16, 2 * liveCount));
+        int[] forward = new int[layout.count];
+        Arrays.fill(forward, -1);
+        for (Map.Entry<Location,LocationData> entry : map.entrySet()) {
+            LocationData locData = entry.getValue();
+            int index = newLayout.add(locData);
+            forward[locData.index] = index;
+            locData.index = index;
+        }
+        layout.forward = forward;
+        layout.next = newLayout;
+        layout = newLayout;
+    }
+
     private void computeIncompatibilityData(Location loc, LocationData locData) {
         WidthIncompatibilityData error = null;
         if (locData != null) {
@@ -3,19 +3,21 @@
 
 package com.cburch.logisim.circuit;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.ConcurrentModificationException;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
-import java.util.Map;
+import java.util.LinkedHashSet;
 import java.util.Set;
-import java.util.concurrent.CopyOnWriteArraySet;
 
 import com.cburch.logisim.circuit.Propagator.SetData;
 import com.cburch.logisim.comp.Component;
 import com.cburch.logisim.comp.ComponentDrawContext;
 import com.cburch.logisim.comp.ComponentState;
+import com.cburch.logisim.comp.EndData;
 import com.cburch.logisim.data.BitWidth;
 import com.cburch.logisim.data.Location;
 import com.cburch.logisim.data.Value;
@@ -58,37 +60,38 @@ public class CircuitState implements InstanceData {
                     markPointAsDirty(w.getEnd0());
                     markPointAsDirty(w.getEnd1());
                 } else {
-                    if (base != null) {
-                        base.checkComponentEnds(CircuitState.this, comp);
-                    }
+                    checkEndsLater(comp);
 
-                    dirtyComponents.remove(comp);
+                    synchronized (dirtyLock) {
+                        dirtyComponents.remove(comp);
+                    }
                 }
             } else if (action == CircuitEvent.ACTION_CLEAR) {
                 substates.clear();
                 wireData = null;
                 componentData.clear();
-                values.clear();
-                dirtyComponents.clear();
-                dirtyPoints.clear();
-                causes.clear();
+                PointData pd = pointData;
+                Arrays.fill(pd.values, null);
+                synchronized (dirtyLock) {
+                    dirtyComponents.clear();
+                    dirtyPoints.clear();
+                    unmappedDirty.clear();
+                    endsToCheck.clear();
+                }
+                Arrays.fill(pd.causes, null);
             } else if (action == CircuitEvent.ACTION_CHANGE) {
                 Object data = event.getData();
                 if (data instanceof Collection) {
                     @SuppressWarnings("unchecked")
                     Collection<Component> comps = (Collection<Component>) data;
                     markComponentsDirty(comps);
-                    if (base != null) {
-                        for (Component comp : comps) {
-                            base.checkComponentEnds(CircuitState.this, comp);
-                        }
+                    for (Component comp : comps) {
+                        checkEndsLater(comp);
                     }
                 } else {
                     Component comp = (Component) event.getData();
                     markComponentAsDirty(comp);
-                    if (base != null) {
-                        base.checkComponentEnds(CircuitState.this, comp);
-                    }
+                    checkEndsLater(comp);
 
                 }
             } else if (action == CircuitEvent.ACTION_INVALIDATE) {
@@ -122,6 +125,52 @@ public class CircuitState implements InstanceData {
         }
     }
 
+    /**
+     * The values and causes at the circuit's points, indexed as in a layout
+     * of the circuit's points. The simulator alone remaps the arrays to a
+     * new layout or grows them, and it then replaces this whole object, so
+     * that a reader taking it once finds an index and arrays that agree.
+     */
+    private static class PointData {
+        final CircuitPoints.IndexLayout layout;
+        final Value[] values;
+        final SetData[] causes;
+        // indices for readers while the circuit's layout is newer
+        volatile StaleIndices stale = null;
+
+        PointData(CircuitPoints.IndexLayout layout, Value[] values,
+                SetData[] causes) {
+            this.layout = layout;
+            this.values = values;
+            this.causes = causes;
+        }
+    }
+
+    /** For each index in a newer layout, the index the point had in the
+     * arrays of an older PointData, or -1. */
+    private static class StaleIndices {
+        final CircuitPoints.IndexLayout layout;
+        final int[] indices;
+
+        StaleIndices(PointData pd, CircuitPoints.IndexLayout layout) {
+            this.layout = layout;
+            this.indices = new int[layout.getIndexCount()];
+            Arrays.fill(indices, -1);
+            for (int i = 0; i < pd.values.length; i++) {
+                int j = i;
+                CircuitPoints.IndexLayout cur = pd.layout;
+                while (cur != layout && j >= 0) {
+                    CircuitPoints.IndexLayout next = cur.getNext();
+                    j = next == null ? -1 : cur.getForwardIndex(j);
+                    cur = next;
+                }
+                if (j >= 0 && j < indices.length) {
+                    indices[j] = i;
+                }
+            }
+        }
+    }
+
     private MyCircuitListener myCircuitListener = new MyCircuitListener();
     // base of tree of CircuitStates
     private Propagator base = null;
@@ -138,10 +187,21 @@ public class CircuitState implements InstanceData {
 
     private CircuitWires.State wireData = null;
     private HashMap<Component,Object> componentData = new HashMap<Component,Object>();
-    private Map<Location,Value> values = new HashMap<Location,Value>();
-    private CopyOnWriteArraySet<Component> dirtyComponents = new CopyOnWriteArraySet<Component>();
-    private CopyOnWriteArraySet<Location> dirtyPoints = new CopyOnWriteArraySet<Location>();
-    HashMap<Location,SetData> causes = new HashMap<Location,SetData>();
+    // values and causes are indexed by the circuit's point indices, as
+    // assigned in a layout that only the simulator replaces
+    private volatile PointData pointData;
+    // components and points awaiting propagation; these are marked from
+    // the thread editing the circuit as well as the simulator's, so
+    // access is guarded by dirtyLock
+    private final Object dirtyLock = new Object();
+    private LinkedHashSet<Component> dirtyComponents = new LinkedHashSet<Component>();
+    private DirtySet<Location> dirtyPoints = new DirtySet<Location>();
+    // points marked while the arrays await remapping to a new layout
+    private ArrayList<Location> unmappedDirty = new ArrayList<Location>();
+    // components whose ends lost or changed their causes in an edit
+    private ArrayList<Component> endsToCheck = new ArrayList<Component>();
+    // the points being propagated, kept to be reused
+    private DirtySet<Location> processingPoints = new DirtySet<Location>();
 
     private static int lastId = 0;
     private int id = lastId++;
@@ -149,6 +209,11 @@ public class CircuitState implements InstanceData {
     public CircuitState(Project proj, Circuit circuit) {
         this.proj = proj;
         this.circuit = circuit;
+        // laid out now, as the simulator may first reach the state from
+        // several threads at once
+        CircuitPoints.IndexLayout layout = circuit.wires.points.getIndexLayout();
+        this.pointData = new PointData(layout, new Value[layout.getIndexCount()],
+                new SetData[layout.getIndexCount()]);
         circuit.addCircuitListener(myCircuitListener);
     }
 
@@ -208,17 +273,25 @@ public class CircuitState implements InstanceData {
                 this.componentData.put(key, newValue);
             }
         }
-        for (Location key : src.causes.keySet()) {
-            Propagator.SetData oldValue = src.causes.get(key);
-            Propagator.SetData newValue = oldValue.cloneFor(this);
-            this.causes.put(key, newValue);
+        PointData srcData = src.pointData;
+        SetData[] causes = new SetData[srcData.causes.length];
+        for (int i = 0; i < causes.length; i++) {
+            Propagator.SetData oldValue = srcData.causes[i];
+            if (oldValue != null) {
+                causes[i] = oldValue.cloneFor(this);
+            }
         }
         if (src.wireData != null) {
             this.wireData = (CircuitWires.State) src.wireData.clone();
         }
-        this.values.putAll(src.values);
-        this.dirtyComponents.addAll(src.dirtyComponents);
-        this.dirtyPoints.addAll(src.dirtyPoints);
+        this.pointData = new PointData(srcData.layout,
+                srcData.values.clone(), causes);
+        synchronized (src.dirtyLock) {
+            this.dirtyComponents.addAll(src.dirtyComponents);
+            this.dirtyPoints.addAll(src.dirtyPoints);
+            this.unmappedDirty.addAll(src.unmappedDirty);
+            this.endsToCheck.addAll(src.endsToCheck);
+        }
     }
 
     @Override
@@ -289,7 +362,26 @@ public class CircuitState implements InstanceData {
     }
 
     public Value getValue(Location pt) {
-        Value ret = values.get(pt);
+        PointData pd = pointData;
+        CircuitPoints points = circuit.wires.points;
+        CircuitPoints.IndexLayout layout = points.getIndexLayout();
+        return getValue(pd, pt, toStateIndex(pd, layout, points.getIndex(pt)));
+    }
+
+    /** Returns the value at the end's location, as getValue does for the
+     * location, but finding the point by the end rather than by hashing
+     * its location. */
+    public Value getValue(EndData end) {
+        PointData pd = pointData;
+        CircuitPoints points = circuit.wires.points;
+        CircuitPoints.IndexLayout layout = points.getIndexLayout();
+        return getValue(pd, end.getLocation(),
+                toStateIndex(pd, layout, points.getIndex(end)));
+    }
+
+    private Value getValue(PointData pd, Location pt, int index) {
+        Value[] vals = pd.values;
+        Value ret = index < 0 || index >= vals.length ? null : vals[index];
         if (ret != null) {
             return ret;
         }
@@ -301,27 +393,57 @@ public class CircuitState implements InstanceData {
 
     public void setValue(Location pt, Value val, Component cause, int delay) {
         if (base != null) {
-            base.setValue(this, pt, val, cause, delay);
+            base.setValue(this, pt, -1, val, cause, delay);
         }
 
     }
 
+    /** Sets the value at the end's location, as setValue does for the
+     * location, but finding the point by the end rather than by hashing
+     * its location. */
+    public void setValue(EndData end, Value val, Component cause, int delay) {
+        if (base != null) {
+            int index = circuit.wires.points.getIndex(end);
+            base.setValue(this, end.getLocation(), index, val, cause, delay);
+        }
+    }
+
     public void markComponentAsDirty(Component comp) {
-        try {
+        synchronized (dirtyLock) {
             dirtyComponents.add(comp);
-        } catch (RuntimeException e) {
-            CopyOnWriteArraySet<Component> set = new CopyOnWriteArraySet<Component>();
-            set.add(comp);
-            dirtyComponents = set;
         }
     }
 
     public void markComponentsDirty(Collection<Component> comps) {
-        dirtyComponents.addAll(comps);
+        synchronized (dirtyLock) {
+            dirtyComponents.addAll(comps);
+        }
     }
 
     public void markPointAsDirty(Location pt) {
-        dirtyPoints.add(pt);
+        // This is also called as the circuit is edited, when the arrays may
+        // not yet follow the circuit's layout; only the simulator remaps
+        // them, so the point waits to be keyed by its index until then.
+        CircuitPoints points = circuit.wires.points;
+        synchronized (dirtyLock) {
+            if (pointData.layout == points.getIndexLayout()) {
+                int index = points.getIndex(pt);
+                if (index >= 0) {
+                    dirtyPoints.add(index, pt);
+                }
+            } else {
+                unmappedDirty.add(pt);
+            }
+        }
+    }
+
+    /** Marks the point as dirty, given its index from getPointIndex. */
+    void markPointAsDirty(Location pt, int index) {
+        if (index >= 0) {
+            synchronized (dirtyLock) {
+                dirtyPoints.add(index, pt);
+            }
+        }
     }
 
     public InstanceState getInstanceState(Component comp) {
@@ -350,31 +472,31 @@ public class CircuitState implements InstanceData {
     }
 
     void processDirtyComponents() {
-        if (!dirtyComponents.isEmpty()) {
-            // This seeming wasted copy is to avoid ConcurrentModifications
-            // if we used an iterator instead.
-            Object[] toProcess;
-            RuntimeException firstException = null;
-            for (int tries = 4; true; tries--) {
-                try {
-                    toProcess = dirtyComponents.toArray();
-                    break;
-                } catch (RuntimeException e) {
-                    if (firstException == null) {
-                        firstException = e;
-                    }
+        propagateDirtyComponents();
+        for (CircuitState substate : getSubstateArray()) {
+            substate.processDirtyComponents();
+        }
+    }
 
-                    if (tries == 0) {
-                        toProcess = new Object[0];
-                        dirtyComponents = new CopyOnWriteArraySet<Component>();
-                        throw firstException;
-                    }
-                }
+    /** Propagates the components of this state that are marked dirty, but
+     * not those of its substates. */
+    void propagateDirtyComponents() {
+        // Components marked while these are propagated wait for the next
+        // round, so take a snapshot and start afresh.
+        Object[] toProcess = null;
+        synchronized (dirtyLock) {
+            if (!dirtyComponents.isEmpty()) {
+                toProcess = dirtyComponents.toArray();
+                dirtyComponents.clear();
             }
-            dirtyComponents.clear();
+        }
+        if (toProcess != null) {
             for (Object compObj : toProcess) {
                 if (compObj instanceof Component) {
                     Component comp = (Component) compObj;
+                    if (base != null && base.deferComponent(this, comp)) {
+                        continue;
+                    }
                     comp.propagate(this);
                     if (comp.getFactory() instanceof Pin && parentState != null) {
                         // should be propagated in superstate
@@ -383,20 +505,40 @@ public class CircuitState implements InstanceData {
                 }
             }
         }
+    }
 
+    CircuitState[] getSubstateArray() {
         CircuitState[] subs = new CircuitState[substates.size()];
-        for (CircuitState substate : substates.toArray(subs)) {
-            substate.processDirtyComponents();
-        }
+        return substates.toArray(subs);
     }
 
     void processDirtyPoints() {
-        HashSet<Location> dirty = new HashSet<Location>(dirtyPoints);
-        dirtyPoints.clear();
+        propagateDirtyPoints(takeDirtyPoints());
+        for (CircuitState substate : getSubstateArray()) {
+            substate.processDirtyPoints();
+        }
+    }
+
+    /** Returns the points of this state that are marked dirty, leaving none
+     * marked; these include all split points if the wires have changed. */
+    DirtySet<Location> takeDirtyPoints() {
+        updatePointLayout();
+        checkEnds();
+        DirtySet<Location> dirty;
+        synchronized (dirtyLock) {
+            dirty = dirtyPoints;
+            dirtyPoints = processingPoints;
+            processingPoints = dirty;
+        }
         if (circuit.wires.isMapVoided()) {
             for (int i = 3; i >= 0; i--) {
                 try {
-                    dirty.addAll(circuit.wires.points.getSplitLocations());
+                    for (Location loc : circuit.wires.points.getSplitLocations()) {
+                        int index = findPointIndex(loc);
+                        if (index >= 0) {
+                            dirty.add(index, loc);
+                        }
+                    }
                     break;
                 } catch (ConcurrentModificationException e) {
                     // try again...
@@ -408,18 +550,27 @@ public class CircuitState implements InstanceData {
                 }
             }
         }
-        if (!dirty.isEmpty()) {
-            circuit.wires.propagate(this, dirty);
-        }
+        return dirty;
+    }
 
-        CircuitState[] subs = new CircuitState[substates.size()];
-        for (CircuitState substate : substates.toArray(subs)) {
-            substate.processDirtyPoints();
+    /** Propagates the values at the points taken by takeDirtyPoints through
+     * the wires of this state. */
+    void propagateDirtyPoints(DirtySet<Location> dirty) {
+        if (!dirty.isEmpty() || circuit.wires.isOutdated(wireData)) {
+            circuit.wires.propagate(this, dirty);
+            dirty.clear();
         }
     }
 
+    /**
+     * Returns this state and its substates to how a new state would start,
+     * but keeps the tree of substates and the storage allocated for values,
+     * so that the state can be reused for a fresh simulation.
+     */
     void reset() {
-        wireData = null;
+        if (wireData != null) {
+            wireData.clear();
+        }
         for (Iterator<Component> it = componentData.keySet().iterator(); it.hasNext(); ) {
             Component comp = it.next();
             if (!(comp.getFactory() instanceof SubcircuitFactory)) {
@@ -427,10 +578,15 @@ public class CircuitState implements InstanceData {
             }
 
         }
-        values.clear();
-        dirtyComponents.clear();
-        dirtyPoints.clear();
-        causes.clear();
+        PointData pd = pointData;
+        Arrays.fill(pd.values, null);
+        synchronized (dirtyLock) {
+            dirtyComponents.clear();
+            dirtyPoints.clear();
+            unmappedDirty.clear();
+            endsToCheck.clear();
+        }
+        Arrays.fill(pd.causes, null);
         markAllComponentsDirty();
 
         for (CircuitState sub : substates) {
@@ -459,29 +615,109 @@ public class CircuitState implements InstanceData {
         wireData = data;
     }
 
+    /**
+     * Returns the index under which the point's value and causes are
+     * stored, or -1 if the location is not a point of the circuit or was
+     * added since the circuit's points were last renumbered. The arrays are
+     * grown to hold the index, so this is for the simulator's use alone;
+     * readers use findPointIndex instead.
+     */
+    int getPointIndex(Location p) {
+        return getPointIndex(p, -1);
+    }
+
+    /** Returns the point's index as getPointIndex does, where the hint is
+     * an index the point had before, or -1; see CircuitPoints.getIndex. */
+    int getPointIndex(Location p, int hint) {
+        PointData pd = pointData;
+        CircuitPoints points = circuit.wires.points;
+        CircuitPoints.IndexLayout layout = points.getIndexLayout();
+        int index = points.getIndex(p, hint);
+        if (pd.layout != layout) {
+            // the arrays are remapped only as a step begins, so that no
+            // index handed out during the step goes stale
+            return toStateIndex(pd, layout, index);
+        }
+        if (index >= pd.values.length) {
+            resizePoints(index + 1);
+        }
+        return index;
+    }
+
+    private int findPointIndex(Location p) {
+        return findPointIndex(p, -1);
+    }
+
+    /** Returns the point's index in the arrays as they are, without
+     * remapping or growing them, where the hint is an index the point had
+     * before, or -1. */
+    int findPointIndex(Location p, int hint) {
+        PointData pd = pointData;
+        CircuitPoints points = circuit.wires.points;
+        CircuitPoints.IndexLayout layout = points.getIndexLayout();
+        return toStateIndex(pd, layout, points.getIndex(p, hint));
+    }
+
+    SetData getCauses(int index) {
+        return pointData.causes[index];
+    }
+
+    void setCauses(int index, SetData head) {
+        pointData.causes[index] = head;
+    }
+
     Value getComponentOutputAt(Location p) {
+        return getComponentOutputAt(findPointIndex(p));
+    }
+
+    /** Returns the components' output at the point with the index from
+     * findPointIndex, as getComponentOutputAt does for its location. */
+    Value getComponentOutputAt(int index) {
         // for CircuitWires - to get values, ignoring wires' contributions
-        Propagator.SetData cause_list = causes.get(p);
-        return Propagator.computeValue(cause_list);
+        SetData[] cs = pointData.causes;
+        return Propagator.computeValue(index < 0 || index >= cs.length ? null : cs[index]);
     }
 
     Value getValueByWire(Location p) {
-        return values.get(p);
+        PointData pd = pointData;
+        CircuitPoints points = circuit.wires.points;
+        CircuitPoints.IndexLayout layout = points.getIndexLayout();
+        int index = toStateIndex(pd, layout, points.getIndex(p));
+        Value[] vals = pd.values;
+        return index < 0 || index >= vals.length ? null : vals[index];
     }
 
     void setValueByWire(Location p, Value v) {
+        setValueByWire(p, -1, v);
+    }
+
+    /** Sets the value at the point as setValueByWire does, where the hint
+     * is an index the point had before, or -1, returning its index. */
+    int setValueByWire(Location p, int hint, Value v) {
         // for CircuitWires - to set value at point
+        int index = getPointIndex(p, hint);
+        if (index < 0) {
+            return index;
+        }
+
         boolean changed;
+        PointData pd = pointData;
+        Value[] values = pd.values;
+        Value old = values[index];
         if (v == Value.NIL) {
-            Object old = values.remove(p);
+            values[index] = null;
             changed = (old != null && old != Value.NIL);
         } else {
-            Object old = values.put(p, v);
+            values[index] = v;
             changed = !v.equals(old);
         }
         if (changed) {
             boolean found = false;
-            for (Component comp : circuit.getComponents(p)) {
+            CircuitPoints points = circuit.wires.points;
+            Collection<? extends Component> comps
+                = pd.layout == points.getIndexLayout()
+                    ? points.getComponents(index) : points.getComponents(p);
+            for (Component comp : comps) {
                 if (!(comp instanceof Wire) && !(comp instanceof Splitter)) {
                     found = true;
                     markComponentAsDirty(comp);
@@ -495,12 +731,130 @@ public class CircuitState implements InstanceData {
             }
 
         }
+        return index;
     }
 
     //
     // private methods
     //
+    private void checkEndsLater(Component comp) {
+        if (base != null) {
+            synchronized (dirtyLock) {
+                endsToCheck.add(comp);
+            }
+        }
+    }
+
+    private void checkEnds() {
+        Object[] toCheck = null;
+        synchronized (dirtyLock) {
+            if (!endsToCheck.isEmpty()) {
+                toCheck = endsToCheck.toArray();
+                endsToCheck.clear();
+            }
+        }
+        if (toCheck != null && base != null) {
+            for (Object comp : toCheck) {
+                base.checkComponentEnds(this, (Component) comp);
+            }
+        }
+    }
+
+    /** Returns the index in the arrays of pd of the point with the index
+     * in the circuit's current layout, or -1 if the arrays hold nothing
+     * for it yet. */
+    private static int toStateIndex(PointData pd,
+            CircuitPoints.IndexLayout layout, int index) {
+        if (pd.layout == layout || index < 0) {
+            return index;
+        }
+
+        StaleIndices stale = pd.stale;
+        if (stale == null || stale.layout != layout) {
+            stale = new StaleIndices(pd, layout);
+            pd.stale = stale;
+        }
+        return index < stale.indices.length ? stale.indices[index] : -1;
+    }
+
+    // Called by the simulator as it takes the dirty points, this remaps the
+    // arrays once the circuit's points have been renumbered.
+    private void updatePointLayout() {
+        CircuitPoints.IndexLayout layout = circuit.wires.points.getIndexLayout();
+        if (pointData.layout != layout) {
+            remapPoints(layout);
+        }
+    }
+
+    private void remapPoints(CircuitPoints.IndexLayout layout) {
+        synchronized (dirtyLock) {
+            PointData old = pointData;
+            if (old.layout == layout) {
+                return;
+            }
+            Value[] values = old.values;
+            SetData[] causes = old.causes;
+
+            // follow each renumbering since the arrays were last laid out
+            for (CircuitPoints.IndexLayout cur = old.layout;
+                    cur != layout && cur.getNext() != null;
+                    cur = cur.getNext()) {
+                CircuitPoints.IndexLayout next = cur.getNext();
+                Value[] newValues = new Value[next.getIndexCount()];
+                SetData[] newCauses = new SetData[next.getIndexCount()];
+                for (int i = 0; i < values.length; i++) {
+                    if (values[i] != null || causes[i] != null) {
+                        int j = cur.getForwardIndex(i);
+                        if (j >= 0 && j < newValues.length) {
+                            newValues[j] = values[i];
+                            newCauses[j] = causes[i];
+                        }
+                    }
+                }
+                values = newValues;
+                causes = newCauses;
+            }
+            if (values.length < layout.getIndexCount()) {
+                int size = Math.max(layout.getIndexCount(), 2 * values.length);
+                values = Arrays.copyOf(values, size);
+                causes = Arrays.copyOf(causes, size);
+            }
+            pointData = new PointData(layout, values, causes);
+
+            // the dirty points are keyed by index, too
+            CircuitPoints points = circuit.wires.points;
+            DirtySet<Location> dirty = new DirtySet<Location>();
+            for (int i = 0; i < dirtyPoints.size(); i++) {
+                Location loc = dirtyPoints.get(i);
+                int index = points.getIndex(loc);
+                if (index >= 0) {
+                    dirty.add(index, loc);
+                }
+            }
+            for (Location loc : unmappedDirty) {
+                int index = points.getIndex(loc);
+                if (index >= 0) {
+                    dirty.add(index, loc);
+                }
+            }
+            unmappedDirty.clear();
+            dirtyPoints = dirty;
+        }
+    }
+
+    private void resizePoints(int size) {
+        synchronized (dirtyLock) {
+            PointData pd = pointData;
+            if (pd.values.length >= size) {
+                return;
+            }
+            int newSize = Math.max(size, 2 * pd.values.length);
+            pointData = new PointData(pd.layout, Arrays.copyOf(pd.values, newSize),
+                    Arrays.copyOf(pd.causes, newSize));
+        }
+    }
+
     private void markAllComponentsDirty() {
-        dirtyComponents.addAll(circuit.getNonWires());
+        markComponentsDirty(circuit.getNonWires());
     }
 }
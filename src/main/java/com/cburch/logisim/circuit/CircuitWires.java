@@ -5,14 +5,16 @@ package com.cburch.logisim.circuit;
 
 import java.awt.Color;
 import java.awt.Graphics;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Set;
-import java.util.concurrent.CopyOnWriteArraySet;
 
 import org.apache.commons.collections15.iterators.IteratorChain;
 
@@ -53,16 +55,45 @@ class CircuitWires {
 
     static class State {
         BundleMap bundleMap;
-        HashMap<WireThread,Value> thr_values = new HashMap<WireThread,Value>();
+        // value of each thread of the map, by the thread's index
+        Value[] thr_values;
+        // reused for putting together the values of multi-thread bundles
+        Value[] bundle_values = new Value[0];
+        // reused for the threads and bundles that a propagation recomputes;
+        // both are empty between propagations
+        DirtySet<WireThread> dirtyThreads;
+        DirtySet<WireBundle> dirtyBundles;
+        // set once the values are cleared, until all threads are recomputed
+        boolean cleared = false;
 
         State(BundleMap bundleMap) {
             this.bundleMap = bundleMap;
+            this.thr_values = new Value[bundleMap.threadCount];
+            this.dirtyThreads = new DirtySet<WireThread>();
+            this.dirtyBundles = new DirtySet<WireBundle>();
+        }
+
+        /** Creates a state for a new bundle map, taking over the storage
+         * of the state it replaces. */
+        State(BundleMap bundleMap, State previous) {
+            this.bundleMap = bundleMap;
+            this.thr_values = new Value[bundleMap.threadCount];
+            this.bundle_values = previous.bundle_values;
+            this.dirtyThreads = previous.dirtyThreads;
+            this.dirtyBundles = previous.dirtyBundles;
+        }
+
+        /** Forgets the threads' values, keeping the storage for reuse. */
+        void clear() {
+            Arrays.fill(thr_values, null);
+            cleared = true;
         }
 
         @Override
         public Object clone() {
             State ret = new State(this.bundleMap);
-            ret.thr_values.putAll(this.thr_values);
+            ret.thr_values = this.thr_values.clone();
+            ret.cleared = this.cleared;
             return ret;
         }
     }
@@ -85,6 +116,19 @@ class CircuitWires {
         HashMap<Location,WireBundle> pointBundles = new HashMap<Location,WireBundle>();
         HashSet<WireBundle> bundles = new HashSet<WireBundle>();
         boolean isValid = true;
+        // number of distinct threads, each numbered by its index
+        int threadCount = 0;
+        // likewise for the valid bundles that have threads
+        int bundleCount = 0;
+        // number of those indices still in use by threads of the map
+        int liveThreadCount = 0;
+        // set when the map was made from the previous one by recomputing
+        // only the bundles around some changed points, which lets states
+        // keep the values of the threads that were not touched
+        BundleMap previous = null;
+        Location[] changedPoints = null;
+        WireThread[] addedThreads = null;
+        WireThread[] removedThreads = null;
         // NOTE: It would make things more efficient if we also had
         // a set of just the first bundle in each tree.
         HashSet<WidthIncompatibilityData> incompatibilityData = null;
@@ -160,6 +204,8 @@ class CircuitWires {
     // derived data
     private Bounds bounds = Bounds.EMPTY_BOUNDS;
     private BundleMap bundleMap = null;
+    // points whose bundles may have changed since the map was computed
+    private HashSet<Location> changedPoints = new HashSet<Location>();
 
     CircuitWires() { }
 
@@ -170,6 +216,12 @@ class CircuitWires {
         return bundleMap == null;
     }
 
+    /** Returns the bundle map as last computed, without bringing it up to
+     * date; this is null once the map is voided. */
+    BundleMap getCurrentBundleMap() {
+        return bundleMap;
+    }
+
     Set<WidthIncompatibilityData> getWidthIncompatibilityData() {
         return getBundleMap().getWidthIncompatibilityData();
     }
@@ -253,8 +305,9 @@ class CircuitWires {
     //
     // action methods
     //
-    // NOTE: this could be made much more efficient in most cases to
-    // avoid voiding the bundle map.
+    // Rather than voiding the bundle map, these note the points whose
+    // bundles may have changed; the map is brought up to date when next
+    // requested.
     boolean add(Component comp) {
         boolean added = true;
         if (comp instanceof Wire) {
@@ -273,7 +326,7 @@ class CircuitWires {
         }
         if (added) {
             points.add(comp);
-            voidBundleMap();
+            noteChanged(comp);
         }
         return added;
     }
@@ -294,23 +347,24 @@ class CircuitWires {
             }
         }
         points.remove(comp);
-        voidBundleMap();
+        noteChanged(comp);
     }
 
     void add(Component comp, EndData end) {
         points.add(comp, end);
-        voidBundleMap();
+        noteChanged(end.getLocation());
     }
 
     void remove(Component comp, EndData end) {
         points.remove(comp, end);
-        voidBundleMap();
+        noteChanged(end.getLocation());
     }
 
     void replace(Component comp, EndData oldEnd, EndData newEnd) {
         points.remove(comp, oldEnd);
         points.add(comp, newEnd);
-        voidBundleMap();
+        noteChanged(oldEnd.getLocation());
+        noteChanged(newEnd.getLocation());
     }
 
     private boolean addWire(Wire w) {
@@ -346,96 +400,139 @@ class CircuitWires {
     //
     // utility methods
     //
-    void propagate(CircuitState circState, Set<Location> points) {
+    void propagate(CircuitState circState, DirtySet<Location> points) {
         BundleMap map = getBundleMap();
-        // affected threads
-        CopyOnWriteArraySet<WireThread> dirtyThreads = new CopyOnWriteArraySet<WireThread>();
 
         // get state, or create a new one if current state is outdated
         State s = circState.getWireData();
-        if (s == null || s.bundleMap != map) {
-            // if it is outdated, we need to compute for all threads
+        if (s == null) {
+            // as if cleared, so that every thread is computed
             s = new State(map);
-            for (WireBundle b : map.getBundles()) {
-                WireThread[] th = b.threads;
-                if (b.isValid() && th != null) {
-                    for (WireThread t : th) {
-                        dirtyThreads.add(t);
-                    }
-                }
+            s.cleared = true;
+            circState.setWireData(s);
+        } else if (s.bundleMap != map && (s.bundleMap != map.previous
+                || s.cleared)) {
+            // if it is outdated, we need to compute for all threads,
+            // and points may have left their bundles
+            s = new State(map, s);
+            s.cleared = true;
+            for (Location p : this.points.getSplitLocations()) {
+                markPoint(circState, map, p, s.dirtyThreads);
             }
             circState.setWireData(s);
         }
 
-        // determine affected threads, and set values for unwired points
-        for (Location p : points) {
-            WireBundle pb = map.getBundleAt(p);
-            // point is not wired
-            if (pb == null) {
-                circState.setValueByWire(p, circState.getComponentOutputAt(p));
-            } else {
-                WireThread[] th = pb.threads;
-                if (!pb.isValid() || th == null) {
-                    // immediately propagate NILs across invalid bundles
-                    CopyOnWriteArraySet<Location> pbPoints = pb.points;
-                    if (pbPoints == null) {
-                        circState.setValueByWire(p, Value.NIL);
-                    } else {
-                        for (Location loc2 : pbPoints) {
-                            circState.setValueByWire(loc2, Value.NIL);
+        // affected threads
+        DirtySet<WireThread> dirtyThreads = s.dirtyThreads;
+        DirtySet<WireBundle> bundles = s.dirtyBundles;
+        try {
+            if (s.bundleMap != map) {
+                // only the threads around the changed points are new
+                s.bundleMap = map;
+                if (s.thr_values.length < map.threadCount) {
+                    s.thr_values = Arrays.copyOf(s.thr_values, map.threadCount);
+                }
+                for (WireThread t : map.removedThreads) {
+                    s.thr_values[t.getIndex()] = null;
+                }
+                for (WireThread t : map.addedThreads) {
+                    dirtyThreads.add(t.getIndex(), t);
+                }
+                for (Location p : map.changedPoints) {
+                    markPoint(circState, map, p, dirtyThreads);
+                }
+            } else if (s.cleared) {
+                s.cleared = false;
+                for (WireBundle b : map.getBundles()) {
+                    WireThread[] th = b.threads;
+                    if (b.isValid() && th != null) {
+                        for (WireThread t : th) {
+                            dirtyThreads.add(t.getIndex(), t);
                         }
                     }
-                } else {
-                    for (WireThread t : th) {
-                        dirtyThreads.add(t);
-                    }
                 }
             }
-        }
-
-        if (dirtyThreads.isEmpty()) {
-            return;
-        }
 
+            // determine affected threads, and set values for unwired points
+            for (int i = 0, n = points.size(); i < n; i++) {
+                markPoint(circState, map, points.get(i), dirtyThreads);
+            }
 
-        // determine values of affected threads
-        HashSet<ThreadBundle> bundles = new HashSet<ThreadBundle>();
-        for (WireThread t : dirtyThreads) {
-            Value v = getThreadValue(circState, t);
-            s.thr_values.put(t, v);
-            bundles.addAll(t.getBundles());
-        }
+            // determine values of affected threads
+            Value[] thr_values = s.thr_values;
+            for (int i = 0, n = dirtyThreads.size(); i < n; i++) {
+                WireThread t = dirtyThreads.get(i);
+                thr_values[t.getIndex()] = getThreadValue(circState, t);
+                for (ThreadBundle tb : t.getBundles()) {
+                    bundles.add(tb.b.getIndex(), tb.b);
+                }
+            }
 
-        // now propagate values through circuit
-        for (ThreadBundle tb : bundles) {
-            WireBundle b = tb.b;
+            // now propagate values through circuit; each bundle listed has
+            // threads, as only valid bundles are given any
+            for (int i = 0, n = bundles.size(); i < n; i++) {
+                WireBundle b = bundles.get(i);
+                WireThread[] th = b.threads;
 
-            Value bv = null;
-            if (!b.isValid() || b.threads == null) {
-                // do nothing
-                ;
-            } else if (b.threads.length == 1) {
-                bv = s.thr_values.get(b.threads[0]);
-            } else {
-                Value[] tvs = new Value[b.threads.length];
-                boolean tvs_valid = true;
-                for (int i = 0; i < tvs.length; i++) {
-                    Value tv = s.thr_values.get(b.threads[i]);
-                    if (tv == null) {
-                        { tvs_valid = false;
+                Value bv;
+                if (th.length == 1) {
+                    bv = thr_values[th[0].getIndex()];
+                } else {
+                    Value[] tvs = s.bundle_values;
+                    if (tvs.length != th.length) {
+                        tvs = new Value[th.length];
+                        s.bundle_values = tvs;
+                    }
+                    bv = null;
+                    for (int j = 0; j < th.length; j++) {
+                        Value tv = thr_values[th[j].getIndex()];
+                        if (tv == null) {
+                            tvs = null;
+                            break;
+                        }
+                        tvs[j] = tv;
+                    }
+                    if (tvs != null) {
+                        bv = Value.create(tvs);
                     }
- break; }
-                    tvs[i] = tv;
-                }
-                if (tvs_valid) {
-                    bv = Value.create(tvs);
                 }
 
+                if (bv != null) {
+                    int[] hints = b.getPointHints();
+                    int j = 0;
+                    for (Location p : b.points) {
+                        hints[j] = circState.setValueByWire(p, hints[j], bv);
+                        j++;
+                    }
+                }
             }
+        } finally {
+            dirtyThreads.clear();
+            bundles.clear();
+        }
+    }
 
-            if (bv != null) {
-                for (Location p : b.points) {
-                    circState.setValueByWire(p, bv);
+    private void markPoint(CircuitState circState, BundleMap map, Location p,
+            DirtySet<WireThread> dirtyThreads) {
+        WireBundle pb = map.getBundleAt(p);
+        // point is not wired
+        if (pb == null) {
+            circState.setValueByWire(p, circState.getComponentOutputAt(p));
+        } else {
+            WireThread[] th = pb.threads;
+            if (!pb.isValid() || th == null) {
+                // immediately propagate NILs across invalid bundles
+                Set<Location> pbPoints = pb.points;
+                if (pbPoints == null) {
+                    circState.setValueByWire(p, Value.NIL);
+                } else {
+                    for (Location loc2 : pbPoints) {
+                        circState.setValueByWire(loc2, Value.NIL);
+                    }
+                }
+            } else {
+                for (WireThread t : th) {
+                    dirtyThreads.add(t.getIndex(), t);
                 }
             }
         }
@@ -579,24 +676,56 @@ class CircuitWires {
     //
     // helper methods
     //
-    private void voidBundleMap() {
+    private synchronized void voidBundleMap() {
         bundleMap = null;
+        changedPoints.clear();
     }
 
-    private BundleMap getBundleMap() {
+    private void noteChanged(Component comp) {
+        if (comp instanceof Wire) {
+            Wire w = (Wire) comp;
+            noteChanged(w.e0);
+            noteChanged(w.e1);
+        } else {
+            noteChanged(comp.getLocation());
+            for (EndData end : comp.getEnds()) {
+                noteChanged(end.getLocation());
+            }
+        }
+    }
+
+    private synchronized void noteChanged(Location loc) {
+        // once the map is voided, everything is computed anew anyway
+        if (bundleMap != null) {
+            changedPoints.add(loc);
+        }
+    }
+
+    /** Returns whether the state's thread values were computed for an
+     * older bundle map, or changes to the map are still pending. */
+    synchronized boolean isOutdated(State s) {
+        return s != null && (s.bundleMap != bundleMap || !changedPoints.isEmpty());
+    }
+
+    BundleMap getBundleMap() {
         // Maybe we already have a valid bundle map (or maybe
         // one is in progress).
         BundleMap ret = bundleMap;
         if (ret != null) {
             ret.waitUntilComputed();
-            return ret;
+            ret = updateBundleMap(ret);
+            if (ret != null) {
+                return ret;
+            }
         }
         try {
             // Ok, we have to create our own.
             for (int tries = 4; tries >= 0; tries--) {
                 try {
                     ret = new BundleMap();
-                    computeBundleMap(ret);
+                    computeBundleMap(ret, wires, splitters, tunnels, pulls);
+                    collectIncompatibilities(ret);
+                    ret.liveThreadCount = ret.threadCount;
                     bundleMap = ret;
                     break;
         } catch (Exception e) {
@@ -618,12 +747,151 @@ class CircuitWires {
         return ret;
     }
 
+    /**
+     * Applies the changes noted since the map was computed, recomputing
+     * only the bundles connected to the changed points. Returns the map to
+     * use, or null if the map must be computed afresh.
+     */
+    private BundleMap updateBundleMap(BundleMap base) {
+        HashSet<Location> changed;
+        synchronized (this) {
+            if (changedPoints.isEmpty()) {
+                return base;
+            }
+            changed = changedPoints;
+            changedPoints = new HashSet<Location>();
+        }
+
+        BundleMap ret = null;
+        if (base.isValid()) {
+            try {
+                ret = recomputeBundles(base, changed);
+            } catch (RuntimeException e) {
+                // an edit raced with us; the full computation retries
+                ret = null;
+            }
+        }
+        synchronized (this) {
+            if (ret != null && bundleMap == base) {
+                bundleMap = ret;
+                return ret;
+            }
+            bundleMap = null;
+            changedPoints.clear();
+            return null;
+        }
+    }
+
+    private BundleMap recomputeBundles(BundleMap base, Set<Location> changed) {
+        // gather the changed points and everything joined to them, before
+        // or after the change, by wires, splitters and tunnels
+        HashMap<String,ArrayList<Location>> tunnelSets = getTunnelSets(tunnels);
+        LinkedHashSet<Location> region = new LinkedHashSet<Location>();
+        HashSet<WireBundle> oldBundles = new HashSet<WireBundle>();
+        ArrayList<Wire> regionWires = new ArrayList<Wire>();
+        ArrayList<Splitter> regionSplitters = new ArrayList<Splitter>();
+        ArrayList<Component> regionTunnels = new ArrayList<Component>();
+        ArrayList<Component> regionPulls = new ArrayList<Component>();
+        ArrayDeque<Location> queue = new ArrayDeque<Location>(changed);
+        while (!queue.isEmpty()) {
+            Location loc = queue.remove();
+            if (!region.add(loc)) {
+                continue;
+            }
+            WireBundle b = base.getBundleAt(loc);
+            if (b != null && oldBundles.add(b)) {
+                queue.addAll(b.points);
+            }
+            for (Component comp : points.getComponents(loc)) {
+                if (comp instanceof Wire) {
+                    Wire w = (Wire) comp;
+                    if (wires.contains(w) && loc.equals(w.e0)) {
+                        regionWires.add(w);
+                        queue.add(w.e1);
+                    } else {
+                        queue.add(w.e0);
+                    }
+                } else if (comp instanceof Splitter) {
+                    if (splitters.contains(comp) && loc.equals(comp.getEnd(0).getLocation())) {
+                        regionSplitters.add((Splitter) comp);
+                    }
+                    for (EndData end : comp.getEnds()) {
+                        queue.add(end.getLocation());
+                    }
+                } else if (tunnels.contains(comp)) {
+                    regionTunnels.add(comp);
+                    String label = comp.getAttributeSet().getValue(StdAttr.LABEL).trim();
+                    ArrayList<Location> tunnelSet = tunnelSets.get(label);
+                    if (tunnelSet != null) {
+                        queue.addAll(tunnelSet);
+                    }
+                } else if (pulls.contains(comp)) {
+                    regionPulls.add(comp);
+                }
+            }
+        }
+        if (2 * region.size() > base.pointBundles.size()) {
+            return null; // as quick to compute everything
+        }
+
+        // compute the bundles of the region alone, numbering the new
+        // threads after the existing ones
+        BundleMap part = new BundleMap();
+        part.threadCount = base.threadCount;
+        part.bundleCount = base.bundleCount;
+        computeBundleMap(part, regionWires, regionSplitters, regionTunnels, regionPulls);
+
+        LinkedHashSet<WireThread> removed = new LinkedHashSet<WireThread>();
+        for (WireBundle b : oldBundles) {
+            if (b.threads != null) {
+                for (WireThread t : b.threads) {
+                    removed.add(t);
+                }
+            }
+        }
+        LinkedHashSet<WireThread> added = new LinkedHashSet<WireThread>();
+        for (WireBundle b : part.getBundles()) {
+            if (b.threads != null) {
+                for (WireThread t : b.threads) {
+                    added.add(t);
+                }
+            }
+        }
+        int live = base.liveThreadCount - removed.size() + added.size();
+        if (part.threadCount > 2 * live + 256
+                || part.bundleCount > 2 * base.bundles.size() + 256) {
+            return null; // renumber the threads and bundles
+        }
+
+        BundleMap ret = new BundleMap();
+        ret.pointBundles = new HashMap<Location,WireBundle>(base.pointBundles);
+        ret.pointBundles.keySet().removeAll(region);
+        ret.pointBundles.putAll(part.pointBundles);
+        ret.bundles = new HashSet<WireBundle>(base.bundles);
+        ret.bundles.removeAll(oldBundles);
+        ret.bundles.addAll(part.bundles);
+        ret.threadCount = part.threadCount;
+        ret.bundleCount = part.bundleCount;
+        ret.liveThreadCount = live;
+        ret.previous = base;
+        ret.changedPoints = region.toArray(new Location[region.size()]);
+        ret.addedThreads = added.toArray(new WireThread[added.size()]);
+        ret.removedThreads = removed.toArray(new WireThread[removed.size()]);
+        collectIncompatibilities(ret);
+        ret.markComputed();
+        // states still on an older map start over rather than follow a chain
+        base.previous = null;
+        return ret;
+    }
+
     // To be called by getBundleMap only
-    private void computeBundleMap(BundleMap ret) {
+    private void computeBundleMap(BundleMap ret, Collection<Wire> wires,
+            Collection<Splitter> splitters, Collection<Component> tunnels,
+            Collection<Component> pulls) {
         // create bundles corresponding to wires and tunnels
-        connectWires(ret);
-        connectTunnels(ret);
-        connectPullResistors(ret);
+        connectWires(ret, wires);
+        connectTunnels(ret, tunnels);
+        connectPullResistors(ret, pulls);
 
         // merge any WireBundle objects united by previous steps
         for (Iterator<WireBundle> it = ret.getBundles().iterator(); it.hasNext(); ) {
@@ -711,15 +979,21 @@ class CircuitWires {
         // merge any threads united by previous step
         for (WireBundle b : ret.getBundles()) {
             if (b.isValid() && b.threads != null) {
+                b.setIndex(ret.bundleCount++);
                 for (int i = 0; i < b.threads.length; i++) {
                     WireThread thr = b.threads[i].find();
                     b.threads[i] = thr;
+                    if (thr.getIndex() < 0) {
+                        thr.setIndex(ret.threadCount++);
+                    }
                     thr.getBundles().add(new ThreadBundle(i, b));
                 }
             }
         }
 
-        // All threads are sewn together! Compute the exception set before leaving
+    }
+
+    private void collectIncompatibilities(BundleMap ret) {
         Collection<WidthIncompatibilityData> exceptions = points.getWidthIncompatibilityData();
         if (exceptions != null && exceptions.size() > 0) {
             for (WidthIncompatibilityData wid : exceptions) {
@@ -735,7 +1009,7 @@ class CircuitWires {
         }
     }
 
-    private void connectWires(BundleMap ret) {
+    private void connectWires(BundleMap ret, Collection<Wire> wires) {
         // make a WireBundle object for each tree of connected wires
         for (Wire w : wires) {
             WireBundle b0 = ret.getBundleAt(w.e0);
@@ -755,8 +1029,9 @@ class CircuitWires {
         }
     }
 
-    private void connectTunnels(BundleMap ret) {
-        // determine the sets of tunnels
+    // determine the sets of tunnels
+    private static HashMap<String,ArrayList<Location>> getTunnelSets(
+            Collection<Component> tunnels) {
         HashMap<String,ArrayList<Location>> tunnelSets = new HashMap<String,ArrayList<Location>>();
         for (Component comp : tunnels) {
             String label = comp.getAttributeSet().getValue(StdAttr.LABEL);
@@ -770,9 +1045,12 @@ class CircuitWires {
                 tunnelSet.add(comp.getLocation());
             }
         }
+        return tunnelSets;
+    }
 
+    private void connectTunnels(BundleMap ret, Collection<Component> tunnels) {
         // now connect the bundles that are tunnelled together
-        for (ArrayList<Location> tunnelSet : tunnelSets.values()) {
+        for (ArrayList<Location> tunnelSet : getTunnelSets(tunnels).values()) {
             WireBundle foundBundle = null;
             Location foundLocation = null;
             for (Location loc : tunnelSet) {
@@ -801,7 +1079,7 @@ class CircuitWires {
         }
     }
 
-    private void connectPullResistors(BundleMap ret) {
+    private void connectPullResistors(BundleMap ret, Collection<Component> pulls) {
         for (Component comp : pulls) {
             Location loc = comp.getEnd(0).getLocation();
             WireBundle b = ret.getBundleAt(loc);
@@ -819,8 +1097,13 @@ class CircuitWires {
         Value ret = Value.UNKNOWN;
         Value pull = Value.UNKNOWN;
         for (ThreadBundle tb : t.getBundles()) {
+            int[] hints = tb.b.getPointHints();
+            int j = 0;
             for (Location p : tb.b.points) {
-                Value val = state.getComponentOutputAt(p);
+                int index = state.findPointIndex(p, hints[j]);
+                hints[j] = index;
+                j++;
+                Value val = state.getComponentOutputAt(index);
                 if (val != null && val != Value.NIL) {
                     ret = ret.combine(val.get(tb.loc));
                 }
@@ -837,7 +1120,7 @@ class CircuitWires {
         return ret;
     }
 
-    private static Value pullValue(Value base, Value pullTo) {
+    static Value pullValue(Value base, Value pullTo) {
         if (base.isFullyDefined()) {
             return base;
         } else if (base.getWidth() == 1) {
@@ -0,0 +1,324 @@
+/* Copyright (c) 2010, Carl Burch. License information is located in the
+ * com.cburch.logisim.Main source code and at www.cburch.com/logisim/. */
+
+package com.cburch.logisim.circuit;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.HashMap;
+import java.util.List;
+
+import com.cburch.logisim.comp.Component;
+import com.cburch.logisim.comp.EndData;
+import com.cburch.logisim.data.Location;
+
+/**
+ * The levels of the combinational components of one circuit that lie
+ * outside any feedback loop, for evaluating them without delay in a
+ * single ordered sweep. A component counts as combinational if it offers
+ * a {@link VectorComputer}, as for truth tables; it reads through its
+ * input ends and drives only its output-only ends. Each such component
+ * gets a level one more than the highest level among the components
+ * driving the nets it reads, so evaluating the levels in increasing order
+ * sees each component after all of its inputs have settled.
+ *
+ * <p>Nets are taken from the circuit's bundle map, with all the ends of a
+ * splitter counted as a single net. This may find loops that the
+ * individual bits do not have, but never misses one. Components on a
+ * loop, or lying between two loops, get no level and are simulated with
+ * their delays as usual.</p>
+ *
+ * <p>The levels are computed for one bundle map, and {@link Circuit}
+ * computes them afresh once the map or the components change.</p>
+ */
+class CombinationalLevels {
+    static final CombinationalLevels EMPTY
+        = new CombinationalLevels(null, new HashMap<Component,Integer>(), 0);
+
+    private final CircuitWires.BundleMap bundleMap;
+    private final HashMap<Component,Integer> levels;
+    private final int levelCount;
+
+    private CombinationalLevels(CircuitWires.BundleMap bundleMap,
+            HashMap<Component,Integer> levels, int levelCount) {
+        this.bundleMap = bundleMap;
+        this.levels = levels;
+        this.levelCount = levelCount;
+    }
+
+    CircuitWires.BundleMap getBundleMap() {
+        return bundleMap;
+    }
+
+    /** Returns the level of the component, or -1 if it is to be simulated
+     * with its delays. */
+    int getLevel(Component comp) {
+        Integer ret = levels.get(comp);
+        return ret == null ? -1 : ret.intValue();
+    }
+
+    int getLevelCount() {
+        return levelCount;
+    }
+
+    /** Computes the levels of the circuit's components for its current
+     * bundle map. */
+    static CombinationalLevels compute(Circuit circuit) {
+        CircuitWires.BundleMap bmap = circuit.wires.getBundleMap();
+        ArrayList<Component> comps;
+        try {
+            comps = new ArrayList<Component>(circuit.getNonWires());
+        } catch (ConcurrentModificationException e) {
+            // the circuit is being edited; it will be computed again
+            // once the edit is done
+            return EMPTY;
+        }
+
+        // number the nets, merging those joined by splitters
+        HashMap<Object,Integer> netIds = new HashMap<Object,Integer>();
+        IntUnion nets = new IntUnion();
+        for (Component comp : comps) {
+            if (comp instanceof Splitter) {
+                int first = -1;
+                for (EndData end : comp.getEnds()) {
+                    int n = netOf(bmap, end.getLocation(), netIds, nets);
+                    if (first < 0) {
+                        first = n;
+                    } else {
+                        nets.unite(first, n);
+                    }
+                }
+            }
+        }
+
+        // the combinational components, with the nets each reads and drives
+        ArrayList<Component> cands = new ArrayList<Component>();
+        ArrayList<int[]> reads = new ArrayList<int[]>();
+        ArrayList<int[]> drives = new ArrayList<int[]>();
+        for (Component comp : comps) {
+            if (comp instanceof Splitter
+                    || comp.getFeature(VectorComputer.class) == null) {
+                continue;
+            }
+            List<EndData> ends = comp.getEnds();
+            int[] r = new int[ends.size()];
+            int[] d = new int[ends.size()];
+            int rn = 0;
+            int dn = 0;
+            for (EndData end : ends) {
+                int n = netOf(bmap, end.getLocation(), netIds, nets);
+                if (end.getType() == EndData.OUTPUT_ONLY) {
+                    d[dn] = n;
+                    dn++;
+                } else {
+                    r[rn] = n;
+                    rn++;
+                }
+            }
+            cands.add(comp);
+            reads.add(Arrays.copyOf(r, rn));
+            drives.add(Arrays.copyOf(d, dn));
+        }
+        int count = cands.size();
+        for (int c = 0; c < count; c++) {
+            int[] r = reads.get(c);
+            for (int i = 0; i < r.length; i++) {
+                r[i] = nets.find(r[i]);
+            }
+            int[] d = drives.get(c);
+            for (int i = 0; i < d.length; i++) {
+                d[i] = nets.find(d[i]);
+            }
+        }
+
+        // the edges from each component to those reading what it drives
+        int netCount = nets.size();
+        int[][] netReaders = new int[netCount][];
+        int[] readerCount = new int[netCount];
+        for (int c = 0; c < count; c++) {
+            for (int n : reads.get(c)) {
+                readerCount[n]++;
+            }
+        }
+        for (int n = 0; n < netCount; n++) {
+            netReaders[n] = new int[readerCount[n]];
+            readerCount[n] = 0;
+        }
+        for (int c = 0; c < count; c++) {
+            for (int n : reads.get(c)) {
+                netReaders[n][readerCount[n]] = c;
+                readerCount[n]++;
+            }
+        }
+        int[][] succ = new int[count][];
+        int[] inDegree = new int[count];
+        int[] outDegree = new int[count];
+        int[] mark = new int[count];
+        Arrays.fill(mark, -1);
+        for (int c = 0; c < count; c++) {
+            int[] s = new int[4];
+            int sn = 0;
+            for (int n : drives.get(c)) {
+                for (int r : netReaders[n]) {
+                    if (mark[r] != c) {
+                        mark[r] = c;
+                        if (sn == s.length) {
+                            s = Arrays.copyOf(s, 2 * sn);
+                        }
+                        s[sn] = r;
+                        sn++;
+                        inDegree[r]++;
+                    }
+                }
+            }
+            succ[c] = Arrays.copyOf(s, sn);
+            outDegree[c] = sn;
+        }
+        int[][] pred = new int[count][];
+        int[] predCount = new int[count];
+        for (int c = 0; c < count; c++) {
+            pred[c] = new int[inDegree[c]];
+        }
+        for (int c = 0; c < count; c++) {
+            for (int r : succ[c]) {
+                pred[r][predCount[r]] = c;
+                predCount[r]++;
+            }
+        }
+
+        // trim the components that no loop reaches, then those that reach
+        // no loop; what is left is on a loop or between loops
+        boolean[] acyclic = new boolean[count];
+        int[] queue = new int[count];
+        int[] pending = inDegree.clone();
+        trim(succ, pending, acyclic, queue);
+        pending = outDegree.clone();
+        for (int c = 0; c < count; c++) {
+            if (acyclic[c]) {
+                for (int p : pred[c]) {
+                    pending[p]--;
+                }
+            }
+        }
+        trim(pred, pending, acyclic, queue);
+
+        // assign levels in topological order among the acyclic components
+        pending = new int[count];
+        for (int c = 0; c < count; c++) {
+            if (acyclic[c]) {
+                for (int r : succ[c]) {
+                    pending[r]++;
+                }
+            }
+        }
+        int[] level = new int[count];
+        int head = 0;
+        int tail = 0;
+        for (int c = 0; c < count; c++) {
+            if (acyclic[c] && pending[c] == 0) {
+                queue[tail] = c;
+                tail++;
+            }
+        }
+        int levelCount = 0;
+        HashMap<Component,Integer> levels = new HashMap<Component,Integer>();
+        while (head < tail) {
+            int c = queue[head];
+            head++;
+            levels.put(cands.get(c), Integer.valueOf(level[c]));
+            levelCount = Math.max(levelCount, level[c] + 1);
+            for (int r : succ[c]) {
+                if (acyclic[r]) {
+                    level[r] = Math.max(level[r], level[c] + 1);
+                    pending[r]--;
+                    if (pending[r] == 0) {
+                        queue[tail] = r;
+                        tail++;
+                    }
+                }
+            }
+        }
+        return new CombinationalLevels(bmap, levels, levelCount);
+    }
+
+    /** Marks as acyclic the components reachable through edges from
+     * those whose count of pending edges is zero, as in a topological
+     * sort. */
+    private static void trim(int[][] edges, int[] pending, boolean[] acyclic,
+            int[] queue) {
+        int head = 0;
+        int tail = 0;
+        for (int c = 0; c < pending.length; c++) {
+            if (!acyclic[c] && pending[c] == 0) {
+                queue[tail] = c;
+                tail++;
+            }
+        }
+        while (head < tail) {
+            int c = queue[head];
+            head++;
+            acyclic[c] = true;
+            for (int r : edges[c]) {
+                pending[r]--;
+                if (pending[r] == 0 && !acyclic[r]) {
+                    queue[tail] = r;
+                    tail++;
+                }
+            }
+        }
+    }
+
+    // A location lies on the net of its bundle, or on a net of its own
+    // if no wire reaches it.
+    private static int netOf(CircuitWires.BundleMap bmap, Location loc,
+            HashMap<Object,Integer> netIds, IntUnion nets) {
+        WireBundle bundle = bmap == null ? null : bmap.getBundleAt(loc);
+        Object key = bundle == null ? loc : bundle.find();
+        Integer ret = netIds.get(key);
+        if (ret == null) {
+            ret = Integer.valueOf(nets.add());
+            netIds.put(key, ret);
+        }
+        return ret.intValue();
+    }
+
+    private static class IntUnion {
+        private int[] parent = new int[16];
+        private int size = 0;
+
+        int size() {
+            return size;
+        }
+
+        int add() {
+            if (size == parent.length) {
+                parent = Arrays.copyOf(parent, 2 * size);
+            }
+            parent[size] = size;
+            size++;
+            return size - 1;
+        }
+
+        int find(int x) {
+            int root = x;
+            while (parent[root] != root) {
+                root = parent[root];
+            }
+            while (parent[x] != root) {
+                int next = parent[x];
+                parent[x] = root;
+                x = next;
+            }
+            return root;
+        }
+
+        void unite(int a, int b) {
+            a = find(a);
+            b = find(b);
+            if (a != b) {
+                parent[a] = b;
+            }
+        }
+    }
+}
@@ -0,0 +1,76 @@
+/* Copyright (c) 2010, Carl Burch. License information is located in the
+ * com.cburch.logisim.Main source code and at www.cburch.com/logisim/. */
+
+package com.cburch.logisim.circuit;
+
+import java.util.Arrays;
+
+/**
+ * A set of elements that each carry a dense integer index, as used for
+ * tracking which points and wire threads need to be recomputed. Membership
+ * is kept in a bitset over the indices, and the members are kept in an
+ * append-only list in the order they were added. Adding an element takes
+ * constant time and never copies the existing members, and clearing takes
+ * time proportional to the number of members, not to the range of indices.
+ *
+ * <p>A <code>DirtySet</code> is not synchronized; callers shared between
+ * threads must guard it themselves.</p>
+ */
+class DirtySet<E> {
+    private long[] bits = new long[1];
+    private int[] indices = new int[16];
+    private Object[] elements = new Object[16];
+    private int size = 0;
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /** Adds the element under the index, unless an element with this
+     * index is already present. Returns whether the element was added. */
+    boolean add(int index, E element) {
+        int word = index >>> 6;
+        if (word >= bits.length) {
+            bits = Arrays.copyOf(bits, Math.max(word + 1, 2 * bits.length));
+        }
+        long mask = 1L << index;
+        if ((bits[word] & mask) != 0) {
+            return false;
+        }
+        bits[word] |= mask;
+        if (size == indices.length) {
+            indices = Arrays.copyOf(indices, 2 * size);
+            elements = Arrays.copyOf(elements, 2 * size);
+        }
+        indices[size] = index;
+        elements[size] = element;
+        size++;
+        return true;
+    }
+
+    /** Returns the i-th member, in the order added. */
+    E get(int i) {
+        @SuppressWarnings("unchecked")
+        E ret = (E) elements[i];
+        return ret;
+    }
+
+    void addAll(DirtySet<? extends E> other) {
+        for (int i = 0; i < other.size; i++) {
+            add(other.indices[i], other.get(i));
+        }
+    }
+
+    void clear() {
+        for (int i = 0; i < size; i++) {
+            int index = indices[i];
+            bits[index >>> 6] = 0;
+            elements[i] = null;
+        }
+        size = 0;
+    }
+}
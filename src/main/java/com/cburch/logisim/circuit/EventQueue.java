@@ -0,0 +1,37 @@
+/* Copyright (c) 2010, Carl Burch. License information is located in the
+ * com.cburch.logisim.Main source code and at www.cburch.com/logisim/. */
+
+package com.cburch.logisim.circuit;
+
+import com.cburch.logisim.comp.Component;
+import com.cburch.logisim.data.Location;
+import com.cburch.logisim.data.Value;
+
+/**
+ * The queue of pending value changes used by a {@link Propagator}.
+ * Events are removed in order of increasing time, with ties broken
+ * by increasing serial number; since the propagator hands out serial
+ * numbers in increasing order, that is the order in which events at
+ * the same time were added.
+ */
+interface EventQueue {
+    boolean isEmpty();
+
+    int size();
+
+    void clear();
+
+    /** Adds an event, where <code>point</code> is the index that the
+     * location had in its state when scheduled, or -1; it is handed back
+     * with the event as a hint for finding the point again. */
+    void add(int time, int serialNumber, CircuitState state, Location loc,
+            int point, Component cause, Value val);
+
+    /** Returns the time of the earliest pending event. The queue must
+     * not be empty. */
+    int peekTime();
+
+    /** Removes the earliest pending event, copying its fields into
+     * <code>dest</code>. The queue must not be empty. */
+    void remove(Propagator.SetData dest);
+}
@@ -0,0 +1,108 @@
+/* Copyright (c) 2010, Carl Burch. License information is located in the
+ * com.cburch.logisim.Main source code and at www.cburch.com/logisim/. */
+
+package com.cburch.logisim.circuit;
+
+import java.util.Arrays;
+
+import com.cburch.logisim.comp.Component;
+import com.cburch.logisim.data.Location;
+import com.cburch.logisim.data.Value;
+
+/**
+ * The propagator's event queue, a {@link TimingWheel} whose events carry
+ * their serial number, state, cause, location and value in preallocated
+ * parallel arrays indexed by the wheel's slots, so that scheduling an
+ * event allocates nothing once the arrays have grown to the circuit's
+ * working size. Since events are added in serial-number order, the
+ * wheel's ordering of events for the same time is the same as that of
+ * the priority queue it replaces.
+ */
+class EventWheel implements EventQueue {
+    private TimingWheel wheel;
+    private int[] serials;
+    private CircuitState[] states;
+    private Component[] causes;
+    private Location[] locs;
+    private int[] points;
+    private Value[] vals;
+
+    EventWheel(int now) {
+        wheel = new TimingWheel(now, 64);
+        allocate(wheel.capacity());
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return wheel.isEmpty();
+    }
+
+    @Override
+    public int size() {
+        return wheel.size();
+    }
+
+    @Override
+    public void clear() {
+        wheel.clear();
+        Arrays.fill(states, null);
+        Arrays.fill(causes, null);
+        Arrays.fill(locs, null);
+        Arrays.fill(vals, null);
+    }
+
+    @Override
+    public void add(int time, int serialNumber, CircuitState state,
+            Location loc, int point, Component cause, Value val) {
+        int slot = wheel.add(time);
+        if (slot >= serials.length) {
+            allocate(wheel.capacity());
+        }
+        serials[slot] = serialNumber;
+        states[slot] = state;
+        causes[slot] = cause;
+        locs[slot] = loc;
+        points[slot] = point;
+        vals[slot] = val;
+    }
+
+    @Override
+    public int peekTime() {
+        return wheel.peekTime();
+    }
+
+    @Override
+    public void remove(Propagator.SetData dest) {
+        dest.time = wheel.peekTime();
+        int slot = wheel.poll();
+        dest.serialNumber = serials[slot];
+        dest.state = states[slot];
+        dest.cause = causes[slot];
+        dest.loc = locs[slot];
+        dest.point = points[slot];
+        dest.val = vals[slot];
+        dest.next = null;
+        states[slot] = null;
+        causes[slot] = null;
+        locs[slot] = null;
+        vals[slot] = null;
+    }
+
+    private void allocate(int capacity) {
+        if (serials == null) {
+            serials = new int[capacity];
+            states = new CircuitState[capacity];
+            causes = new Component[capacity];
+            locs = new Location[capacity];
+            points = new int[capacity];
+            vals = new Value[capacity];
+        } else {
+            serials = Arrays.copyOf(serials, capacity);
+            states = Arrays.copyOf(states, capacity);
+            causes = Arrays.copyOf(causes, capacity);
+            locs = Arrays.copyOf(locs, capacity);
+            points = Arrays.copyOf(points, capacity);
+            vals = Arrays.copyOf(vals, capacity);
+        }
+    }
+}
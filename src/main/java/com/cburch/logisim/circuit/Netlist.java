@@ -0,0 +1,457 @@
+/* Copyright (c) 2010, Carl Burch. License information is located in the
+ * com.cburch.logisim.Main source code and at www.cburch.com/logisim/. */
+
+package com.cburch.logisim.circuit;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+
+import com.cburch.logisim.comp.Component;
+import com.cburch.logisim.data.Location;
+import com.cburch.logisim.data.Value;
+import com.cburch.logisim.instance.Instance;
+import com.cburch.logisim.instance.InstanceFactory;
+import com.cburch.logisim.std.wiring.Clock;
+import com.cburch.logisim.std.wiring.Pin;
+
+/**
+ * A circuit flattened through all of its subcircuits into dense arrays,
+ * for simulation by a {@link NetlistSimulator}.
+ *
+ * <p>Each copy of a circuit in the hierarchy is an <em>instance</em>.
+ * Every location of an instance at which a component has an end is a
+ * <em>point</em>, and the points joined by wires, tunnels and pull
+ * resistors form a <em>net</em>, exactly as the bundles computed by
+ * {@link CircuitWires}. The bits of nets joined through splitters share
+ * <em>threads</em>. Each component end drives its point through a
+ * <em>slot</em>, which plays the part of a cause in the propagator.
+ * Variable-length relations are stored as a start array indexed by the
+ * owner and a flat array of members, so that the members of owner
+ * <code>i</code> lie between <code>start[i]</code> and
+ * <code>start[i + 1]</code>.</p>
+ *
+ * <p>A netlist is immutable, and it does not follow later changes to the
+ * circuits it was compiled from.</p>
+ */
+public class Netlist {
+    /** A point joined to nothing by wire; its value is its drivers'. */
+    static final byte NET_UNWIRED = 0;
+    /** A valid bundle, whose value is assembled from its threads. */
+    static final byte NET_WIRED = 1;
+    /** A bundle with conflicting widths, which never carries a value. */
+    static final byte NET_INVALID = 2;
+
+    static final byte COMP_PLAIN = 0;
+    static final byte COMP_SUBCIRCUIT = 1;
+    static final byte COMP_CLOCK = 2;
+    /** A pin within a subcircuit, which also updates its parent. */
+    static final byte COMP_INNER_PIN = 3;
+
+    private final Circuit circuit;
+
+    // instances: the root is instance 0
+    int instanceCount;
+    Circuit[] instCircuit;
+    int[] instParentComp;
+    int[] instThreadStart;
+
+    // points
+    int pointCount;
+    Location[] pointLoc;
+    int[] pointInstance;
+    int[] pointNet;
+    Value[] pointMissing;
+    int[] pointSlotStart;
+    int[] pointSlots;
+
+    // nets
+    int netCount;
+    byte[] netKind;
+    int[] netPointStart;
+    int[] netPoints;
+    int[] netThreadStart;
+    int[] netThreads;
+    int[] netReaderStart;
+    int[] netReaders;
+
+    // threads, with the net and bit of each bundle position they occupy
+    int threadCount;
+    int[] threadBundleStart;
+    int[] threadBundleNet;
+    int[] threadBundleBit;
+    Value[] threadPull;
+
+    // components
+    int compCount;
+    Component[] comps;
+    byte[] compKind;
+    int[] compInstance;
+    int[] compChild;
+    int[] compSameNext;
+    int[] compPortStart;
+    int[] portSlot;
+    boolean[] portConnected;
+    int[] portPinComp;
+
+    // slots
+    int slotCount;
+    int[] slotPoint;
+    int[] slotComp;
+
+    private HashMap<Component,Integer> rootComps;
+
+    private Netlist(Circuit circuit) {
+        this.circuit = circuit;
+    }
+
+    /**
+     * Compiles the given circuit and all the subcircuits it uses.
+     *
+     * @throws IllegalArgumentException if the circuit contains a component
+     *     that can be simulated only through a {@link CircuitState}
+     */
+    public static Netlist compile(Circuit circuit) {
+        Builder builder = new Builder(new Netlist(circuit));
+        builder.addInstance(circuit, -1);
+        return builder.finish();
+    }
+
+    public Circuit getCircuit() {
+        return circuit;
+    }
+
+    public int getComponentCount() {
+        return compCount;
+    }
+
+    public int getPointCount() {
+        return pointCount;
+    }
+
+    public int getNetCount() {
+        return netCount;
+    }
+
+    /** Returns the index of a component of the root circuit, or -1. */
+    int getRootIndex(Component comp) {
+        Integer ret = rootComps.get(comp);
+        return ret == null ? -1 : ret.intValue();
+    }
+
+    private static class Builder {
+        private Netlist net;
+
+        private ArrayList<Circuit> instCircuit = new ArrayList<Circuit>();
+        private ArrayList<Integer> instParentComp = new ArrayList<Integer>();
+        private ArrayList<Integer> instThreadStart = new ArrayList<Integer>();
+
+        private ArrayList<Location> pointLoc = new ArrayList<Location>();
+        private ArrayList<Integer> pointInstance = new ArrayList<Integer>();
+        private ArrayList<Integer> pointNet = new ArrayList<Integer>();
+        private ArrayList<Value> pointMissing = new ArrayList<Value>();
+        private ArrayList<List<Integer>> pointSlots = new ArrayList<List<Integer>>();
+
+        private ArrayList<Byte> netKind = new ArrayList<Byte>();
+        private ArrayList<List<Integer>> netPoints = new ArrayList<List<Integer>>();
+        private ArrayList<List<Integer>> netThreads = new ArrayList<List<Integer>>();
+        private ArrayList<List<Integer>> netReaders = new ArrayList<List<Integer>>();
+
+        private ArrayList<List<Integer>> threadBundleNet = new ArrayList<List<Integer>>();
+        private ArrayList<List<Integer>> threadBundleBit = new ArrayList<List<Integer>>();
+        private ArrayList<Value> threadPull = new ArrayList<Value>();
+
+        private ArrayList<Component> comps = new ArrayList<Component>();
+        private ArrayList<Byte> compKind = new ArrayList<Byte>();
+        private ArrayList<Integer> compInstance = new ArrayList<Integer>();
+        private ArrayList<Integer> compChild = new ArrayList<Integer>();
+        private ArrayList<Integer> compPortStart = new ArrayList<Integer>();
+        private ArrayList<Integer> portSlot = new ArrayList<Integer>();
+        private ArrayList<Boolean> portConnected = new ArrayList<Boolean>();
+        private ArrayList<Integer> portPinComp = new ArrayList<Integer>();
+
+        private ArrayList<Integer> slotPoint = new ArrayList<Integer>();
+        private ArrayList<Integer> slotComp = new ArrayList<Integer>();
+
+        private HashMap<Component,Integer> rootComps;
+
+        Builder(Netlist net) {
+            this.net = net;
+        }
+
+        /** Adds an instance of circ, returning the component indices of
+         * its pins. */
+        private HashMap<Instance,Integer> addInstance(Circuit circ,
+                int parentComp) {
+            int inst = instCircuit.size();
+            instCircuit.add(circ);
+            instParentComp.add(Integer.valueOf(parentComp));
+            instThreadStart.add(Integer.valueOf(threadBundleNet.size()));
+
+            // points, nets and threads, sorted so that compiling the same
+            // circuit twice gives the same netlist
+            CircuitWires.BundleMap map = circ.wires.getBundleMap();
+            ArrayList<Location> locs = new ArrayList<Location>(circ.getSplitLocations());
+            Collections.sort(locs);
+            HashMap<Location,Integer> points = new HashMap<Location,Integer>();
+            HashMap<WireBundle,Integer> nets = new HashMap<WireBundle,Integer>();
+            HashMap<WireThread,Integer> threads = new HashMap<WireThread,Integer>();
+            ArrayList<WireThread> threadList = new ArrayList<WireThread>();
+            for (Location loc : locs) {
+                int point = pointLoc.size();
+                points.put(loc, Integer.valueOf(point));
+                pointLoc.add(loc);
+                pointInstance.add(Integer.valueOf(inst));
+                pointMissing.add(Value.createUnknown(circ.getWidth(loc)));
+                pointSlots.add(new ArrayList<Integer>(2));
+
+                WireBundle bundle = map.getBundleAt(loc);
+                Integer netIndex = bundle == null ? null : nets.get(bundle);
+                if (netIndex == null) {
+                    netIndex = Integer.valueOf(netKind.size());
+                    netPoints.add(new ArrayList<Integer>());
+                    netReaders.add(new ArrayList<Integer>());
+                    ArrayList<Integer> threadIds = new ArrayList<Integer>();
+                    netThreads.add(threadIds);
+                    if (bundle == null) {
+                        netKind.add(Byte.valueOf(NET_UNWIRED));
+                    } else if (!bundle.isValid() || bundle.threads == null) {
+                        netKind.add(Byte.valueOf(NET_INVALID));
+                        nets.put(bundle, netIndex);
+                    } else {
+                        netKind.add(Byte.valueOf(NET_WIRED));
+                        nets.put(bundle, netIndex);
+                        for (WireThread t : bundle.threads) {
+                            Integer id = threads.get(t);
+                            if (id == null) {
+                                id = Integer.valueOf(threadBundleNet.size());
+                                threads.put(t, id);
+                                threadList.add(t);
+                                threadBundleNet.add(new ArrayList<Integer>());
+                                threadBundleBit.add(new ArrayList<Integer>());
+                                threadPull.add(Value.UNKNOWN);
+                            }
+                            threadIds.add(id);
+                        }
+                    }
+                }
+                pointNet.add(netIndex);
+                netPoints.get(netIndex.intValue()).add(Integer.valueOf(point));
+            }
+            for (WireThread t : threadList) {
+                int id = threads.get(t).intValue();
+                Value pull = Value.UNKNOWN;
+                for (CircuitWires.ThreadBundle tb : t.getBundles()) {
+                    Integer netIndex = nets.get(tb.b);
+                    if (netIndex != null) {
+                        threadBundleNet.get(id).add(netIndex);
+                        threadBundleBit.get(id).add(Integer.valueOf(tb.loc));
+                    }
+                    Value pullHere = tb.b.getPullValue();
+                    if (pullHere != Value.UNKNOWN) {
+                        pull = pull.combine(pullHere);
+                    }
+                }
+                threadPull.set(id, pull);
+            }
+
+            // components, with one slot per component and point
+            HashMap<Instance,Integer> instances = new HashMap<Instance,Integer>();
+            ArrayList<Integer> subcircuits = new ArrayList<Integer>();
+            for (Component comp : circ.getNonWires()) {
+                if (comp instanceof Splitter) {
+                    continue;
+                }
+                Object factory = comp.getFactory();
+                if (!(factory instanceof InstanceFactory)) {
+                    throw new IllegalArgumentException(circ.getName()
+                            + ": " + comp.getFactory().getName());
+                }
+
+                int c = comps.size();
+                comps.add(comp);
+                instances.put(Instance.getInstanceFor(comp), Integer.valueOf(c));
+                compInstance.add(Integer.valueOf(inst));
+                compChild.add(Integer.valueOf(-1));
+                if (factory instanceof SubcircuitFactory) {
+                    compKind.add(Byte.valueOf(COMP_SUBCIRCUIT));
+                    subcircuits.add(Integer.valueOf(c));
+                } else if (factory instanceof Clock) {
+                    compKind.add(Byte.valueOf(COMP_CLOCK));
+                } else if (factory instanceof Pin && parentComp >= 0) {
+                    compKind.add(Byte.valueOf(COMP_INNER_PIN));
+                } else {
+                    compKind.add(Byte.valueOf(COMP_PLAIN));
+                }
+
+                int portStart = portSlot.size();
+                compPortStart.add(Integer.valueOf(portStart));
+                int ends = comp.getEnds().size();
+                for (int i = 0; i < ends; i++) {
+                    Location loc = comp.getEnd(i).getLocation();
+                    int point = points.get(loc).intValue();
+                    int slot = -1;
+                    for (int j = 0; j < i; j++) {
+                        int other = portSlot.get(portStart + j).intValue();
+                        if (slotPoint.get(other).intValue() == point) {
+                            slot = other;
+                            break;
+                        }
+                    }
+                    if (slot < 0) {
+                        slot = slotPoint.size();
+                        slotPoint.add(Integer.valueOf(point));
+                        slotComp.add(Integer.valueOf(c));
+                        pointSlots.get(point).add(Integer.valueOf(slot));
+                    }
+                    portSlot.add(Integer.valueOf(slot));
+                    portConnected.add(Boolean.valueOf(circ.isConnected(loc, comp)));
+                    portPinComp.add(Integer.valueOf(-1));
+
+                    List<Integer> readers = netReaders.get(pointNet.get(point).intValue());
+                    if (readers.isEmpty() || readers.get(readers.size() - 1).intValue() != c) {
+                        readers.add(Integer.valueOf(c));
+                    }
+                }
+            }
+            if (parentComp < 0) {
+                rootComps = new HashMap<Component,Integer>();
+                for (int c = 0; c < comps.size(); c++) {
+                    rootComps.put(comps.get(c), Integer.valueOf(c));
+                }
+            }
+
+            for (Integer sub : subcircuits) {
+                int c = sub.intValue();
+                Component comp = comps.get(c);
+                SubcircuitFactory factory = (SubcircuitFactory) comp.getFactory();
+                compChild.set(c, Integer.valueOf(instCircuit.size()));
+                HashMap<Instance,Integer> childComps = addInstance(
+                        factory.getSubcircuit(), c);
+                CircuitAttributes attrs = (CircuitAttributes) comp.getAttributeSet();
+                Instance[] pins = attrs.getPinInstances();
+                int portStart = compPortStart.get(c).intValue();
+                int ports = Math.min(pins.length, comp.getEnds().size());
+                for (int i = 0; i < ports; i++) {
+                    portPinComp.set(portStart + i, childComps.get(pins[i]));
+                }
+            }
+            return instances;
+        }
+
+        Netlist finish() {
+            Netlist ret = net;
+            ret.rootComps = rootComps;
+
+            ret.instanceCount = instCircuit.size();
+            ret.instCircuit = instCircuit.toArray(new Circuit[ret.instanceCount]);
+            ret.instParentComp = toInts(instParentComp);
+            ret.instThreadStart = toInts(instThreadStart, threadBundleNet.size());
+
+            ret.pointCount = pointLoc.size();
+            ret.pointLoc = pointLoc.toArray(new Location[ret.pointCount]);
+            ret.pointInstance = toInts(pointInstance);
+            ret.pointNet = toInts(pointNet);
+            ret.pointMissing = pointMissing.toArray(new Value[ret.pointCount]);
+            ret.pointSlotStart = starts(pointSlots);
+            ret.pointSlots = flatten(pointSlots);
+
+            ret.netCount = netKind.size();
+            ret.netKind = new byte[ret.netCount];
+            for (int i = 0; i < ret.netCount; i++) {
+                ret.netKind[i] = netKind.get(i).byteValue();
+            }
+            ret.netPointStart = starts(netPoints);
+            ret.netPoints = flatten(netPoints);
+            ret.netThreadStart = starts(netThreads);
+            ret.netThreads = flatten(netThreads);
+            ret.netReaderStart = starts(netReaders);
+            ret.netReaders = flatten(netReaders);
+
+            ret.threadCount = threadBundleNet.size();
+            ret.threadBundleStart = starts(threadBundleNet);
+            ret.threadBundleNet = flatten(threadBundleNet);
+            ret.threadBundleBit = flatten(threadBundleBit);
+            ret.threadPull = threadPull.toArray(new Value[ret.threadCount]);
+
+            ret.compCount = comps.size();
+            ret.comps = comps.toArray(new Component[ret.compCount]);
+            ret.compKind = new byte[ret.compCount];
+            for (int i = 0; i < ret.compCount; i++) {
+                ret.compKind[i] = compKind.get(i).byteValue();
+            }
+            ret.compInstance = toInts(compInstance);
+            ret.compChild = toInts(compChild);
+            ret.compPortStart = toInts(compPortStart, portSlot.size());
+            ret.portSlot = toInts(portSlot);
+            ret.portConnected = new boolean[portConnected.size()];
+            for (int i = 0; i < ret.portConnected.length; i++) {
+                ret.portConnected[i] = portConnected.get(i).booleanValue();
+            }
+            ret.portPinComp = toInts(portPinComp);
+
+            // link the records of a component used in several instances
+            // into a ring, since they share its invalidation events
+            ret.compSameNext = new int[ret.compCount];
+            HashMap<Component,Integer> last = new HashMap<Component,Integer>();
+            for (int c = 0; c < ret.compCount; c++) {
+                Integer prev = last.put(ret.comps[c], Integer.valueOf(c));
+                if (prev == null) {
+                    ret.compSameNext[c] = c;
+                } else {
+                    int p = prev.intValue();
+                    ret.compSameNext[c] = ret.compSameNext[p];
+                    ret.compSameNext[p] = c;
+                }
+            }
+
+            ret.slotCount = slotPoint.size();
+            ret.slotPoint = toInts(slotPoint);
+            ret.slotComp = toInts(slotComp);
+            return ret;
+        }
+
+        private static int[] toInts(List<Integer> list) {
+            int[] ret = new int[list.size()];
+            for (int i = 0; i < ret.length; i++) {
+                ret[i] = list.get(i).intValue();
+            }
+            return ret;
+        }
+
+        /** Converts a list of start offsets, appending the final end. */
+        private static int[] toInts(List<Integer> list, int end) {
+            int[] ret = new int[list.size() + 1];
+            for (int i = 0; i < list.size(); i++) {
+                ret[i] = list.get(i).intValue();
+            }
+            ret[list.size()] = end;
+            return ret;
+        }
+
+        private static int[] starts(List<List<Integer>> lists) {
+            int[] ret = new int[lists.size() + 1];
+            for (int i = 0; i < lists.size(); i++) {
+                ret[i + 1] = ret[i] + lists.get(i).size();
+            }
+            return ret;
+        }
+
+        private static int[] flatten(List<List<Integer>> lists) {
+            int size = 0;
+            for (List<Integer> list : lists) {
+                size += list.size();
+            }
+            int[] ret = new int[size];
+            int pos = 0;
+            for (List<Integer> list : lists) {
+                for (Integer i : list) {
+                    ret[pos] = i.intValue();
+                    pos++;
+                }
+            }
+            return ret;
+        }
+    }
+}
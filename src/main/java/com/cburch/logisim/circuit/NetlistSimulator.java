@@ -0,0 +1,636 @@
+/* Copyright (c) 2010, Carl Burch. License information is located in the
+ * com.cburch.logisim.Main source code and at www.cburch.com/logisim/. */
+
+package com.cburch.logisim.circuit;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import com.cburch.logisim.comp.Component;
+import com.cburch.logisim.data.Attribute;
+import com.cburch.logisim.data.AttributeSet;
+import com.cburch.logisim.data.Location;
+import com.cburch.logisim.data.Value;
+import com.cburch.logisim.file.Options;
+import com.cburch.logisim.instance.Instance;
+import com.cburch.logisim.instance.InstanceData;
+import com.cburch.logisim.instance.InstanceFactory;
+import com.cburch.logisim.instance.InstanceState;
+import com.cburch.logisim.proj.Project;
+import com.cburch.logisim.std.wiring.Clock;
+import com.cburch.logisim.std.wiring.Pin;
+
+/**
+ * Simulates a {@link Netlist} with the same event semantics as the
+ * {@link Propagator}, but keeping all of its state in arrays indexed by
+ * the netlist's slots, points, nets, threads and components rather than
+ * in a tree of {@link CircuitState}s keyed by location. It is meant for
+ * simulations without a user interface: components are told nothing of
+ * the simulation beyond what their {@link InstanceState} offers, and the
+ * circuits are not notified of any changes.
+ *
+ * <p>Given the same circuit, the two simulators reach the same values
+ * after each propagation, which {@link #findMismatch(CircuitState)}
+ * can confirm.</p>
+ */
+public class NetlistSimulator {
+    /** The number of clock cycles to let pass before deciding that the
+     * circuit is oscillating; this matches the propagator. */
+    private static final int SIM_LIMIT = 1000;
+
+    private class RecordState implements InstanceState {
+        private final int comp;
+
+        RecordState(int comp) {
+            this.comp = comp;
+        }
+
+        @Override
+        public Instance getInstance() {
+            return Instance.getInstanceFor(net.comps[comp]);
+        }
+
+        @Override
+        public InstanceFactory getFactory() {
+            return (InstanceFactory) net.comps[comp].getFactory();
+        }
+
+        @Override
+        public Project getProject() {
+            return proj;
+        }
+
+        @Override
+        public AttributeSet getAttributeSet() {
+            return net.comps[comp].getAttributeSet();
+        }
+
+        @Override
+        public <E> E getAttributeValue(Attribute<E> attr) {
+            return net.comps[comp].getAttributeSet().getValue(attr);
+        }
+
+        @Override
+        public Value getPort(int portIndex) {
+            return getPortValue(net.compPortStart[comp] + portIndex);
+        }
+
+        @Override
+        public boolean isPortConnected(int portIndex) {
+            return net.portConnected[net.compPortStart[comp] + portIndex];
+        }
+
+        @Override
+        public void setPort(int portIndex, Value value, int delay) {
+            schedule(comp, net.compPortStart[comp] + portIndex, value, delay);
+        }
+
+        @Override
+        public InstanceData getData() {
+            return compData[comp];
+        }
+
+        @Override
+        public void setData(InstanceData value) {
+            compData[comp] = value;
+        }
+
+        @Override
+        public void fireInvalidated() {
+            // the circuit would mark the component dirty in every
+            // state of the circuit containing it
+            int c = comp;
+            do {
+                markComponentDirty(c);
+                c = net.compSameNext[c];
+            } while (c != comp);
+        }
+
+        @Override
+        public boolean isCircuitRoot() {
+            return net.compInstance[comp] == 0;
+        }
+
+        @Override
+        public long getTickCount() {
+            return ticks;
+        }
+    }
+
+    private final Project proj;
+    private final Netlist net;
+
+    // the causes at each point, one per slot
+    private Value[] slotValue;
+    private int[] slotStamp;
+    private int stepStamp = 0;
+    // the combination of each point's causes, NIL if it has none
+    private Value[] pointOut;
+    // the value carried by each net, null if it has none yet
+    private Value[] netValue;
+    private Value[] threadValue;
+    // reused for putting together the values of multi-thread nets, one
+    // array for each number of threads
+    private Value[][] netScratch = new Value[0][];
+    private boolean[] instWired;
+
+    private InstanceData[] compData;
+    private RecordState[] compStates;
+    private int[] clocks;
+
+    // dirty sets, each a flag per member and a list of those flagged
+    private boolean[] pointDirty;
+    private int[] dirtyPoints;
+    private int dirtyPointCount = 0;
+    private boolean[] threadDirty;
+    private int[] dirtyThreads;
+    private int dirtyThreadCount = 0;
+    private boolean[] netDirty;
+    private int[] dirtyNets;
+    private int dirtyNetCount = 0;
+    private boolean[] compDirty;
+    private int[] dirtyComps;
+    private int[] processingComps;
+    private int dirtyCompCount = 0;
+
+    // the pending events, each carrying a point slot and a value
+    private TimingWheel events = new TimingWheel(0, 64);
+    private int[] evSlot = new int[64];
+    private Value[] evVal = new Value[64];
+
+    private int clock = 0;
+    private int ticks = 0;
+    private boolean isOscillating = false;
+    private int simRandomShift;
+    private Random noiseSource = new Random();
+    private int noiseCount = 0;
+    // counts kept for reporting, as in the propagator
+    private long eventCount = 0;
+    private long stepCount = 0;
+    private int queuePeak = 0;
+
+    public NetlistSimulator(Project proj, Netlist net) {
+        this.proj = proj;
+        this.net = net;
+
+        slotValue = new Value[net.slotCount];
+        slotStamp = new int[net.slotCount];
+        pointOut = new Value[net.pointCount];
+        Arrays.fill(pointOut, Value.NIL);
+        netValue = new Value[net.netCount];
+        threadValue = new Value[net.threadCount];
+        instWired = new boolean[net.instanceCount];
+
+        compData = new InstanceData[net.compCount];
+        compStates = new RecordState[net.compCount];
+        int clockCount = 0;
+        for (int c = 0; c < net.compCount; c++) {
+            if (net.compKind[c] == Netlist.COMP_CLOCK) {
+                clockCount++;
+            }
+        }
+        clocks = new int[clockCount];
+        clockCount = 0;
+        for (int c = 0; c < net.compCount; c++) {
+            if (net.compKind[c] == Netlist.COMP_CLOCK) {
+                clocks[clockCount] = c;
+                clockCount++;
+            }
+        }
+
+        pointDirty = new boolean[net.pointCount];
+        dirtyPoints = new int[net.pointCount];
+        threadDirty = new boolean[net.threadCount];
+        dirtyThreads = new int[net.threadCount];
+        netDirty = new boolean[net.netCount];
+        dirtyNets = new int[net.netCount];
+        compDirty = new boolean[net.compCount];
+        dirtyComps = new int[net.compCount];
+        processingComps = new int[net.compCount];
+
+        Object rand = proj.getOptions().getAttributeSet().getValue(Options.sim_rand_attr);
+        int val = ((Integer) rand).intValue();
+        int logVal = 0;
+        while ((1 << logVal) < val) logVal++;
+        simRandomShift = logVal;
+
+        // as with a new propagator, every component starts out dirty
+        for (int c = 0; c < net.compCount; c++) {
+            markComponentDirty(c);
+        }
+    }
+
+    public Netlist getNetlist() {
+        return net;
+    }
+
+    public boolean isOscillating() {
+        return isOscillating;
+    }
+
+    public int getTickCount() {
+        return ticks;
+    }
+
+    /** Returns the number of events processed so far. */
+    public long getEventCount() {
+        return eventCount;
+    }
+
+    /** Returns the number of steps taken so far. */
+    public long getStepCount() {
+        return stepCount;
+    }
+
+    /** Returns the most events that have been pending at once. */
+    public int getQueuePeak() {
+        return queuePeak;
+    }
+
+    public boolean tick() {
+        ticks++;
+        boolean ret = false;
+        for (int c : clocks) {
+            ret |= Clock.tick(getInstanceState(c), ticks);
+        }
+        return ret;
+    }
+
+    public void propagate() {
+        processDirtyPoints();
+        processDirtyComponents();
+
+        int iters = 0;
+        while (!events.isEmpty()) {
+            iters++;
+            if (iters >= SIM_LIMIT) {
+                isOscillating = true;
+                return;
+            }
+            step();
+        }
+        isOscillating = false;
+    }
+
+    public InstanceState getInstanceState(int comp) {
+        RecordState ret = compStates[comp];
+        if (ret == null) {
+            ret = new RecordState(comp);
+            compStates[comp] = ret;
+        }
+        return ret;
+    }
+
+    /** Returns the state of a component of the netlist's root circuit. */
+    public InstanceState getInstanceState(Component comp) {
+        int index = net.getRootIndex(comp);
+        if (index < 0) {
+            throw new IllegalArgumentException("component not in root circuit");
+        }
+        return getInstanceState(index);
+    }
+
+    public Component getComponent(int comp) {
+        return net.comps[comp];
+    }
+
+    /**
+     * Compares the value at every point of the netlist with the value at
+     * the same point of a propagator's state tree for the same circuit.
+     *
+     * @return a description of the first point that differs, or null
+     *     if all are the same
+     */
+    public String findMismatch(CircuitState root) {
+        CircuitState[] states = new CircuitState[net.instanceCount];
+        states[0] = root;
+        // each instance is numbered after its parent
+        for (int i = 1; i < net.instanceCount; i++) {
+            int parentComp = net.instParentComp[i];
+            CircuitState parent = states[net.compInstance[parentComp]];
+            if (parent != null) {
+                Object sub = parent.getData(net.comps[parentComp]);
+                if (sub instanceof CircuitState) {
+                    states[i] = (CircuitState) sub;
+                }
+            }
+        }
+        for (int p = 0; p < net.pointCount; p++) {
+            int inst = net.pointInstance[p];
+            Location loc = net.pointLoc[p];
+            Value actual = getPointValue(p);
+            CircuitState state = states[inst];
+            if (state == null) {
+                return net.instCircuit[inst].getName() + " " + loc
+                    + ": - / " + actual;
+            }
+            Value expected = state.getValue(loc);
+            if (!expected.equals(actual)) {
+                return net.instCircuit[inst].getName() + " " + loc
+                    + ": " + expected + " / " + actual;
+            }
+        }
+        return null;
+    }
+
+    //
+    // propagation
+    //
+    private void step() {
+        clock = events.peekTime();
+        stepCount++;
+        int pending = events.size();
+        if (pending > queuePeak) {
+            queuePeak = pending;
+        }
+
+        // apply all events for this clock tick
+        stepStamp++;
+        while (!events.isEmpty() && events.peekTime() == clock) {
+            int event = events.poll();
+            eventCount++;
+            int slot = evSlot[event];
+            Value val = evVal[event];
+            evVal[event] = null;
+
+            // as with the propagator, only the first event from each
+            // cause at a point during a step counts
+            if (slotStamp[slot] == stepStamp) {
+                continue;
+            }
+            slotStamp[slot] = stepStamp;
+
+            int point = net.slotPoint[slot];
+            Value oldVal = pointOut[point];
+            slotValue[slot] = val;
+            Value newVal = computePointOutput(point);
+            pointOut[point] = newVal;
+            if (!newVal.equals(oldVal)) {
+                markPointDirty(point);
+            }
+        }
+
+        processDirtyPoints();
+        processDirtyComponents();
+    }
+
+    private Value computePointOutput(int point) {
+        Value ret = Value.NIL;
+        int end = net.pointSlotStart[point + 1];
+        for (int i = net.pointSlotStart[point]; i < end; i++) {
+            Value v = slotValue[net.pointSlots[i]];
+            if (v != null) {
+                ret = ret.combine(v);
+            }
+        }
+        return ret;
+    }
+
+    private void processDirtyPoints() {
+        for (int i = 0; i < dirtyPointCount; i++) {
+            int p = dirtyPoints[i];
+            pointDirty[p] = false;
+            int inst = net.pointInstance[p];
+            if (!instWired[inst]) {
+                // the first propagation through an instance's wires
+                // computes all of its threads
+                instWired[inst] = true;
+                int end = net.instThreadStart[inst + 1];
+                for (int t = net.instThreadStart[inst]; t < end; t++) {
+                    markThreadDirty(t);
+                }
+            }
+
+            int n = net.pointNet[p];
+            byte kind = net.netKind[n];
+            if (kind == Netlist.NET_UNWIRED) {
+                setNetValue(n, pointOut[p]);
+            } else if (kind == Netlist.NET_INVALID) {
+                setNetValue(n, Value.NIL);
+            } else {
+                int end = net.netThreadStart[n + 1];
+                for (int j = net.netThreadStart[n]; j < end; j++) {
+                    markThreadDirty(net.netThreads[j]);
+                }
+            }
+        }
+        dirtyPointCount = 0;
+
+        // determine values of affected threads
+        for (int i = 0; i < dirtyThreadCount; i++) {
+            int t = dirtyThreads[i];
+            threadDirty[t] = false;
+            threadValue[t] = computeThreadValue(t);
+            int end = net.threadBundleStart[t + 1];
+            for (int j = net.threadBundleStart[t]; j < end; j++) {
+                int n = net.threadBundleNet[j];
+                if (!netDirty[n]) {
+                    netDirty[n] = true;
+                    dirtyNets[dirtyNetCount] = n;
+                    dirtyNetCount++;
+                }
+            }
+        }
+        dirtyThreadCount = 0;
+
+        // and then the values of the nets built from them
+        for (int i = 0; i < dirtyNetCount; i++) {
+            int n = dirtyNets[i];
+            netDirty[n] = false;
+            int start = net.netThreadStart[n];
+            int count = net.netThreadStart[n + 1] - start;
+            Value bv;
+            if (count == 1) {
+                bv = threadValue[net.netThreads[start]];
+            } else {
+                Value[] tvs = getNetScratch(count);
+                bv = null;
+                boolean known = true;
+                for (int j = 0; j < count; j++) {
+                    Value tv = threadValue[net.netThreads[start + j]];
+                    if (tv == null) {
+                        known = false;
+                        break;
+                    }
+                    tvs[j] = tv;
+                }
+                if (known) {
+                    bv = Value.create(tvs);
+                }
+            }
+            if (bv != null) {
+                setNetValue(n, bv);
+            }
+        }
+        dirtyNetCount = 0;
+    }
+
+    private Value[] getNetScratch(int count) {
+        if (count >= netScratch.length) {
+            netScratch = Arrays.copyOf(netScratch, count + 1);
+        }
+        Value[] ret = netScratch[count];
+        if (ret == null) {
+            ret = new Value[count];
+            netScratch[count] = ret;
+        }
+        return ret;
+    }
+
+    private Value computeThreadValue(int t) {
+        Value ret = Value.UNKNOWN;
+        int end = net.threadBundleStart[t + 1];
+        for (int j = net.threadBundleStart[t]; j < end; j++) {
+            int n = net.threadBundleNet[j];
+            int bit = net.threadBundleBit[j];
+            int pointEnd = net.netPointStart[n + 1];
+            for (int k = net.netPointStart[n]; k < pointEnd; k++) {
+                Value val = pointOut[net.netPoints[k]];
+                if (val != Value.NIL) {
+                    ret = ret.combine(val.get(bit));
+                }
+            }
+        }
+        Value pull = net.threadPull[t];
+        if (pull != Value.UNKNOWN) {
+            ret = CircuitWires.pullValue(ret, pull);
+        }
+        return ret;
+    }
+
+    private void setNetValue(int n, Value v) {
+        Value old = netValue[n];
+        boolean changed;
+        if (v == Value.NIL) {
+            netValue[n] = null;
+            changed = old != null;
+        } else {
+            netValue[n] = v;
+            changed = !v.equals(old);
+        }
+        if (changed) {
+            int end = net.netReaderStart[n + 1];
+            for (int i = net.netReaderStart[n]; i < end; i++) {
+                markComponentDirty(net.netReaders[i]);
+            }
+        }
+    }
+
+    private void processDirtyComponents() {
+        // components marked while these are processed wait for the
+        // next pass, as they do with the propagator
+        int[] toProcess = dirtyComps;
+        int count = dirtyCompCount;
+        dirtyComps = processingComps;
+        processingComps = toProcess;
+        dirtyCompCount = 0;
+        for (int i = 0; i < count; i++) {
+            compDirty[toProcess[i]] = false;
+        }
+
+        for (int i = 0; i < count; i++) {
+            int c = toProcess[i];
+            byte kind = net.compKind[c];
+            if (kind == Netlist.COMP_SUBCIRCUIT) {
+                propagateSubcircuit(c);
+            } else {
+                InstanceFactory factory = (InstanceFactory) net.comps[c].getFactory();
+                factory.propagate(getInstanceState(c));
+                if (kind == Netlist.COMP_INNER_PIN) {
+                    // should be propagated in superstate
+                    propagateSubcircuit(net.instParentComp[net.compInstance[c]]);
+                }
+            }
+        }
+    }
+
+    /** Does the work of SubcircuitFactory.propagate. */
+    private void propagateSubcircuit(int c) {
+        int start = net.compPortStart[c];
+        int end = net.compPortStart[c + 1];
+        for (int port = start; port < end; port++) {
+            int pinComp = net.portPinComp[port];
+            if (pinComp < 0) {
+                continue;
+            }
+            Instance pin = Instance.getInstanceFor(net.comps[pinComp]);
+            InstanceState pinState = getInstanceState(pinComp);
+            if (Pin.FACTORY.isInputPin(pin)) {
+                Value newVal = getPortValue(port);
+                Value oldVal = Pin.FACTORY.getValue(pinState);
+                if (!newVal.equals(oldVal)) {
+                    Pin.FACTORY.setValue(pinState, newVal);
+                    Pin.FACTORY.propagate(pinState);
+                }
+            // it is output-only
+            } else {
+                schedule(c, port, pinState.getPort(0), 1);
+            }
+        }
+    }
+
+    private Value getPortValue(int port) {
+        return getPointValue(net.slotPoint[net.portSlot[port]]);
+    }
+
+    private Value getPointValue(int point) {
+        Value ret = netValue[net.pointNet[point]];
+        return ret != null ? ret : net.pointMissing[point];
+    }
+
+    private void markPointDirty(int p) {
+        if (!pointDirty[p]) {
+            pointDirty[p] = true;
+            dirtyPoints[dirtyPointCount] = p;
+            dirtyPointCount++;
+        }
+    }
+
+    private void markThreadDirty(int t) {
+        if (!threadDirty[t]) {
+            threadDirty[t] = true;
+            dirtyThreads[dirtyThreadCount] = t;
+            dirtyThreadCount++;
+        }
+    }
+
+    private void markComponentDirty(int c) {
+        if (!compDirty[c]) {
+            compDirty[c] = true;
+            dirtyComps[dirtyCompCount] = c;
+            dirtyCompCount++;
+        }
+    }
+
+    private void schedule(int comp, int port, Value val, int delay) {
+        if (delay <= 0) {
+            delay = 1;
+        }
+        int randomShift = simRandomShift;
+        if (randomShift > 0) { // random noise is turned on
+            delay <<= randomShift;
+            if (net.compKind[comp] != Netlist.COMP_SUBCIRCUIT) {
+                if (noiseCount > 0) {
+                    noiseCount--;
+                } else {
+                    delay++;
+                    noiseCount = noiseSource.nextInt(1 << randomShift);
+                }
+            }
+        }
+        addEvent(clock + delay, net.portSlot[port], val);
+    }
+
+    //
+    // the event queue
+    //
+    private void addEvent(int time, int slot, Value val) {
+        int event = events.add(time);
+        if (event >= evSlot.length) {
+            evSlot = Arrays.copyOf(evSlot, events.capacity());
+            evVal = Arrays.copyOf(evVal, events.capacity());
+        }
+        evSlot[event] = slot;
+        evVal[event] = val;
+    }
+}
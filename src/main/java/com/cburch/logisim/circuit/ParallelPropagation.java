@@ -0,0 +1,201 @@
+/* Copyright (c) 2010, Carl Burch. License information is located in the
+ * com.cburch.logisim.Main source code and at www.cburch.com/logisim/. */
+
+package com.cburch.logisim.circuit;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import com.cburch.logisim.comp.Component;
+import com.cburch.logisim.data.Location;
+import com.cburch.logisim.data.Value;
+import com.cburch.logisim.util.EventBatch;
+
+/**
+ * Processes the dirty points and components of a hierarchy of states on
+ * several processors, for the propagator's parallel mode.
+ *
+ * <p>Within one clock instant the wires of each state are propagated
+ * independently of all other states, so the dirty points are processed
+ * for all states at once. The components of a state are propagated before
+ * those of its substates, as a subcircuit sets the values of the input
+ * pins of its substate; the substates of a state are then processed in
+ * parallel, each with its own subtree. The values components set along
+ * the way are collected per state and handed to the propagator afterward
+ * in the order the states would have been processed one by one, so the
+ * simulation proceeds exactly as it does on a single processor. So are
+ * the event sources, such as memories, that components defer while
+ * propagated, so that the propagating thread delivers their events as
+ * its propagation ends.</p>
+ */
+class ParallelPropagation {
+    /** The fewest states for which the dirty points are propagated on
+     * a processor of their own. */
+    private static final int POINTS_PER_TASK = 8;
+
+    private static ForkJoinPool pool = null;
+
+    // the values set by the components being propagated on each thread,
+    // or null if the thread is not in a parallel pass
+    private static final ThreadLocal<ArrayList<PendingValue>> pending
+        = new ThreadLocal<ArrayList<PendingValue>>();
+
+    private ParallelPropagation() { }
+
+    /** Returns whether a parallel pass can be of any use on this machine. */
+    static boolean isAvailable() {
+        return Runtime.getRuntime().availableProcessors() > 1;
+    }
+
+    private static synchronized ForkJoinPool getPool() {
+        if (pool == null) {
+            pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+        }
+        return pool;
+    }
+
+    /** Records a value set by a component being propagated by a parallel
+     * pass, returning false if this thread is not in such a pass. */
+    static boolean deferValue(CircuitState state, Location pt, int point,
+            Value val, Component cause, int delay) {
+        ArrayList<PendingValue> list = pending.get();
+        if (list == null) {
+            return false;
+        }
+        list.add(new PendingValue(state, pt, point, val, cause, delay));
+        return true;
+    }
+
+    static void processDirtyPoints(CircuitState root) {
+        ArrayList<CircuitState> states = new ArrayList<CircuitState>();
+        ArrayList<DirtySet<Location>> dirty = new ArrayList<DirtySet<Location>>();
+        HashSet<Circuit> circuits = new HashSet<Circuit>();
+        takeDirtyPoints(root, states, dirty, circuits);
+
+        // the wires of each circuit are computed up front, as that is not
+        // safe to do from several threads at once
+        for (Circuit circuit : circuits) {
+            circuit.wires.ensureComputed();
+        }
+        getPool().invoke(new PointsTask(states, dirty, 0, states.size()));
+    }
+
+    private static void takeDirtyPoints(CircuitState state,
+            ArrayList<CircuitState> states, ArrayList<DirtySet<Location>> dirty,
+            HashSet<Circuit> circuits) {
+        states.add(state);
+        dirty.add(state.takeDirtyPoints());
+        circuits.add(state.getCircuit());
+        for (CircuitState sub : state.getSubstateArray()) {
+            takeDirtyPoints(sub, states, dirty, circuits);
+        }
+    }
+
+    static void processDirtyComponents(Propagator prop, CircuitState root) {
+        ComponentsTask task = new ComponentsTask(root);
+        getPool().invoke(task);
+        EventBatch.deferAll(task.sources);
+        for (PendingValue v : task.values) {
+            prop.setValue(v.state, v.pt, v.point, v.val, v.cause, v.delay);
+        }
+    }
+
+    private static class PointsTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final ArrayList<CircuitState> states;
+        private final ArrayList<DirtySet<Location>> dirty;
+        private final int start;
+        private final int end;
+
+        PointsTask(ArrayList<CircuitState> states,
+                ArrayList<DirtySet<Location>> dirty, int start, int end) {
+            this.states = states;
+            this.dirty = dirty;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        protected void compute() {
+            if (end - start <= POINTS_PER_TASK) {
+                for (int i = start; i < end; i++) {
+                    states.get(i).propagateDirtyPoints(dirty.get(i));
+                }
+            } else {
+                int mid = (start + end) >>> 1;
+                invokeAll(new PointsTask(states, dirty, start, mid),
+                        new PointsTask(states, dirty, mid, end));
+            }
+        }
+    }
+
+    private static class ComponentsTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final CircuitState state;
+        private ArrayList<PendingValue> values = new ArrayList<PendingValue>();
+        private List<EventBatch.Source> sources;
+
+        ComponentsTask(CircuitState state) {
+            this.state = state;
+        }
+
+        @Override
+        protected void compute() {
+            pending.set(values);
+            int mark = EventBatch.beginHandOff();
+            try {
+                state.propagateDirtyComponents();
+            } finally {
+                sources = EventBatch.endHandOff(mark);
+                pending.remove();
+            }
+
+            CircuitState[] subs = state.getSubstateArray();
+            if (subs.length == 0) {
+                return;
+            }
+            ComponentsTask[] tasks = new ComponentsTask[subs.length];
+            for (int i = 0; i < subs.length; i++) {
+                tasks[i] = new ComponentsTask(subs[i]);
+            }
+            if (tasks.length == 1) {
+                tasks[0].compute();
+            } else {
+                invokeAll(tasks);
+            }
+            for (ComponentsTask task : tasks) {
+                values.addAll(task.values);
+                if (!task.sources.isEmpty()) {
+                    if (sources.isEmpty()) {
+                        sources = new ArrayList<EventBatch.Source>();
+                    }
+                    sources.addAll(task.sources);
+                }
+            }
+        }
+    }
+
+    private static class PendingValue {
+        final CircuitState state;
+        final Location pt;
+        final int point;
+        final Value val;
+        final Component cause;
+        final int delay;
+
+        PendingValue(CircuitState state, Location pt, int point, Value val,
+                Component cause, int delay) {
+            this.state = state;
+            this.pt = pt;
+            this.point = point;
+            this.val = val;
+            this.cause = cause;
+            this.delay = delay;
+        }
+    }
+}
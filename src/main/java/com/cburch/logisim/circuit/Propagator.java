@@ -4,10 +4,12 @@
 package com.cburch.logisim.circuit;
 
 import java.lang.ref.WeakReference;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.PriorityQueue;
 import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import com.cburch.logisim.comp.Component;
 import com.cburch.logisim.comp.ComponentDrawContext;
@@ -17,6 +19,7 @@ import com.cburch.logisim.data.AttributeListener;
 import com.cburch.logisim.data.Location;
 import com.cburch.logisim.data.Value;
 import com.cburch.logisim.file.Options;
+import com.cburch.logisim.util.EventBatch;
 
 public class Propagator {
     static class SetData implements Comparable<SetData> {
@@ -25,8 +28,12 @@ public class Propagator {
         CircuitState state; // state of circuit containing component
         Component cause;    // component emitting the value
         Location loc;       // the location at which value is emitted
+        int point = -1;     // index of loc when scheduled, as a hint
         Value val;          // value being emitted
         SetData next = null;
+        int handledStamp;   // stamp of the last step that processed this cause
+
+        SetData() { }
 
         private SetData(int time, int serialNumber, CircuitState state,
                 Location loc, Component cause, Value val) {
@@ -55,6 +62,7 @@ public class Propagator {
             int dtime = newProp.clock - state.getPropagator().clock;
             SetData ret = new SetData(time + dtime,
                     newProp.setDataSerialNumber, newState, loc, cause, val);
+            ret.point = point;
             newProp.setDataSerialNumber++;
             if (this.next != null) {
                 ret.next = this.next.cloneFor(newState);
@@ -69,28 +77,49 @@ public class Propagator {
         }
     }
 
-    private static class ComponentPoint {
-        Component cause;
-        Location loc;
+    /** The original event queue: a binary heap of SetData objects. */
+    static class HeapQueue implements EventQueue {
+        private PriorityQueue<SetData> heap = new PriorityQueue<SetData>();
 
-        public ComponentPoint(Component cause, Location loc) {
-            this.cause = cause;
-            this.loc = loc;
+        @Override
+        public boolean isEmpty() {
+            return heap.isEmpty();
         }
 
         @Override
-        public int hashCode() {
-            return 31 * cause.hashCode() + loc.hashCode();
+        public int size() {
+            return heap.size();
         }
 
         @Override
-        public boolean equals(Object other) {
-            if (!(other instanceof ComponentPoint)) {
-                return false;
-            }
+        public void clear() {
+            heap.clear();
+        }
+
+        @Override
+        public void add(int time, int serialNumber, CircuitState state,
+                Location loc, int point, Component cause, Value val) {
+            SetData data = new SetData(time, serialNumber, state, loc, cause, val);
+            data.point = point;
+            heap.add(data);
+        }
+
+        @Override
+        public int peekTime() {
+            return heap.peek().time;
+        }
 
-            ComponentPoint o = (ComponentPoint) other;
-            return this.cause.equals(o.cause) && this.loc.equals(o.loc);
+        @Override
+        public void remove(SetData dest) {
+            SetData data = heap.remove();
+            dest.time = data.time;
+            dest.serialNumber = data.serialNumber;
+            dest.state = data.state;
+            dest.cause = data.cause;
+            dest.loc = data.loc;
+            dest.point = data.point;
+            dest.val = data.val;
+            dest.next = null;
         }
     }
 
@@ -111,6 +140,12 @@ public class Propagator {
                 e.getSource().removeAttributeListener(this);
             } else if (e.getAttribute().equals(Options.sim_rand_attr)) {
                 p.updateRandomness();
+            } else if (e.getAttribute().equals(Options.ATTR_SIM_QUEUE)) {
+                p.updateQueueType();
+            } else if (e.getAttribute().equals(Options.ATTR_SIM_ZERO_DELAY)) {
+                p.updateZeroDelay();
+            } else if (e.getAttribute().equals(Options.ATTR_SIM_PARALLEL)) {
+                p.updateParallel();
             }
         }
     }
@@ -129,7 +164,18 @@ public class Propagator {
      * practice). */
     private volatile int simRandomShift;
 
-    private PriorityQueue<SetData> toProcess = new PriorityQueue<SetData>();
+    private EventQueue toProcess;
+    /** The queue type requested through the options, applied by the
+     * simulation thread at the start of the next propagation. */
+    private volatile Object queueType;
+    private SetData current = new SetData();
+    // Each step takes a fresh stamp; a cause node carrying the current
+    // stamp has already been processed during this step. The source is
+    // shared so that stamps never collide between propagators.
+    private static final AtomicInteger stampSource = new AtomicInteger();
+    private int stepStamp;
+    // cause nodes removed during the current step, still carrying their stamps
+    private ArrayList<SetData> removedThisStep = new ArrayList<SetData>();
     private int clock = 0;
     private boolean isOscillating = false;
     private boolean oscAdding = false;
@@ -138,6 +184,39 @@ public class Propagator {
     private Random noiseSource = new Random();
     private int noiseCount = 0;
     private int setDataSerialNumber = 0;
+    // counts kept for reporting on the simulation's throughput: the
+    // events processed, the steps taken, and the most events ever pending
+    private long eventCount = 0;
+    private long stepCount = 0;
+    private int queuePeak = 0;
+
+    /** Whether combinational components outside feedback loops are
+     * evaluated without delay, level by level as given by
+     * {@link CombinationalLevels}, rather than through the queue. */
+    private volatile boolean zeroDelay;
+    // the components deferred to the sweep, by level, with the states
+    // they are in, and the components of each state awaiting the sweep
+    private ArrayList<ArrayList<CircuitState>> sweepStates
+        = new ArrayList<ArrayList<CircuitState>>();
+    private ArrayList<ArrayList<Component>> sweepComps
+        = new ArrayList<ArrayList<Component>>();
+    private HashMap<CircuitState,HashSet<Component>> sweepPending
+        = new HashMap<CircuitState,HashSet<Component>>();
+    // the level being swept, or -1 outside a sweep
+    private int sweepLevel = -1;
+    // the component being evaluated by the sweep, whose values take
+    // effect at once
+    private CircuitState sweepState = null;
+    private Component sweepComp = null;
+    private SetData sweepData = new SetData();
+
+    /** Whether the states of subcircuits are processed on several
+     * processors, as by {@link ParallelPropagation}. This is not done
+     * together with zero-delay evaluation, whose sweep runs in order. */
+    private volatile boolean parallel;
+    // whether the components are being propagated in parallel, so that the
+    // values they set are to be collected rather than queued
+    private boolean parallelPass = false;
 
     static int lastId = 0;
     int id = lastId++;
@@ -147,6 +226,10 @@ public class Propagator {
         Listener l = new Listener(this);
         root.getProject().getOptions().getAttributeSet().addAttributeListener(l);
         updateRandomness();
+        updateQueueType();
+        updateZeroDelay();
+        updateParallel();
+        toProcess = createQueue();
     }
 
     private void updateRandomness() {
@@ -158,6 +241,48 @@ public class Propagator {
         simRandomShift = logVal;
     }
 
+    private void updateQueueType() {
+        Options opts = root.getProject().getOptions();
+        queueType = opts.getAttributeSet().getValue(Options.ATTR_SIM_QUEUE);
+    }
+
+    private void updateZeroDelay() {
+        Options opts = root.getProject().getOptions();
+        Boolean val = opts.getAttributeSet().getValue(Options.ATTR_SIM_ZERO_DELAY);
+        zeroDelay = val != null && val.booleanValue();
+    }
+
+    private void updateParallel() {
+        Options opts = root.getProject().getOptions();
+        Boolean val = opts.getAttributeSet().getValue(Options.ATTR_SIM_PARALLEL);
+        parallel = val != null && val.booleanValue()
+            && ParallelPropagation.isAvailable();
+    }
+
+    private EventQueue createQueue() {
+        if (queueType == Options.SIM_QUEUE_HEAP) {
+            return new HeapQueue();
+        } else {
+            return new EventWheel(clock);
+        }
+    }
+
+    private void checkQueueType() {
+        boolean isHeap = toProcess instanceof HeapQueue;
+        if (isHeap != (queueType == Options.SIM_QUEUE_HEAP)) {
+            // move any pending events across in order, so switching
+            // queues doesn't disturb the simulation
+            EventQueue old = toProcess;
+            toProcess = createQueue();
+            SetData data = new SetData();
+            while (!old.isEmpty()) {
+                old.remove(data);
+                toProcess.add(data.time, data.serialNumber, data.state,
+                        data.loc, data.point, data.cause, data.val);
+            }
+        }
+    }
+
     public boolean isOscillating() {
         return isOscillating;
     }
@@ -181,13 +306,43 @@ public class Propagator {
         return root;
     }
 
-    void reset() {
+    /**
+     * Discards all pending events and values, returning the simulation to
+     * its starting point, with the clocks back at their first tick. The
+     * substates and the storage already allocated are kept, which makes
+     * this much cheaper than creating a new <code>CircuitState</code> for
+     * each of many short simulations.
+     */
+    public void reset() {
         toProcess.clear();
+        clock = 0;
+        ticks = 0;
+        setDataSerialNumber = 0;
         root.reset();
         isOscillating = false;
+        oscAdding = false;
+        oscPoints.clear();
+        noiseCount = 0;
+        for (int i = 0; i < sweepComps.size(); i++) {
+            sweepStates.get(i).clear();
+            sweepComps.get(i).clear();
+        }
+        sweepPending.clear();
     }
 
     public void propagate() {
+        // components such as memories report their changes once the
+        // propagation is done rather than as they happen
+        EventBatch.begin();
+        try {
+            propagateInternal();
+        } finally {
+            EventBatch.end();
+        }
+    }
+
+    private void propagateInternal() {
+        checkQueueType();
         oscPoints.clear();
         clearDirtyPoints();
         clearDirtyComponents();
@@ -215,16 +370,22 @@ public class Propagator {
     }
 
     void step(PropagationPoints changedPoints) {
-        oscPoints.clear();
-        clearDirtyPoints();
-        clearDirtyComponents();
-
-        PropagationPoints oldOsc = oscPoints;
-        oscAdding = changedPoints != null;
-        oscPoints = changedPoints;
-        stepInternal(changedPoints);
-        oscAdding = false;
-        oscPoints = oldOsc;
+        EventBatch.begin();
+        try {
+            checkQueueType();
+            oscPoints.clear();
+            clearDirtyPoints();
+            clearDirtyComponents();
+
+            PropagationPoints oldOsc = oscPoints;
+            oscAdding = changedPoints != null;
+            oscPoints = changedPoints;
+            stepInternal(changedPoints);
+            oscAdding = false;
+            oscPoints = oldOsc;
+        } finally {
+            EventBatch.end();
+        }
     }
 
     private void stepInternal(PropagationPoints changedPoints) {
@@ -234,31 +395,33 @@ public class Propagator {
 
 
         // update clock
-        clock = toProcess.peek().time;
+        clock = toProcess.peekTime();
+        stepCount++;
+        // events are removed only here, so the queue is at its largest
+        int pending = toProcess.size();
+        if (pending > queuePeak) {
+            queuePeak = pending;
+        }
 
         // propagate all values for this clock tick
-        HashMap<CircuitState,HashSet<ComponentPoint>> visited
-            = new HashMap<CircuitState,HashSet<ComponentPoint>>();
-        while (true) {
-            SetData data = toProcess.peek();
-            if (data == null || data.time != clock) {
-                break;
-            }
-
-            toProcess.remove();
+        stepStamp = stampSource.incrementAndGet();
+        SetData data = current;
+        while (!toProcess.isEmpty() && toProcess.peekTime() == clock) {
+            toProcess.remove(data);
+            eventCount++;
             CircuitState state = data.state;
+            int point = state.getPointIndex(data.loc, data.point);
+            if (point < 0) {
+                // the point was removed from the circuit
+                continue;
+            }
+            SetData oldHead = state.getCauses(point);
 
-            // if it's already handled for this clock tick, continue
-            HashSet<ComponentPoint> handled = visited.get(state);
-            if (handled != null) {
-                if (!handled.add(new ComponentPoint(data.cause, data.loc))) {
-                    continue;
-                }
-
-            } else {
-                handled = new HashSet<ComponentPoint>();
-                visited.put(state, handled);
-                handled.add(new ComponentPoint(data.cause, data.loc));
+            // if it's already handled for this clock tick, continue; without
+            // delays a component may well emit a stale value and then the
+            // right one within a single tick, so there the last one counts
+            if (!zeroDelay && isHandled(oldHead, data)) {
+                continue;
             }
 
             /*DEBUGGING - comment out
@@ -272,19 +435,18 @@ public class Propagator {
 
 
             // change the information about value
-            SetData oldHead = state.causes.get(data.loc);
             Value   oldVal  = computeValue(oldHead);
-            SetData newHead = addCause(state, oldHead, data);
+            SetData newHead = addCause(state, point, oldHead, data);
             Value   newVal  = computeValue(newHead);
 
             // if the value at point has changed, propagate it
             if (!newVal.equals(oldVal)) {
-                state.markPointAsDirty(data.loc);
+                state.markPointAsDirty(data.loc, point);
             }
         }
-
         clearDirtyPoints();
         clearDirtyComponents();
+        removedThisStep.clear();
     }
 
     boolean isPending() {
@@ -343,7 +505,9 @@ public class Propagator {
 
     void locationTouched(CircuitState state, Location loc) {
         if (oscAdding) {
-            oscPoints.add(state, loc);
+            synchronized (oscPoints) {
+                oscPoints.add(state, loc);
+            }
         }
 
     }
@@ -353,10 +517,27 @@ public class Propagator {
     //
     void setValue(CircuitState state, Location pt, Value val,
             Component cause, int delay) {
+        setValue(state, pt, -1, val, cause, delay);
+    }
+
+    /** Schedules the value as setValue does, where <code>point</code> is
+     * the location's index in the state, or -1 if it is not known. */
+    void setValue(CircuitState state, Location pt, int point, Value val,
+            Component cause, int delay) {
         if (cause instanceof Wire || cause instanceof Splitter) {
             return;
         }
 
+        if (parallelPass
+                && ParallelPropagation.deferValue(state, pt, point, val, cause, delay)) {
+            return;
+        }
+
+        if (cause == sweepComp && state == sweepState) {
+            setValueNow(state, pt, point, val, cause);
+            return;
+        }
+
         if (delay <= 0) {
             delay = 1;
         }
@@ -374,8 +555,8 @@ public class Propagator {
                 }
             }
         }
-        toProcess.add(new SetData(clock + delay, setDataSerialNumber,
-                state, pt, cause, val));
+        toProcess.add(clock + delay, setDataSerialNumber,
+                state, pt, point, cause, val);
         /*DEBUGGING - comment out
         Simulator.log(clock + ": set " + pt + " in "
                 + state + " to " + val
@@ -394,15 +575,36 @@ public class Propagator {
         return ticks;
     }
 
+    /** Returns the number of events processed since the propagator was
+     * created, including values applied at once by a zero-delay sweep. */
+    public long getEventCount() {
+        return eventCount;
+    }
+
+    /** Returns the number of steps taken since the propagator was created,
+     * each of which processes the events for one point in time. */
+    public long getStepCount() {
+        return stepCount;
+    }
+
+    /** Returns the most events that have been pending at once. */
+    public int getQueuePeak() {
+        return queuePeak;
+    }
+
     //
     // private methods
     //
     void checkComponentEnds(CircuitState state, Component comp) {
         for (EndData end : comp.getEnds()) {
             Location loc    = end.getLocation();
-            SetData oldHead = state.causes.get(loc);
+            int     point   = state.getPointIndex(loc);
+            if (point < 0) {
+                continue;
+            }
+            SetData oldHead = state.getCauses(point);
             Value   oldVal  = computeValue(oldHead);
-            SetData newHead = removeCause(state, oldHead, loc, comp);
+            SetData newHead = removeCause(state, point, oldHead, comp);
             Value   newVal  = computeValue(newHead);
             Value   wireVal = state.getValueByWire(loc);
 
@@ -417,60 +619,196 @@ public class Propagator {
     }
 
     private void clearDirtyPoints() {
-        root.processDirtyPoints();
+        if (isParallel()) {
+            ParallelPropagation.processDirtyPoints(root);
+        } else {
+            root.processDirtyPoints();
+        }
     }
 
     private void clearDirtyComponents() {
-        root.processDirtyComponents();
+        if (isParallel()) {
+            parallelPass = true;
+            try {
+                ParallelPropagation.processDirtyComponents(this, root);
+            } finally {
+                parallelPass = false;
+            }
+        } else {
+            root.processDirtyComponents();
+        }
+        if (sweepPending.size() > 0) {
+            sweepLevels();
+        }
+    }
+
+    private boolean isParallel() {
+        return parallel && !zeroDelay && !root.getSubstates().isEmpty();
+    }
+
+    /**
+     * Called for each dirty component as it is about to be propagated;
+     * returns true if the component is instead deferred to the zero-delay
+     * sweep. A component marked again during the sweep at or below the
+     * level being swept, as a driver is when its own output changes, is
+     * deferred to the next level.
+     */
+    boolean deferComponent(CircuitState state, Component comp) {
+        if (!zeroDelay) {
+            return false;
+        }
+        int level = state.getCircuit().getCombinationalLevels().getLevel(comp);
+        if (level < 0) {
+            return false;
+        }
+        if (level <= sweepLevel) {
+            level = sweepLevel + 1;
+        }
+        HashSet<Component> pending = sweepPending.get(state);
+        if (pending == null) {
+            pending = new HashSet<Component>();
+            sweepPending.put(state, pending);
+        }
+        if (pending.add(comp)) {
+            while (sweepComps.size() <= level) {
+                sweepStates.add(new ArrayList<CircuitState>());
+                sweepComps.add(new ArrayList<Component>());
+            }
+            sweepStates.get(level).add(state);
+            sweepComps.get(level).add(comp);
+        }
+        return true;
     }
 
-    private SetData addCause(CircuitState state, SetData head,
+    /** Evaluates the deferred components level by level, the values of
+     * each taking effect at once so that the following levels see them. */
+    private void sweepLevels() {
+        for (sweepLevel = 0; sweepLevel < sweepComps.size(); sweepLevel++) {
+            ArrayList<CircuitState> states = sweepStates.get(sweepLevel);
+            ArrayList<Component> comps = sweepComps.get(sweepLevel);
+            if (comps.isEmpty()) {
+                continue;
+            }
+            for (int i = 0; i < comps.size(); i++) {
+                sweepState = states.get(i);
+                sweepComp = comps.get(i);
+                sweepPending.get(sweepState).remove(sweepComp);
+                sweepComp.propagate(sweepState);
+            }
+            sweepState = null;
+            sweepComp = null;
+            states.clear();
+            comps.clear();
+            clearDirtyPoints();
+            root.processDirtyComponents();
+        }
+        sweepLevel = -1;
+        sweepPending.clear();
+        removedThisStep.clear();
+    }
+
+    /** Applies a value from the component being swept, as if its event
+     * had just been taken from the queue. */
+    private void setValueNow(CircuitState state, Location pt, int hint,
+            Value val, Component cause) {
+        int point = state.getPointIndex(pt, hint);
+        if (point < 0) {
+            return;
+        }
+        if (oscAdding) {
+            oscPoints.add(state, pt);
+        }
+        eventCount++;
+        SetData data = sweepData;
+        data.time = clock;
+        data.serialNumber = setDataSerialNumber;
+        data.state = state;
+        data.loc = pt;
+        data.cause = cause;
+        data.val = val;
+        data.next = null;
+        setDataSerialNumber++;
+
+        SetData oldHead = state.getCauses(point);
+        Value   oldVal  = computeValue(oldHead);
+        SetData newHead = addCause(state, point, oldHead, data);
+        Value   newVal  = computeValue(newHead);
+        if (!newVal.equals(oldVal)) {
+            state.markPointAsDirty(pt, point);
+        }
+    }
+
+    /** Returns whether the cause of data has already been processed at
+     * data's location during the current step. */
+    private boolean isHandled(SetData head, SetData data) {
+        for (SetData n = head; n != null; n = n.next) {
+            if (n.cause == data.cause) {
+                return n.handledStamp == stepStamp;
+            }
+        }
+        for (SetData n : removedThisStep) {
+            if (n.state == data.state && n.cause == data.cause
+                    && n.loc.equals(data.loc)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private SetData addCause(CircuitState state, int point, SetData head,
             SetData data) {
         if (data.val == null) { // actually, it should be removed
-            return removeCause(state, head, data.loc, data.cause);
+            SetData removed = null;
+            for (SetData n = head; n != null; n = n.next) {
+                if (n.cause == data.cause) {
+                    removed = n;
+                    break;
+                }
+            }
+            if (removed == null) {
+                removed = new SetData(data.time, data.serialNumber,
+                        state, data.loc, data.cause, null);
+            }
+            removedThisStep.add(removed);
+            return removeCause(state, point, head, data.cause);
         }
 
-        HashMap<Location,SetData> causes = state.causes;
-
         // first check whether this is change of previous info.
         boolean replaced = false;
         for (SetData n = head; n != null; n = n.next) {
             if (n.cause == data.cause) {
                 n.val = data.val;
+                n.handledStamp = stepStamp;
                 replaced = true;
                 break;
             }
         }
 
-        // otherwise, insert to list of causes
+        // otherwise, insert to list of causes; the queue reuses data,
+        // so the list gets its own copy
         if (!replaced) {
+            SetData node = new SetData(data.time, data.serialNumber,
+                    state, data.loc, data.cause, data.val);
+            node.handledStamp = stepStamp;
             if (head == null) {
-                causes.put(data.loc, data);
-                head = data;
+                state.setCauses(point, node);
+                head = node;
             } else {
-                data.next = head.next;
-                head.next = data;
+                node.next = head.next;
+                head.next = node;
             }
         }
 
         return head;
     }
 
-    private SetData removeCause(CircuitState state, SetData head,
-            Location loc, Component cause) {
-        HashMap<Location,SetData> causes = state.causes;
+    private SetData removeCause(CircuitState state, int point, SetData head,
+            Component cause) {
         if (head == null) {
             ;
         } else if (head.cause == cause) {
             head = head.next;
-            if (head == null) {
-                causes.remove(loc);
-            }
-
-            else {
-                causes.put(loc, head);
-            }
-
+            state.setCauses(point, head);
         } else {
             SetData prev = head;
             SetData cur = head.next;
@@ -124,7 +124,12 @@ public abstract class RadixOption extends AttributeOption {
             case 28: case 29: case 30:          return 10;
             // 1G..2G
             case 31: case 32:                   return 11;
-            default:                            return 1;
+            default:
+                if (width.getWidth() > 32) {
+                    // sign and the digits of 2^(width - 1)
+                    return 1 + (int) Math.ceil((width.getWidth() - 1) * Math.log10(2));
+                }
+                return 1;
             }
         }
     }
@@ -151,7 +156,12 @@ public abstract class RadixOption extends AttributeOption {
             case 24: case 25: case 26:          return 8;
             case 27: case 28: case 29:          return 9;
             case 30: case 31: case 32:          return 10;
-            default:                            return 1;
+            default:
+                if (width.getWidth() > 32) {
+                    // the digits of 2^width
+                    return (int) Math.ceil(width.getWidth() * Math.log10(2));
+                }
+                return 1;
             }
         }
     }
@@ -31,7 +31,7 @@ public class Splitter extends ManagedComponent
         implements WireRepair, ToolTipMaker, MenuExtender, AttributeListener {
     // basic data
     // how each bit maps to thread within end
-    byte[] bit_thread;
+    int[] bit_thread;
 
     // derived data
     CircuitWires.SplitterData wire_data;
@@ -80,9 +80,9 @@ public class Splitter extends ManagedComponent
         byte[] bit_end = attrs.bit_end;
 
         // compute width of each end
-        bit_thread = new byte[bit_end.length];
-        byte[] end_width = new byte[fanout + 1];
-        end_width[0] = (byte) bit_end.length;
+        bit_thread = new int[bit_end.length];
+        int[] end_width = new int[fanout + 1];
+        end_width[0] = bit_end.length;
         for (int i = 0; i < bit_end.length; i++) {
             byte thr = bit_end[i];
             if (thr > 0) {
@@ -0,0 +1,222 @@
+/* Copyright (c) 2010, Carl Burch. License information is located in the
+ * com.cburch.logisim.Main source code and at www.cburch.com/logisim/. */
+
+package com.cburch.logisim.circuit;
+
+import java.util.Arrays;
+
+/**
+ * A timing wheel of pending events, each known only by the integer slot
+ * that {@link #add(int)} hands out for it. The caller keeps whatever the
+ * events carry in its own arrays indexed by slot, growing them to
+ * {@link #capacity()} whenever a slot lies beyond them, so that once the
+ * arrays have grown to the working size scheduling allocates nothing.
+ *
+ * <p>Slots are linked through <code>next</code> into one FIFO list per
+ * bucket of the wheel, into the overflow list, or into the free list. An
+ * event whose time lies within <code>WHEEL_SIZE</code> of the current time
+ * is kept in the bucket <code>time &amp; WHEEL_MASK</code>; later events
+ * wait in the overflow list until the current time catches up with them.
+ * Events for the same time come out in the order they were added.</p>
+ *
+ * <p>Times are compared by subtraction, which may overflow; as with
+ * <code>Propagator.SetData.compareTo</code>, this is intentional and keeps
+ * the wheel working as the clock wraps around.</p>
+ */
+class TimingWheel {
+    private static final int WHEEL_BITS = 10;
+    private static final int WHEEL_SIZE = 1 << WHEEL_BITS;
+    private static final int WHEEL_MASK = WHEEL_SIZE - 1;
+    private static final int NONE = -1;
+
+    // the event slots
+    private int[] times;
+    private int[] next;
+    private int freeHead = NONE;
+
+    // the wheel itself
+    private int[] bucketHead = new int[WHEEL_SIZE];
+    private int[] bucketTail = new int[WHEEL_SIZE];
+    private int now;
+    private int wheelCount = 0;
+
+    // events too far in the future for the wheel, in the order added
+    private int overflowHead = NONE;
+    private int overflowTail = NONE;
+    private int overflowCount = 0;
+    private int overflowMin;
+
+    TimingWheel(int now, int capacity) {
+        this.now = now;
+        Arrays.fill(bucketHead, NONE);
+        Arrays.fill(bucketTail, NONE);
+        allocate(capacity);
+    }
+
+    boolean isEmpty() {
+        return wheelCount == 0 && overflowCount == 0;
+    }
+
+    int size() {
+        return wheelCount + overflowCount;
+    }
+
+    /** Returns the number of slots, all of which are below it. */
+    int capacity() {
+        return times.length;
+    }
+
+    /** Removes every pending event, freeing their slots. */
+    void clear() {
+        for (int i = 0; i < WHEEL_SIZE; i++) {
+            freeList(bucketHead[i]);
+            bucketHead[i] = NONE;
+            bucketTail[i] = NONE;
+        }
+        freeList(overflowHead);
+        overflowHead = NONE;
+        overflowTail = NONE;
+        wheelCount = 0;
+        overflowCount = 0;
+    }
+
+    /** Schedules an event for the time, returning its slot. */
+    int add(int time) {
+        if (freeHead == NONE) {
+            allocate(2 * times.length);
+        }
+
+        int slot = freeHead;
+        freeHead = next[slot];
+        times[slot] = time;
+        next[slot] = NONE;
+
+        if (time - now < WHEEL_SIZE) {
+            appendToBucket(time & WHEEL_MASK, slot);
+            wheelCount++;
+        } else {
+            if (overflowTail == NONE) {
+                overflowHead = slot;
+                overflowMin = time;
+            } else {
+                next[overflowTail] = slot;
+                if (time - overflowMin < 0) {
+                    overflowMin = time;
+                }
+            }
+            overflowTail = slot;
+            overflowCount++;
+        }
+        return slot;
+    }
+
+    /** Returns the time of the earliest pending event. */
+    int peekTime() {
+        // This must not move the wheel forward: the propagator peeks at
+        // the next event before it schedules those caused by the current
+        // one, which may come earlier.
+        if (wheelCount == 0) {
+            if (overflowCount == 0) {
+                throw new IllegalStateException("event queue is empty");
+            }
+            return overflowMin;
+        }
+        for (int i = 0; true; i++) {
+            if (bucketHead[(now + i) & WHEEL_MASK] != NONE) {
+                return now + i;
+            }
+        }
+    }
+
+    /** Removes the earliest pending event and frees its slot, returning
+     * the slot. The next call to add may hand the slot out again, so its
+     * contents are to be read before then. */
+    int poll() {
+        int time = peekTime();
+        advanceTo(time);
+        int bucket = time & WHEEL_MASK;
+        int slot = bucketHead[bucket];
+        bucketHead[bucket] = next[slot];
+        if (next[slot] == NONE) {
+            bucketTail[bucket] = NONE;
+        }
+        wheelCount--;
+        next[slot] = freeHead;
+        freeHead = slot;
+        return slot;
+    }
+
+    private void advanceTo(int time) {
+        now = time;
+        if (overflowCount == 0 || overflowMin - now >= WHEEL_SIZE) {
+            return;
+        }
+
+        // Move the overflow events that now fit into the wheel. None of
+        // their buckets can hold an event for the same time yet, and the
+        // overflow list is in the order added, so appending keeps each
+        // bucket ordered.
+        int prev = NONE;
+        int slot = overflowHead;
+        boolean minKnown = false;
+        while (slot != NONE) {
+            int n = next[slot];
+            int t = times[slot];
+            if (t - now < WHEEL_SIZE) {
+                if (prev == NONE) {
+                    overflowHead = n;
+                } else {
+                    next[prev] = n;
+                }
+                if (slot == overflowTail) {
+                    overflowTail = prev;
+                }
+                next[slot] = NONE;
+                appendToBucket(t & WHEEL_MASK, slot);
+                overflowCount--;
+                wheelCount++;
+            } else {
+                if (!minKnown || t - overflowMin < 0) {
+                    overflowMin = t;
+                    minKnown = true;
+                }
+                prev = slot;
+            }
+            slot = n;
+        }
+    }
+
+    private void appendToBucket(int bucket, int slot) {
+        int tail = bucketTail[bucket];
+        if (tail == NONE) {
+            bucketHead[bucket] = slot;
+        } else {
+            next[tail] = slot;
+        }
+        bucketTail[bucket] = slot;
+    }
+
+    private void freeList(int slot) {
+        while (slot != NONE) {
+            int n = next[slot];
+            next[slot] = freeHead;
+            freeHead = slot;
+            slot = n;
+        }
+    }
+
+    private void allocate(int capacity) {
+        int old = times == null ? 0 : times.length;
+        if (old == 0) {
+            times = new int[capacity];
+            next = new int[capacity];
+        } else {
+            times = Arrays.copyOf(times, capacity);
+            next = Arrays.copyOf(next, capacity);
+        }
+        for (int i = capacity - 1; i >= old; i--) {
+            next[i] = freeHead;
+            freeHead = i;
+        }
+    }
+}
@@ -0,0 +1,27 @@
+/* Copyright (c) 2010, Carl Burch. License information is located in the
+ * com.cburch.logisim.Main source code and at www.cburch.com/logisim/. */
+
+package com.cburch.logisim.circuit;
+
+public interface VectorComputer {
+    /**
+     * Computes the component's outputs for a batch of input vectors at
+     * once, as used for filling in a truth table. The component reads its
+     * inputs from <code>state</code> and places its outputs there, in
+     * the encoding described by {@link VectorState}. It may set only the
+     * ports through which it drives a value; those are assumed to be its
+     * output-only ends.
+     *
+     * A component that cannot be evaluated this way should not offer the
+     * feature at all; truth tables for circuits using it are computed by
+     * simulating one row at a time.
+     */
+    public void computeVectors(VectorState state);
+
+    /** The computer for components that never drive a value, such as
+     * tunnels and probes. */
+    public static final VectorComputer PASSIVE = new VectorComputer() {
+        @Override
+        public void computeVectors(VectorState state) { }
+    };
+}
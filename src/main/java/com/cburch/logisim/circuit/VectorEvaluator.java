@@ -0,0 +1,536 @@
+/* Copyright (c) 2010, Carl Burch. License information is located in the
+ * com.cburch.logisim.Main source code and at www.cburch.com/logisim/. */
+
+package com.cburch.logisim.circuit;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+
+import com.cburch.logisim.analyze.model.Entry;
+import com.cburch.logisim.analyze.model.EntryColumn;
+import com.cburch.logisim.comp.Component;
+import com.cburch.logisim.comp.EndData;
+import com.cburch.logisim.data.AttributeSet;
+import com.cburch.logisim.data.Value;
+import com.cburch.logisim.instance.Instance;
+import com.cburch.logisim.proj.Project;
+import com.cburch.logisim.std.wiring.Pin;
+
+/**
+ * Computes the truth table of a combinational circuit 64 rows at a time.
+ * The circuit is flattened into a {@link Netlist}, and each bit of every
+ * net becomes a <em>signal</em> holding a pair of words as described in
+ * {@link VectorState}. The components are sorted so that each comes
+ * after all the drivers of the signals it reads, and each batch of rows
+ * is then evaluated in a single pass over them.
+ *
+ * <p>Only circuits whose components all offer a {@link VectorComputer},
+ * besides pins and subcircuits, and which contain no feedback can be
+ * evaluated this way; for others {@link #create} returns null.</p>
+ */
+class VectorEvaluator {
+    private static final byte ROLE_PASSIVE = 0;
+    private static final byte ROLE_COMPUTER = 1;
+    private static final byte ROLE_ROOT_INPUT = 2;
+    private static final byte ROLE_INNER_INPUT = 3;
+    private static final byte ROLE_SUBCIRCUIT = 4;
+
+    // the rows of a word in which each of the low six bits of the row is set
+    private static final long[] INPUT_PATTERNS = { 0xAAAAAAAAAAAAAAAAL,
+        0xCCCCCCCCCCCCCCCCL, 0xF0F0F0F0F0F0F0F0L, 0xFF00FF00FF00FF00L,
+        0xFFFF0000FFFF0000L, 0xFFFFFFFF00000000L };
+
+    private Netlist net;
+    private VectorState state;
+
+    // signals, and the signal of each bit of each point
+    private int signalCount;
+    private int[] pointSignalStart;
+    private int[] pointSignals;
+    private long[] pullOnes;
+    private long[] pullZeros;
+    private long[] ones;
+    private long[] zeros;
+
+    // components, in evaluation order
+    private byte[] role;
+    private VectorComputer[] computers;
+    private int[] order;
+    // for inner input pins, the port of the parent that feeds them
+    private int[] innerSource;
+    // for root input pins, the truth table column they hold, or -1
+    private int[] inputColumn;
+    private int[] outputComps;
+    private int inputCount;
+
+    private VectorEvaluator() { }
+
+    /**
+     * Prepares an evaluator for the truth table of circuit, or returns
+     * null if the circuit cannot be evaluated bit-parallel.
+     */
+    static VectorEvaluator create(Project proj, Circuit circuit,
+            List<Instance> inputPins, List<Instance> outputPins) {
+        Netlist net;
+        try {
+            net = Netlist.compile(circuit);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+        VectorEvaluator ret = new VectorEvaluator();
+        ret.net = net;
+        ret.state = new VectorState(ret, proj);
+        if (!ret.assignSignals() || !ret.assignRoles(inputPins, outputPins)
+                || !ret.sortComponents()) {
+            return null;
+        }
+        return ret;
+    }
+
+    private boolean assignSignals() {
+        for (int i = 0; i < net.instanceCount; i++) {
+            Set<WidthIncompatibilityData> errors = net.instCircuit[i].getWidthIncompatibilityData();
+            if (errors != null && !errors.isEmpty()) {
+                return false;
+            }
+        }
+
+        // wired nets use their threads' signals, and each bit of an
+        // unwired point gets a signal of its own
+        signalCount = net.threadCount;
+        pointSignalStart = new int[net.pointCount + 1];
+        for (int p = 0; p < net.pointCount; p++) {
+            int n = net.pointNet[p];
+            int width;
+            if (net.netKind[n] == Netlist.NET_WIRED) {
+                width = net.netThreadStart[n + 1] - net.netThreadStart[n];
+            } else if (net.netKind[n] == Netlist.NET_UNWIRED) {
+                width = net.pointMissing[p].getWidth();
+            } else {
+                return false;
+            }
+            pointSignalStart[p + 1] = pointSignalStart[p] + width;
+        }
+        pointSignals = new int[pointSignalStart[net.pointCount]];
+        for (int p = 0; p < net.pointCount; p++) {
+            int n = net.pointNet[p];
+            int pos = pointSignalStart[p];
+            int width = pointSignalStart[p + 1] - pos;
+            for (int b = 0; b < width; b++) {
+                if (net.netKind[n] == Netlist.NET_WIRED) {
+                    int t = net.netThreads[net.netThreadStart[n] + b];
+                    pointSignals[pos + b] = t;
+                } else {
+                    pointSignals[pos + b] = signalCount;
+                    signalCount++;
+                }
+            }
+        }
+
+        pullOnes = new long[signalCount];
+        pullZeros = new long[signalCount];
+        for (int t = 0; t < net.threadCount; t++) {
+            Value pull = net.threadPull[t];
+            if (pull == Value.TRUE || pull == Value.ERROR) {
+                pullOnes[t] = -1L;
+            }
+            if (pull == Value.FALSE || pull == Value.ERROR) {
+                pullZeros[t] = -1L;
+            }
+        }
+        ones = new long[signalCount];
+        zeros = new long[signalCount];
+        return true;
+    }
+
+    private boolean assignRoles(List<Instance> inputPins,
+            List<Instance> outputPins) {
+        int compCount = net.compCount;
+        role = new byte[compCount];
+        computers = new VectorComputer[compCount];
+        innerSource = new int[compCount];
+        inputColumn = new int[compCount];
+        Arrays.fill(innerSource, -1);
+        Arrays.fill(inputColumn, -1);
+
+        for (int c = 0; c < compCount; c++) {
+            Component comp = net.comps[c];
+            byte kind = net.compKind[c];
+            if (kind == Netlist.COMP_SUBCIRCUIT) {
+                role[c] = ROLE_SUBCIRCUIT;
+            } else if (kind == Netlist.COMP_CLOCK) {
+                return false;
+            } else if (comp.getFactory() instanceof Pin) {
+                Instance pin = Instance.getInstanceFor(comp);
+                if (!Pin.FACTORY.isInputPin(pin)) {
+                    role[c] = ROLE_PASSIVE;
+                } else if (kind == Netlist.COMP_INNER_PIN) {
+                    role[c] = ROLE_INNER_INPUT;
+                } else if (Pin.FACTORY.getWidth(pin).getWidth() != 1) {
+                    return false;
+                } else {
+                    role[c] = ROLE_ROOT_INPUT;
+                }
+            } else {
+                VectorComputer computer = (VectorComputer) comp.getFeature(VectorComputer.class);
+                if (computer != null) {
+                    role[c] = ROLE_COMPUTER;
+                    computers[c] = computer;
+                } else if (comp.getEnds().isEmpty()) {
+                    role[c] = ROLE_PASSIVE;
+                } else {
+                    return false;
+                }
+            }
+        }
+
+        // connect inner input pins to the ports feeding them
+        for (int c = 0; c < compCount; c++) {
+            if (role[c] == ROLE_SUBCIRCUIT) {
+                int start = net.compPortStart[c];
+                int end = net.compPortStart[c + 1];
+                for (int port = start; port < end; port++) {
+                    int pin = net.portPinComp[port];
+                    if (pin >= 0 && role[pin] == ROLE_INNER_INPUT) {
+                        innerSource[pin] = port;
+                    }
+                }
+            }
+        }
+
+        inputCount = inputPins.size();
+        for (int j = 0; j < inputCount; j++) {
+            int c = net.getRootIndex(Instance.getComponentFor(inputPins.get(j)));
+            if (c < 0 || role[c] != ROLE_ROOT_INPUT) {
+                return false;
+            }
+            inputColumn[c] = j;
+        }
+        outputComps = new int[outputPins.size()];
+        for (int j = 0; j < outputComps.length; j++) {
+            int c = net.getRootIndex(Instance.getComponentFor(outputPins.get(j)));
+            if (c < 0) {
+                return false;
+            }
+            outputComps[j] = c;
+        }
+        return true;
+    }
+
+    /** Orders the components so that the drivers of each signal come
+     * before its readers, returning false if there is a cycle. */
+    private boolean sortComponents() {
+        int compCount = net.compCount;
+        int[][] reads = new int[compCount][];
+        int[][] drives = new int[compCount][];
+        int[] mark = new int[signalCount];
+        Arrays.fill(mark, -1);
+        for (int c = 0; c < compCount; c++) {
+            IntList readList = new IntList();
+            IntList driveList = new IntList();
+            collectSignals(c, readList, driveList);
+            reads[c] = distinct(readList, mark, 2 * c);
+            drives[c] = distinct(driveList, mark, 2 * c + 1);
+        }
+
+        int[] driverCount = new int[signalCount];
+        int[] readerCount = new int[signalCount];
+        for (int c = 0; c < compCount; c++) {
+            for (int s : drives[c]) {
+                driverCount[s]++;
+            }
+            for (int s : reads[c]) {
+                readerCount[s]++;
+            }
+        }
+        int[][] readers = new int[signalCount][];
+        for (int s = 0; s < signalCount; s++) {
+            readers[s] = new int[readerCount[s]];
+            readerCount[s] = 0;
+        }
+        int[] pending = new int[compCount];
+        for (int c = 0; c < compCount; c++) {
+            for (int s : reads[c]) {
+                readers[s][readerCount[s]] = c;
+                readerCount[s]++;
+                pending[c] += driverCount[s];
+            }
+        }
+
+        order = new int[compCount];
+        int head = 0;
+        int tail = 0;
+        for (int c = 0; c < compCount; c++) {
+            if (pending[c] == 0) {
+                order[tail] = c;
+                tail++;
+            }
+        }
+        while (head < tail) {
+            int c = order[head];
+            head++;
+            for (int s : drives[c]) {
+                for (int r : readers[s]) {
+                    pending[r]--;
+                    if (pending[r] == 0) {
+                        order[tail] = r;
+                        tail++;
+                    }
+                }
+            }
+        }
+        return tail == compCount;
+    }
+
+    private void collectSignals(int c, IntList reads, IntList drives) {
+        int start = net.compPortStart[c];
+        int end = net.compPortStart[c + 1];
+        switch (role[c]) {
+        case ROLE_COMPUTER:
+            List<EndData> ends = net.comps[c].getEnds();
+            for (int i = 0; i < end - start; i++) {
+                int type = ends.get(i).getType();
+                addPointSignals(portPoint(start + i),
+                        type == EndData.OUTPUT_ONLY ? drives : reads);
+            }
+            break;
+        case ROLE_ROOT_INPUT:
+            addPointSignals(portPoint(start), drives);
+            break;
+        case ROLE_INNER_INPUT:
+            addPointSignals(portPoint(start), drives);
+            if (innerSource[c] >= 0) {
+                addPointSignals(portPoint(innerSource[c]), reads);
+            }
+            break;
+        case ROLE_SUBCIRCUIT:
+            for (int port = start; port < end; port++) {
+                int pin = net.portPinComp[port];
+                if (pin >= 0 && role[pin] == ROLE_PASSIVE) {
+                    addPointSignals(portPoint(net.compPortStart[pin]), reads);
+                    addPointSignals(portPoint(port), drives);
+                }
+            }
+            break;
+        default:
+            break;
+        }
+    }
+
+    private void addPointSignals(int point, IntList dest) {
+        for (int i = pointSignalStart[point]; i < pointSignalStart[point + 1]; i++) {
+            dest.add(pointSignals[i]);
+        }
+    }
+
+    private static int[] distinct(IntList list, int[] mark, int stamp) {
+        IntList ret = new IntList();
+        for (int i = 0; i < list.size; i++) {
+            int s = list.data[i];
+            if (mark[s] != stamp) {
+                mark[s] = stamp;
+                ret.add(s);
+            }
+        }
+        return Arrays.copyOf(ret.data, ret.size);
+    }
+
+    //
+    // evaluation
+    //
+    /** Fills in the output columns of the truth table. */
+    void computeTable(EntryColumn[] columns) {
+        int rowCount = 1 << inputCount;
+        for (int base = 0; base < rowCount; base += 64) {
+            evaluate(base);
+            int rows = Math.min(64, rowCount - base);
+            for (int j = 0; j < outputComps.length; j++) {
+                int point = portPoint(net.compPortStart[outputComps[j]]);
+                long o = 0;
+                long z = 0;
+                if (pointSignalStart[point + 1] > pointSignalStart[point]) {
+                    int s = pointSignals[pointSignalStart[point]];
+                    o = readOnes(s);
+                    z = readZeros(s);
+                }
+                for (int k = 0; k < rows; k++) {
+                    boolean one = ((o >>> k) & 1) != 0;
+                    boolean zero = ((z >>> k) & 1) != 0;
+                    Entry out;
+                    if (one && zero) {
+                        out = Entry.BUS_ERROR;
+                    } else if (one) {
+                        out = Entry.ONE;
+                    } else if (zero) {
+                        out = Entry.ZERO;
+                    } else {
+                        out = Entry.DONT_CARE;
+                    }
+                    columns[j].set(base + k, out);
+                }
+            }
+        }
+    }
+
+    private void evaluate(int base) {
+        Arrays.fill(ones, 0L);
+        Arrays.fill(zeros, 0L);
+        for (int c : order) {
+            switch (role[c]) {
+            case ROLE_COMPUTER:
+                state.comp = c;
+                computers[c].computeVectors(state);
+                break;
+            case ROLE_ROOT_INPUT:
+                driveRootInput(c, base);
+                break;
+            case ROLE_INNER_INPUT:
+                driveInnerInput(c);
+                break;
+            case ROLE_SUBCIRCUIT:
+                driveSubcircuit(c);
+                break;
+            default:
+                break;
+            }
+        }
+    }
+
+    private void driveRootInput(int c, int base) {
+        int column = inputColumn[c];
+        long o = 0;
+        long z = 0;
+        if (column >= 0) {
+            // the input's bit of the row number, which for the low six
+            // bits repeats within the word and otherwise is fixed for it
+            int bit = inputCount - 1 - column;
+            if (bit < 6) {
+                o = INPUT_PATTERNS[bit];
+            } else if (((base >>> bit) & 1) != 0) {
+                o = -1L;
+            }
+            z = ~o;
+        } else if (!net.comps[c].getAttributeSet().getValue(Pin.ATTR_TRISTATE).booleanValue()) {
+            z = -1L;
+        }
+        drivePoint(portPoint(net.compPortStart[c]), 0, o, z);
+    }
+
+    private void driveInnerInput(int c) {
+        // as SubcircuitFactory hands the parent's value to the pin,
+        // and the pin applies its pull before driving it
+        AttributeSet attrs = net.comps[c].getAttributeSet();
+        Object pull = attrs.getValue(Pin.ATTR_PULL);
+        boolean threeState = attrs.getValue(Pin.ATTR_TRISTATE).booleanValue();
+        int point = portPoint(net.compPortStart[c]);
+        int source = innerSource[c] < 0 ? -1 : portPoint(innerSource[c]);
+        int width = pointSignalStart[point + 1] - pointSignalStart[point];
+        for (int b = 0; b < width; b++) {
+            long o = 0;
+            long z = 0;
+            if (source >= 0 && b < pointSignalStart[source + 1] - pointSignalStart[source]) {
+                int s = pointSignals[pointSignalStart[source] + b];
+                o = readOnes(s);
+                z = readZeros(s);
+            }
+            if (pull == Pin.PULL_UP) {
+                z = z & ~o;
+                o = ~z;
+            } else if (pull == Pin.PULL_DOWN) {
+                o = o & ~z;
+                z = ~o;
+            } else if (!threeState) {
+                z |= ~(o | z);
+            }
+            drivePoint(point, b, o, z);
+        }
+    }
+
+    private void driveSubcircuit(int c) {
+        int start = net.compPortStart[c];
+        int end = net.compPortStart[c + 1];
+        for (int port = start; port < end; port++) {
+            int pin = net.portPinComp[port];
+            if (pin >= 0 && role[pin] == ROLE_PASSIVE) {
+                int inner = portPoint(net.compPortStart[pin]);
+                int point = portPoint(port);
+                int width = Math.min(pointSignalStart[inner + 1] - pointSignalStart[inner],
+                        pointSignalStart[point + 1] - pointSignalStart[point]);
+                for (int b = 0; b < width; b++) {
+                    int s = pointSignals[pointSignalStart[inner] + b];
+                    drivePoint(point, b, readOnes(s), readZeros(s));
+                }
+            }
+        }
+    }
+
+    private void drivePoint(int point, int bit, long o, long z) {
+        if (bit < pointSignalStart[point + 1] - pointSignalStart[point]) {
+            int s = pointSignals[pointSignalStart[point] + bit];
+            ones[s] |= o;
+            zeros[s] |= z;
+        }
+    }
+
+    // a signal is read only once all its drivers are done, so the pull
+    // can be applied as it is read
+    private long readOnes(int s) {
+        long o = ones[s];
+        return o | (~(o | zeros[s]) & pullOnes[s]);
+    }
+
+    private long readZeros(int s) {
+        long z = zeros[s];
+        return z | (~(ones[s] | z) & pullZeros[s]);
+    }
+
+    private int portPoint(int port) {
+        return net.slotPoint[net.portSlot[port]];
+    }
+
+    //
+    // access for VectorState
+    //
+    Component getComponent(int c) {
+        return net.comps[c];
+    }
+
+    boolean isPortConnected(int c, int index) {
+        return net.portConnected[net.compPortStart[c] + index];
+    }
+
+    int getPortWidth(int c, int index) {
+        int point = portPoint(net.compPortStart[c] + index);
+        return pointSignalStart[point + 1] - pointSignalStart[point];
+    }
+
+    long getOnes(int c, int index, int bit) {
+        int point = portPoint(net.compPortStart[c] + index);
+        int pos = pointSignalStart[point] + bit;
+        return pos < pointSignalStart[point + 1] ? readOnes(pointSignals[pos]) : 0L;
+    }
+
+    long getZeros(int c, int index, int bit) {
+        int point = portPoint(net.compPortStart[c] + index);
+        int pos = pointSignalStart[point] + bit;
+        return pos < pointSignalStart[point + 1] ? readZeros(pointSignals[pos]) : 0L;
+    }
+
+    void setPort(int c, int index, int bit, long o, long z) {
+        drivePoint(portPoint(net.compPortStart[c] + index), bit, o, z);
+    }
+
+    private static class IntList {
+        int[] data = new int[8];
+        int size = 0;
+
+        void add(int value) {
+            if (size == data.length) {
+                data = Arrays.copyOf(data, 2 * size);
+            }
+            data[size] = value;
+            size++;
+        }
+    }
+}
@@ -0,0 +1,66 @@
+/* Copyright (c) 2010, Carl Burch. License information is located in the
+ * com.cburch.logisim.Main source code and at www.cburch.com/logisim/. */
+
+package com.cburch.logisim.circuit;
+
+import com.cburch.logisim.data.Attribute;
+import com.cburch.logisim.data.AttributeSet;
+import com.cburch.logisim.proj.Project;
+
+/**
+ * The state handed to a {@link VectorComputer}, through which it sees
+ * its ports for 64 input vectors at once.
+ *
+ * <p>Each bit of a port is held as a pair of words, <code>ones</code>
+ * and <code>zeros</code>, whose bit <code>k</code> describes the value
+ * for vector <code>k</code>: set only in <code>ones</code> for 1, only
+ * in <code>zeros</code> for 0, in neither for an unknown (floating)
+ * value, and in both for an error. In this encoding the value of several
+ * drivers joined by a wire is simply the bitwise or of their words.</p>
+ */
+public final class VectorState {
+    private final VectorEvaluator evaluator;
+    private final Project proj;
+    int comp;
+
+    VectorState(VectorEvaluator evaluator, Project proj) {
+        this.evaluator = evaluator;
+        this.proj = proj;
+    }
+
+    public Project getProject() {
+        return proj;
+    }
+
+    public AttributeSet getAttributeSet() {
+        return evaluator.getComponent(comp).getAttributeSet();
+    }
+
+    public <E> E getAttributeValue(Attribute<E> attr) {
+        return getAttributeSet().getValue(attr);
+    }
+
+    public boolean isPortConnected(int index) {
+        return evaluator.isPortConnected(comp, index);
+    }
+
+    public int getPortWidth(int index) {
+        return evaluator.getPortWidth(comp, index);
+    }
+
+    /** Returns the word in which the vectors with a 1 (or an error) at
+     * the given bit of the port are set. */
+    public long getOnes(int index, int bit) {
+        return evaluator.getOnes(comp, index, bit);
+    }
+
+    /** Returns the word in which the vectors with a 0 (or an error) at
+     * the given bit of the port are set. */
+    public long getZeros(int index, int bit) {
+        return evaluator.getZeros(comp, index, bit);
+    }
+
+    public void setPort(int index, int bit, long ones, long zeros) {
+        evaluator.setPort(comp, index, bit, ones, zeros);
+    }
+}
@@ -3,7 +3,8 @@
 
 package com.cburch.logisim.circuit;
 
-import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
 
 import com.cburch.logisim.data.BitWidth;
 import com.cburch.logisim.data.Location;
@@ -15,14 +16,39 @@ class WireBundle {
     private WireBundle parent;
     private Location widthDeterminant = null;
     WireThread[] threads = null;
-    // points bundle hits
-    CopyOnWriteArraySet<Location> points = new CopyOnWriteArraySet<Location>();
+    // index among the valid bundles of its map, once the map is computed
+    private int index = -1;
+    // points bundle hits, not changed once the bundle's map is in use
+    LinkedHashSet<Location> points = new LinkedHashSet<Location>();
+    // the index each of the points had when last given a value, in the
+    // order of points; only hints, which are checked before each use
+    private int[] pointHints = null;
     private WidthIncompatibilityData incompatibilityData = null;
 
     WireBundle() {
         parent = this;
     }
 
+    int getIndex() {
+        return index;
+    }
+
+    void setIndex(int value) {
+        index = value;
+    }
+
+    /** Returns the hints for the points' indices, for the simulator to
+     * read and update. */
+    int[] getPointHints() {
+        int[] ret = pointHints;
+        if (ret == null || ret.length != points.size()) {
+            ret = new int[points.size()];
+            Arrays.fill(ret, -1);
+            pointHints = ret;
+        }
+        return ret;
+    }
+
     boolean isValid() {
         return incompatibilityData == null;
     }
@@ -7,6 +7,8 @@ import java.util.concurrent.CopyOnWriteArraySet;
 
 class WireThread {
     private WireThread parent;
+    // index among the threads of its bundle map, once the map is computed
+    private int index = -1;
     private CopyOnWriteArraySet<CircuitWires.ThreadBundle> bundles
         = new CopyOnWriteArraySet<CircuitWires.ThreadBundle>();
 
@@ -18,6 +20,14 @@ class WireThread {
         return bundles;
     }
 
+    int getIndex() {
+        return index;
+    }
+
+    void setIndex(int value) {
+        index = value;
+    }
+
     void unite(WireThread other) {
         WireThread group = this.find();
         WireThread group2 = other.find();
@@ -39,7 +39,8 @@ public class BitWidth implements Comparable<BitWidth> {
             JComboBox combo = new JComboBox(choices);
             if (value != null) {
                 int wid = value.getWidth();
-                if (wid <= 0 || wid > prefab.length) {
+                if (wid < choices[0].width
+                        || wid > choices[choices.length - 1].width) {
                     combo.addItem(value);
                 }
                 combo.setSelectedItem(value);
@@ -63,7 +64,7 @@ public class BitWidth implements Comparable<BitWidth> {
                   return 0;
         }
 
-        else if (width == 32) {
+        else if (width >= 32) {
             return -1;
         }
 
@@ -127,7 +128,7 @@ public class BitWidth implements Comparable<BitWidth> {
 
     private static void ensurePrefab() {
         if (prefab == null) {
-            prefab = new BitWidth[Math.min(32, Value.MAX_WIDTH)];
+            prefab = new BitWidth[Math.min(64, Value.MAX_WIDTH)];
             prefab[0] = ONE;
             for (int i = 1; i < prefab.length; i++) {
                 prefab[i] = new BitWidth(i + 1);
@@ -3,7 +3,7 @@
 
 package com.cburch.logisim.data;
 
-import com.cburch.logisim.util.Cache;
+import com.cburch.logisim.util.InternTable;
 
 /**
  * Represents an immutable rectangular bounding box. This is analogous to
@@ -11,7 +11,8 @@ import com.cburch.logisim.util.Cache;
  * are immutable.
  */
 public class Location implements Comparable<Location> {
-    private static final Cache cache = new Cache();
+    private static final InternTable<Location> cache
+        = new InternTable<Location>("Location", 16);
 
     private final int hashCode;
     private final int x;
@@ -129,17 +130,16 @@ public class Location implements Comparable<Location> {
 
     public static Location create(int x, int y) {
         int hashCode = 31 * x + y;
-        Object ret = cache.get(hashCode);
-        if (ret != null) {
-            Location loc = (Location) ret;
+        for (int i = 0; ; i++) {
+            Location loc = cache.find(hashCode, i);
+            if (loc == null) {
+                break;
+            }
             if (loc.x == x && loc.y == y) {
                 return loc;
             }
-
         }
-        Location loc = new Location(hashCode, x, y);
-        cache.put(hashCode, loc);
-        return loc;
+        return cache.add(hashCode, new Location(hashCode, x, y));
     }
 
     public static Location parse(String value) {
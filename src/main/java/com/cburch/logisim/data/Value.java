@@ -4,11 +4,21 @@
 package com.cburch.logisim.data;
 
 import java.awt.Color;
+import java.math.BigInteger;
 import java.util.Arrays;
 
-import com.cburch.logisim.util.Cache;
+import com.cburch.logisim.util.InternTable;
 import static com.cburch.logisim.util.LocaleString.*;
 
+/**
+ * The value carried by a wire or port: for each bit, whether it is 0, 1,
+ * unknown or an error.
+ *
+ * <p>Values up to 64 bits wide keep their error, unknown and value bits in
+ * one <code>long</code> each. Wider values keep them in arrays of 64-bit
+ * words, least significant word first, with the first word also held in
+ * the <code>long</code> fields.</p>
+ */
 public class Value {
     public static final Value FALSE   = new Value(1, 0, 0, 0);
     public static final Value TRUE    = new Value(1, 0, 0, 1);
@@ -16,7 +26,7 @@ public class Value {
     public static final Value ERROR   = new Value(1, 1, 0, 0);
     public static final Value NIL     = new Value(0, 0, 0, 0);
 
-    public static final int MAX_WIDTH = 32;
+    public static final int MAX_WIDTH = 256;
 
     public static final Color NIL_COLOR = Color.GRAY;
     public static final Color FALSE_COLOR = new Color(0, 100, 0);
@@ -26,7 +36,28 @@ public class Value {
     public static final Color WIDTH_ERROR_COLOR = new Color(255, 123, 0);
     public static final Color MULTI_COLOR = Color.BLACK;
 
-    private static final Cache cache = new Cache();
+    private static final InternTable<Value> cache
+        = new InternTable<Value>("Value", 12);
+    // for each width up to 64, the values with all bits alike, which
+    // are returned without looking in the cache
+    private static final Value[] ALL_FALSE = new Value[65];
+    private static final Value[] ALL_TRUE = new Value[65];
+    private static final Value[] ALL_UNKNOWN = new Value[65];
+    private static final Value[] ALL_ERROR = new Value[65];
+
+    static {
+        ALL_FALSE[1] = FALSE;
+        ALL_TRUE[1] = TRUE;
+        ALL_UNKNOWN[1] = UNKNOWN;
+        ALL_ERROR[1] = ERROR;
+        for (int w = 2; w <= 64; w++) {
+            long mask = -1L >>> (64 - w);
+            ALL_FALSE[w] = new Value(w, 0, 0, 0);
+            ALL_TRUE[w] = new Value(w, 0, 0, mask);
+            ALL_UNKNOWN[w] = new Value(w, 0, mask, 0);
+            ALL_ERROR[w] = new Value(w, mask, 0, 0);
+        }
+    }
 
     public static Value create(Value[] values) {
         if (values.length == 0) {
@@ -41,13 +72,13 @@ public class Value {
             "Cannot have more than " + MAX_WIDTH + " bits in a value");
 
         int width = values.length;
-        int value = 0;
-        int unknown = 0;
-        int error = 0;
+        long[] value = new long[(width + 63) >>> 6];
+        long[] unknown = new long[value.length];
+        long[] error = new long[value.length];
         for (int i = 0; i < values.length; i++) {
-            int mask = 1 << i;
+            long mask = 1L << i;
             if (values[i] == TRUE) {
-                        value |= mask;
+                        value[i >>> 6] |= mask;
             }
 
             else if (values[i] == FALSE) {
@@ -55,11 +86,11 @@ public class Value {
             }
 
             else if (values[i] == UNKNOWN) {
-                unknown |= mask;
+                unknown[i >>> 6] |= mask;
             }
 
             else if (values[i] == ERROR) {
-                  error |= mask;
+                  error[i >>> 6] |= mask;
             }
 
             else {
@@ -70,19 +101,57 @@ public class Value {
         return Value.create(width, error, unknown, value);
     }
 
+    /** Creates a value as createKnown does for a long; this form remains
+     * for libraries compiled when it was the only one. */
     public static Value createKnown(BitWidth bits, int value) {
+        return createKnown(bits, (long) value);
+    }
+
+    public static Value createKnown(BitWidth bits, long value) {
+        if (bits.getWidth() > 64) {
+            return createKnown(bits, BigInteger.valueOf(value));
+        }
         return Value.create(bits.getWidth(), 0, 0, value);
     }
 
+    /** Creates a value holding the low bits of an integer of any size,
+     * in two's complement if it is negative. */
+    public static Value createKnown(BitWidth bits, BigInteger value) {
+        int width = bits.getWidth();
+        if (width <= 64) {
+            return Value.create(width, 0, 0, value.longValue());
+        }
+        long[] words = new long[(width + 63) >>> 6];
+        for (int i = 0; i < words.length; i++) {
+            words[i] = value.shiftRight(64 * i).longValue();
+        }
+        return Value.create(width, new long[words.length],
+            new long[words.length], words);
+    }
+
     public static Value createUnknown(BitWidth bits) {
-        return Value.create(bits.getWidth(), 0, -1, 0);
+        int width = bits.getWidth();
+        if (width <= 64) {
+            return Value.create(width, 0, -1, 0);
+        }
+        long[] unknown = new long[(width + 63) >>> 6];
+        Arrays.fill(unknown, -1L);
+        return Value.create(width, new long[unknown.length], unknown,
+            new long[unknown.length]);
     }
 
     public static Value createError(BitWidth bits) {
-        return Value.create(bits.getWidth(), -1, 0, 0);
+        int width = bits.getWidth();
+        if (width <= 64) {
+            return Value.create(width, -1, 0, 0);
+        }
+        long[] error = new long[(width + 63) >>> 6];
+        Arrays.fill(error, -1L);
+        return Value.create(width, error, new long[error.length],
+            new long[error.length]);
     }
 
-    private static Value create(int width, int error, int unknown, int value) {
+    private static Value create(int width, long error, long unknown, long value) {
         if (width == 0) {
             return Value.NIL;
         } else if (width == 1) {
@@ -103,21 +172,103 @@ public class Value {
             }
 
         } else {
-            int mask = (width == 32 ? -1 : ~(-1 << width));
+            long mask = (width >= 64 ? -1L : ~(-1L << width));
             error = error & mask;
             unknown = unknown & mask & ~error;
             value = value & mask & ~unknown & ~error;
+            return createNormalized(width, error, unknown, value);
+        }
+    }
 
-            int hashCode = 31 * (31 * (31 * width + error) + unknown) + value;
-            Object cached = cache.get(hashCode);
-            if (cached != null) {
-                Value val = (Value) cached;
-                if (val.value == value && val.width == width && val.error == error
-                        && val.unknown == unknown) return val;
+    // for 2 to 64 bits, with no bits set beyond the width and no bit set
+    // in more than one mask
+    private static Value createNormalized(int width, long error, long unknown,
+            long value) {
+        long mask = -1L >>> (64 - width);
+        if ((error | unknown) == 0) {
+            if (value == 0) {
+                return ALL_FALSE[width];
+            } else if (value == mask) {
+                return ALL_TRUE[width];
+            }
+        } else if (error == mask) {
+            return ALL_ERROR[width];
+        } else if (unknown == mask) {
+            return ALL_UNKNOWN[width];
+        }
+
+        int hashCode = hashCode(width, error, unknown, value);
+        for (int i = 0; ; i++) {
+            Value val = cache.find(hashCode, i);
+            if (val == null) {
+                break;
+            }
+            if (val.value == value && val.width == width && val.error == error
+                    && val.unknown == unknown && val.wideValue == null) return val;
+        }
+        return cache.add(hashCode, new Value(width, error, unknown, value));
+    }
+
+    // like createNormalized, but returns one of the operands of an
+    // operation when the result turns out to be the same; a NIL operand
+    // can leave the result only one bit wide
+    private static Value createResult(int width, long error, long unknown,
+            long value, Value a, Value b) {
+        if (a.value == value && a.error == error && a.unknown == unknown
+                && a.width == width) {
+            return a;
+        } else if (b.value == value && b.error == error && b.unknown == unknown
+                && b.width == width) {
+            return b;
+        } else if (width <= 1) {
+            return create(width, error, unknown, value);
+        } else {
+            return createNormalized(width, error, unknown, value);
+        }
+    }
+
+    // the arrays, each holding a word for every 64 bits of the width,
+    // are taken over by the value created
+    private static Value create(int width, long[] error, long[] unknown,
+            long[] value) {
+        if (width <= 64) {
+            return create(width, error[0], unknown[0], value[0]);
+        }
+        int last = error.length - 1;
+        for (int i = 0; i <= last; i++) {
+            long mask = (i < last || (width & 63) == 0) ? -1L : ~(-1L << width);
+            error[i] &= mask;
+            unknown[i] &= mask & ~error[i];
+            value[i] &= mask & ~unknown[i] & ~error[i];
+        }
+        Value ret = new Value(width, error, unknown, value);
+        int hashCode = ret.hashCode();
+        for (int i = 0; ; i++) {
+            Value val = cache.find(hashCode, i);
+            if (val == null) {
+                break;
+            }
+            if (ret.equals(val)) {
+                return val;
             }
-            Value ret= new Value(width, error, unknown, value);
-            cache.put(hashCode, ret);
-            return ret;
+        }
+        return cache.add(hashCode, ret);
+    }
+
+    private static int hashCode(int width, long error, long unknown, long value) {
+        long ret = width;
+        ret = 31 * ret + error;
+        ret = 31 * ret + unknown;
+        ret = 31 * ret + value;
+        return (int) (ret ^ (ret >>> 32));
+    }
+
+    // the word of a value at the given index, whether it is wide or not
+    private static long word(long[] words, long low, int index) {
+        if (words != null) {
+            return index < words.length ? words[index] : 0;
+        } else {
+            return index == 0 ? low : 0;
         }
     }
 
@@ -135,20 +286,45 @@ public class Value {
     }
 
     private final int width;
-    private final int error;
-    private final int unknown;
-    private final int value;
-
-    private Value(int width, int error, int unknown, int value) {
+    private final long error;
+    private final long unknown;
+    private final long value;
+    // all words of the bits, for values more than 64 bits wide
+    private final long[] wideError;
+    private final long[] wideUnknown;
+    private final long[] wideValue;
+
+    private Value(int width, long error, long unknown, long value) {
         // To ensure that the one-bit values are unique, this should be called only
         // for the one-bit values and by the private create method
         this.width = width;
         this.error = error;
         this.unknown = unknown;
         this.value = value;
+        this.wideError = null;
+        this.wideUnknown = null;
+        this.wideValue = null;
+    }
+
+    private Value(int width, long[] error, long[] unknown, long[] value) {
+        this.width = width;
+        this.error = error[0];
+        this.unknown = unknown[0];
+        this.value = value[0];
+        this.wideError = error;
+        this.wideUnknown = unknown;
+        this.wideValue = value;
     }
 
     public boolean isErrorValue() {
+        if (wideError != null) {
+            for (long e : wideError) {
+                if (e != 0) {
+                    return true;
+                }
+            }
+            return false;
+        }
         return error != 0;
     }
 
@@ -157,27 +333,72 @@ public class Value {
             return this;
         }
 
-        int maskInverse = (width == 32 ? 0 : (-1 << width));
-        if (others == Value.ERROR) {
-            return Value.create(newWidth, error | maskInverse, unknown, value);
-        } else if (others == Value.FALSE) {
-            return Value.create(newWidth, error, unknown, value);
-        } else if (others == Value.TRUE) {
-            return Value.create(newWidth, error, unknown, value | maskInverse);
-        } else {
-            return Value.create(newWidth, error, unknown | maskInverse, value);
-        }
+        if (newWidth <= 64 && width <= 64) {
+            long maskInverse = (width == 64 ? 0 : (-1L << width));
+            if (others == Value.ERROR) {
+                return Value.create(newWidth, error | maskInverse, unknown, value);
+            } else if (others == Value.FALSE) {
+                return Value.create(newWidth, error, unknown, value);
+            } else if (others == Value.TRUE) {
+                return Value.create(newWidth, error, unknown, value | maskInverse);
+            } else {
+                return Value.create(newWidth, error, unknown | maskInverse, value);
+            }
+        }
+
+        int words = (newWidth + 63) >>> 6;
+        long[] e = new long[words];
+        long[] u = new long[words];
+        long[] v = new long[words];
+        for (int i = 0; i < words; i++) {
+            long maskInverse;
+            if (64 * i >= width) {
+                maskInverse = -1L;
+            } else if (64 * (i + 1) > width) {
+                maskInverse = -1L << width;
+            } else {
+                maskInverse = 0;
+            }
+            e[i] = word(wideError, error, i);
+            u[i] = word(wideUnknown, unknown, i) & ~maskInverse;
+            v[i] = word(wideValue, value, i) & ~maskInverse;
+            if (others == Value.ERROR) {
+                e[i] |= maskInverse;
+            } else if (others == Value.TRUE) {
+                v[i] |= maskInverse;
+            } else if (others != Value.FALSE) {
+                u[i] |= maskInverse;
+            }
+        }
+        return Value.create(newWidth, e, u, v);
     }
 
     public boolean isUnknown() {
-        if (width == 32) {
-            return error == 0 && unknown == -1;
+        if (wideUnknown != null) {
+            for (int i = 0; i < wideUnknown.length; i++) {
+                long mask = (i < wideUnknown.length - 1 || (width & 63) == 0)
+                    ? -1L : ~(-1L << width);
+                if (wideError[i] != 0 || wideUnknown[i] != mask) {
+                    return false;
+                }
+            }
+            return true;
+        } else if (width == 64) {
+            return error == 0 && unknown == -1L;
         } else {
-            return error == 0 && unknown == ((1 << width) - 1);
+            return error == 0 && unknown == ((1L << width) - 1);
         }
     }
 
     public boolean isFullyDefined() {
+        if (wideError != null) {
+            for (int i = 0; i < wideError.length; i++) {
+                if (wideError[i] != 0 || wideUnknown[i] != 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
         return width > 0 && error == 0 && unknown == 0;
     }
 
@@ -188,12 +409,22 @@ public class Value {
             throw new RuntimeException("Attempt to set outside value's width");
         } else if (width == 1) {
             return val;
-        } else {
-            int mask = ~(1 << which);
+        } else if (wideValue == null) {
+            long mask = ~(1L << which);
             return Value.create(this.width,
                 (this.error   & mask) | (val.error   << which),
                 (this.unknown & mask) | (val.unknown << which),
                 (this.value   & mask) | (val.value   << which));
+        } else {
+            long[] e = wideError.clone();
+            long[] u = wideUnknown.clone();
+            long[] v = wideValue.clone();
+            int i = which >>> 6;
+            long mask = ~(1L << which);
+            e[i] = (e[i] & mask) | (val.error   << which);
+            u[i] = (u[i] & mask) | (val.unknown << which);
+            v[i] = (v[i] & mask) | (val.value   << which);
+            return Value.create(this.width, e, u, v);
         }
     }
 
@@ -210,16 +441,17 @@ public class Value {
             return ERROR;
         }
 
-        int mask = 1 << which;
-        if ((error & mask) != 0) {
+        int i = which >>> 6;
+        long mask = 1L << which;
+        if ((word(wideError, error, i) & mask) != 0) {
             return ERROR;
         }
 
-        else if ((unknown & mask) != 0) {
+        else if ((word(wideUnknown, unknown, i) & mask) != 0) {
             return UNKNOWN;
         }
 
-        else if ((value & mask) != 0) {
+        else if ((word(wideValue, value, i) & mask) != 0) {
             return TRUE;
         }
 
@@ -247,31 +479,68 @@ public class Value {
         boolean ret = this.width == other.width
             && this.error == other.error
             && this.unknown == other.unknown
-            && this.value == other.value;
+            && this.value == other.value
+            && Arrays.equals(this.wideError, other.wideError)
+            && Arrays.equals(this.wideUnknown, other.wideUnknown)
+            && Arrays.equals(this.wideValue, other.wideValue);
         return ret;
     }
 
     @Override
     public int hashCode() {
+        if (wideValue == null) {
+            return hashCode(width, error, unknown, value);
+        }
         int ret = width;
-        ret = 31 * ret + error;
-        ret = 31 * ret + unknown;
-        ret = 31 * ret + value;
+        for (int i = 0; i < wideValue.length; i++) {
+            ret = 31 * ret + hashCode(64, wideError[i], wideUnknown[i], wideValue[i]);
+        }
         return ret;
     }
 
+    /** Returns the low 32 bits of the value, or -1 if any bit is an
+     * error or unknown. */
     public int toIntValue() {
-        if (error != 0) {
+        if (!isFullyDefined()) {
             return -1;
         }
 
-        if (unknown != 0) {
+        return (int) value;
+    }
+
+    /** Returns the low 64 bits of the value, or -1 if any bit is an
+     * error or unknown. */
+    public long toLongValue() {
+        if (!isFullyDefined()) {
             return -1;
         }
 
         return value;
     }
 
+    /**
+     * Returns the value as an integer of any size, or <code>null</code>
+     * if any bit is an error or unknown. If <code>signed</code>, the top
+     * bit is taken as the sign in two's complement.
+     */
+    public BigInteger toBigInteger(boolean signed) {
+        if (width == 0 || !isFullyDefined()) {
+            return null;
+        }
+
+        BigInteger ret = BigInteger.ZERO;
+        for (int i = (width - 1) >>> 6; i >= 0; i--) {
+            long w = word(wideValue, value, i);
+            BigInteger unsigned = BigInteger.valueOf(w >>> 1).shiftLeft(1)
+                .or(BigInteger.valueOf(w & 1));
+            ret = ret.shiftLeft(64).or(unsigned);
+        }
+        if (signed && ret.testBit(width - 1)) {
+            ret = ret.subtract(BigInteger.ONE.shiftLeft(width));
+        }
+        return ret;
+    }
+
     @Override
     public String toString() {
         switch (width) {
@@ -392,14 +661,20 @@ public class Value {
         }
 
 
-        int value = toIntValue();
+        if (width > 64) {
+            return toBigInteger(signed).toString();
+        }
+
+        long value = toLongValue();
         if (signed) {
-            if (width < 32 && (value >> (width - 1)) != 0) {
-                value |= (-1) << width;
+            if (width < 64 && (value >> (width - 1)) != 0) {
+                value |= (-1L) << width;
             }
             return "" + value;
+        } else if (value < 0) {
+            return toBigInteger(false).toString();
         } else {
-            return "" + (value & 0xFFFFFFFFL);
+            return "" + value;
         }
     }
 
@@ -421,7 +696,11 @@ public class Value {
                 return getFromLocale("valueUnknown");
             }
 
-            return Integer.toString(toIntValue(), radix);
+            if (width <= 32) {
+                return Integer.toString(toIntValue(), radix);
+            } else {
+                return toBigInteger(false).toString(radix);
+            }
         }
     }
 
@@ -486,12 +765,31 @@ public class Value {
 
             return ERROR;
         } else {
-            int disagree = (this.value ^ other.value)
-                & ~(this.unknown | other.unknown);
-            return Value.create(Math.max(this.width, other.width),
-                this.error | other.error | disagree,
-                this.unknown & other.unknown,
-                (this.value & ~this.unknown) | (other.value & ~other.unknown));
+            int width = Math.max(this.width, other.width);
+            if (width <= 64) {
+                long disagree = (this.value ^ other.value)
+                    & ~(this.unknown | other.unknown);
+                long error = this.error | other.error | disagree;
+                return createResult(width, error,
+                    this.unknown & other.unknown,
+                    (this.value | other.value) & ~error, this, other);
+            }
+            int words = (width + 63) >>> 6;
+            long[] e = new long[words];
+            long[] u = new long[words];
+            long[] v = new long[words];
+            for (int i = 0; i < words; i++) {
+                long e0 = word(this.wideError, this.error, i);
+                long u0 = word(this.wideUnknown, this.unknown, i);
+                long v0 = word(this.wideValue, this.value, i);
+                long e1 = word(other.wideError, other.error, i);
+                long u1 = word(other.wideUnknown, other.unknown, i);
+                long v1 = word(other.wideValue, other.value, i);
+                e[i] = e0 | e1 | ((v0 ^ v1) & ~(u0 | u1));
+                u[i] = u0 & u1;
+                v[i] = (v0 & ~u0) | (v1 & ~u1);
+            }
+            return Value.create(width, e, u, v);
         }
     }
 
@@ -511,13 +809,31 @@ public class Value {
 
             return ERROR;
         } else {
-            int false0 = ~this.value & ~this.error & ~this.unknown;
-            int false1 = ~other.value & ~other.error & ~other.unknown;
-            int falses = false0 | false1;
-            return Value.create(Math.max(this.width, other.width),
-                    (this.error | other.error | this.unknown | other.unknown) & ~falses,
-                    0,
-                    this.value & other.value);
+            int width = Math.max(this.width, other.width);
+            if (width <= 64) {
+                long false0 = ~(this.value | this.error | this.unknown);
+                long false1 = ~(other.value | other.error | other.unknown);
+                long falses = false0 | false1;
+                return createResult(width,
+                        (this.error | other.error | this.unknown | other.unknown) & ~falses,
+                        0,
+                        this.value & other.value, this, other);
+            }
+            int words = (width + 63) >>> 6;
+            long[] e = new long[words];
+            long[] v = new long[words];
+            for (int i = 0; i < words; i++) {
+                long e0 = word(this.wideError, this.error, i);
+                long u0 = word(this.wideUnknown, this.unknown, i);
+                long v0 = word(this.wideValue, this.value, i);
+                long e1 = word(other.wideError, other.error, i);
+                long u1 = word(other.wideUnknown, other.unknown, i);
+                long v1 = word(other.wideValue, other.value, i);
+                long falses = (~v0 & ~e0 & ~u0) | (~v1 & ~e1 & ~u1);
+                e[i] = (e0 | e1 | u0 | u1) & ~falses;
+                v[i] = v0 & v1;
+            }
+            return Value.create(width, e, new long[words], v);
         }
     }
 
@@ -537,13 +853,30 @@ public class Value {
 
             return ERROR;
         } else {
-            int true0 = this.value & ~this.error & ~this.unknown;
-            int true1 = other.value & ~other.error & ~other.unknown;
-            int trues = true0 | true1;
-            return Value.create(Math.max(this.width, other.width),
-                (this.error | other.error | this.unknown | other.unknown) & ~trues,
-                0,
-                this.value | other.value);
+            int width = Math.max(this.width, other.width);
+            if (width <= 64) {
+                // the value bits are never set along with the other masks
+                long trues = this.value | other.value;
+                return createResult(width,
+                    (this.error | other.error | this.unknown | other.unknown) & ~trues,
+                    0,
+                    trues, this, other);
+            }
+            int words = (width + 63) >>> 6;
+            long[] e = new long[words];
+            long[] v = new long[words];
+            for (int i = 0; i < words; i++) {
+                long e0 = word(this.wideError, this.error, i);
+                long u0 = word(this.wideUnknown, this.unknown, i);
+                long v0 = word(this.wideValue, this.value, i);
+                long e1 = word(other.wideError, other.error, i);
+                long u1 = word(other.wideUnknown, other.unknown, i);
+                long v1 = word(other.wideValue, other.value, i);
+                long trues = (v0 & ~e0 & ~u0) | (v1 & ~e1 & ~u1);
+                e[i] = (e0 | e1 | u0 | u1) & ~trues;
+                v[i] = v0 | v1;
+            }
+            return Value.create(width, e, new long[words], v);
         }
     }
 
@@ -571,10 +904,24 @@ public class Value {
 
             return TRUE;
         } else {
-            return Value.create(Math.max(this.width, other.width),
-                this.error | other.error | this.unknown | other.unknown,
-                0,
-                this.value ^ other.value);
+            int width = Math.max(this.width, other.width);
+            if (width <= 64) {
+                long error = this.error | other.error | this.unknown | other.unknown;
+                return createResult(width, error, 0,
+                    (this.value ^ other.value) & ~error, this, other);
+            }
+            int words = (width + 63) >>> 6;
+            long[] e = new long[words];
+            long[] v = new long[words];
+            for (int i = 0; i < words; i++) {
+                e[i] = word(this.wideError, this.error, i)
+                    | word(other.wideError, other.error, i)
+                    | word(this.wideUnknown, this.unknown, i)
+                    | word(other.wideUnknown, other.unknown, i);
+                v[i] = word(this.wideValue, this.value, i)
+                    ^ word(other.wideValue, other.value, i);
+            }
+            return Value.create(width, e, new long[words], v);
         }
     }
 
@@ -589,16 +936,23 @@ public class Value {
             }
 
             return ERROR;
+        } else if (wideValue == null) {
+            long error = this.error | this.unknown;
+            return createNormalized(this.width, error, 0,
+                ~(this.value | error) & (-1L >>> (64 - this.width)));
         } else {
-            return Value.create(this.width,
-                this.error | this.unknown,
-                0,
-                ~this.value);
+            long[] e = new long[wideValue.length];
+            long[] v = new long[wideValue.length];
+            for (int i = 0; i < v.length; i++) {
+                e[i] = wideError[i] | wideUnknown[i];
+                v[i] = ~wideValue[i];
+            }
+            return Value.create(this.width, e, new long[v.length], v);
         }
     }
 
     public Color getColor() {
-        if (error != 0) {
+        if (isErrorValue()) {
             return ERROR_COLOR;
         } else if (width == 0) {
             return NIL_COLOR;
@@ -15,6 +15,10 @@ public class Options {
     = new AttributeOption("ignore", getFromLocale("gateUndefinedIgnore"));
     public static final AttributeOption GATE_UNDEFINED_ERROR
         = new AttributeOption("error", getFromLocale("gateUndefinedError"));
+    public static final AttributeOption SIM_QUEUE_WHEEL
+        = new AttributeOption("wheel", getFromLocale("simQueueWheel"));
+    public static final AttributeOption SIM_QUEUE_HEAP
+        = new AttributeOption("heap", getFromLocale("simQueueHeap"));
 
     public static final Attribute<Integer> sim_limit_attr
         = Attributes.forInteger("simlimit", getFromLocale("simLimitOption"));
@@ -23,14 +27,23 @@ public class Options {
     public static final Attribute<AttributeOption> ATTR_GATE_UNDEFINED
         = Attributes.forOption("gateUndefined", getFromLocale("gateUndefinedOption"),
                 new AttributeOption[] { GATE_UNDEFINED_IGNORE, GATE_UNDEFINED_ERROR });
+    public static final Attribute<AttributeOption> ATTR_SIM_QUEUE
+        = Attributes.forOption("simqueue", getFromLocale("simQueueOption"),
+                new AttributeOption[] { SIM_QUEUE_WHEEL, SIM_QUEUE_HEAP });
+    public static final Attribute<Boolean> ATTR_SIM_ZERO_DELAY
+        = Attributes.forBoolean("simzerodelay", getFromLocale("simZeroDelayOption"));
+    public static final Attribute<Boolean> ATTR_SIM_PARALLEL
+        = Attributes.forBoolean("simparallel", getFromLocale("simParallelOption"));
 
     public static final Integer sim_rand_dflt = Integer.valueOf(32);
 
     private static final Attribute<?>[] ATTRIBUTES = {
-            ATTR_GATE_UNDEFINED, sim_limit_attr, sim_rand_attr,
+            ATTR_GATE_UNDEFINED, sim_limit_attr, sim_rand_attr, ATTR_SIM_QUEUE,
+            ATTR_SIM_ZERO_DELAY, ATTR_SIM_PARALLEL,
     };
     private static final Object[] DEFAULTS = {
             GATE_UNDEFINED_IGNORE, Integer.valueOf(1000), Integer.valueOf(0),
+            SIM_QUEUE_WHEEL, Boolean.FALSE, Boolean.FALSE,
     };
 
     private AttributeSet attrs;
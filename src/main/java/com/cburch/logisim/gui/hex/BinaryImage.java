@@ -0,0 +1,138 @@
+/* Copyright (c) 2010, Carl Burch. License information is located in the
+ * com.cburch.logisim.Main source code and at www.cburch.com/logisim/. */
+
+package com.cburch.logisim.gui.hex;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+import com.cburch.hex.HexModel;
+import static com.cburch.logisim.util.LocaleString.*;
+
+/**
+ * Reads and writes raw binary images, which hold each value in one, two
+ * or four bytes, least significant byte first, with nothing else in the
+ * file. This is also the layout of a memory mapped onto a file.
+ */
+class BinaryImage {
+    private BinaryImage() { }
+
+    static void open(HexModel dst, File src) throws IOException {
+        FileInputStream in;
+        try {
+            in = new FileInputStream(src);
+        } catch (IOException e) {
+            throw new IOException(getFromLocale("hexFileOpenError"));
+        }
+        try {
+            open(dst, in.getChannel());
+        } finally {
+            try {
+                in.close();
+            } catch (IOException e) { }
+        }
+    }
+
+    private static void open(HexModel dst, FileChannel in) throws IOException {
+        int bytes = ImageBuffer.bytesPerValue(dst);
+        ByteBuffer buf = ByteBuffer.allocateDirect(ImageBuffer.PAGE_SIZE * bytes);
+        buf.order(ByteOrder.LITTLE_ENDIAN);
+        int[] values = new int[ImageBuffer.PAGE_SIZE];
+        long offs = dst.getFirstOffset();
+        long last = dst.getLastOffset();
+        boolean done = false;
+        while (!done) {
+            buf.clear();
+            try {
+                while (buf.hasRemaining() && in.read(buf) >= 0) { }
+            } catch (IOException e) {
+                throw new IOException(getFromLocale("hexFileReadError"));
+            }
+            done = buf.hasRemaining();
+            // a value cut off by the end of the file is padded with zeroes
+            while (buf.position() % bytes != 0) {
+                buf.put((byte) 0);
+            }
+            buf.flip();
+            int n = buf.remaining() / bytes;
+            if (n == 0) {
+                break;
+            }
+            if (offs + n - 1 > last) {
+                throw new IOException(getFromLocale("hexFileSizeError"));
+            }
+            for (int i = 0; i < n; i++) {
+                switch (bytes) {
+                case 1: values[i] = buf.get() & 0xff; break;
+                case 2: values[i] = buf.getShort() & 0xffff; break;
+                default: values[i] = buf.getInt(); break;
+                }
+            }
+            dst.set(offs, n == values.length ? values : Arrays.copyOf(values, n));
+            offs += n;
+        }
+        if (offs <= last) {
+            dst.fill(offs, last - offs + 1, 0);
+        }
+    }
+
+    /** Writes the model's values up to its last nonzero one, as loading
+     * an image sets the values after it to zero. */
+    static void save(File dst, HexModel src) throws IOException {
+        FileOutputStream out;
+        try {
+            out = new FileOutputStream(dst);
+        } catch (IOException e) {
+            throw new IOException(getFromLocale("hexFileOpenError"));
+        }
+        try {
+            save(out.getChannel(), src);
+        } finally {
+            try {
+                out.close();
+            } catch (IOException e) {
+                throw new IOException(getFromLocale("hexFileWriteError"));
+            }
+        }
+    }
+
+    private static void save(FileChannel out, HexModel src) throws IOException {
+        int bytes = ImageBuffer.bytesPerValue(src);
+        ByteBuffer buf = ByteBuffer.allocateDirect(ImageBuffer.PAGE_SIZE * bytes);
+        buf.order(ByteOrder.LITTLE_ENDIAN);
+        long last = ImageBuffer.lastNonzeroOffset(src);
+        long offs = src.getFirstOffset();
+        // values before this one are known to be zero without asking
+        long next = ImageBuffer.nextNonzeroOffset(src, offs);
+        while (offs <= last) {
+            buf.clear();
+            long end = Math.min(last + 1, offs + ImageBuffer.PAGE_SIZE);
+            for (; offs < end; offs++) {
+                int val = 0;
+                if (offs == next) {
+                    val = src.get(offs);
+                    next = ImageBuffer.nextNonzeroOffset(src, offs + 1);
+                }
+                switch (bytes) {
+                case 1: buf.put((byte) val); break;
+                case 2: buf.putShort((short) val); break;
+                default: buf.putInt(val); break;
+                }
+            }
+            buf.flip();
+            try {
+                while (buf.hasRemaining()) {
+                    out.write(buf);
+                }
+            } catch (IOException e) {
+                throw new IOException(getFromLocale("hexFileWriteError"));
+            }
+        }
+    }
+}
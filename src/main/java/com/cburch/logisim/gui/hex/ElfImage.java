@@ -0,0 +1,114 @@
+/* Copyright (c) 2010, Carl Burch. License information is located in the
+ * com.cburch.logisim.Main source code and at www.cburch.com/logisim/. */
+
+package com.cburch.logisim.gui.hex;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+
+import com.cburch.hex.HexModel;
+import static com.cburch.logisim.util.LocaleString.*;
+
+/**
+ * Loads the segments of an ELF executable. Each loadable segment's bytes
+ * from the file are placed at its physical address, counted in bytes from
+ * the start of the memory, and gathered into values in the file's byte
+ * order; everything else, including the rest of each segment, is zero.
+ */
+class ElfImage {
+    private ElfImage() { }
+
+    static final byte[] MAGIC = { 0x7f, 'E', 'L', 'F' };
+
+    private static final int CLASS_32 = 1;
+    private static final int CLASS_64 = 2;
+    private static final int DATA_BIG_ENDIAN = 2;
+    private static final int PT_LOAD = 1;
+
+    /** How many bytes of a segment are read at once. */
+    private static final int CHUNK_SIZE = 1 << 16;
+
+    static void open(HexModel dst, File src) throws IOException {
+        FileInputStream in;
+        try {
+            in = new FileInputStream(src);
+        } catch (IOException e) {
+            throw new IOException(getFromLocale("hexFileOpenError"));
+        }
+        try {
+            open(dst, in.getChannel());
+        } finally {
+            try {
+                in.close();
+            } catch (IOException e) { }
+        }
+    }
+
+    private static void open(HexModel dst, FileChannel in) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(64);
+        read(in, header, 0);
+        if (header.limit() < 52 || header.get(4) < CLASS_32 || header.get(4) > CLASS_64) {
+            throw new IOException(getFromLocale("hexElfFormatError"));
+        }
+        boolean wide = header.get(4) == CLASS_64;
+        boolean bigEndian = header.get(5) == DATA_BIG_ENDIAN;
+        header.order(bigEndian ? ByteOrder.BIG_ENDIAN : ByteOrder.LITTLE_ENDIAN);
+        long phoff = wide ? header.getLong(0x20) : header.getInt(0x1c) & 0xffffffffL;
+        int phentsize = header.getShort(wide ? 0x36 : 0x2a) & 0xffff;
+        int phnum = header.getShort(wide ? 0x38 : 0x2c) & 0xffff;
+        if (phentsize < (wide ? 56 : 32)) {
+            throw new IOException(getFromLocale("hexElfFormatError"));
+        }
+
+        ImageBuffer image = new ImageBuffer(dst, bigEndian);
+        image.clear();
+        ByteBuffer ph = ByteBuffer.allocate(phentsize);
+        ph.order(header.order());
+        ByteBuffer chunk = ByteBuffer.allocate(CHUNK_SIZE);
+        for (int i = 0; i < phnum; i++) {
+            read(in, ph, phoff + (long) i * phentsize);
+            if (ph.limit() < phentsize) {
+                throw new IOException(getFromLocale("hexElfFormatError"));
+            }
+            if (ph.getInt(0) != PT_LOAD) {
+                continue;
+            }
+            long offset = wide ? ph.getLong(8) : ph.getInt(4) & 0xffffffffL;
+            long paddr = wide ? ph.getLong(24) : ph.getInt(12) & 0xffffffffL;
+            long filesz = wide ? ph.getLong(32) : ph.getInt(16) & 0xffffffffL;
+            for (long done = 0; done < filesz; ) {
+                chunk.limit((int) Math.min(CHUNK_SIZE, filesz - done));
+                read(in, chunk, offset + done);
+                int n = chunk.limit();
+                if (n == 0) {
+                    throw new IOException(getFromLocale("hexElfFormatError"));
+                }
+                image.put(paddr + done, chunk.array(), 0, n);
+                done += n;
+            }
+        }
+        image.flush();
+    }
+
+    // Fills the buffer from the position in the file, or as much of it as
+    // the file holds, and flips it for reading.
+    private static void read(FileChannel in, ByteBuffer buf, long pos)
+            throws IOException {
+        buf.position(0);
+        try {
+            while (buf.hasRemaining()) {
+                int n = in.read(buf, pos + buf.position());
+                if (n < 0) {
+                    break;
+                }
+            }
+        } catch (IOException e) {
+            throw new IOException(getFromLocale("hexFileReadError"));
+        }
+        buf.flip();
+    }
+}
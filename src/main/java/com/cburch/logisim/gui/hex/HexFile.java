@@ -5,13 +5,14 @@ package com.cburch.logisim.gui.hex;
 
 import java.io.BufferedReader;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.io.Reader;
 import java.io.Writer;
+import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.StringTokenizer;
 
 import com.cburch.hex.HexModel;
 import static com.cburch.logisim.util.LocaleString.*;
@@ -20,120 +21,135 @@ public class HexFile {
     private HexFile() { }
 
     private static final String RAW_IMAGE_HEADER = "v2.0 raw";
-    private static final String COMMENT_MARKER = "#";
+    private static final String BINARY_SUFFIX = ".bin";
+    // not ".hex", which many name their text images
+    private static final String[] INTEL_HEX_SUFFIXES = { ".ihex", ".ihx" };
 
+    /**
+     * Reads the values of a text image, scanning its characters directly
+     * rather than splitting it into lines and tokens. A token is either a
+     * hexadecimal value or a decimal count, an asterisk and a hexadecimal
+     * value repeated that many times; a comment runs to the end of its
+     * line.
+     */
     private static class HexReader {
-        private BufferedReader in;
+        private Reader in;
+        private char[] buf = new char[8192];
+        private int bufPos = 0;
+        private int bufLen = 0;
         private int[] data;
-        private StringTokenizer curLine;
         private long leftCount;
         private long leftValue;
 
-        public HexReader(BufferedReader in) throws IOException {
+        public HexReader(Reader in) {
             this.in = in;
             data = new int[4096];
-            curLine = findNonemptyLine();
         }
 
-        private StringTokenizer findNonemptyLine() throws IOException {
-            String line = in.readLine();
-            while (line != null) {
-                int index = line.indexOf(COMMENT_MARKER);
-                if (index >= 0) {
-                    line = line.substring(0, index);
+        private int read() throws IOException {
+            if (bufPos == bufLen) {
+                bufLen = in.read(buf, 0, buf.length);
+                bufPos = 0;
+                if (bufLen <= 0) {
+                    bufLen = 0;
+                    return -1;
                 }
-
-                StringTokenizer ret = new StringTokenizer(line);
-                if (ret.hasMoreTokens()) return ret;
-                line = this.in.readLine();
             }
-            return null;
+            int ret = buf[bufPos];
+            bufPos++;
+            return ret;
         }
 
-        private String nextToken() throws IOException {
-            if (curLine != null && curLine.hasMoreTokens()) {
-                return curLine.nextToken();
-            } else {
-                curLine = findNonemptyLine();
-                return curLine == null ? null : curLine.nextToken();
+        // Reads the next token with a nonzero count into leftCount and
+        // leftValue, returning false at the end of the input.
+        private boolean readToken() throws IOException {
+            while (true) {
+                int c = read();
+                while (c >= 0 && (Character.isWhitespace(c) || c == '#')) {
+                    if (c == '#') {
+                        while (c >= 0 && c != '\n' && c != '\r') {
+                            c = read();
+                        }
+                    } else {
+                        c = read();
+                    }
+                }
+                if (c < 0) {
+                    return false;
+                }
+
+                long count = 1;
+                long value = 0;
+                long decimal = 0;
+                int digits = 0;
+                boolean isDecimal = true;
+                boolean starred = false;
+                for (; c >= 0 && !Character.isWhitespace(c) && c != '#'; c = read()) {
+                    int digit = Character.digit(c, 16);
+                    if (c == '*' && !starred && digits > 0 && isDecimal) {
+                        count = decimal;
+                        value = 0;
+                        digits = 0;
+                        starred = true;
+                    } else if (digit < 0 || digits >= 16) {
+                        throw new IOException(getFromLocale("hexNumberFormatError"));
+                    } else {
+                        value = (value << 4) | digit;
+                        decimal = 10 * decimal + digit;
+                        isDecimal &= digit < 10;
+                        digits++;
+                    }
+                }
+                if (digits == 0) {
+                    throw new IOException(getFromLocale("hexNumberFormatError"));
+                }
+                if (c == '#') {
+                    while (c >= 0 && c != '\n' && c != '\r') {
+                        c = read();
+                    }
+                }
+                if (count > 0) {
+                    leftCount = count;
+                    leftValue = value;
+                    return true;
+                }
             }
         }
 
         public boolean hasNext() throws IOException {
-            if (leftCount > 0) {
-                return true;
-            } else if (curLine != null && curLine.hasMoreTokens()) {
-                return true;
-            } else {
-                curLine = findNonemptyLine();
-                return curLine != null;
-            }
+            return leftCount > 0 || readToken();
         }
 
         public int[] next() throws IOException {
             int pos = 0;
-            if (leftCount > 0) {
+            while (pos < data.length && (leftCount > 0 || readToken())) {
                 int n = (int) Math.min(data.length - pos, leftCount);
                 if (n == 1) {
                     data[pos] = (int) leftValue;
-                    pos++;
-                    leftCount--;
                 } else {
                     Arrays.fill(data, pos, pos + n, (int) leftValue);
-                    pos += n;
-                    leftCount -= n;
-                }
-            }
-            if (pos >= data.length) return data;
-
-            for (String tok = nextToken(); tok != null; tok = nextToken()) {
-                try {
-                    int star = tok.indexOf("*");
-                    if (star < 0) {
-                        leftCount = 1;
-                        leftValue = Long.parseLong(tok, 16);
-                    } else {
-                        leftCount = Long.parseLong(tok.substring(0, star));
-                        leftValue = Long.parseLong(tok.substring(star + 1), 16);
-                    }
-                } catch (NumberFormatException e) {
-                    throw new IOException(getFromLocale("hexNumberFormatError"));
                 }
-
-                int n = (int) Math.min(data.length - pos, leftCount);
-                if (n == 1) {
-                    data[pos] = (int) leftValue;
-                    pos++;
-                    leftCount--;
-                } else {
-                    Arrays.fill(data, pos, pos + n, (int) leftValue);
-                    pos += n;
-                    leftCount -= n;
-                }
-                if (pos >= data.length) return data;
-            }
-
-            if (pos >= data.length) {
-                return data;
-            } else {
-                int[] ret = new int[pos];
-                System.arraycopy(data, 0, ret, 0, pos);
-                return ret;
+                pos += n;
+                leftCount -= n;
             }
+            return pos == data.length ? data : Arrays.copyOf(data, pos);
         }
     }
 
     public static void save(Writer out, HexModel src) throws IOException {
         long first = src.getFirstOffset();
-        long last = src.getLastOffset();
-        while (last > first && src.get(last) == 0) last--;
+        long last = Math.max(first, ImageBuffer.lastNonzeroOffset(src));
         int tokens = 0;
         long cur = 0;
         while (cur <= last) {
             int val = src.get(cur);
             long start = cur;
             cur++;
-            while (cur <= last && src.get(cur) == val) cur++;
+            if (val == 0) {
+                cur = Math.min(ImageBuffer.nextNonzeroOffset(src, cur), last + 1);
+            } else {
+                while (cur <= last && src.get(cur) == val) cur++;
+            }
             long len = cur - start;
             if (len < 4) { cur = start + 1; len = 1; }
             try {
@@ -149,7 +165,7 @@ public class HexFile {
     }
 
     public static void open(HexModel dst, Reader in) throws IOException {
-        HexReader reader = new HexReader(new BufferedReader(in));
+        HexReader reader = new HexReader(in);
         long offs = dst.getFirstOffset();
         while (reader.hasNext()) {
             int[] values = reader.next();
@@ -163,28 +179,73 @@ public class HexFile {
     }
 
     public static int[] parse(Reader in) throws IOException {
-        HexReader reader = new HexReader(new BufferedReader(in));
+        // the chunks are kept apart and copied together once at the end
+        HexReader reader = new HexReader(in);
+        ArrayList<int[]> chunks = new ArrayList<int[]>();
         int cur = 0;
-        int[] data = new int[4096];
         while (reader.hasNext()) {
-            int[] values = reader.next();
-            if (cur + values.length > data.length) {
-                int[] oldData = data;
-                data = new int[Math.max(cur + values.length, 3 * data.length / 2)];
-                System.arraycopy(oldData, 0, data, 0, cur);
-            }
-            System.arraycopy(values, 0, data, cur, values.length);
+            int[] values = reader.next().clone();
+            chunks.add(values);
             cur += values.length;
         }
-        if (cur != data.length) {
-            int[] oldData = data;
-            data = new int[cur];
-            System.arraycopy(oldData, 0, data, 0, cur);
+        int[] data = new int[cur];
+        cur = 0;
+        for (int[] values : chunks) {
+            System.arraycopy(values, 0, data, cur, values.length);
+            cur += values.length;
         }
         return data;
     }
 
+    /**
+     * Loads an image file into the model, which may be a text image, a
+     * raw binary image, an Intel HEX file or an ELF executable. A binary
+     * image is known by the suffix of its name, and the others by how
+     * they begin.
+     */
     public static void open(HexModel dst, File src) throws IOException {
+        if (src.getName().toLowerCase().endsWith(BINARY_SUFFIX)) {
+            BinaryImage.open(dst, src);
+            return;
+        }
+        byte[] magic = readMagic(src);
+        if (Arrays.equals(magic, ElfImage.MAGIC)) {
+            ElfImage.open(dst, src);
+        } else if (magic.length > 0 && magic[0] == IntelHexImage.RECORD_MARK) {
+            IntelHexImage.open(dst, src);
+        } else {
+            openText(dst, src);
+        }
+    }
+
+    private static byte[] readMagic(File src) throws IOException {
+        FileInputStream in;
+        try {
+            in = new FileInputStream(src);
+        } catch (IOException e) {
+            throw new IOException(getFromLocale("hexFileOpenError"));
+        }
+        try {
+            byte[] ret = new byte[ElfImage.MAGIC.length];
+            int n = 0;
+            while (n < ret.length) {
+                int k = in.read(ret, n, ret.length - n);
+                if (k < 0) {
+                    break;
+                }
+                n += k;
+            }
+            return Arrays.copyOf(ret, n);
+        } catch (IOException e) {
+            throw new IOException(getFromLocale("hexFileReadError"));
+        } finally {
+            try {
+                in.close();
+            } catch (IOException e) { }
+        }
+    }
+
+    private static void openText(HexModel dst, File src) throws IOException {
         BufferedReader in;
         try {
             in = new BufferedReader(new FileReader(src));
@@ -193,7 +254,7 @@ public class HexFile {
         }
         try {
             String header = in.readLine();
-            if (!header.equals(RAW_IMAGE_HEADER)) {
+            if (header == null || !header.equals(RAW_IMAGE_HEADER)) {
                 throw new IOException(getFromLocale("hexHeaderFormatError"));
             }
             open(dst, in);
@@ -211,7 +272,23 @@ public class HexFile {
         }
     }
 
+    /**
+     * Saves the model to an image file, as a raw binary image or an Intel
+     * HEX file if the suffix of its name calls for one, and as a text
+     * image otherwise.
+     */
     public static void save(File dst, HexModel src) throws IOException {
+        String name = dst.getName().toLowerCase();
+        if (name.endsWith(BINARY_SUFFIX)) {
+            BinaryImage.save(dst, src);
+            return;
+        }
+        for (String suffix : INTEL_HEX_SUFFIXES) {
+            if (name.endsWith(suffix)) {
+                IntelHexImage.save(dst, src);
+                return;
+            }
+        }
         FileWriter out;
         try {
             out = new FileWriter(dst);
@@ -0,0 +1,119 @@
+/* Copyright (c) 2010, Carl Burch. License information is located in the
+ * com.cburch.logisim.Main source code and at www.cburch.com/logisim/. */
+
+package com.cburch.logisim.gui.hex;
+
+import java.io.IOException;
+
+import com.cburch.hex.HexModel;
+import com.cburch.hex.SparseHexModel;
+import static com.cburch.logisim.util.LocaleString.*;
+
+/**
+ * Gathers the bytes of an image, addressed from the model's first offset
+ * and in whatever order a file lists them, into the model's values. Each
+ * value takes one, two or four bytes, as its width requires. The values
+ * are written a page at a time, so a model kept in pages is written a
+ * whole page per call.
+ */
+class ImageBuffer {
+    static final int PAGE_SIZE = 4096;
+
+    /** Returns the number of bytes each value of the model takes in an
+     * image. */
+    static int bytesPerValue(HexModel model) {
+        int width = model.getValueWidth();
+        return width <= 8 ? 1 : width <= 16 ? 2 : 4;
+    }
+
+    /** Returns the offset of the model's last nonzero value, or one before
+     * its first offset if every value is zero. */
+    static long lastNonzeroOffset(HexModel model) {
+        if (model instanceof SparseHexModel) {
+            return ((SparseHexModel) model).getLastNonzeroOffset();
+        }
+        long first = model.getFirstOffset();
+        long offs = model.getLastOffset();
+        while (offs >= first && model.get(offs) == 0) {
+            offs--;
+        }
+        return offs;
+    }
+
+    /** Returns the offset of the model's first nonzero value at or after
+     * the given one, or one past its last offset if there is none. */
+    static long nextNonzeroOffset(HexModel model, long offs) {
+        if (model instanceof SparseHexModel) {
+            return ((SparseHexModel) model).getNextNonzeroOffset(offs);
+        }
+        long last = model.getLastOffset();
+        offs = Math.max(offs, model.getFirstOffset());
+        while (offs <= last && model.get(offs) == 0) {
+            offs++;
+        }
+        return offs;
+    }
+
+    private HexModel dst;
+    private int bytes;
+    private boolean bigEndian;
+    private long first;
+    private long last;
+    private int[] page = null;
+    private long pageStart = -1;
+
+    ImageBuffer(HexModel dst, boolean bigEndian) {
+        this.dst = dst;
+        this.bytes = bytesPerValue(dst);
+        this.bigEndian = bigEndian;
+        this.first = dst.getFirstOffset();
+        this.last = dst.getLastOffset();
+    }
+
+    /** Clears the model, as an image sets every value it does not list
+     * to zero. */
+    void clear() {
+        dst.fill(first, last - first + 1, 0);
+    }
+
+    void put(long addr, byte[] data, int start, int len) throws IOException {
+        for (int i = 0; i < len; i++) {
+            put(addr + i, data[start + i]);
+        }
+    }
+
+    void put(long addr, int b) throws IOException {
+        if (addr < 0) {
+            throw new IOException(getFromLocale("hexFileSizeError"));
+        }
+        long offs = first + addr / bytes;
+        if (page == null || offs < pageStart || offs >= pageStart + page.length) {
+            if (offs > last) {
+                throw new IOException(getFromLocale("hexFileSizeError"));
+            }
+            loadPage(offs - (offs - first) % PAGE_SIZE);
+        }
+        int index = (int) (addr % bytes);
+        int shift = 8 * (bigEndian ? bytes - 1 - index : index);
+        int i = (int) (offs - pageStart);
+        page[i] = (page[i] & ~(0xff << shift)) | ((b & 0xff) << shift);
+    }
+
+    /** Writes the values gathered since the last call to the model. */
+    void flush() {
+        if (page != null) {
+            dst.set(pageStart, page);
+            page = null;
+        }
+    }
+
+    private void loadPage(long start) {
+        flush();
+        int len = (int) Math.min(PAGE_SIZE, last - start + 1);
+        page = new int[len];
+        for (int i = 0; i < len; i++) {
+            page[i] = dst.get(start + i);
+        }
+        pageStart = start;
+    }
+}
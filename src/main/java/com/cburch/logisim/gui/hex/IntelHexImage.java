@@ -0,0 +1,185 @@
+/* Copyright (c) 2010, Carl Burch. License information is located in the
+ * com.cburch.logisim.Main source code and at www.cburch.com/logisim/. */
+
+package com.cburch.logisim.gui.hex;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+
+import com.cburch.hex.HexModel;
+import static com.cburch.logisim.util.LocaleString.*;
+
+/**
+ * Reads and writes images in the Intel HEX format. Its records address
+ * bytes, which are gathered into values least significant byte first,
+ * as in a binary image. Data, end-of-file and both kinds of extended
+ * address records are understood; start address records are skipped.
+ */
+class IntelHexImage {
+    private IntelHexImage() { }
+
+    static final char RECORD_MARK = ':';
+
+    private static final int DATA = 0;
+    private static final int END_OF_FILE = 1;
+    private static final int EXTENDED_SEGMENT = 2;
+    private static final int EXTENDED_LINEAR = 4;
+
+    /** The most data bytes that a saved record holds. */
+    private static final int RECORD_BYTES = 16;
+
+    private static final char[] HEX_DIGITS = "0123456789ABCDEF".toCharArray();
+
+    static void open(HexModel dst, File src) throws IOException {
+        BufferedReader in;
+        try {
+            in = new BufferedReader(new FileReader(src));
+        } catch (IOException e) {
+            throw new IOException(getFromLocale("hexFileOpenError"));
+        }
+        try {
+            ImageBuffer image = new ImageBuffer(dst, false);
+            image.clear();
+            long base = 0;
+            byte[] record = new byte[5 + 255];
+            String line;
+            while ((line = in.readLine()) != null) {
+                line = line.trim();
+                if (line.length() == 0) {
+                    continue;
+                }
+                int len = parseRecord(line, record);
+                int type = record[3] & 0xff;
+                if (type == DATA) {
+                    long addr = ((record[1] & 0xff) << 8) | (record[2] & 0xff);
+                    image.put(base + addr, record, 4, len);
+                } else if (type == END_OF_FILE) {
+                    break;
+                } else if (type == EXTENDED_SEGMENT || type == EXTENDED_LINEAR) {
+                    if (len != 2) {
+                        throw new IOException(getFromLocale("hexNumberFormatError"));
+                    }
+                    long upper = ((record[4] & 0xff) << 8) | (record[5] & 0xff);
+                    base = type == EXTENDED_SEGMENT ? upper << 4 : upper << 16;
+                }
+            }
+            image.flush();
+        } finally {
+            try {
+                in.close();
+            } catch (IOException e) { }
+        }
+    }
+
+    // Decodes the bytes of a record into the array, checking its length
+    // and checksum, and returns the number of data bytes.
+    private static int parseRecord(String line, byte[] record)
+            throws IOException {
+        int n = (line.length() - 1) / 2;
+        if (line.charAt(0) != RECORD_MARK || line.length() % 2 != 1
+                || n < 5 || n > record.length) {
+            throw new IOException(getFromLocale("hexNumberFormatError"));
+        }
+        int sum = 0;
+        for (int i = 0; i < n; i++) {
+            int hi = Character.digit(line.charAt(2 * i + 1), 16);
+            int lo = Character.digit(line.charAt(2 * i + 2), 16);
+            if (hi < 0 || lo < 0) {
+                throw new IOException(getFromLocale("hexNumberFormatError"));
+            }
+            record[i] = (byte) ((hi << 4) | lo);
+            sum += record[i];
+        }
+        int len = record[0] & 0xff;
+        if (n != 5 + len || (sum & 0xff) != 0) {
+            throw new IOException(getFromLocale("hexNumberFormatError"));
+        }
+        return len;
+    }
+
+    /** Writes the model's values up to its last nonzero one, skipping
+     * records whose bytes are all zero. */
+    static void save(File dst, HexModel src) throws IOException {
+        Writer out;
+        try {
+            out = new BufferedWriter(new FileWriter(dst));
+        } catch (IOException e) {
+            throw new IOException(getFromLocale("hexFileOpenError"));
+        }
+        try {
+            try {
+                save(out, src);
+            } catch (IOException e) {
+                throw new IOException(getFromLocale("hexFileWriteError"));
+            }
+        } finally {
+            try {
+                out.close();
+            } catch (IOException e) {
+                throw new IOException(getFromLocale("hexFileWriteError"));
+            }
+        }
+    }
+
+    private static void save(Writer out, HexModel src) throws IOException {
+        int bytes = ImageBuffer.bytesPerValue(src);
+        long first = src.getFirstOffset();
+        long end = (ImageBuffer.lastNonzeroOffset(src) - first + 1) * bytes;
+        byte[] data = new byte[RECORD_BYTES];
+        long upper = 0;
+        for (long addr = 0; addr < end; addr += RECORD_BYTES) {
+            // skip ahead to the record holding the next nonzero value
+            long next = (ImageBuffer.nextNonzeroOffset(src, first + addr / bytes) - first) * bytes;
+            if (next >= end) {
+                break;
+            }
+            addr = Math.max(addr, next - next % RECORD_BYTES);
+            int len = (int) Math.min(RECORD_BYTES, end - addr);
+            boolean zero = true;
+            for (int i = 0; i < len; i++) {
+                long a = addr + i;
+                int val = src.get(first + a / bytes);
+                data[i] = (byte) (val >>> (8 * (a % bytes)));
+                zero &= data[i] == 0;
+            }
+            if (zero) {
+                continue;
+            }
+            if (addr >>> 16 != upper) {
+                upper = addr >>> 16;
+                byte[] ext = { (byte) (upper >>> 8), (byte) upper };
+                writeRecord(out, EXTENDED_LINEAR, 0, ext, 2);
+            }
+            writeRecord(out, DATA, (int) addr & 0xffff, data, len);
+        }
+        writeRecord(out, END_OF_FILE, 0, data, 0);
+    }
+
+    private static void writeRecord(Writer out, int type, int addr,
+            byte[] data, int len) throws IOException {
+        char[] line = new char[11 + 2 * len];
+        line[0] = RECORD_MARK;
+        int sum = len + (addr >>> 8) + addr + type;
+        putByte(line, 1, len);
+        putByte(line, 3, addr >>> 8);
+        putByte(line, 5, addr);
+        putByte(line, 7, type);
+        for (int i = 0; i < len; i++) {
+            putByte(line, 9 + 2 * i, data[i]);
+            sum += data[i];
+        }
+        putByte(line, 9 + 2 * len, -sum);
+        out.write(line);
+        out.write('\n');
+    }
+
+    private static void putByte(char[] line, int pos, int b) {
+        line[pos] = HEX_DIGITS[(b >>> 4) & 0xf];
+        line[pos + 1] = HEX_DIGITS[b & 0xf];
+    }
+}
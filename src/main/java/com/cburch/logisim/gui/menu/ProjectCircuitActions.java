@@ -9,6 +9,7 @@ import java.awt.GridBagLayout;
 import java.awt.event.WindowEvent;
 import java.awt.event.WindowFocusListener;
 import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 
 import javax.swing.JDialog;
@@ -17,6 +18,8 @@ import javax.swing.JLabel;
 import javax.swing.JOptionPane;
 import javax.swing.JPanel;
 import javax.swing.JTextField;
+import javax.swing.ProgressMonitor;
+import javax.swing.SwingUtilities;
 
 import com.cburch.logisim.analyze.gui.Analyzer;
 import com.cburch.logisim.analyze.gui.AnalyzerManager;
@@ -24,6 +27,8 @@ import com.cburch.logisim.analyze.model.AnalyzerModel;
 import com.cburch.logisim.circuit.Analyze;
 import com.cburch.logisim.circuit.AnalyzeException;
 import com.cburch.logisim.circuit.Circuit;
+import com.cburch.logisim.circuit.CircuitEvent;
+import com.cburch.logisim.circuit.CircuitListener;
 import com.cburch.logisim.file.LogisimFileActions;
 import com.cburch.logisim.instance.Instance;
 import com.cburch.logisim.instance.StdAttr;
@@ -201,10 +206,120 @@ public class ProjectCircuitActions {
         }
 
         // As a backup measure, we compute a truth table.
-        Analyze.computeTable(analyzer.getModel(), proj, circuit, pinNames);
+        computeTable(proj, circuit, analyzer, pinNames, inputNames, outputNames);
         analyzer.setSelectedTab(Analyzer.TABLE_TAB);
     }
 
+    private static void computeTable(final Project proj, final Circuit circuit,
+            final Analyzer analyzer, final Map<Instance, String> pinNames,
+            final List<String> inputNames, final List<String> outputNames) {
+        ProgressMonitor monitor = new ProgressMonitor(proj.getFrame(),
+                getFromLocale("analyzeTableProgress"), null,
+                0, 1 << inputNames.size());
+        monitor.setMillisToDecideToPopup(100);
+        monitor.setMillisToPopup(200);
+
+        // The table is computed in a thread of its own, so that the
+        // window stays responsive and the computation can be canceled;
+        // it goes into a separate model and is copied over once done.
+        final AnalyzerModel result = new AnalyzerModel();
+        final TableComputation task = new TableComputation(monitor,
+                proj.getLogisimFile().getCircuits());
+        task.start();
+        new Thread("Truth table") {
+            @Override
+            public void run() {
+                boolean computed = false;
+                try {
+                    computed = Analyze.computeTable(result, proj, circuit,
+                            pinNames, task);
+                } catch (RuntimeException e) {
+                    // an edit may have been caught halfway through
+                    if (!task.isCanceled()) {
+                        throw e;
+                    }
+                } finally {
+                    final boolean done = computed;
+                    SwingUtilities.invokeLater(new Runnable() {
+                        @Override
+                        public void run() {
+                            task.stop();
+                            AnalyzerModel model = analyzer.getModel();
+                            if (done && !task.isCanceled()
+                                    && model.getCurrentCircuit() == circuit
+                                    && model.getInputs().getAll().equals(inputNames)
+                                    && model.getOutputs().getAll().equals(outputNames)) {
+                                model.setVariables(inputNames, outputNames);
+                                for (int i = 0; i < outputNames.size(); i++) {
+                                    model.getTruthTable().setOutputColumn(i,
+                                            result.getTruthTable().getOutputEntries(i));
+                                }
+                            }
+                        }
+                    });
+                }
+            }
+        }.start();
+    }
+
+    /**
+     * Tracks whether a truth table being computed is wanted still. It is
+     * canceled through its progress monitor, which only the event thread
+     * may ask, or by any edit to the project's circuits, which would
+     * change the circuit under the simulation computing the table.
+     */
+    private static class TableComputation
+            implements Analyze.TableProgress, CircuitListener {
+        private final ProgressMonitor monitor;
+        private final List<Circuit> circuits;
+        private volatile boolean canceled = false;
+
+        TableComputation(ProgressMonitor monitor, List<Circuit> circuits) {
+            this.monitor = monitor;
+            this.circuits = new ArrayList<Circuit>(circuits);
+        }
+
+        void start() {
+            for (Circuit circ : circuits) {
+                circ.addCircuitListener(this);
+            }
+        }
+
+        void stop() {
+            for (Circuit circ : circuits) {
+                circ.removeCircuitListener(this);
+            }
+            monitor.close();
+        }
+
+        @Override
+        public void setProgress(final int rowsDone, int rowCount) {
+            SwingUtilities.invokeLater(new Runnable() {
+                @Override
+                public void run() {
+                    monitor.setProgress(rowsDone);
+                    if (monitor.isCanceled()) {
+                        canceled = true;
+                    }
+                }
+            });
+        }
+
+        @Override
+        public boolean isCanceled() {
+            return canceled;
+        }
+
+        @Override
+        public void circuitChanged(CircuitEvent event) {
+            int action = event.getAction();
+            if (action != CircuitEvent.ACTION_INVALIDATE
+                    && action != CircuitEvent.TRANSACTION_DONE) {
+                canceled = true;
+            }
+        }
+    }
+
     private static void analyzeError(Project proj, String message) {
         JOptionPane.showMessageDialog(proj.getFrame(), message,
             getFromLocale("analyzeErrorTitle"),
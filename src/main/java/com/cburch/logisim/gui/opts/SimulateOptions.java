@@ -46,6 +46,23 @@ class SimulateOptions extends OptionsPanel {
                     getProject().doAction(OptionsActions.setAttribute(attrs,
                             Options.ATTR_GATE_UNDEFINED, opt.getValue()));
                 }
+            } else if (source == simZeroDelay) {
+                AttributeSet attrs = getOptions().getAttributeSet();
+                getProject().doAction(OptionsActions.setAttribute(attrs,
+                        Options.ATTR_SIM_ZERO_DELAY,
+                        Boolean.valueOf(simZeroDelay.isSelected())));
+            } else if (source == simParallel) {
+                AttributeSet attrs = getOptions().getAttributeSet();
+                getProject().doAction(OptionsActions.setAttribute(attrs,
+                        Options.ATTR_SIM_PARALLEL,
+                        Boolean.valueOf(simParallel.isSelected())));
+            } else if (source == simQueue) {
+                ComboOption opt = (ComboOption) simQueue.getSelectedItem();
+                if (opt != null) {
+                    AttributeSet attrs = getOptions().getAttributeSet();
+                    getProject().doAction(OptionsActions.setAttribute(attrs,
+                            Options.ATTR_SIM_QUEUE, opt.getValue()));
+                }
             }
         }
 
@@ -59,6 +76,12 @@ class SimulateOptions extends OptionsPanel {
                 loadSimLimit((Integer) val);
             } else if (attr == Options.sim_rand_attr) {
                 loadSimRandomness((Integer) val);
+            } else if (attr == Options.ATTR_SIM_QUEUE) {
+                loadSimQueue(val);
+            } else if (attr == Options.ATTR_SIM_ZERO_DELAY) {
+                loadSimZeroDelay((Boolean) val);
+            } else if (attr == Options.ATTR_SIM_PARALLEL) {
+                loadSimParallel((Boolean) val);
             }
         }
 
@@ -80,6 +103,18 @@ class SimulateOptions extends OptionsPanel {
         private void loadSimRandomness(Integer val) {
             simRandomness.setSelected(val.intValue() > 0);
         }
+
+        private void loadSimQueue(Object val) {
+            ComboOption.setSelected(simQueue, val);
+        }
+
+        private void loadSimZeroDelay(Boolean val) {
+            simZeroDelay.setSelected(val != null && val.booleanValue());
+        }
+
+        private void loadSimParallel(Boolean val) {
+            simParallel.setSelected(val != null && val.booleanValue());
+        }
     }
 
     private MyListener myListener = new MyListener();
@@ -96,11 +131,18 @@ class SimulateOptions extends OptionsPanel {
             Integer.valueOf(50000),
     });
     private JCheckBox simRandomness = new JCheckBox();
+    private JCheckBox simZeroDelay = new JCheckBox();
+    private JCheckBox simParallel = new JCheckBox();
     private JLabel gateUndefinedLabel = new JLabel();
     private JComboBox gateUndefined = new JComboBox(new Object[] {
             new ComboOption(Options.GATE_UNDEFINED_IGNORE),
             new ComboOption(Options.GATE_UNDEFINED_ERROR)
         });
+    private JLabel simQueueLabel = new JLabel();
+    private JComboBox simQueue = new JComboBox(new Object[] {
+            new ComboOption(Options.SIM_QUEUE_WHEEL),
+            new ComboOption(Options.SIM_QUEUE_HEAP)
+        });
 
     public SimulateOptions(OptionsFrame window) {
         super(window);
@@ -115,18 +157,31 @@ class SimulateOptions extends OptionsPanel {
         gateUndefinedPanel.add(gateUndefined);
         gateUndefined.addActionListener(myListener);
 
+        JPanel simQueuePanel = new JPanel();
+        simQueuePanel.add(simQueueLabel);
+        simQueuePanel.add(simQueue);
+        simQueue.addActionListener(myListener);
+
         simRandomness.addActionListener(myListener);
+        simZeroDelay.addActionListener(myListener);
+        simParallel.addActionListener(myListener);
 
         setLayout(new TableLayout(1));
         add(simLimitPanel);
         add(gateUndefinedPanel);
+        add(simQueuePanel);
         add(simRandomness);
+        add(simZeroDelay);
+        add(simParallel);
 
         window.getOptions().getAttributeSet().addAttributeListener(myListener);
         AttributeSet attrs = getOptions().getAttributeSet();
         myListener.loadSimLimit(attrs.getValue(Options.sim_limit_attr));
         myListener.loadGateUndefined(attrs.getValue(Options.ATTR_GATE_UNDEFINED));
         myListener.loadSimRandomness(attrs.getValue(Options.sim_rand_attr));
+        myListener.loadSimQueue(attrs.getValue(Options.ATTR_SIM_QUEUE));
+        myListener.loadSimZeroDelay(attrs.getValue(Options.ATTR_SIM_ZERO_DELAY));
+        myListener.loadSimParallel(attrs.getValue(Options.ATTR_SIM_PARALLEL));
     }
 
     @Override
@@ -143,6 +198,9 @@ class SimulateOptions extends OptionsPanel {
     public void localeChanged() {
         simLimitLabel.setText(getFromLocale("simulateLimit"));
         gateUndefinedLabel.setText(getFromLocale("gateUndefined"));
+        simQueueLabel.setText(getFromLocale("simulateQueue"));
         simRandomness.setText(getFromLocale("simulateRandomness"));
+        simZeroDelay.setText(getFromLocale("simulateZeroDelay"));
+        simParallel.setText(getFromLocale("simulateParallel"));
     }
 }
@@ -0,0 +1,411 @@
+/* Copyright (c) 2010, Carl Burch. License information is located in the
+ * com.cburch.logisim.Main source code and at www.cburch.com/logisim/. */
+
+package com.cburch.logisim.gui.start;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+
+import com.cburch.logisim.circuit.Analyze;
+import com.cburch.logisim.circuit.Circuit;
+import com.cburch.logisim.circuit.CircuitState;
+import com.cburch.logisim.circuit.Propagator;
+import com.cburch.logisim.data.BitWidth;
+import com.cburch.logisim.data.Value;
+import com.cburch.logisim.file.LoadFailedException;
+import com.cburch.logisim.file.Loader;
+import com.cburch.logisim.file.LogisimFile;
+import com.cburch.logisim.instance.Instance;
+import com.cburch.logisim.instance.InstanceState;
+import com.cburch.logisim.instance.StdAttr;
+import com.cburch.logisim.proj.Project;
+import com.cburch.logisim.std.wiring.Pin;
+import static com.cburch.logisim.util.LocaleString.getFromLocale;
+
+/**
+ * Runs the circuits listed in a manifest against their test vectors,
+ * for the <code>-batch</code> option, and prints a summary with a line
+ * for each circuit in CSV.
+ *
+ * <p>Each line of the manifest names a circuit file and, optionally, a
+ * file of test vectors, relative to the manifest's directory; the two are
+ * separated by a tab, or by spaces if the line has no tab. Blank lines
+ * and lines starting with <code>#</code> are skipped.</p>
+ *
+ * <p>The first line of a vector file lists the labels of the main
+ * circuit's pins, and each further line gives a value for each of them:
+ * binary digits, most significant first, or hexadecimal after
+ * <code>0x</code>. The inputs are set to their values and the circuit
+ * propagated, after which each output must match its value, where an
+ * <code>x</code> digit matches anything. Without vectors, a circuit
+ * passes if it settles.</p>
+ *
+ * <p>The files are loaded one after another by a single loader, so that
+ * libraries shared between them are loaded once, while the circuits
+ * already loaded are simulated on a pool of threads. A circuit file listed
+ * several times, as with several vector files, is loaded once, and its
+ * lines run one after another on one state, which is reset between
+ * them.</p>
+ */
+class BatchRunner {
+    private static final String STATUS_PASS = "pass";
+    private static final String STATUS_FAIL = "fail";
+    private static final String STATUS_OSCILLATION = "oscillation";
+    private static final String STATUS_LOAD_ERROR = "loaderror";
+    private static final String STATUS_ERROR = "error";
+
+    /** A circuit to run, with its outcome once it has run. */
+    private static class Job {
+        final File circuitFile;
+        final File vectorFile;
+        CircuitState state;
+        String status;
+        String message = "";
+        int vectorCount = 0;
+        int failCount = 0;
+        long loadMillis = 0;
+        long simMillis = 0;
+
+        Job(File circuitFile, File vectorFile) {
+            this.circuitFile = circuitFile;
+            this.vectorFile = vectorFile;
+        }
+    }
+
+    private BatchRunner() { }
+
+    /** Runs the batch and returns the exit code: 0 if every circuit
+     * passed and 1 otherwise. */
+    static int run(Startup args) {
+        ArrayList<Job> jobs;
+        try {
+            jobs = readManifest(args.getBatchFile());
+        } catch (IOException e) {
+            //OK
+            System.err.println(getFromLocale("batchReadError", e.getMessage()));
+            return -1;
+        }
+
+        // the jobs for each circuit file, in the order first listed
+        LinkedHashMap<File,ArrayList<Job>> groups
+            = new LinkedHashMap<File,ArrayList<Job>>();
+        for (Job job : jobs) {
+            ArrayList<Job> group = groups.get(job.circuitFile);
+            if (group == null) {
+                group = new ArrayList<Job>();
+                groups.put(job.circuitFile, group);
+            }
+            group.add(job);
+        }
+
+        int threads = args.getBatchJobs();
+        if (threads <= 0) {
+            threads = Runtime.getRuntime().availableProcessors();
+        }
+        // at most two loaded circuits wait per thread, which keeps the
+        // loader ahead without holding every project in memory
+        final Semaphore slots = new Semaphore(2 * threads);
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        HashMap<Job,Future<?>> results = new HashMap<Job,Future<?>>();
+        Loader loader = new Loader(null);
+        try {
+            for (final ArrayList<Job> group : groups.values()) {
+                slots.acquireUninterruptibly();
+                Job first = group.get(0);
+                load(loader, first, args.getSubstitutions());
+                if (first.status != null) {
+                    slots.release();
+                    for (Job job : group) {
+                        job.status = first.status;
+                        job.message = first.message;
+                    }
+                    continue;
+                }
+                Future<?> result = pool.submit(new Runnable() {
+                    @Override
+                    public void run() {
+                        CircuitState state = group.get(0).state;
+                        try {
+                            for (int i = 0; i < group.size(); i++) {
+                                if (i > 0) {
+                                    // reset rather than made anew
+                                    state.getPropagator().reset();
+                                }
+                                simulate(group.get(i), state);
+                            }
+                        } finally {
+                            group.get(0).state = null;
+                            slots.release();
+                        }
+                    }
+                });
+                for (Job job : group) {
+                    results.put(job, result);
+                }
+            }
+
+            //OK
+            System.out.println("file,status,vectors,failures,load_ms,sim_ms,message");
+            int ret = 0;
+            for (int i = 0; i < jobs.size(); i++) {
+                Job job = jobs.get(i);
+                Future<?> result = results.get(job);
+                if (result != null) {
+                    try {
+                        result.get();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return -1;
+                    } catch (ExecutionException e) {
+                        // the jobs on the same circuit that finished
+                        // before the failure keep their outcome
+                        if (job.status == null) {
+                            job.status = STATUS_ERROR;
+                            job.message = e.getCause().toString();
+                        }
+                    }
+                }
+                if (!STATUS_PASS.equals(job.status)) {
+                    ret = 1;
+                }
+                printSummary(job);
+            }
+            return ret;
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private static ArrayList<Job> readManifest(File manifest) throws IOException {
+        File dir = manifest.getAbsoluteFile().getParentFile();
+        ArrayList<Job> ret = new ArrayList<Job>();
+        BufferedReader in = new BufferedReader(new FileReader(manifest));
+        try {
+            for (String line = in.readLine(); line != null; line = in.readLine()) {
+                line = line.trim();
+                if (line.length() == 0 || line.startsWith("#")) {
+                    continue;
+                }
+                String[] fields = line.split(line.indexOf('\t') >= 0 ? "\t+" : " +");
+                File circ = resolve(dir, fields[0].trim());
+                File vectors = fields.length > 1 ? resolve(dir, fields[1].trim()) : null;
+                ret.add(new Job(circ, vectors));
+            }
+        } finally {
+            in.close();
+        }
+        return ret;
+    }
+
+    private static File resolve(File dir, String name) {
+        File ret = new File(name);
+        return ret.isAbsolute() ? ret : new File(dir, name);
+    }
+
+    // Loads the job's circuit, leaving its status unset if it is ready to
+    // simulate. The states are made here and the wires computed, as
+    // neither is safe to do from several threads at once.
+    private static void load(Loader loader, Job job, Map<File,File> substitutions) {
+        long start = System.currentTimeMillis();
+        try {
+            LogisimFile file = loader.openLogisimFile(job.circuitFile, substitutions);
+            Project proj = new Project(file);
+            Circuit circuit = file.getMainCircuit();
+            Analyze.prepareWires(circuit);
+            job.state = new CircuitState(proj, circuit);
+            job.state.getPropagator();
+        } catch (LoadFailedException e) {
+            job.status = STATUS_LOAD_ERROR;
+            job.message = e.getMessage();
+        } catch (RuntimeException e) {
+            job.status = STATUS_LOAD_ERROR;
+            job.message = e.toString();
+        }
+        job.loadMillis = System.currentTimeMillis() - start;
+    }
+
+    private static void simulate(Job job, CircuitState state) {
+        long start = System.currentTimeMillis();
+        try {
+            Propagator prop = state.getPropagator();
+            prop.propagate();
+            if (job.vectorFile == null) {
+                job.status = prop.isOscillating() ? STATUS_OSCILLATION : STATUS_PASS;
+            } else {
+                runVectors(job, state);
+            }
+        } catch (IOException e) {
+            job.status = STATUS_ERROR;
+            job.message = e.getMessage();
+        } catch (RuntimeException e) {
+            job.status = STATUS_ERROR;
+            job.message = e.toString();
+        }
+        job.simMillis = System.currentTimeMillis() - start;
+    }
+
+    private static void runVectors(Job job, CircuitState state) throws IOException {
+        HashMap<String,Instance> pins = new HashMap<String,Instance>();
+        for (Map.Entry<Instance,String> entry : Analyze.getPinLabels(state.getCircuit()).entrySet()) {
+            pins.put(entry.getValue(), entry.getKey());
+        }
+
+        BufferedReader in = new BufferedReader(new FileReader(job.vectorFile));
+        try {
+            String[] names = null;
+            Instance[] columns = null;
+            int lineNumber = 0;
+            job.status = STATUS_PASS;
+            for (String line = in.readLine(); line != null; line = in.readLine()) {
+                lineNumber++;
+                line = line.trim();
+                if (line.length() == 0 || line.startsWith("#")) {
+                    continue;
+                }
+                String[] fields = line.split("\\s+");
+                if (columns == null) {
+                    names = fields;
+                    columns = new Instance[fields.length];
+                    for (int i = 0; i < fields.length; i++) {
+                        columns[i] = pins.get(fields[i]);
+                        if (columns[i] == null) {
+                            throw new IOException(job.vectorFile.getName() + ":"
+                                + lineNumber + ": no pin labeled " + fields[i]);
+                        }
+                    }
+                    continue;
+                }
+                if (fields.length != columns.length) {
+                    throw new IOException(job.vectorFile.getName() + ":"
+                        + lineNumber + ": expected " + columns.length + " values");
+                }
+
+                Value[] values = new Value[fields.length];
+                for (int i = 0; i < fields.length; i++) {
+                    BitWidth width = columns[i].getAttributeValue(StdAttr.WIDTH);
+                    values[i] = parseValue(fields[i], width);
+                    if (values[i] == null) {
+                        throw new IOException(job.vectorFile.getName() + ":"
+                            + lineNumber + ": bad value " + fields[i]);
+                    }
+                    if (Pin.FACTORY.isInputPin(columns[i])) {
+                        InstanceState pinState = state.getInstanceState(columns[i]);
+                        Pin.FACTORY.setValue(pinState, values[i]);
+                        pinState.fireInvalidated();
+                    }
+                }
+                Propagator prop = state.getPropagator();
+                prop.propagate();
+                job.vectorCount++;
+                if (prop.isOscillating()) {
+                    job.status = STATUS_OSCILLATION;
+                    job.message = "vector at line " + lineNumber;
+                    return;
+                }
+
+                boolean failed = false;
+                for (int i = 0; i < columns.length; i++) {
+                    if (!Pin.FACTORY.isInputPin(columns[i])) {
+                        InstanceState pinState = state.getInstanceState(columns[i]);
+                        Value actual = Pin.FACTORY.getValue(pinState);
+                        if (!matches(values[i], actual)) {
+                            if (!failed && job.failCount == 0) {
+                                job.message = "line " + lineNumber + ": "
+                                    + names[i] + " is " + actual
+                                    + ", expected " + values[i];
+                            }
+                            failed = true;
+                        }
+                    }
+                }
+                if (failed) {
+                    job.failCount++;
+                    job.status = STATUS_FAIL;
+                }
+            }
+        } finally {
+            in.close();
+        }
+    }
+
+    /** Parses a vector value of the given width, or returns null if it is
+     * not one. Digits given as x are unknown. */
+    static Value parseValue(String text, BitWidth width) {
+        int w = width.getWidth();
+        if (text.startsWith("0x") || text.startsWith("0X")) {
+            BigInteger val;
+            try {
+                val = new BigInteger(text.substring(2), 16);
+            } catch (NumberFormatException e) {
+                return null;
+            }
+            if (val.bitLength() > w) {
+                return null;
+            }
+            return Value.createKnown(width, val);
+        }
+        if (text.length() != w) {
+            return null;
+        }
+        Value[] bits = new Value[w];
+        for (int i = 0; i < w; i++) {
+            char c = text.charAt(w - 1 - i);
+            if (c == '0') {
+                bits[i] = Value.FALSE;
+            } else if (c == '1') {
+                bits[i] = Value.TRUE;
+            } else if (c == 'x' || c == 'X') {
+                bits[i] = Value.UNKNOWN;
+            } else {
+                return null;
+            }
+        }
+        return Value.create(bits);
+    }
+
+    /** Returns whether the value matches the expected one on each bit the
+     * expected value defines. */
+    private static boolean matches(Value expected, Value actual) {
+        if (actual.getWidth() != expected.getWidth()) {
+            return false;
+        }
+        for (int i = 0; i < expected.getWidth(); i++) {
+            Value e = expected.get(i);
+            if (e != Value.UNKNOWN && e != actual.get(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static void printSummary(Job job) {
+        //OK
+        System.out.println(csv(job.circuitFile.getPath()) + ","
+            + job.status + ","
+            + job.vectorCount + ","
+            + job.failCount + ","
+            + job.loadMillis + ","
+            + job.simMillis + ","
+            + csv(job.message == null ? "" : job.message));
+    }
+
+    private static String csv(String field) {
+        if (field.indexOf(',') < 0 && field.indexOf('"') < 0
+                && field.indexOf('\n') < 0) {
+            return field;
+        }
+        return "\"" + field.replace("\"", "\"\"") + "\"";
+    }
+}
@@ -104,8 +104,13 @@ public class Startup {
     private ArrayList<File> filesToOpen = new ArrayList<File>();
     private boolean showSplash;
     private File loadFile;
+    private File mapFile = null;
     private HashMap<File,File> substitutions = new HashMap<File,File>();
     private int ttyFormat = 0;
+    private File batchFile = null;
+    private int batchJobs = 0;
+    private long maxTicks = 0;
+    private long timeoutMillis = 0;
 
     // from other sources
     private boolean initialized = false;
@@ -125,10 +130,30 @@ public class Startup {
         return loadFile;
     }
 
+    File getMapFile() {
+        return mapFile;
+    }
+
     int getTtyFormat() {
         return ttyFormat;
     }
 
+    File getBatchFile() {
+        return batchFile;
+    }
+
+    int getBatchJobs() {
+        return batchJobs;
+    }
+
+    long getMaxTicks() {
+        return maxTicks;
+    }
+
+    long getTimeoutMillis() {
+        return timeoutMillis;
+    }
+
     Map<File,File> getSubstitutions() {
         return Collections.unmodifiableMap(substitutions);
     }
@@ -280,7 +305,7 @@ public class Startup {
         boolean isTty = false;
         boolean isClearPreferences = false;
         for (int i = 0; i < args.length; i++) {
-            if (args[i].equals("-tty")) {
+            if (args[i].equals("-tty") || args[i].equals("-batch")) {
                 isTty = true;
             } else if (args[i].equals("-clearprefs") || args[i].equals("-clearprops")) {
                 isClearPreferences = true;
@@ -335,6 +360,12 @@ public class Startup {
                             ret.ttyFormat |= TtyInterface.FORMAT_HALT;
                         } else if (fmt.equals("stats")) {
                             ret.ttyFormat |= TtyInterface.FORMAT_STATISTICS;
+                        } else if (fmt.equals("compiled")) {
+                            ret.ttyFormat |= TtyInterface.FORMAT_COMPILED;
+                        } else if (fmt.equals("verify")) {
+                            ret.ttyFormat |= TtyInterface.FORMAT_VERIFY;
+                        } else if (fmt.equals("perf")) {
+                            ret.ttyFormat |= TtyInterface.FORMAT_PERF;
                         } else {
                             //OK
                             System.err.println(getFromLocale("ttyFormatError"));
@@ -376,6 +407,60 @@ public class Startup {
                     logger.error(getFromLocale("loadNeedsFileError"));
                     return null;
                 }
+            } else if (arg.equals("-map")) {
+                if (i + 1 < args.length) {
+                    i++;
+                    if (ret.mapFile != null) {
+                        //OK
+                        logger.warn(getFromLocale("mapMultipleError"));
+                    }
+                    ret.mapFile = new File(args[i]);
+                } else {
+                    //OK
+                    logger.error(getFromLocale("mapNeedsFileError"));
+                    return null;
+                }
+            } else if (arg.equals("-batch")) {
+                if (i + 1 < args.length) {
+                    i++;
+                    ret.batchFile = new File(args[i]);
+                } else {
+                    //OK
+                    logger.error(getFromLocale("batchNeedsFileError"));
+                    return null;
+                }
+            } else if (arg.equals("-jobs")) {
+                int jobs = -1;
+                if (i + 1 < args.length) {
+                    i++;
+                    try {
+                        jobs = Integer.parseInt(args[i]);
+                    } catch (NumberFormatException e) { }
+                }
+                if (jobs <= 0) {
+                    //OK
+                    logger.error(getFromLocale("batchJobsError"));
+                    return null;
+                }
+                ret.batchJobs = jobs;
+            } else if (arg.equals("-maxticks") || arg.equals("-timeout")) {
+                long limit = -1;
+                if (i + 1 < args.length) {
+                    i++;
+                    try {
+                        limit = Long.parseLong(args[i]);
+                    } catch (NumberFormatException e) { }
+                }
+                if (limit <= 0) {
+                    //OK
+                    logger.error(getFromLocale("argLimitError", arg));
+                    return null;
+                }
+                if (arg.equals("-maxticks")) {
+                    ret.maxTicks = limit;
+                } else {
+                    ret.timeoutMillis = 1000 * limit;
+                }
             } else if (arg.equals("-empty")) {
                 if (ret.templFile != null || ret.templEmpty || ret.templPlain) {
                     //OK
@@ -465,7 +550,7 @@ public class Startup {
                 ret.filesToOpen.add(new File(arg));
             }
         }
-        if (ret.isTty && ret.filesToOpen.isEmpty()) {
+        if (ret.isTty && ret.filesToOpen.isEmpty() && ret.batchFile == null) {
             //OK
             logger.error(getFromLocale("ttyNeedsFileError"));
             return null;
@@ -475,6 +560,11 @@ public class Startup {
             logger.error(getFromLocale("loadNeedsTtyError"));
             return null;
         }
+        if (ret.mapFile != null && !ret.isTty) {
+            //OK
+            logger.error(getFromLocale("mapNeedsTtyError"));
+            return null;
+        }
         return ret;
     }
 
@@ -486,16 +576,21 @@ public class Startup {
         System.err.println();
         System.err.println(getFromLocale("argOptionHeader"));
         System.err.println("   " + getFromLocale("argAccentsOption"));
+        System.err.println("   " + getFromLocale("argBatchOption"));
         System.err.println("   " + getFromLocale("argClearOption"));
         System.err.println("   " + getFromLocale("argEmptyOption"));
         System.err.println("   " + getFromLocale("argGatesOption"));
         System.err.println("   " + getFromLocale("argHelpOption"));
+        System.err.println("   " + getFromLocale("argJobsOption"));
         System.err.println("   " + getFromLocale("argLoadOption"));
         System.err.println("   " + getFromLocale("argLocaleOption"));
+        System.err.println("   " + getFromLocale("argMapOption"));
+        System.err.println("   " + getFromLocale("argMaxTicksOption"));
         System.err.println("   " + getFromLocale("argNoSplashOption"));
         System.err.println("   " + getFromLocale("argPlainOption"));
         System.err.println("   " + getFromLocale("argSubOption"));
         System.err.println("   " + getFromLocale("argTemplateOption"));
+        System.err.println("   " + getFromLocale("argTimeoutOption"));
         System.err.println("   " + getFromLocale("argTtyOption"));
         System.err.println("   " + getFromLocale("argVersionOption"));
         System.exit(-1);
@@ -8,11 +8,14 @@ import java.io.IOException;
 import java.io.InputStreamReader;
 import java.util.ArrayList;
 import java.util.LinkedList;
+import java.util.Locale;
 import java.util.Map;
 
 import com.cburch.logisim.circuit.Analyze;
 import com.cburch.logisim.circuit.Circuit;
 import com.cburch.logisim.circuit.CircuitState;
+import com.cburch.logisim.circuit.Netlist;
+import com.cburch.logisim.circuit.NetlistSimulator;
 import com.cburch.logisim.circuit.Propagator;
 import com.cburch.logisim.comp.Component;
 import com.cburch.logisim.data.Value;
@@ -36,6 +39,186 @@ public class TtyInterface {
     public static final int FORMAT_TTY = 4;
     public static final int FORMAT_HALT = 8;
     public static final int FORMAT_STATISTICS = 16;
+    public static final int FORMAT_COMPILED = 32;
+    public static final int FORMAT_VERIFY = 64;
+    public static final int FORMAT_PERF = 128;
+
+    /** How often the <code>perf</code> format reports, in milliseconds. */
+    private static final long PERF_INTERVAL = 1000;
+
+    // how loadRam puts an image file into the RAMs
+    private static final int LOAD_IMAGE = 0;
+    private static final int MAP_IMAGE = 1;
+    private static final int COPY_MAPPED_IMAGE = 2;
+
+    /** The simulator that a run drives, which is either a propagator or
+     * a compiled netlist. */
+    private interface Engine {
+        InstanceState getInstanceState(Instance instance);
+        int countRams();
+        boolean loadRam(File loadFile, int how) throws IOException;
+        boolean prepareForTty(ArrayList<InstanceState> keybStates,
+                boolean sendToStdout);
+        boolean isOscillating();
+        void tick();
+        void propagate();
+        long getEventCount();
+        long getStepCount();
+        int getQueuePeak();
+    }
+
+    private static class PropagatorEngine implements Engine {
+        private CircuitState circState;
+        private Propagator prop;
+
+        PropagatorEngine(CircuitState circState) {
+            this.circState = circState;
+            this.prop = circState.getPropagator();
+        }
+
+        @Override
+        public InstanceState getInstanceState(Instance instance) {
+            return circState.getInstanceState(instance);
+        }
+
+        @Override
+        public int countRams() {
+            return TtyInterface.countRams(circState);
+        }
+
+        @Override
+        public boolean loadRam(File loadFile, int how) throws IOException {
+            return TtyInterface.loadRam(circState, loadFile, how);
+        }
+
+        @Override
+        public boolean prepareForTty(ArrayList<InstanceState> keybStates,
+                boolean sendToStdout) {
+            return TtyInterface.prepareForTty(circState, keybStates, sendToStdout);
+        }
+
+        @Override
+        public boolean isOscillating() {
+            return prop.isOscillating();
+        }
+
+        @Override
+        public void tick() {
+            prop.tick();
+        }
+
+        @Override
+        public void propagate() {
+            prop.propagate();
+        }
+
+        @Override
+        public long getEventCount() {
+            return prop.getEventCount();
+        }
+
+        @Override
+        public long getStepCount() {
+            return prop.getStepCount();
+        }
+
+        @Override
+        public int getQueuePeak() {
+            return prop.getQueuePeak();
+        }
+    }
+
+    private static class NetlistEngine implements Engine {
+        private NetlistSimulator sim;
+
+        NetlistEngine(NetlistSimulator sim) {
+            this.sim = sim;
+        }
+
+        @Override
+        public InstanceState getInstanceState(Instance instance) {
+            return sim.getInstanceState(Instance.getComponentFor(instance));
+        }
+
+        @Override
+        public int countRams() {
+            int found = 0;
+            int count = sim.getNetlist().getComponentCount();
+            for (int i = 0; i < count; i++) {
+                if (sim.getComponent(i).getFactory() instanceof Ram) {
+                    found++;
+                }
+            }
+            return found;
+        }
+
+        @Override
+        public boolean loadRam(File loadFile, int how) throws IOException {
+            boolean found = false;
+            int count = sim.getNetlist().getComponentCount();
+            for (int i = 0; i < count; i++) {
+                Object factory = sim.getComponent(i).getFactory();
+                if (factory instanceof Ram) {
+                    InstanceState ramState = sim.getInstanceState(i);
+                    loadImage((Ram) factory, ramState, loadFile, how);
+                    // the RAM tells only the circuit of its new contents
+                    ramState.fireInvalidated();
+                    found = true;
+                }
+            }
+            return found;
+        }
+
+        @Override
+        public boolean prepareForTty(ArrayList<InstanceState> keybStates,
+                boolean sendToStdout) {
+            boolean found = false;
+            int count = sim.getNetlist().getComponentCount();
+            for (int i = 0; i < count; i++) {
+                Object factory = sim.getComponent(i).getFactory();
+                if (factory instanceof Tty) {
+                    if (sendToStdout) {
+                        ((Tty) factory).sendToStdout(sim.getInstanceState(i));
+                    }
+                    found = true;
+                } else if (factory instanceof Keyboard) {
+                    keybStates.add(sim.getInstanceState(i));
+                    found = true;
+                }
+            }
+            return found;
+        }
+
+        @Override
+        public boolean isOscillating() {
+            return sim.isOscillating();
+        }
+
+        @Override
+        public void tick() {
+            sim.tick();
+        }
+
+        @Override
+        public void propagate() {
+            sim.propagate();
+        }
+
+        @Override
+        public long getEventCount() {
+            return sim.getEventCount();
+        }
+
+        @Override
+        public long getStepCount() {
+            return sim.getStepCount();
+        }
+
+        @Override
+        public int getQueuePeak() {
+            return sim.getQueuePeak();
+        }
+    }
 
     private static boolean lastIsNewline = true;
 
@@ -54,6 +237,10 @@ public class TtyInterface {
     }
 
     public static void run(Startup args) {
+        if (args.getBatchFile() != null) {
+            System.exit(BatchRunner.run(args));
+        }
+
         File fileToOpen = args.getFilesToOpen().get(0);
         Loader loader = new Loader(null);
         LogisimFile file;
@@ -72,7 +259,7 @@ public class TtyInterface {
             displayStatistics(file);
         }
         // no simulation remaining to perform, so just exit
-        if (format == 0) {
+        if ((format & ~(FORMAT_COMPILED | FORMAT_VERIFY)) == 0) {
             System.exit(0);
         }
 
@@ -92,26 +279,80 @@ public class TtyInterface {
             }
         }
 
-        CircuitState circState = new CircuitState(proj, circuit);
-        // we have to do our initial propagation before the simulation starts -
-        // it's necessary to populate the circuit with substates.
-        circState.getPropagator().propagate();
-        if (args.getLoadFile() != null) {
+        boolean verify = (format & FORMAT_VERIFY) != 0;
+        NetlistSimulator netSim = null;
+        if ((format & (FORMAT_COMPILED | FORMAT_VERIFY)) != 0) {
             try {
-                boolean loaded = loadRam(circState, args.getLoadFile());
-                if (!loaded) {
+                netSim = new NetlistSimulator(proj, Netlist.compile(circuit));
+            } catch (IllegalArgumentException e) {
+                //OK
+                System.err.println(getFromLocale("ttyCompileError", e.getMessage()));
+                if (verify) {
+                    System.exit(-1);
+                }
+            }
+        }
+        CircuitState circState = null;
+        if (netSim == null || verify) {
+            circState = new CircuitState(proj, circuit);
+        }
+
+        // When verifying, the propagator runs the simulation and the
+        // netlist is compared against it after every propagation.
+        ArrayList<Engine> engines = new ArrayList<Engine>();
+        if (circState != null) {
+            engines.add(new PropagatorEngine(circState));
+        }
+        if (netSim != null) {
+            engines.add(new NetlistEngine(netSim));
+        }
+        for (Engine engine : engines) {
+            // we have to do our initial propagation before the simulation
+            // starts - it's necessary to populate the circuit with substates.
+            engine.propagate();
+            if (args.getLoadFile() != null) {
+                try {
+                    boolean loaded = engine.loadRam(args.getLoadFile(), LOAD_IMAGE);
+                    if (!loaded) {
+                        //OK
+                        System.err.println(getFromLocale("loadNoRamError"));
+                        System.exit(-1);
+                    }
+                } catch (IOException e) {
                     //OK
-                    System.err.println(getFromLocale("loadNoRamError"));
+                    System.err.println(getFromLocale("loadIoError") + ": " + e.toString());
+                    System.exit(-1);
+                }
+            }
+            if (args.getMapFile() != null) {
+                // RAMs mapping one file would see each other's writes, so
+                // only one may map it; when verifying, the netlist gets a
+                // copy, lest it see the propagator's writes as its own
+                int rams = engine.countRams();
+                if (rams == 0) {
+                    //OK
+                    System.err.println(getFromLocale("mapNoRamError"));
+                    System.exit(-1);
+                } else if (rams > 1) {
+                    //OK
+                    System.err.println(getFromLocale("mapManyRamError",
+                            Integer.toString(rams)));
+                    System.exit(-1);
+                }
+                try {
+                    engine.loadRam(args.getMapFile(), engine == engines.get(0)
+                            ? MAP_IMAGE : COPY_MAPPED_IMAGE);
+                } catch (IOException e) {
+                    //OK
+                    System.err.println(getFromLocale("mapIoError") + ": " + e.toString());
                     System.exit(-1);
                 }
-            } catch (IOException e) {
-                //OK
-                System.err.println(getFromLocale("loadIoError") + ": " + e.toString());
-                System.exit(-1);
             }
         }
         int ttyFormat = args.getTtyFormat();
-        int simCode = runSimulation(circState, outputPins, haltPin, ttyFormat);
+        int simCode = runSimulation(engines, verify ? circState : null,
+                verify ? netSim : null, outputPins, haltPin, ttyFormat,
+                args.getMaxTicks(), args.getTimeoutMillis());
         System.exit(simCode);
     }
 
@@ -161,8 +402,22 @@ public class TtyInterface {
         return digits;
     }
 
-    private static boolean loadRam(CircuitState circState, File loadFile)
-            throws IOException {
+    private static int countRams(CircuitState circState) {
+        int found = 0;
+        for (Component comp : circState.getCircuit().getNonWires()) {
+            if (comp.getFactory() instanceof Ram) {
+                found++;
+            }
+        }
+
+        for (CircuitState sub : circState.getSubstates()) {
+            found += countRams(sub);
+        }
+        return found;
+    }
+
+    private static boolean loadRam(CircuitState circState, File loadFile,
+            int how) throws IOException {
         if (loadFile == null) {
             return false;
         }
@@ -173,26 +428,39 @@ public class TtyInterface {
             if (comp.getFactory() instanceof Ram) {
                 Ram ramFactory = (Ram) comp.getFactory();
                 InstanceState ramState = circState.getInstanceState(comp);
-                ramFactory.loadImage(ramState, loadFile);
+                loadImage(ramFactory, ramState, loadFile, how);
                 found = true;
             }
         }
 
         for (CircuitState sub : circState.getSubstates()) {
-            found |= loadRam(sub, loadFile);
+            found |= loadRam(sub, loadFile, how);
         }
         return found;
     }
 
+    private static void loadImage(Ram ramFactory, InstanceState ramState,
+            File loadFile, int how) throws IOException {
+        if (how == MAP_IMAGE) {
+            ramFactory.mapImage(ramState, loadFile);
+        } else if (how == COPY_MAPPED_IMAGE) {
+            ramFactory.copyMappedImage(ramState, loadFile);
+        } else {
+            ramFactory.loadImage(ramState, loadFile);
+        }
+    }
+
     private static boolean prepareForTty(CircuitState circState,
-            ArrayList<InstanceState> keybStates) {
+            ArrayList<InstanceState> keybStates, boolean sendToStdout) {
         boolean found = false;
         for (Component comp : circState.getCircuit().getNonWires()) {
             Object factory = comp.getFactory();
             if (factory instanceof Tty) {
-                Tty ttyFactory = (Tty) factory;
-                InstanceState ttyState = circState.getInstanceState(comp);
-                ttyFactory.sendToStdout(ttyState);
+                if (sendToStdout) {
+                    Tty ttyFactory = (Tty) factory;
+                    InstanceState ttyState = circState.getInstanceState(comp);
+                    ttyFactory.sendToStdout(ttyState);
+                }
                 found = true;
             } else if (factory instanceof Keyboard) {
                 keybStates.add(circState.getInstanceState(comp));
@@ -201,14 +469,17 @@ public class TtyInterface {
         }
 
         for (CircuitState sub : circState.getSubstates()) {
-            found |= prepareForTty(sub, keybStates);
+            found |= prepareForTty(sub, keybStates, sendToStdout);
         }
         return found;
     }
 
-    private static int runSimulation(CircuitState circState,
-            ArrayList<Instance> outputPins, Instance haltPin, int format) {
+    private static int runSimulation(ArrayList<Engine> engines,
+            CircuitState verifyState, NetlistSimulator verifySim,
+            ArrayList<Instance> outputPins, Instance haltPin, int format,
+            long maxTicks, long timeoutMillis) {
         boolean showTable = (format & FORMAT_TABLE) != 0;
+        boolean showPerf = (format & FORMAT_PERF) != 0;
         boolean showSpeed = (format & FORMAT_SPEED) != 0;
         boolean showTty = (format & FORMAT_TTY) != 0;
         boolean showHalt = (format & FORMAT_HALT) != 0;
@@ -217,7 +488,12 @@ public class TtyInterface {
         StdinThread stdinThread = null;
         if (showTty) {
             keyboardStates = new ArrayList<InstanceState>();
-            boolean ttyFound = prepareForTty(circState, keyboardStates);
+            // only the first engine's TTYs print; the others must still
+            // receive the same keyboard input
+            boolean ttyFound = false;
+            for (int i = 0; i < engines.size(); i++) {
+                ttyFound |= engines.get(i).prepareForTty(keyboardStates, i == 0);
+            }
             if (!ttyFound) {
                 //OK
                 System.err.println(getFromLocale("ttyNoTtyError"));
@@ -234,13 +510,28 @@ public class TtyInterface {
         int retCode;
         long tickCount = 0;
         long start = System.currentTimeMillis();
+        long deadline = timeoutMillis > 0 ? start + timeoutMillis : Long.MAX_VALUE;
         boolean halted = false;
         ArrayList<Value> prevOutputs = null;
-        Propagator prop = circState.getPropagator();
+        Engine engine = engines.get(0);
+        PerfReport perf = showPerf ? new PerfReport(engine, start) : null;
+        String mismatch = null;
         while (true) {
+            if (verifySim != null) {
+                mismatch = verifySim.findMismatch(verifyState);
+                if (mismatch == null
+                        && verifySim.isOscillating() != engine.isOscillating()) {
+                    mismatch = "oscillation";
+                }
+                if (mismatch != null) {
+                    retCode = 2;
+                    break;
+                }
+            }
+
             ArrayList<Value> curOutputs = new ArrayList<Value>();
             for (Instance pin : outputPins) {
-                InstanceState pinState = circState.getInstanceState(pin);
+                InstanceState pinState = engine.getInstanceState(pin);
                 Value val = Pin.FACTORY.getValue(pinState);
                 if (pin == haltPin) {
                     halted |= val.equals(Value.TRUE);
@@ -257,11 +548,23 @@ public class TtyInterface {
                 retCode = 0;
                 break;
             }
-            if (prop.isOscillating()) {
+            if (engine.isOscillating()) {
                 // abnormal exit
                 retCode = 1;
                 break;
             }
+            if (maxTicks > 0 && tickCount >= maxTicks) {
+                retCode = 3;
+                break;
+            }
+            long now = System.currentTimeMillis();
+            if (now >= deadline) {
+                retCode = 4;
+                break;
+            }
+            if (perf != null && now >= perf.nextReport) {
+                perf.report(tickCount, now);
+            }
             if (keyboardStates != null) {
                 char[] buffer = stdinThread.getBuffer();
                 if (buffer != null) {
@@ -272,13 +575,19 @@ public class TtyInterface {
             }
             prevOutputs = curOutputs;
             tickCount++;
-            prop.tick();
-            prop.propagate();
+            for (Engine e : engines) {
+                e.tick();
+                e.propagate();
+            }
         }
-        long elapse = System.currentTimeMillis() - start;
+        long end = System.currentTimeMillis();
+        long elapse = end - start;
         if (showTty) {
             ensureLineTerminated();
         }
+        if (perf != null) {
+            perf.report(tickCount, end);
+        }
 
         if (showHalt || retCode != 0) {
             if (retCode == 0) {
@@ -287,6 +596,18 @@ public class TtyInterface {
             } else if (retCode == 1) {
                 //OK
                 System.out.println(getFromLocale("ttyHaltReasonOscillation"));
+            } else if (retCode == 2) {
+                //OK
+                System.out.println(getFromLocale("ttyHaltReasonMismatch",
+                        "" + tickCount, mismatch));
+            } else if (retCode == 3) {
+                //OK
+                System.out.println(getFromLocale("ttyHaltReasonTickLimit",
+                        "" + maxTicks));
+            } else if (retCode == 4) {
+                //OK
+                System.out.println(getFromLocale("ttyHaltReasonTimeout",
+                        "" + timeoutMillis / 1000));
             }
         }
         if (showSpeed) {
@@ -353,6 +674,51 @@ public class TtyInterface {
         System.out.println(getFromLocale("ttySpeedMsg", hertzStr, "" + tickCount, "" + elapse));
     }
 
+    /**
+     * Reports on the simulation's progress at intervals for the
+     * <code>perf</code> format, as a line of <code>name=value</code> pairs
+     * on standard error, so that it stays apart from the circuit's output.
+     * The rates and steps per tick cover the time since the last report;
+     * the counts are totals.
+     */
+    private static class PerfReport {
+        private Engine engine;
+        private long nextReport;
+        private long lastTime;
+        private long lastTicks = 0;
+        private long lastEvents;
+        private long lastSteps;
+
+        PerfReport(Engine engine, long start) {
+            this.engine = engine;
+            this.nextReport = start + PERF_INTERVAL;
+            this.lastTime = start;
+            this.lastEvents = engine.getEventCount();
+            this.lastSteps = engine.getStepCount();
+        }
+
+        void report(long ticks, long now) {
+            long events = engine.getEventCount();
+            long steps = engine.getStepCount();
+            double secs = Math.max(now - lastTime, 1) / 1000.0;
+            long dTicks = ticks - lastTicks;
+            //OK
+            System.err.printf(Locale.ROOT, "perf ticks=%d events=%d queue_peak=%d"
+                    + " tick_rate=%.1f event_rate=%.1f steps_per_tick=%.2f%n",
+                    Long.valueOf(ticks), Long.valueOf(events),
+                    Integer.valueOf(engine.getQueuePeak()),
+                    Double.valueOf(dTicks / secs),
+                    Double.valueOf((events - lastEvents) / secs),
+                    Double.valueOf(dTicks == 0 ? 0.0
+                        : (double) (steps - lastSteps) / dTicks));
+            lastTime = now;
+            lastTicks = ticks;
+            lastEvents = events;
+            lastSteps = steps;
+            nextReport = now + PERF_INTERVAL;
+        }
+    }
+
     // It's possible to avoid using the separate thread using System.in.available(),
     // but this doesn't quite work because on some systems, the keyboard input
     // is not interactively echoed until System.in.read() is invoked.
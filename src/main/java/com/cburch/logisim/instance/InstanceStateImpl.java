@@ -6,7 +6,6 @@ package com.cburch.logisim.instance;
 import com.cburch.logisim.circuit.Circuit;
 import com.cburch.logisim.circuit.CircuitState;
 import com.cburch.logisim.comp.Component;
-import com.cburch.logisim.comp.EndData;
 import com.cburch.logisim.data.Attribute;
 import com.cburch.logisim.data.AttributeSet;
 import com.cburch.logisim.data.Location;
@@ -67,8 +66,7 @@ class InstanceStateImpl implements InstanceState {
 
     @Override
     public Value getPort(int portIndex) {
-        EndData data = component.getEnd(portIndex);
-        return circuitState.getValue(data.getLocation());
+        return circuitState.getValue(component.getEnd(portIndex));
     }
 
     @Override
@@ -80,8 +78,7 @@ class InstanceStateImpl implements InstanceState {
 
     @Override
     public void setPort(int portIndex, Value value, int delay) {
-        EndData end = component.getEnd(portIndex);
-        circuitState.setValue(end.getLocation(), value, component, delay);
+        circuitState.setValue(component.getEnd(portIndex), value, component, delay);
     }
 
     @Override
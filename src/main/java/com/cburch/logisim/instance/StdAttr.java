@@ -18,6 +18,9 @@ public interface StdAttr {
 
     public static final Attribute<BitWidth> WIDTH
         = Attributes.forBitWidth("width", getFromLocale("stdDataWidthAttr"));
+    // for components that keep their value in an int
+    public static final Attribute<BitWidth> INT_WIDTH
+        = Attributes.forBitWidth("width", getFromLocale("stdDataWidthAttr"), 1, 32);
 
     public static final AttributeOption TRIG_RISING
         = new AttributeOption("rising", getFromLocale("stdTriggerRising"));
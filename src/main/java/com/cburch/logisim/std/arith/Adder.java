@@ -5,6 +5,7 @@ package com.cburch.logisim.std.arith;
 
 import java.awt.Color;
 import java.awt.Graphics;
+import java.math.BigInteger;
 
 import com.cburch.logisim.data.Attribute;
 import com.cburch.logisim.data.BitWidth;
@@ -101,18 +102,24 @@ public class Adder extends InstanceFactory {
         }
 
         if (a.isFullyDefined() && b.isFullyDefined() && c_in.isFullyDefined()) {
-            if (w >= 32) {
-                long mask = (1L << w) - 1;
-                long ax = a.toIntValue() & mask;
-                long bx = b.toIntValue() & mask;
-                long cx = c_in.toIntValue() & mask;
-                long sum = ax + bx + cx;
-                return new Value[] { Value.createKnown(width, (int) sum),
-                    ((sum >> w) & 1) == 0 ? Value.FALSE : Value.TRUE };
+            if (w > 64) {
+                BigInteger sum = a.toBigInteger(false).add(b.toBigInteger(false))
+                    .add(c_in.toBigInteger(false));
+                return new Value[] { Value.createKnown(width, sum),
+                    sum.testBit(w) ? Value.TRUE : Value.FALSE };
+            } else if (w == 64) {
+                long ax = a.toLongValue();
+                long sum = ax + b.toLongValue() + c_in.toLongValue();
+                // the sum wrapped around if it is below a, or equal to it
+                // with the carry in set
+                boolean carry = (sum ^ Long.MIN_VALUE) < (ax ^ Long.MIN_VALUE)
+                    || sum == ax && c_in == Value.TRUE;
+                return new Value[] { Value.createKnown(width, sum),
+                    carry ? Value.TRUE : Value.FALSE };
             } else {
-                int sum = a.toIntValue() + b.toIntValue() + c_in.toIntValue();
+                long sum = a.toLongValue() + b.toLongValue() + c_in.toLongValue();
                 return new Value[] { Value.createKnown(width, sum),
-                    ((sum >> w) & 1) == 0 ? Value.FALSE : Value.TRUE };
+                    ((sum >>> w) & 1) == 0 ? Value.FALSE : Value.TRUE };
             }
         } else {
             Value[] bits = new Value[w];
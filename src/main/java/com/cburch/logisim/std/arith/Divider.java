@@ -5,6 +5,7 @@ package com.cburch.logisim.std.arith;
 
 import java.awt.Color;
 import java.awt.Graphics;
+import java.math.BigInteger;
 
 import com.cburch.logisim.data.Attribute;
 import com.cburch.logisim.data.BitWidth;
@@ -99,6 +100,19 @@ public class Divider extends InstanceFactory {
         }
 
         if (a.isFullyDefined() && b.isFullyDefined() && upper.isFullyDefined()) {
+            if (w > 32) {
+                BigInteger num = upper.toBigInteger(false).shiftLeft(w)
+                    .or(a.toBigInteger(false));
+                BigInteger den = b.toBigInteger(false);
+                if (den.signum() == 0) {
+                    den = BigInteger.ONE;
+                }
+
+                BigInteger[] qr = num.divideAndRemainder(den);
+                return new Value[] { Value.createKnown(width, qr[0]),
+                        Value.createKnown(width, qr[1]) };
+            }
+
             long num = ((long) upper.toIntValue() << w)
                 | (a.toIntValue() & 0xFFFFFFFFL);
             long den = b.toIntValue() & 0xFFFFFFFFL;
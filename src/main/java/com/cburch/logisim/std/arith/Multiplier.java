@@ -5,6 +5,7 @@ package com.cburch.logisim.std.arith;
 
 import java.awt.Color;
 import java.awt.Graphics;
+import java.math.BigInteger;
 
 import com.cburch.logisim.data.Attribute;
 import com.cburch.logisim.data.BitWidth;
@@ -99,32 +100,39 @@ public class Multiplier extends InstanceFactory {
         }
 
         if (a.isFullyDefined() && b.isFullyDefined() && c_in.isFullyDefined()) {
-            long sum = (long) a.toIntValue() * (long) b.toIntValue()
-                + c_in.toIntValue();
-            return new Value[] { Value.createKnown(width, (int) sum),
-                Value.createKnown(width, (int) (sum >> w)) };
+            if (w <= 32) {
+                // the full product fits in 64 bits, taken as unsigned
+                long sum = a.toLongValue() * b.toLongValue() + c_in.toLongValue();
+                return new Value[] { Value.createKnown(width, sum),
+                    Value.createKnown(width, sum >>> w) };
+            } else {
+                BigInteger sum = a.toBigInteger(false).multiply(b.toBigInteger(false))
+                    .add(c_in.toBigInteger(false));
+                return new Value[] { Value.createKnown(width, sum),
+                    Value.createKnown(width, sum.shiftRight(w)) };
+            }
         } else {
             Value[] avals = a.getAll();
             int aOk = findUnknown(avals);
             int aErr = findError(avals);
-            int ax = getKnown(avals);
+            BigInteger ax = getKnown(avals);
             Value[] bvals = b.getAll();
             int bOk = findUnknown(bvals);
             int bErr = findError(bvals);
-            int bx = getKnown(bvals);
+            BigInteger bx = getKnown(bvals);
             Value[] cvals = c_in.getAll();
             int cOk = findUnknown(cvals);
             int cErr = findError(cvals);
-            int cx = getKnown(cvals);
+            BigInteger cx = getKnown(cvals);
 
             int known = Math.min(Math.min(aOk, bOk), cOk);
             int error = Math.min(Math.min(aErr, bErr), cErr);
-            int ret = ax * bx + cx;
+            BigInteger ret = ax.multiply(bx).add(cx);
 
             Value[] bits = new Value[w];
             for (int i = 0; i < w; i++) {
                 if (i < known) {
-                    bits[i] = ((ret & (1 << i)) != 0 ? Value.TRUE : Value.FALSE);
+                    bits[i] = (ret.testBit(i) ? Value.TRUE : Value.FALSE);
                 } else if (i < error) {
                     bits[i] = Value.UNKNOWN;
                 } else {
@@ -156,15 +164,17 @@ public class Multiplier extends InstanceFactory {
         return vals.length;
     }
 
-    private static int getKnown(Value[] vals) {
-        int ret = 0;
+    private static BigInteger getKnown(Value[] vals) {
+        BigInteger ret = BigInteger.ZERO;
         for (int i = 0; i < vals.length; i++) {
             int val = vals[i].toIntValue();
             if (val < 0) {
                 return ret;
             }
 
-            ret |= val << i;
+            if (val != 0) {
+                ret = ret.setBit(i);
+            }
         }
         return ret;
     }
@@ -32,19 +32,19 @@ public class Pow extends InstanceFactory {
     public Pow() {
         super("Pow", getFromLocale("powComponent"));
         setAttributes(new Attribute[] {
-                StdAttr.WIDTH
+                StdAttr.INT_WIDTH
             }, new Object[] {
                 BitWidth.create(8)
             });
         
-        setKeyConfigurator(new BitWidthConfigurator(StdAttr.WIDTH));
+        setKeyConfigurator(new BitWidthConfigurator(StdAttr.INT_WIDTH, 1, 32));
         setOffsetBounds(Bounds.create(-40, -20, 40, 40));
         setIconName("pow.svg");
 
         Port[] ps = new Port[3];
-        ps[IN0]   = new Port(-40,  10, Port.INPUT,  StdAttr.WIDTH);
-        ps[IN1]   = new Port(-40, -10, Port.INPUT,  StdAttr.WIDTH);
-        ps[OUT]   = new Port(  0,   0, Port.OUTPUT, StdAttr.WIDTH);
+        ps[IN0]   = new Port(-40,  10, Port.INPUT,  StdAttr.INT_WIDTH);
+        ps[IN1]   = new Port(-40, -10, Port.INPUT,  StdAttr.INT_WIDTH);
+        ps[OUT]   = new Port(  0,   0, Port.OUTPUT, StdAttr.INT_WIDTH);
         ps[IN0].setToolTip(getFromLocale("powInputNumTip"));
         ps[IN1].setToolTip(getFromLocale("powInputExpTip"));
         ps[OUT].setToolTip(getFromLocale("powOutputTip"));
@@ -54,7 +54,7 @@ public class Pow extends InstanceFactory {
     @Override
     public void propagate(InstanceState state) {
         // get attributes
-        BitWidth dataWidth = state.getAttributeValue(StdAttr.WIDTH);
+        BitWidth dataWidth = state.getAttributeValue(StdAttr.INT_WIDTH);
 
         // compute outputs
         Value a = state.getPort(IN0);
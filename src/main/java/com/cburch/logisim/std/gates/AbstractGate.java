@@ -15,6 +15,8 @@ import com.cburch.logisim.LogisimVersion;
 import com.cburch.logisim.analyze.model.Expression;
 import com.cburch.logisim.analyze.model.Expressions;
 import com.cburch.logisim.circuit.ExpressionComputer;
+import com.cburch.logisim.circuit.VectorComputer;
+import com.cburch.logisim.circuit.VectorState;
 import com.cburch.logisim.comp.TextField;
 import com.cburch.logisim.data.Attribute;
 import com.cburch.logisim.data.AttributeSet;
@@ -39,6 +41,16 @@ import com.cburch.logisim.util.GraphicsUtil;
 import com.cburch.logisim.util.Icons;
 
 abstract class AbstractGate extends InstanceFactory {
+    // the inputs of the gate being propagated, when all are defined; gates
+    // may be propagated from several threads at once
+    private static final ThreadLocal<long[]> definedInputs
+        = new ThreadLocal<long[]>() {
+            @Override
+            protected long[] initialValue() {
+                return new long[GateAttributes.MAX_INPUTS];
+            }
+        };
+
     private String[] iconNames = new String[3];
     private SVGIcon[] icons = new SVGIcon[3];
     private int bonusWidth = 0;
@@ -352,6 +364,18 @@ abstract class AbstractGate extends InstanceFactory {
     protected abstract Value computeOutput(Value[] inputs, int numInputs,
             InstanceState state);
 
+    /** Computes the output as <code>computeOutput</code> does, for inputs
+     * that are all fully defined and of the gate's width, given as the
+     * bits of each; bits beyond the width in the result are ignored. */
+    protected abstract long computeOutputDefined(long[] inputs, int numInputs,
+            InstanceState state);
+
+    /** Computes the output for 64 input vectors at once, as
+     * <code>computeOutput</code> does for one, placing it in out[0]
+     * (ones) and out[1] (zeros). */
+    protected abstract void computeOutputVectors(long[] ones, long[] zeros,
+            int numInputs, VectorState state, long[] out);
+
     protected abstract Expression computeExpression(Expression[] inputs,
             int numInputs);
 
@@ -436,16 +460,28 @@ abstract class AbstractGate extends InstanceFactory {
         boolean errorIfUndefined = opts.getValue(Options.ATTR_GATE_UNDEFINED)
                                     .equals(Options.GATE_UNDEFINED_ERROR);
 
-        Value[] inputs = new Value[inputCount];
+        // bits[] holds the inputs as they arrive at the ports, already
+        // negated, as long as every one is 0 or 1 throughout; only
+        // otherwise are they gathered as values
+        long[] bits = definedInputs.get();
         int numInputs = 0;
+        int negatedInputs = 0;
         boolean error = false;
+        int width = attrs.width.getWidth();
+        long mask = -1L >>> (64 - width);
+        boolean defined = width <= 64;
         for (int i = 1; i <= inputCount; i++) {
             if (state.isPortConnected(i)) {
-                int negatedBit = (negated >> (i - 1)) & 1;
-                if (negatedBit == 1) {
-                    inputs[numInputs] = state.getPort(i).not();
-                } else {
-                    inputs[numInputs] = state.getPort(i);
+                negatedInputs |= ((negated >> (i - 1)) & 1) << numInputs;
+                if (defined) {
+                    Value v = state.getPort(i);
+                    if (v.getWidth() != width || !v.isFullyDefined()) {
+                        defined = false;
+                    } else if (((negatedInputs >> numInputs) & 1) == 1) {
+                        bits[numInputs] = ~v.toLongValue() & mask;
+                    } else {
+                        bits[numInputs] = v.toLongValue();
+                    }
                 }
                 numInputs++;
             } else {
@@ -457,13 +493,67 @@ abstract class AbstractGate extends InstanceFactory {
         Value out = null;
         if (numInputs == 0 || error) {
             out = Value.createError(attrs.width);
+        } else if (defined) {
+            long result = computeOutputDefined(bits, numInputs, state) & mask;
+            out = pullOutput(Value.createKnown(attrs.width, result), attrs.out);
         } else {
+            Value[] inputs = new Value[numInputs];
+            int n = 0;
+            for (int i = 1; i <= inputCount; i++) {
+                if (state.isPortConnected(i)) {
+                    Value v = state.getPort(i);
+                    inputs[n] = ((negatedInputs >> n) & 1) == 1 ? v.not() : v;
+                    n++;
+                }
+            }
             out = computeOutput(inputs, numInputs, state);
             out = pullOutput(out, attrs.out);
         }
         state.setPort(0, out, GateAttributes.DELAY);
     }
 
+    private void propagateVectors(VectorState state) {
+        GateAttributes attrs = (GateAttributes) state.getAttributeSet();
+        int inputCount = attrs.inputs;
+        int negated = attrs.negated;
+        AttributeSet opts = state.getProject().getOptions().getAttributeSet();
+        boolean errorIfUndefined = opts.getValue(Options.ATTR_GATE_UNDEFINED)
+                                    .equals(Options.GATE_UNDEFINED_ERROR);
+
+        long[] ones = new long[inputCount];
+        long[] zeros = new long[inputCount];
+        long[] out = new long[2];
+        int width = state.getPortWidth(0);
+        for (int b = 0; b < width; b++) {
+            int numInputs = 0;
+            boolean error = false;
+            for (int i = 1; i <= inputCount; i++) {
+                if (state.isPortConnected(i)) {
+                    out[0] = state.getOnes(i, b);
+                    out[1] = state.getZeros(i, b);
+                    if (((negated >> (i - 1)) & 1) == 1) {
+                        GateFunctions.notVectors(out);
+                    }
+                    ones[numInputs] = out[0];
+                    zeros[numInputs] = out[1];
+                    numInputs++;
+                } else {
+                    if (errorIfUndefined) {
+                        error = true;
+                    }
+                }
+            }
+            if (numInputs == 0 || error) {
+                out[0] = -1L;
+                out[1] = -1L;
+            } else {
+                computeOutputVectors(ones, zeros, numInputs, state, out);
+                pullOutputVectors(out, attrs.out);
+            }
+            state.setPort(0, b, out[0], out[1]);
+        }
+    }
+
     static Value pullOutput(Value value, Object outType) {
         if (outType == GateAttributes.OUTPUT_01) {
             return value;
@@ -488,6 +578,14 @@ abstract class AbstractGate extends InstanceFactory {
         }
     }
 
+    static void pullOutputVectors(long[] out, Object outType) {
+        if (outType == GateAttributes.OUTPUT_0Z) {
+            out[0] &= out[1];
+        } else if (outType == GateAttributes.OUTPUT_Z1) {
+            out[1] &= out[0];
+        }
+    }
+
     @Override
     protected Object getInstanceFeature(final Instance instance, Object key) {
         if (key == WireRepair.class) {
@@ -498,6 +596,14 @@ abstract class AbstractGate extends InstanceFactory {
                 }
             };
         }
+        if (key == VectorComputer.class) {
+            return new VectorComputer() {
+                @Override
+                public void computeVectors(VectorState state) {
+                    propagateVectors(state);
+                }
+            };
+        }
         if (key == ExpressionComputer.class) {
             return new ExpressionComputer() {
                 @Override
@@ -10,6 +10,8 @@ import java.util.Map;
 
 import com.cburch.logisim.analyze.model.Expression;
 import com.cburch.logisim.circuit.ExpressionComputer;
+import com.cburch.logisim.circuit.VectorComputer;
+import com.cburch.logisim.circuit.VectorState;
 import com.cburch.logisim.data.Attribute;
 import com.cburch.logisim.data.AttributeSet;
 import com.cburch.logisim.data.BitWidth;
@@ -114,6 +116,20 @@ class Buffer extends InstanceFactory {
                 }
             };
         }
+        if (key == VectorComputer.class) {
+            return new VectorComputer() {
+                @Override
+                public void computeVectors(VectorState state) {
+                    long[] out = new long[2];
+                    for (int b = 0, n = state.getPortWidth(0); b < n; b++) {
+                        out[0] = state.getOnes(1, b);
+                        out[1] = state.getZeros(1, b);
+                        repairVectors(state, out);
+                        state.setPort(0, b, out[0], out[1]);
+                    }
+                }
+            };
+        }
         return super.getInstanceFeature(instance, key);
     }
 
@@ -191,4 +207,16 @@ class Buffer extends InstanceFactory {
         Object outType = state.getAttributeValue(GateAttributes.ATTR_OUTPUT);
         return AbstractGate.pullOutput(repaired, outType);
     }
+
+    static void repairVectors(VectorState state, long[] out) {
+        AttributeSet opts = state.getProject().getOptions().getAttributeSet();
+        Object onUndefined = opts.getValue(Options.ATTR_GATE_UNDEFINED);
+        if (onUndefined.equals(Options.GATE_UNDEFINED_ERROR)) {
+            long undefined = ~(out[0] ^ out[1]);
+            out[0] |= undefined;
+            out[1] |= undefined;
+        }
+        Object outType = state.getAttributeValue(GateAttributes.ATTR_OUTPUT);
+        AbstractGate.pullOutputVectors(out, outType);
+    }
 }
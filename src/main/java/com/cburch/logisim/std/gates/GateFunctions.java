@@ -59,4 +59,123 @@ class GateFunctions {
         }
         return Value.create(ret);
     }
+
+    //
+    // The forms below compute the output for inputs that are fully
+    // defined, with each input given as its bits.
+    //
+    static long computeOrDefined(long[] inputs, int numInputs) {
+        long ret = inputs[0];
+        for (int i = 1; i < numInputs; i++) {
+            ret |= inputs[i];
+        }
+        return ret;
+    }
+
+    static long computeAndDefined(long[] inputs, int numInputs) {
+        long ret = inputs[0];
+        for (int i = 1; i < numInputs; i++) {
+            ret &= inputs[i];
+        }
+        return ret;
+    }
+
+    static long computeOddParityDefined(long[] inputs, int numInputs) {
+        long ret = inputs[0];
+        for (int i = 1; i < numInputs; i++) {
+            ret ^= inputs[i];
+        }
+        return ret;
+    }
+
+    static long computeExactlyOneDefined(long[] inputs, int numInputs) {
+        long seenOne = 0L;
+        long seenTwo = 0L;
+        for (int i = 0; i < numInputs; i++) {
+            seenTwo |= seenOne & inputs[i];
+            seenOne |= inputs[i];
+        }
+        return seenOne & ~seenTwo;
+    }
+
+    //
+    // The forms below compute 64 input vectors at once, with each value
+    // held as a pair of words as described in VectorState. The result
+    // goes into out[0] (ones) and out[1] (zeros).
+    //
+    static void computeOrVectors(long[] ones, long[] zeros, int numInputs,
+            long[] out) {
+        if (numInputs == 1) {
+            out[0] = ones[0];
+            out[1] = zeros[0];
+            return;
+        }
+        long trues = 0L;
+        long falses = -1L;
+        for (int i = 0; i < numInputs; i++) {
+            trues |= ones[i] & ~zeros[i];
+            falses &= zeros[i] & ~ones[i];
+        }
+        setDefined(out, trues, falses);
+    }
+
+    static void computeAndVectors(long[] ones, long[] zeros, int numInputs,
+            long[] out) {
+        if (numInputs == 1) {
+            out[0] = ones[0];
+            out[1] = zeros[0];
+            return;
+        }
+        long trues = -1L;
+        long falses = 0L;
+        for (int i = 0; i < numInputs; i++) {
+            trues &= ones[i] & ~zeros[i];
+            falses |= zeros[i] & ~ones[i];
+        }
+        setDefined(out, trues, falses);
+    }
+
+    static void computeOddParityVectors(long[] ones, long[] zeros,
+            int numInputs, long[] out) {
+        if (numInputs == 1) {
+            out[0] = ones[0];
+            out[1] = zeros[0];
+            return;
+        }
+        long parity = 0L;
+        long undefined = 0L;
+        for (int i = 0; i < numInputs; i++) {
+            parity ^= ones[i];
+            undefined |= ~(ones[i] ^ zeros[i]);
+        }
+        setDefined(out, parity & ~undefined, ~parity & ~undefined);
+    }
+
+    static void computeExactlyOneVectors(long[] ones, long[] zeros,
+            int numInputs, long[] out) {
+        long seenOne = 0L;
+        long seenTwo = 0L;
+        long undefined = 0L;
+        for (int i = 0; i < numInputs; i++) {
+            seenTwo |= seenOne & ones[i];
+            seenOne |= ones[i];
+            undefined |= ~(ones[i] ^ zeros[i]);
+        }
+        long exactlyOne = seenOne & ~seenTwo;
+        setDefined(out, exactlyOne & ~undefined, ~exactlyOne & ~undefined);
+    }
+
+    static void notVectors(long[] out) {
+        long trues = out[0] & ~out[1];
+        long falses = out[1] & ~out[0];
+        setDefined(out, falses, trues);
+    }
+
+    /** Sets out to the given definite values, and to an error wherever
+     * neither is set. */
+    private static void setDefined(long[] out, long trues, long falses) {
+        long error = ~(trues | falses);
+        out[0] = trues | error;
+        out[1] = falses | error;
+    }
 }
@@ -7,6 +7,7 @@ import java.awt.Graphics;
 
 import com.cburch.logisim.analyze.model.Expression;
 import com.cburch.logisim.analyze.model.Expressions;
+import com.cburch.logisim.circuit.VectorState;
 import com.cburch.logisim.data.Value;
 import com.cburch.logisim.instance.InstancePainter;
 import com.cburch.logisim.instance.InstanceState;
@@ -50,6 +51,19 @@ class NandGate extends AbstractGate {
         return GateFunctions.computeAnd(inputs, numInputs).not();
     }
 
+    @Override
+    protected long computeOutputDefined(long[] inputs, int numInputs,
+            InstanceState state) {
+        return ~GateFunctions.computeAndDefined(inputs, numInputs);
+    }
+
+    @Override
+    protected void computeOutputVectors(long[] ones, long[] zeros,
+            int numInputs, VectorState state, long[] out) {
+        GateFunctions.computeAndVectors(ones, zeros, numInputs, out);
+        GateFunctions.notVectors(out);
+    }
+
     @Override
     protected Expression computeExpression(Expression[] inputs, int numInputs) {
         Expression ret = inputs[0];
@@ -7,6 +7,7 @@ import java.awt.Graphics;
 
 import com.cburch.logisim.analyze.model.Expression;
 import com.cburch.logisim.analyze.model.Expressions;
+import com.cburch.logisim.circuit.VectorState;
 import com.cburch.logisim.data.Value;
 import com.cburch.logisim.instance.Instance;
 import com.cburch.logisim.instance.InstancePainter;
@@ -52,6 +53,19 @@ class NorGate extends AbstractGate {
         return GateFunctions.computeOr(inputs, numInputs).not();
     }
 
+    @Override
+    protected long computeOutputDefined(long[] inputs, int numInputs,
+            InstanceState state) {
+        return ~GateFunctions.computeOrDefined(inputs, numInputs);
+    }
+
+    @Override
+    protected void computeOutputVectors(long[] ones, long[] zeros,
+            int numInputs, VectorState state, long[] out) {
+        GateFunctions.computeOrVectors(ones, zeros, numInputs, out);
+        GateFunctions.notVectors(out);
+    }
+
     @Override
     protected boolean shouldRepairWire(Instance instance, WireRepairData data) {
         return !data.getPoint().equals(instance.getLocation());
@@ -13,6 +13,8 @@ import javax.swing.Icon;
 import com.cburch.logisim.analyze.model.Expression;
 import com.cburch.logisim.analyze.model.Expressions;
 import com.cburch.logisim.circuit.ExpressionComputer;
+import com.cburch.logisim.circuit.VectorComputer;
+import com.cburch.logisim.circuit.VectorState;
 import com.cburch.logisim.comp.TextField;
 import com.cburch.logisim.data.Attribute;
 import com.cburch.logisim.data.AttributeOption;
@@ -156,6 +158,21 @@ class NotGate extends InstanceFactory {
                 }
             };
         }
+        if (key == VectorComputer.class) {
+            return new VectorComputer() {
+                @Override
+                public void computeVectors(VectorState state) {
+                    long[] out = new long[2];
+                    for (int b = 0, n = state.getPortWidth(0); b < n; b++) {
+                        out[0] = state.getOnes(1, b);
+                        out[1] = state.getZeros(1, b);
+                        GateFunctions.notVectors(out);
+                        Buffer.repairVectors(state, out);
+                        state.setPort(0, b, out[0], out[1]);
+                    }
+                }
+            };
+        }
         return super.getInstanceFeature(instance, key);
     }
 
@@ -10,6 +10,7 @@ import java.awt.Graphics;
 
 import com.cburch.logisim.analyze.model.Expression;
 import com.cburch.logisim.analyze.model.Expressions;
+import com.cburch.logisim.circuit.VectorState;
 import com.cburch.logisim.data.Value;
 import com.cburch.logisim.instance.InstancePainter;
 import com.cburch.logisim.instance.InstanceState;
@@ -59,6 +60,18 @@ class OddParityGate extends AbstractGate {
         return GateFunctions.computeOddParity(inputs, numInputs);
     }
 
+    @Override
+    protected long computeOutputDefined(long[] inputs, int numInputs,
+            InstanceState state) {
+        return GateFunctions.computeOddParityDefined(inputs, numInputs);
+    }
+
+    @Override
+    protected void computeOutputVectors(long[] ones, long[] zeros,
+            int numInputs, VectorState state, long[] out) {
+        GateFunctions.computeOddParityVectors(ones, zeros, numInputs, out);
+    }
+
     @Override
     protected Expression computeExpression(Expression[] inputs, int numInputs) {
         Expression ret = inputs[0];
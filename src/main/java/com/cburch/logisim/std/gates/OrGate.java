@@ -9,6 +9,7 @@ import java.awt.Graphics;
 
 import com.cburch.logisim.analyze.model.Expression;
 import com.cburch.logisim.analyze.model.Expressions;
+import com.cburch.logisim.circuit.VectorState;
 import com.cburch.logisim.data.Value;
 import com.cburch.logisim.instance.Instance;
 import com.cburch.logisim.instance.InstancePainter;
@@ -50,6 +51,18 @@ class OrGate extends AbstractGate {
         return GateFunctions.computeOr(inputs, numInputs);
     }
 
+    @Override
+    protected long computeOutputDefined(long[] inputs, int numInputs,
+            InstanceState state) {
+        return GateFunctions.computeOrDefined(inputs, numInputs);
+    }
+
+    @Override
+    protected void computeOutputVectors(long[] ones, long[] zeros,
+            int numInputs, VectorState state, long[] out) {
+        GateFunctions.computeOrVectors(ones, zeros, numInputs, out);
+    }
+
     @Override
     protected boolean shouldRepairWire(Instance instance, WireRepairData data) {
         boolean ret = !data.getPoint().equals(instance.getLocation());
@@ -7,6 +7,7 @@ import java.awt.Graphics;
 
 import com.cburch.logisim.analyze.model.Expression;
 import com.cburch.logisim.analyze.model.Expressions;
+import com.cburch.logisim.circuit.VectorState;
 import com.cburch.logisim.data.AttributeSet;
 import com.cburch.logisim.data.Value;
 import com.cburch.logisim.instance.Instance;
@@ -63,6 +64,29 @@ class XnorGate extends AbstractGate {
         }
     }
 
+    @Override
+    protected long computeOutputDefined(long[] inputs, int numInputs,
+            InstanceState state) {
+        Object behavior = state.getAttributeValue(GateAttributes.ATTR_XOR);
+        if (behavior == GateAttributes.XOR_ODD) {
+            return ~GateFunctions.computeOddParityDefined(inputs, numInputs);
+        } else {
+            return ~GateFunctions.computeExactlyOneDefined(inputs, numInputs);
+        }
+    }
+
+    @Override
+    protected void computeOutputVectors(long[] ones, long[] zeros,
+            int numInputs, VectorState state, long[] out) {
+        Object behavior = state.getAttributeValue(GateAttributes.ATTR_XOR);
+        if (behavior == GateAttributes.XOR_ODD) {
+            GateFunctions.computeOddParityVectors(ones, zeros, numInputs, out);
+        } else {
+            GateFunctions.computeExactlyOneVectors(ones, zeros, numInputs, out);
+        }
+        GateFunctions.notVectors(out);
+    }
+
     @Override
     protected boolean shouldRepairWire(Instance instance, WireRepairData data) {
         return !data.getPoint().equals(instance.getLocation());
@@ -43,10 +43,10 @@ public class DotMatrix extends InstanceFactory {
             new AttributeOption[] { INPUT_COLUMN, INPUT_ROW, INPUT_SELECT });
     static final Attribute<Integer> ATTR_MATRIX_COLS
         = Attributes.forIntegerRange("matrixcols",
-                getFromLocale("ioMatrixCols"), 1, Value.MAX_WIDTH);
+                getFromLocale("ioMatrixCols"), 1, 32);
     static final Attribute<Integer> ATTR_MATRIX_ROWS
         = Attributes.forIntegerRange("matrixrows",
-                getFromLocale("ioMatrixRows"), 1, Value.MAX_WIDTH);
+                getFromLocale("ioMatrixRows"), 1, 32);
     static final Attribute<AttributeOption> ATTR_DOT_SHAPE
         = Attributes.forOption("dotshape", getFromLocale("ioMatrixShape"),
             new AttributeOption[] { SHAPE_CIRCLE, SHAPE_SQUARE });
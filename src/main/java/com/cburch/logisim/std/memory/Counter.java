@@ -57,11 +57,11 @@ public class Counter extends InstanceFactory {
         setIconName("counter.svg");
         setInstancePoker(RegisterPoker.class);
         setInstanceLogger(RegisterLogger.class);
-        setKeyConfigurator(new BitWidthConfigurator(StdAttr.WIDTH));
+        setKeyConfigurator(new BitWidthConfigurator(StdAttr.INT_WIDTH, 1, 32));
 
         Port[] ps = new Port[7];
-        ps[OUT] = new Port(  0,   0, Port.OUTPUT, StdAttr.WIDTH);
-        ps[IN]  = new Port(-30,   0, Port.INPUT, StdAttr.WIDTH);
+        ps[OUT] = new Port(  0,   0, Port.OUTPUT, StdAttr.INT_WIDTH);
+        ps[IN]  = new Port(-30,   0, Port.INPUT, StdAttr.INT_WIDTH);
         ps[CK]  = new Port(-20,  20, Port.INPUT, 1);
         ps[CLR] = new Port(-10,  20, Port.INPUT, 1);
         ps[LD]  = new Port(-30, -10, Port.INPUT, 1);
@@ -98,7 +98,7 @@ public class Counter extends InstanceFactory {
             state.setData(data);
         }
 
-        BitWidth dataWidth = state.getAttributeValue(StdAttr.WIDTH);
+        BitWidth dataWidth = state.getAttributeValue(StdAttr.INT_WIDTH);
         Object triggerType = state.getAttributeValue(StdAttr.EDGE_TRIGGER);
         int max = state.getAttributeValue(ATTR_MAX).intValue();
         Value clock = state.getPort(CK);
@@ -112,7 +112,7 @@ public class Counter extends InstanceFactory {
         } else {
             boolean ld = state.getPort(LD) == Value.TRUE;
             boolean ct = state.getPort(CT) != Value.FALSE;
-            int oldVal = data.value;
+            int oldVal = (int) data.value;
             int newVal;
             if (!triggered) {
                 newVal = oldVal;
@@ -170,7 +170,7 @@ public class Counter extends InstanceFactory {
             */
         }
 
-        data.value = newValue.toIntValue();
+        data.value = newValue.toLongValue();
         state.setPort(OUT, newValue, DELAY);
         state.setPort(CARRY, carry ? Value.TRUE : Value.FALSE, DELAY);
     }
@@ -180,14 +180,14 @@ public class Counter extends InstanceFactory {
         Graphics g = painter.getGraphics();
         Bounds bds = painter.getBounds();
         RegisterData state = (RegisterData) painter.getData();
-        BitWidth widthVal = painter.getAttributeValue(StdAttr.WIDTH);
+        BitWidth widthVal = painter.getAttributeValue(StdAttr.INT_WIDTH);
         int width = widthVal == null ? 8 : widthVal.getWidth();
 
         // determine text to draw in label
         String a;
         String b = null;
         if (painter.getShowState()) {
-            int val = state == null ? 0 : state.value;
+            int val = state == null ? 0 : (int) state.value;
             String str = StringUtil.toHexString(width, val);
             if (str.length() <= 4) {
                 a = str;
@@ -17,7 +17,7 @@ class CounterAttributes extends AbstractAttributeSet {
 
     public CounterAttributes() {
         base = AttributeSets.fixedSet(new Attribute<?>[] {
-                StdAttr.WIDTH, Counter.ATTR_MAX, Counter.ATTR_ON_GOAL,
+                StdAttr.INT_WIDTH, Counter.ATTR_MAX, Counter.ATTR_ON_GOAL,
                 StdAttr.EDGE_TRIGGER,
                 StdAttr.LABEL, StdAttr.LABEL_FONT
             }, new Object[] {
@@ -52,14 +52,14 @@ class CounterAttributes extends AbstractAttributeSet {
 
 
         Integer newMax = null;
-        if (attr == StdAttr.WIDTH) {
-            BitWidth oldWidth = base.getValue(StdAttr.WIDTH);
+        if (attr == StdAttr.INT_WIDTH) {
+            BitWidth oldWidth = base.getValue(StdAttr.INT_WIDTH);
             BitWidth newWidth = (BitWidth) value;
             int oldW = oldWidth.getWidth();
             int newW = newWidth.getWidth();
             Integer oldValObj = base.getValue(Counter.ATTR_MAX);
             int oldVal = oldValObj.intValue();
-            base.setValue(StdAttr.WIDTH, newWidth);
+            base.setValue(StdAttr.INT_WIDTH, newWidth);
             if (newW > oldW) {
                 newMax = Integer.valueOf(newWidth.getMask());
             } else {
@@ -70,10 +70,10 @@ class CounterAttributes extends AbstractAttributeSet {
                     fireAttributeValueChanged(Counter.ATTR_MAX, newValObj);
                 }
             }
-            fireAttributeValueChanged(StdAttr.WIDTH, newWidth);
+            fireAttributeValueChanged(StdAttr.INT_WIDTH, newWidth);
         } else if (attr == Counter.ATTR_MAX) {
             int oldVal = base.getValue(Counter.ATTR_MAX).intValue();
-            BitWidth width = base.getValue(StdAttr.WIDTH);
+            BitWidth width = base.getValue(StdAttr.INT_WIDTH);
             int newVal = ((Integer) value).intValue() & width.getMask();
             if (newVal != oldVal) {
                 @SuppressWarnings("unchecked")
@@ -43,7 +43,7 @@ abstract class Mem extends InstanceFactory {
     public static final Attribute<BitWidth> ADDR_ATTR = Attributes.forBitWidth(
             "addrWidth", getFromLocale("ramAddrWidthAttr"), 2, 24);
     public static final Attribute<BitWidth> DATA_ATTR = Attributes.forBitWidth(
-            "dataWidth", getFromLocale("ramDataWidthAttr"));
+            "dataWidth", getFromLocale("ramDataWidthAttr"), 1, 32);
 
     // port-related constants
     static final int DATA = 0;
@@ -62,7 +62,7 @@ abstract class Mem extends InstanceFactory {
         setInstancePoker(MemPoker.class);
         setKeyConfigurator(JoinedConfigurator.create(
                 new BitWidthConfigurator(ADDR_ATTR, 2, 24, 0),
-                new BitWidthConfigurator(DATA_ATTR)));
+                new BitWidthConfigurator(DATA_ATTR, 1, 32)));
 
         setOffsetBounds(Bounds.create(-140, -40, 140, 80));
     }
@@ -154,6 +154,30 @@ abstract class Mem extends InstanceFactory {
         this.setCurrentImage(instanceState.getInstance(), imageFile);
     }
 
+    /**
+     * Keeps the memory's contents in the image file rather than on the
+     * heap, as {@link MemContents#map} describes, so that every value
+     * the simulation writes lands in the file.
+     */
+    public void mapImage(InstanceState instanceState, File imageFile)
+            throws IOException {
+        MemState s = this.getState(instanceState);
+        s.getContents().map(imageFile);
+        this.setCurrentImage(instanceState.getInstance(), imageFile);
+    }
+
+    /**
+     * Reads the memory's contents from an image file kept as mapImage
+     * keeps it, but leaves them on the heap, so that the simulation's
+     * writes do not reach the file.
+     */
+    public void copyMappedImage(InstanceState instanceState, File imageFile)
+            throws IOException {
+        MemState s = this.getState(instanceState);
+        s.getContents().map(imageFile);
+        s.getContents().unmap();
+    }
+
     @Override
     protected Object getInstanceFeature(Instance instance, Object key) {
         if (key == MenuExtender.class) {
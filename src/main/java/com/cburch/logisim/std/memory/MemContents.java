@@ -3,13 +3,21 @@
 
 package com.cburch.logisim.std.memory;
 
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
 import java.util.Arrays;
+import java.util.BitSet;
 
-import com.cburch.hex.HexModel;
+import com.cburch.hex.HexModelHistoryListener;
 import com.cburch.hex.HexModelListener;
+import com.cburch.hex.SparseHexModel;
+import com.cburch.logisim.util.EventBatch;
 import com.cburch.logisim.util.EventSourceWeakSupport;
 
-class MemContents implements Cloneable, HexModel {
+class MemContents implements Cloneable, SparseHexModel, EventBatch.Source {
     private static final int PAGE_SIZE_BITS = 12;
     private static final int PAGE_SIZE = 1 << PAGE_SIZE_BITS;
     private static final int PAGE_MASK = PAGE_SIZE - 1;
@@ -19,10 +27,22 @@ class MemContents implements Cloneable, HexModel {
     }
 
     private EventSourceWeakSupport<HexModelListener> listeners = null;
+    // how many listeners need the old values of each change
+    private int historyListeners = 0;
+    // the range of changes held back until the end of a propagation, if
+    // any, which other listeners are told of at once
+    private boolean deferred = false;
+    private long dirtyStart;
+    private long dirtyEnd;
     private int width;
     private int addrBits;
     private int mask;
     private MemContentsSub.ContentsInterface[] pages;
+    // the pages holding any value but zero
+    private BitSet occupied = new BitSet();
+    // the file holding the values if they are mapped rather than kept on
+    // the heap; every page then lies in the file and none is ever dropped
+    private MappedByteBuffer mapped = null;
 
     private MemContents(int addrBits, int width) {
         listeners = null;
@@ -39,6 +59,9 @@ class MemContents implements Cloneable, HexModel {
         }
 
         listeners.add(l);
+        if (l instanceof HexModelHistoryListener) {
+            historyListeners++;
+        }
     }
 
     @Override
@@ -47,9 +70,13 @@ class MemContents implements Cloneable, HexModel {
             return;
         }
 
-        listeners.add(l);
+        listeners.remove(l);
+        if (l instanceof HexModelHistoryListener) {
+            historyListeners--;
+        }
         if (listeners.isEmpty()) {
             listeners = null;
+            historyListeners = 0;
         }
 
     }
@@ -70,21 +97,65 @@ class MemContents implements Cloneable, HexModel {
 
     }
 
+    // The old values are null unless a listener needs them. Within a
+    // propagation, only those listeners hear of each change; the others
+    // are told of the range of all changes once it is done.
     private void fireBytesChanged(long start, long numBytes,
             int[] oldValues) {
         if (listeners == null) {
             return;
         }
 
+        boolean batched = deferChange(start, numBytes);
+        if (batched && historyListeners == 0) {
+            return;
+        }
         boolean found = false;
         for (HexModelListener l : listeners) {
             found = true;
-            l.bytesChanged(this, start, numBytes, oldValues);
+            if (!batched || l instanceof HexModelHistoryListener) {
+                l.bytesChanged(this, start, numBytes, oldValues);
+            }
         }
         if (!found) {
             listeners = null;
+            historyListeners = 0;
+        }
+
+    }
+
+    private boolean deferChange(long start, long numBytes) {
+        if (deferred) {
+            dirtyStart = Math.min(dirtyStart, start);
+            dirtyEnd = Math.max(dirtyEnd, start + numBytes);
+            return true;
+        } else if (EventBatch.defer(this)) {
+            deferred = true;
+            dirtyStart = start;
+            dirtyEnd = start + numBytes;
+            return true;
+        } else {
+            return false;
         }
+    }
+
+    @Override
+    public void flushEvents() {
+        deferred = false;
+        if (listeners == null) {
+            return;
+        }
+
+        for (HexModelListener l : listeners) {
+            if (!(l instanceof HexModelHistoryListener)) {
+                l.bytesChanged(this, dirtyStart, dirtyEnd - dirtyStart, null);
+            }
+        }
+    }
 
+    private int[] getOldValues(MemContentsSub.ContentsInterface page,
+            int start, int len) {
+        return historyListeners > 0 ? page.get(start, len) : null;
     }
 
     //
@@ -95,10 +166,19 @@ class MemContents implements Cloneable, HexModel {
         try {
             MemContents ret = (MemContents) super.clone();
             ret.listeners = null;
+            ret.historyListeners = 0;
+            ret.deferred = false;
+            ret.mapped = null;
+            ret.occupied = (BitSet) this.occupied.clone();
             ret.pages = new MemContentsSub.ContentsInterface[this.pages.length];
             for (int i = 0; i < ret.pages.length; i++) {
-                if (this.pages[i] != null) {
+                if (this.pages[i] == null) {
+                    // nothing to do
+                } else if (this.mapped != null) {
                     ret.pages[i] = this.pages[i].clone();
+                } else {
+                    // the page is copied once either memory writes it
+                    ret.pages[i] = this.pages[i].share();
                 }
             }
             return ret;
@@ -120,18 +200,42 @@ class MemContents implements Cloneable, HexModel {
     }
 
     public boolean isClear() {
-        for (int i = 0; i < pages.length; i++) {
+        return occupied.isEmpty();
+    }
+
+    @Override
+    public long getLastNonzeroOffset() {
+        long last = getLastOffset();
+        for (int i = occupied.previousSetBit(pages.length - 1); i >= 0;
+                i = occupied.previousSetBit(i - 1)) {
             MemContentsSub.ContentsInterface page = pages[i];
-            if (page != null) {
-                for (int j = page.getLength() - 1; j >= 0; j--) {
-                    if (page.get(j) != 0) {
-                        return false;
-                    }
+            long base = (long) i << PAGE_SIZE_BITS;
+            int end = (int) Math.min(page.getLength(), last - base + 1);
+            for (int j = end - 1; j >= 0; j--) {
+                if ((page.get(j) & mask) != 0) {
+                    return base + j;
+                }
+            }
+        }
+        return -1;
+    }
 
+    @Override
+    public long getNextNonzeroOffset(long start) {
+        long last = getLastOffset();
+        int index = (int) (Math.max(start, 0) >>> PAGE_SIZE_BITS);
+        for (int i = occupied.nextSetBit(index); i >= 0 && i < pages.length;
+                i = occupied.nextSetBit(i + 1)) {
+            MemContentsSub.ContentsInterface page = pages[i];
+            long base = (long) i << PAGE_SIZE_BITS;
+            int end = (int) Math.min(page.getLength(), last - base + 1);
+            for (int j = start > base ? (int) (start - base) : 0; j < end; j++) {
+                if ((page.get(j) & mask) != 0) {
+                    return base + j;
                 }
             }
         }
-        return true;
+        return last + 1;
     }
 
     @Override
@@ -141,11 +245,13 @@ class MemContents implements Cloneable, HexModel {
         int old = pages[page] == null ? 0 : pages[page].get(offs) & mask;
         int val = value & mask;
         if (old != val) {
-            if (pages[page] == null) {
-                pages[page] = MemContentsSub.createContents(PAGE_SIZE, width);
-            }
-            pages[page].set(offs, val);
-            fireBytesChanged(addr, 1, new int[] { old });
+            MemContentsSub.ContentsInterface p = ensurePage(page);
+            p.set(offs, val);
+            // the page is kept even if this clears it, as it is likely
+            // to be written again
+            occupied.set(page, !p.isClear());
+            fireBytesChanged(addr, 1,
+                    historyListeners > 0 ? new int[] { old } : null);
         }
     }
 
@@ -162,14 +268,11 @@ class MemContents implements Cloneable, HexModel {
         int endOffs = (int) ((start + values.length - 1) & PAGE_MASK);
 
         if (pageStart == pageEnd) {
-            ensurePage(pageStart);
-            MemContentsSub.ContentsInterface page = pages[pageStart];
+            MemContentsSub.ContentsInterface page = ensurePage(pageStart);
             if (!page.matches(values, startOffs, mask)) {
-                int[] oldValues = page.get(startOffs, values.length);
+                int[] oldValues = getOldValues(page, startOffs, values.length);
                 page.load(startOffs, values, mask);
-                if (page.isClear()) {
-                    pages[pageStart] = null;
-                }
+                dropIfClear(pageStart);
 
                 fireBytesChanged(start, values.length, oldValues);
             }
@@ -179,18 +282,15 @@ class MemContents implements Cloneable, HexModel {
                 pageStart--;
                 nextOffs = 0;
             } else {
-                ensurePage(pageStart);
                 int[] vals = new int[PAGE_SIZE - startOffs];
                 System.arraycopy(values, 0, vals, 0, vals.length);
-                MemContentsSub.ContentsInterface page = pages[pageStart];
+                MemContentsSub.ContentsInterface page = ensurePage(pageStart);
                 if (!page.matches(vals, startOffs, mask)) {
-                    int[] oldValues = page.get(startOffs, vals.length);
+                    int[] oldValues = getOldValues(page, startOffs, vals.length);
                     page.load(startOffs, vals, mask);
-                    if (page.isClear()) {
-                        pages[pageStart] = null;
-                    }
+                    dropIfClear(pageStart);
 
-                    fireBytesChanged(start, PAGE_SIZE - pageStart, oldValues);
+                    fireBytesChanged(start, vals.length, oldValues);
                 }
                 nextOffs = vals.length;
             }
@@ -214,27 +314,23 @@ class MemContents implements Cloneable, HexModel {
                 if (page != null) {
                     System.arraycopy(values, offs, vals, 0, PAGE_SIZE);
                     if (!page.matches(vals, startOffs, mask)) {
-                        int[] oldValues = page.get(0, PAGE_SIZE);
+                        int[] oldValues = getOldValues(page, 0, PAGE_SIZE);
+                        page = ensurePage(i);
                         page.load(0, vals, mask);
-                        if (page.isClear()) {
-                            pages[i] = null;
-                        }
+                        dropIfClear(i);
 
                         fireBytesChanged((long) i << PAGE_SIZE_BITS, PAGE_SIZE, oldValues);
                     }
                 }
             }
             if (endOffs >= 0) {
-                ensurePage(pageEnd);
                 vals = new int[endOffs + 1];
                 System.arraycopy(values, offs, vals, 0, endOffs + 1);
-                MemContentsSub.ContentsInterface page = pages[pageEnd];
+                MemContentsSub.ContentsInterface page = ensurePage(pageEnd);
                 if (!page.matches(vals, startOffs, mask)) {
-                    int[] oldValues = page.get(0, endOffs + 1);
+                    int[] oldValues = getOldValues(page, 0, endOffs + 1);
                     page.load(0, vals, mask);
-                    if (page.isClear()) {
-                        pages[pageEnd] = null;
-                    }
+                    dropIfClear(pageEnd);
 
                     fireBytesChanged((long) pageEnd << PAGE_SIZE_BITS, endOffs + 1, oldValues);
                 }
@@ -256,16 +352,13 @@ class MemContents implements Cloneable, HexModel {
         value &= mask;
 
         if (pageStart == pageEnd) {
-            ensurePage(pageStart);
             int[] vals = new int[(int) len];
             Arrays.fill(vals, value);
-            MemContentsSub.ContentsInterface page = pages[pageStart];
+            MemContentsSub.ContentsInterface page = ensurePage(pageStart);
             if (!page.matches(vals, startOffs, mask)) {
-                int[] oldValues = page.get(startOffs, (int) len);
+                int[] oldValues = getOldValues(page, startOffs, (int) len);
                 page.load(startOffs, vals, mask);
-                if (value == 0 && page.isClear()) {
-                    pages[pageStart] = null;
-                }
+                dropIfClear(pageStart);
 
                 fireBytesChanged(start, len, oldValues);
             }
@@ -276,18 +369,15 @@ class MemContents implements Cloneable, HexModel {
                 if (value == 0 && pages[pageStart] == null) {
                     // nothing to do
                 } else {
-                    ensurePage(pageStart);
                     int[] vals = new int[PAGE_SIZE - startOffs];
                     Arrays.fill(vals, value);
-                    MemContentsSub.ContentsInterface page = pages[pageStart];
+                    MemContentsSub.ContentsInterface page = ensurePage(pageStart);
                     if (!page.matches(vals, startOffs, mask)) {
-                        int[] oldValues = page.get(startOffs, vals.length);
+                        int[] oldValues = getOldValues(page, startOffs, vals.length);
                         page.load(startOffs, vals, mask);
-                        if (value == 0 && page.isClear()) {
-                            pages[pageStart] = null;
-                        }
+                        dropIfClear(pageStart);
 
-                        fireBytesChanged(start, PAGE_SIZE - pageStart, oldValues);
+                        fireBytesChanged(start, vals.length, oldValues);
                     }
                 }
             }
@@ -302,11 +392,11 @@ class MemContents implements Cloneable, HexModel {
                 int[] vals = new int[PAGE_SIZE];
                 Arrays.fill(vals, value);
                 for (int i = pageStart + 1; i < pageEnd; i++) {
-                    ensurePage(i);
-                    MemContentsSub.ContentsInterface page = pages[i];
+                    MemContentsSub.ContentsInterface page = ensurePage(i);
                     if (!page.matches(vals, 0, mask)) {
-                        int[] oldValues = page.get(0, PAGE_SIZE);
+                        int[] oldValues = getOldValues(page, 0, PAGE_SIZE);
                         page.load(0, vals, mask);
+                        dropIfClear(i);
                         fireBytesChanged((long) i << PAGE_SIZE_BITS, PAGE_SIZE, oldValues);
                     }
                 }
@@ -316,15 +406,13 @@ class MemContents implements Cloneable, HexModel {
                 if (value == 0 && page == null) {
                     // nothing to do
                 } else {
-                    ensurePage(pageEnd);
+                    page = ensurePage(pageEnd);
                     int[] vals = new int[endOffs + 1];
                     Arrays.fill(vals, value);
                     if (!page.matches(vals, 0, mask)) {
-                        int[] oldValues = page.get(0, endOffs + 1);
+                        int[] oldValues = getOldValues(page, 0, endOffs + 1);
                         page.load(0, vals, mask);
-                        if (value == 0 && page.isClear()) {
-                            pages[pageEnd] = null;
-                        }
+                        dropIfClear(pageEnd);
 
                         fireBytesChanged((long) pageEnd << PAGE_SIZE_BITS, endOffs + 1, oldValues);
                     }
@@ -334,32 +422,32 @@ class MemContents implements Cloneable, HexModel {
     }
 
     public void clear() {
-        for (int i = 0; i < pages.length; i++) {
-            if (pages[i] != null) {
-                if (pages[i] != null) {
-                    clearPage(i);
-                }
-
-            }
+        for (int i = occupied.nextSetBit(0); i >= 0; i = occupied.nextSetBit(i + 1)) {
+            clearPage(i);
         }
     }
 
     private void clearPage(int index) {
         MemContentsSub.ContentsInterface page = pages[index];
-        int[] oldValues = new int[page.getLength()];
-        boolean changed = false;
-        for (int j = 0; j < oldValues.length; j++) {
-            int val = page.get(j) & mask;
-            oldValues[j] = val;
-            if (val != 0) {
-                changed = true;
-            }
+        if (page.isClear()) {
+            return;
+        }
 
+        int length = page.getLength();
+        int[] oldValues = getOldValues(page, 0, length);
+        if (oldValues != null) {
+            for (int j = 0; j < length; j++) {
+                oldValues[j] &= mask;
+            }
         }
-        if (changed) {
+        if (mapped == null) {
+            page.release();
             pages[index] = null;
-            fireBytesChanged(index << PAGE_SIZE_BITS, oldValues.length, oldValues);
+        } else {
+            page.clear();
         }
+        occupied.clear(index);
+        fireBytesChanged((long) index << PAGE_SIZE_BITS, length, oldValues);
     }
 
     public void setDimensions(int addrBits, int width) {
@@ -367,6 +455,7 @@ class MemContents implements Cloneable, HexModel {
             return;
         }
 
+        unmap();
         this.addrBits = addrBits;
         this.width = width;
         this.mask = width == 32 ? 0xffffffff : ((1 << width) - 1);
@@ -391,10 +480,21 @@ class MemContents implements Cloneable, HexModel {
                     }
                 }
             }
+            for (MemContentsSub.ContentsInterface page : oldPages) {
+                if (page != null) {
+                    page.release();
+                }
+            }
         }
         if (pageCount == 0 && pages[0] == null) {
             pages[0] = MemContentsSub.createContents(pageLength, width);
         }
+        occupied = new BitSet(pageCount);
+        for (int i = 0; i < pageCount; i++) {
+            if (pages[i] != null && !pages[i].isClear()) {
+                occupied.set(i);
+            }
+        }
         fireMetainfoChanged();
     }
 
@@ -413,9 +513,102 @@ class MemContents implements Cloneable, HexModel {
         return width;
     }
 
-    private void ensurePage(int index) {
-        if (pages[index] == null) {
-            pages[index] = MemContentsSub.createContents(PAGE_SIZE, width);
+    /**
+     * Keeps the values in the given file, mapped into memory, rather than
+     * on the heap, so that a large memory need not fit on the heap and
+     * every change goes straight to the file. The file holds each value
+     * in one, two or four bytes, as its width requires, least significant
+     * byte first; it is lengthened with zeroes if it is too short. The
+     * current values are replaced by those of the file.
+     */
+    void map(File file) throws IOException {
+        unmap();
+        int pageCount = pages.length;
+        int pageLength = addrBits < PAGE_SIZE_BITS ? 1 << addrBits : PAGE_SIZE;
+        int pageBytes = pageLength * MemContentsSub.bytesPerValue(width);
+        long size = (long) pageCount * pageBytes;
+
+        MappedByteBuffer buf;
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            if (raf.length() < size) {
+                raf.setLength(size);
+            }
+            // the mapping stays valid once the file is closed
+            buf = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+        } finally {
+            raf.close();
+        }
+        for (int i = 0; i < pageCount; i++) {
+            if (pages[i] != null) {
+                pages[i].release();
+            }
+            pages[i] = MemContentsSub.createMapped(buf, i * pageBytes,
+                    pageLength, width);
+        }
+        mapped = buf;
+        occupied.clear();
+        for (int i = 0; i < pageCount; i++) {
+            occupied.set(i, !pages[i].isClear());
+        }
+        // too many values may have changed to list the old ones
+        fireBytesChanged(0, (long) pageCount * pageLength, null);
+    }
+
+    /** Returns whether the values are kept in a mapped file. */
+    boolean isMapped() {
+        return mapped != null;
+    }
+
+    /** Writes any changes to the mapped file out to the disk. */
+    void flush() {
+        if (mapped != null) {
+            mapped.force();
+        }
+    }
+
+    /** Moves the values from the mapped file back onto the heap, leaving
+     * the file as it is. */
+    void unmap() {
+        if (mapped == null) {
+            return;
+        }
+        mapped.force();
+        mapped = null;
+        for (int i = 0; i < pages.length; i++) {
+            if (pages[i].isClear()) {
+                pages[i] = null;
+            } else {
+                pages[i] = pages[i].clone();
+            }
+        }
+    }
+
+    // Notes whether the page just written holds anything but zeroes; a
+    // page of zeroes need not be kept, unless it lies in a mapped file.
+    private void dropIfClear(int index) {
+        if (!pages[index].isClear()) {
+            occupied.set(index);
+        } else {
+            occupied.clear(index);
+            if (mapped == null) {
+                pages[index].release();
+                pages[index] = null;
+            }
+        }
+    }
+
+    // Returns the page at the index for writing, creating it if it is
+    // absent and copying it if another memory shares it.
+    private MemContentsSub.ContentsInterface ensurePage(int index) {
+        MemContentsSub.ContentsInterface page = pages[index];
+        if (page == null) {
+            page = MemContentsSub.createContents(PAGE_SIZE, width);
+            pages[index] = page;
+        } else {
+            page = page.unshare();
+            pages[index] = page;
         }
+        return page;
     }
 }
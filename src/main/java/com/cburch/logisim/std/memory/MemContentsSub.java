@@ -3,6 +3,8 @@
 
 package com.cburch.logisim.std.memory;
 
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.util.Arrays;
 
 class MemContentsSub {
@@ -23,15 +25,61 @@ class MemContentsSub {
 
     }
 
+    /** Returns the number of bytes each value takes in a page of the
+     * given width, both on the heap and in a mapped file. */
+    static int bytesPerValue(int bits) {
+        return bits <= 8 ? 1 : bits <= 16 ? 2 : 4;
+    }
+
+    /** Creates a page kept in a mapped file rather than on the heap, of
+     * <code>size</code> values starting at the byte <code>offset</code>. */
+    static ContentsInterface createMapped(ByteBuffer buf, int offset,
+            int size, int bits) {
+        return new MappedContents(buf, offset, size, bits);
+    }
+
     static abstract class ContentsInterface implements Cloneable {
+        // the number of memories holding this page; it is copied before
+        // being written by a memory that shares it with another
+        private int holders = 1;
+        // the number of values that are not zero, kept by each subclass
+        int nonzero = 0;
+
         @Override
         public ContentsInterface clone() {
             try {
-                return (ContentsInterface) super.clone();
+                ContentsInterface ret = (ContentsInterface) super.clone();
+                ret.holders = 1;
+                return ret;
             } catch (CloneNotSupportedException e) {
                 return this;
             }
         }
+
+        /** Adds a memory holding this page, returning the page. */
+        synchronized ContentsInterface share() {
+            holders++;
+            return this;
+        }
+
+        /** Removes a memory holding this page. */
+        synchronized void release() {
+            holders--;
+        }
+
+        /** Returns a page that the caller alone holds and may write: this
+         * one if it is not shared, or else a copy, after which the caller
+         * no longer holds this one. The copy is made before letting go,
+         * so that no other holder writes to the page while it is read. */
+        synchronized ContentsInterface unshare() {
+            if (holders == 1) {
+                return this;
+            }
+            ContentsInterface ret = clone();
+            holders--;
+            return ret;
+        }
+
         abstract int getLength();
         abstract int get(int addr);
         abstract void set(int addr, int value);
@@ -55,13 +103,18 @@ class MemContentsSub {
         }
 
         boolean isClear() {
-            for (int i = 0, n = getLength(); i < n; i++) {
-                if (get(i) != 0) {
-                    return false;
-                }
+            return nonzero == 0;
+        }
 
+        // Keeps count of the nonzero values as one changes.
+        void countChange(int oldValue, int newValue) {
+            if (oldValue == 0) {
+                if (newValue != 0) {
+                    nonzero++;
+                }
+            } else if (newValue == 0) {
+                nonzero--;
             }
-            return true;
         }
     }
 
@@ -99,6 +152,7 @@ class MemContentsSub {
                 byte oldValue = data[addr];
                 if (value != oldValue) {
                     data[addr] = (byte) value;
+                    countChange(oldValue, data[addr]);
                 }
             }
         }
@@ -106,13 +160,16 @@ class MemContentsSub {
         @Override
         void clear() {
             Arrays.fill(data, (byte) 0);
+            nonzero = 0;
         }
 
         @Override
         void load(int start, int[] values, int mask) {
             int n = Math.min(values.length, data.length - start);
             for (int i = 0; i < n; i++) {
+                byte oldValue = data[start + i];
                 data[start + i] = (byte) (values[i] & mask);
+                countChange(oldValue, data[start + i]);
             }
         }
     }
@@ -151,6 +208,7 @@ class MemContentsSub {
                 short oldValue = data[addr];
                 if (value != oldValue) {
                     data[addr] = (short) value;
+                    countChange(oldValue, data[addr]);
                 }
             }
         }
@@ -158,13 +216,16 @@ class MemContentsSub {
         @Override
         void clear() {
             Arrays.fill(data, (short) 0);
+            nonzero = 0;
         }
 
         @Override
         void load(int start, int[] values, int mask) {
             int n = Math.min(values.length, data.length - start);
             for (int i = 0; i < n; i++) {
+                short oldValue = data[start + i];
                 data[start + i] = (short) (values[i] & mask);
+                countChange(oldValue, data[start + i]);
             }
         }
     }
@@ -203,6 +264,7 @@ class MemContentsSub {
                 int oldValue = data[addr];
                 if (value != oldValue) {
                     data[addr] = value;
+                    countChange(oldValue, data[addr]);
                 }
             }
         }
@@ -210,13 +272,100 @@ class MemContentsSub {
         @Override
         void clear() {
             Arrays.fill(data, 0);
+            nonzero = 0;
         }
 
         @Override
         void load(int start, int[] values, int mask) {
             int n = Math.min(values.length, data.length - start);
             for (int i = 0; i < n; i++) {
-                data[i] = values[i] & mask;
+                int oldValue = data[start + i];
+                data[start + i] = values[i] & mask;
+                countChange(oldValue, data[start + i]);
+            }
+        }
+    }
+
+    /**
+     * A page whose values lie in a file mapped into memory, each in as many
+     * bytes as a heap page would use, least significant byte first. A clone
+     * is on the heap, so that only the original writes to the file.
+     */
+    private static class MappedContents extends ContentsInterface {
+        private ByteBuffer data;
+        private int bytes;
+        private int length;
+        private int bits;
+
+        MappedContents(ByteBuffer buf, int offset, int size, int bits) {
+            ByteBuffer dup = buf.duplicate();
+            dup.position(offset);
+            dup.limit(offset + size * bytesPerValue(bits));
+            this.data = dup.slice().order(ByteOrder.LITTLE_ENDIAN);
+            this.bytes = bytesPerValue(bits);
+            this.length = size;
+            this.bits = bits;
+            for (int i = 0; i < size; i++) {
+                countChange(0, get(i));
+            }
+        }
+
+        @Override
+        public ContentsInterface clone() {
+            ContentsInterface ret = createContents(length, bits);
+            for (int i = 0; i < length; i++) {
+                ret.set(i, get(i));
+            }
+            return ret;
+        }
+
+        //
+        // methods for accessing data within memory
+        //
+        @Override
+        int getLength() {
+            return length;
+        }
+
+        @Override
+        int get(int addr) {
+            if (addr < 0 || addr >= length) {
+                return 0;
+            }
+            switch (bytes) {
+            case 1: return data.get(addr);
+            case 2: return data.getShort(addr << 1);
+            default: return data.getInt(addr << 2);
+            }
+        }
+
+        @Override
+        void set(int addr, int value) {
+            if (addr >= 0 && addr < length) {
+                int oldValue = get(addr);
+                switch (bytes) {
+                case 1: data.put(addr, (byte) value); break;
+                case 2: data.putShort(addr << 1, (short) value); break;
+                default: data.putInt(addr << 2, value); break;
+                }
+                countChange(oldValue, get(addr));
+            }
+        }
+
+        @Override
+        void clear() {
+            byte[] zeroes = new byte[length * bytes];
+            ByteBuffer dup = data.duplicate();
+            dup.clear();
+            dup.put(zeroes);
+            nonzero = 0;
+        }
+
+        @Override
+        void load(int start, int[] values, int mask) {
+            int n = Math.min(values.length, length - start);
+            for (int i = 0; i < n; i++) {
+                set(start + i, values[i] & mask);
             }
         }
     }
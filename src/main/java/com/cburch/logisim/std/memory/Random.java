@@ -36,20 +36,20 @@ public class Random extends InstanceFactory {
     public Random() {
         super("Random", getFromLocale("randomComponent"));
         setAttributes(new Attribute[] {
-                StdAttr.WIDTH, ATTR_SEED, StdAttr.EDGE_TRIGGER,
+                StdAttr.INT_WIDTH, ATTR_SEED, StdAttr.EDGE_TRIGGER,
                 StdAttr.LABEL, StdAttr.LABEL_FONT
             }, new Object[] {
                 BitWidth.create(8), Integer.valueOf(0), StdAttr.TRIG_RISING,
                 "", StdAttr.DEFAULT_LABEL_FONT
             });
-        setKeyConfigurator(new BitWidthConfigurator(StdAttr.WIDTH));
+        setKeyConfigurator(new BitWidthConfigurator(StdAttr.INT_WIDTH, 1, 32));
 
         setOffsetBounds(Bounds.create(-30, -20, 30, 40));
         setIconName("random.svg");
         setInstanceLogger(Logger.class);
 
         Port[] ps = new Port[4];
-        ps[OUT] = new Port(  0,   0, Port.OUTPUT, StdAttr.WIDTH);
+        ps[OUT] = new Port(  0,   0, Port.OUTPUT, StdAttr.INT_WIDTH);
         ps[CK]  = new Port(-30, -10, Port.INPUT, 1);
         ps[NXT] = new Port(-30,  10, Port.INPUT, 1);
         ps[RST] = new Port(-20,  20, Port.INPUT, 1);
@@ -76,7 +76,7 @@ public class Random extends InstanceFactory {
             state.setData(data);
         }
 
-        BitWidth dataWidth = state.getAttributeValue(StdAttr.WIDTH);
+        BitWidth dataWidth = state.getAttributeValue(StdAttr.INT_WIDTH);
         Object triggerType = state.getAttributeValue(StdAttr.EDGE_TRIGGER);
         boolean triggered = data.updateClock(state.getPort(CK), triggerType);
 
@@ -94,7 +94,7 @@ public class Random extends InstanceFactory {
         Graphics g = painter.getGraphics();
         Bounds bds = painter.getBounds();
         StateData state = (StateData) painter.getData();
-        BitWidth widthVal = painter.getAttributeValue(StdAttr.WIDTH);
+        BitWidth widthVal = painter.getAttributeValue(StdAttr.INT_WIDTH);
         int width = widthVal == null ? 8 : widthVal.getWidth();
 
         // draw boundary, label
@@ -173,7 +173,7 @@ public class Random extends InstanceFactory {
 
         @Override
         public Value getLogValue(InstanceState state, Object option) {
-            BitWidth dataWidth = state.getAttributeValue(StdAttr.WIDTH);
+            BitWidth dataWidth = state.getAttributeValue(StdAttr.INT_WIDTH);
             if (dataWidth == null) {
                 dataWidth = BitWidth.create(0);
             }
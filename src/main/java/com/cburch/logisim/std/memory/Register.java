@@ -39,7 +39,7 @@ public class Register extends InstanceFactory {
                 BitWidth.create(8), StdAttr.TRIG_RISING,
                 "", StdAttr.DEFAULT_LABEL_FONT
             });
-        setKeyConfigurator(new BitWidthConfigurator(StdAttr.WIDTH));
+        setKeyConfigurator(new BitWidthConfigurator(StdAttr.WIDTH, 1, 64));
         setOffsetBounds(Bounds.create(-30, -20, 30, 40));
         setIconName("register.svg");
         setInstancePoker(RegisterPoker.class);
@@ -84,7 +84,7 @@ public class Register extends InstanceFactory {
         } else if (triggered && state.getPort(EN) != Value.FALSE) {
             Value in = state.getPort(IN);
             if (in.isFullyDefined()) {
-                data.value = in.toIntValue();
+                data.value = in.toLongValue();
             }
 
         }
@@ -104,7 +104,7 @@ public class Register extends InstanceFactory {
         String a;
         String b = null;
         if (painter.getShowState()) {
-            int val = state == null ? 0 : state.value;
+            long val = state == null ? 0 : state.value;
             String str = StringUtil.toHexString(width, val);
             if (str.length() <= 4) {
                 a = str;
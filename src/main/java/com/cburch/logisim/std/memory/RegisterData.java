@@ -3,20 +3,29 @@
 
 package com.cburch.logisim.std.memory;
 
+import com.cburch.logisim.data.AttributeSet;
+import com.cburch.logisim.data.BitWidth;
 import com.cburch.logisim.instance.InstanceData;
+import com.cburch.logisim.instance.StdAttr;
 
 class RegisterData extends ClockState implements InstanceData {
-    int value;
+    long value;
 
     public RegisterData() {
         value = 0;
     }
 
-    public void setValue(int value) {
+    public void setValue(long value) {
         this.value = value;
     }
 
-    public int getValue() {
+    public long getValue() {
         return value;
     }
-}
\ No newline at end of file
+
+    // registers hold up to 64 bits, counters only 32
+    static BitWidth getDataWidth(AttributeSet attrs) {
+        BitWidth ret = attrs.getValue(StdAttr.WIDTH);
+        return ret != null ? ret : attrs.getValue(StdAttr.INT_WIDTH);
+    }
+}
@@ -18,7 +18,7 @@ public class RegisterLogger extends InstanceLogger {
 
     @Override
     public Value getLogValue(InstanceState state, Object option) {
-        BitWidth dataWidth = state.getAttributeValue(StdAttr.WIDTH);
+        BitWidth dataWidth = RegisterData.getDataWidth(state.getAttributeSet());
         if (dataWidth == null) {
             dataWidth = BitWidth.create(0);
         }
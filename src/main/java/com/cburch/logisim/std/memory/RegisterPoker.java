@@ -13,11 +13,10 @@ import com.cburch.logisim.data.Bounds;
 import com.cburch.logisim.instance.InstancePainter;
 import com.cburch.logisim.instance.InstancePoker;
 import com.cburch.logisim.instance.InstanceState;
-import com.cburch.logisim.instance.StdAttr;
 
 public class RegisterPoker extends InstancePoker {
-    private int initValue;
-    private int curValue;
+    private long initValue;
+    private long curValue;
 
     @Override
     public boolean init(InstanceState state, MouseEvent e) {
@@ -34,7 +33,7 @@ public class RegisterPoker extends InstancePoker {
     @Override
     public void paint(InstancePainter painter) {
         Bounds bds = painter.getBounds();
-        BitWidth dataWidth = painter.getAttributeValue(StdAttr.WIDTH);
+        BitWidth dataWidth = RegisterData.getDataWidth(painter.getAttributeSet());
         int width = dataWidth == null ? 8 : dataWidth.getWidth();
         int len = (width + 3) / 4;
 
@@ -57,12 +56,14 @@ public class RegisterPoker extends InstancePoker {
         }
 
 
-        BitWidth dataWidth = state.getAttributeValue(StdAttr.WIDTH);
+        BitWidth dataWidth = RegisterData.getDataWidth(state.getAttributeSet());
         if (dataWidth == null) {
             dataWidth = BitWidth.create(8);
         }
 
-        curValue = (curValue * 16 + val) & dataWidth.getMask();
+        int width = dataWidth.getWidth();
+        long mask = width >= 64 ? -1L : (1L << width) - 1;
+        curValue = (curValue * 16 + val) & mask;
         RegisterData data = (RegisterData) state.getData();
         data.value = curValue;
 
@@ -4,12 +4,12 @@
 package com.cburch.logisim.std.memory;
 
 import com.cburch.hex.HexModel;
-import com.cburch.hex.HexModelListener;
+import com.cburch.hex.HexModelHistoryListener;
 import com.cburch.logisim.proj.Action;
 import com.cburch.logisim.proj.Project;
 import static com.cburch.logisim.util.LocaleString.*;
 
-class RomContentsListener implements HexModelListener {
+class RomContentsListener implements HexModelHistoryListener {
     private static class Change extends Action {
         private RomContentsListener source;
         private MemContents contents;
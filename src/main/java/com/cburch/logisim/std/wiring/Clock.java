@@ -211,14 +211,29 @@ public class Clock extends InstanceFactory {
     // package methods
     //
     public static boolean tick(CircuitState circState, int ticks, Component comp) {
-        AttributeSet attrs = comp.getAttributeSet();
-        int durationHigh = attrs.getValue(ATTR_HIGH).intValue();
-        int durationLow = attrs.getValue(ATTR_LOW).intValue();
         ClockState state = (ClockState) circState.getData(comp);
         if (state == null) {
             state = new ClockState();
             circState.setData(comp, state);
         }
+        if (tick(state, comp.getAttributeSet(), ticks)) {
+            Instance.getInstanceFor(comp).fireInvalidated();
+            return true;
+        }
+        return false;
+    }
+
+    public static boolean tick(InstanceState state, int ticks) {
+        if (tick(getState(state), state.getAttributeSet(), ticks)) {
+            state.fireInvalidated();
+            return true;
+        }
+        return false;
+    }
+
+    private static boolean tick(ClockState state, AttributeSet attrs, int ticks) {
+        int durationHigh = attrs.getValue(ATTR_HIGH).intValue();
+        int durationLow = attrs.getValue(ATTR_LOW).intValue();
         boolean curValue = ticks % (durationHigh + durationLow) < durationLow;
         if (state.clicks % 2 == 1) {
             curValue = !curValue;
@@ -227,7 +242,6 @@ public class Clock extends InstanceFactory {
         Value desired = (curValue ? Value.FALSE : Value.TRUE);
         if (!state.sending.equals(desired)) {
             state.sending = desired;
-            Instance.getInstanceFor(comp).fireInvalidated();
             return true;
         }
         return false;
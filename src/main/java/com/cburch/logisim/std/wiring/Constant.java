@@ -12,6 +12,8 @@ import java.util.Map;
 import com.cburch.logisim.analyze.model.Expression;
 import com.cburch.logisim.analyze.model.Expressions;
 import com.cburch.logisim.circuit.ExpressionComputer;
+import com.cburch.logisim.circuit.VectorComputer;
+import com.cburch.logisim.circuit.VectorState;
 import com.cburch.logisim.data.AbstractAttributeSet;
 import com.cburch.logisim.data.Attribute;
 import com.cburch.logisim.data.AttributeSet;
@@ -42,7 +44,7 @@ public class Constant extends InstanceFactory {
 
     private static final List<Attribute<?>> ATTRIBUTES
         = Arrays.asList(new Attribute<?>[] {
-                StdAttr.FACING, StdAttr.WIDTH, ATTR_VALUE
+                StdAttr.FACING, StdAttr.INT_WIDTH, ATTR_VALUE
         });
 
     private static class ConstantAttributes extends AbstractAttributeSet {
@@ -69,7 +71,7 @@ public class Constant extends InstanceFactory {
             if (attr == StdAttr.FACING) {
             	return (V) facing;
             }
-            if (attr == StdAttr.WIDTH) {
+            if (attr == StdAttr.INT_WIDTH) {
             	return (V) width;
             }
             if (attr == ATTR_VALUE) {
@@ -82,7 +84,7 @@ public class Constant extends InstanceFactory {
         public <V> void setValue(Attribute<V> attr, V value) {
             if (attr == StdAttr.FACING) {
                 facing = (Direction) value;
-            } else if (attr == StdAttr.WIDTH) {
+            } else if (attr == StdAttr.INT_WIDTH) {
                 width = (BitWidth) value;
                 this.value = this.value.extendWidth(width.getWidth(),
                         this.value.get(this.value.getWidth() - 1));
@@ -113,12 +115,24 @@ public class Constant extends InstanceFactory {
         }
     }
 
+    private static final VectorComputer CONSTANT_VECTORS = new VectorComputer() {
+        @Override
+        public void computeVectors(VectorState state) {
+            BitWidth width = state.getAttributeValue(StdAttr.INT_WIDTH);
+            int value = state.getAttributeValue(ATTR_VALUE).intValue();
+            for (int b = 0; b < width.getWidth(); b++) {
+                boolean set = ((value >> b) & 1) != 0;
+                state.setPort(0, b, set ? -1L : 0L, set ? 0L : -1L);
+            }
+        }
+    };
+
     public Constant() {
         super("Constant", getFromLocale("constantComponent"));
         setFacingAttribute(StdAttr.FACING);
         setKeyConfigurator(JoinedConfigurator.create(
                 new ConstantConfigurator(),
-                new BitWidthConfigurator(StdAttr.WIDTH)));
+                new BitWidthConfigurator(StdAttr.INT_WIDTH, 1, 32)));
     }
 
     @Override
@@ -133,13 +147,13 @@ public class Constant extends InstanceFactory {
     }
 
     private void updatePorts(Instance instance) {
-        Port[] ps = { new Port(0, 0, Port.OUTPUT, StdAttr.WIDTH) };
+        Port[] ps = { new Port(0, 0, Port.OUTPUT, StdAttr.INT_WIDTH) };
         instance.setPorts(ps);
     }
 
     @Override
     protected void instanceAttributeChanged(Instance instance, Attribute<?> attr) {
-        if (attr == StdAttr.WIDTH) {
+        if (attr == StdAttr.INT_WIDTH) {
             instance.recomputeBounds();
             updatePorts(instance);
         } else if (attr == StdAttr.FACING) {
@@ -152,12 +166,13 @@ public class Constant extends InstanceFactory {
     @Override
     protected Object getInstanceFeature(Instance instance, Object key) {
         if (key == ExpressionComputer.class) return new ConstantExpression(instance);
+        if (key == VectorComputer.class) return CONSTANT_VECTORS;
         return super.getInstanceFeature(instance, key);
     }
 
     @Override
     public void propagate(InstanceState state) {
-        BitWidth width = state.getAttributeValue(StdAttr.WIDTH);
+        BitWidth width = state.getAttributeValue(StdAttr.INT_WIDTH);
         int value = state.getAttributeValue(ATTR_VALUE).intValue();
         state.setPort(0, Value.createKnown(width, value), 1);
     }
@@ -165,7 +180,7 @@ public class Constant extends InstanceFactory {
     @Override
     public Bounds getOffsetBounds(AttributeSet attrs) {
         Direction facing = attrs.getValue(StdAttr.FACING);
-        BitWidth width = attrs.getValue(StdAttr.WIDTH);
+        BitWidth width = attrs.getValue(StdAttr.INT_WIDTH);
         int chars = (width.getWidth() + 3) / 4;
 
         Bounds ret = null;
@@ -225,7 +240,7 @@ public class Constant extends InstanceFactory {
     //
     @Override
     public void paintIcon(InstancePainter painter) {
-        int w = painter.getAttributeValue(StdAttr.WIDTH).getWidth();
+        int w = painter.getAttributeValue(StdAttr.INT_WIDTH).getWidth();
         int pinx = 16; int piny = 9;
         Direction dir = painter.getAttributeValue(StdAttr.FACING);
         // keep defaults
@@ -263,7 +278,7 @@ public class Constant extends InstanceFactory {
     @Override
     public void paintInstance(InstancePainter painter) {
         Bounds bds = painter.getOffsetBounds();
-        BitWidth width = painter.getAttributeValue(StdAttr.WIDTH);
+        BitWidth width = painter.getAttributeValue(StdAttr.INT_WIDTH);
         int intValue = painter.getAttributeValue(ATTR_VALUE).intValue();
         Value v = Value.createKnown(width, intValue);
         Location loc = painter.getLocation();
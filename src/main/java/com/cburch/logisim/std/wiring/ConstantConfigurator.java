@@ -15,7 +15,7 @@ class ConstantConfigurator extends IntegerConfigurator {
 
     @Override
     public int getMaximumValue(AttributeSet attrs) {
-        BitWidth width = attrs.getValue(StdAttr.WIDTH);
+        BitWidth width = attrs.getValue(StdAttr.INT_WIDTH);
         int ret = width.getMask();
         if (ret >= 0) {
             return ret;
@@ -26,7 +26,7 @@ class ConstantConfigurator extends IntegerConfigurator {
 
     @Override
     public int getMinimumValue(AttributeSet attrs) {
-        BitWidth width = attrs.getValue(StdAttr.WIDTH);
+        BitWidth width = attrs.getValue(StdAttr.INT_WIDTH);
         if (width.getWidth() < 32) {
             return 0;
         } else {
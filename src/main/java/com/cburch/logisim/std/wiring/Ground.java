@@ -12,6 +12,8 @@ import java.awt.Graphics2D;
 import com.cburch.logisim.tools.key.BitWidthConfigurator;
 import com.cburch.logisim.util.GraphicsUtil;
 
+import com.cburch.logisim.circuit.VectorComputer;
+import com.cburch.logisim.circuit.VectorState;
 import com.cburch.logisim.circuit.Wire;
 import com.cburch.logisim.data.Attribute;
 import com.cburch.logisim.data.AttributeSet;
@@ -57,6 +59,22 @@ public class Ground extends InstanceFactory {
             .rotate(Direction.EAST, attrs.getValue(StdAttr.FACING), 0, 0);
     }
 
+    @Override
+    protected Object getInstanceFeature(Instance instance, Object key) {
+        if (key == VectorComputer.class) {
+            return new VectorComputer() {
+                @Override
+                public void computeVectors(VectorState state) {
+                    BitWidth width = state.getAttributeValue(StdAttr.WIDTH);
+                    for (int b = 0; b < width.getWidth(); b++) {
+                        state.setPort(0, b, 0L, -1L);
+                    }
+                }
+            };
+        }
+        return super.getInstanceFeature(instance, key);
+    }
+
     @Override
     public void propagate(InstanceState state) {
         BitWidth width = state.getAttributeValue(StdAttr.WIDTH);
@@ -7,6 +7,7 @@ import java.awt.Color;
 import java.awt.Graphics;
 
 import com.cburch.logisim.circuit.RadixOption;
+import com.cburch.logisim.circuit.VectorComputer;
 import com.cburch.logisim.comp.TextField;
 import com.cburch.logisim.data.Attribute;
 import com.cburch.logisim.data.AttributeSet;
@@ -185,6 +186,12 @@ public class Probe extends InstanceFactory {
         }
     }
 
+    @Override
+    protected Object getInstanceFeature(Instance instance, Object key) {
+        if (key == VectorComputer.class) return VectorComputer.PASSIVE;
+        return super.getInstanceFeature(instance, key);
+    }
+
     @Override
     public void propagate(InstanceState state) {
         StateData oldData = (StateData) state.getData();
@@ -313,6 +320,19 @@ public class Probe extends InstanceFactory {
                 ret = Bounds.create(-40, 0, 80, 80); break;
             }
         }
+        if (ret == null && len > 32) {
+            // eight digits to a row, as for the narrower values above
+            int rows = (len + 7) / 8;
+            if (dir == Direction.EAST) {
+                ret = Bounds.create(-80, -10 * rows, 80, 20 * rows);
+            } else if (dir == Direction.WEST) {
+                ret = Bounds.create(0, -10 * rows, 80, 20 * rows);
+            } else if (dir == Direction.SOUTH) {
+                ret = Bounds.create(-40, -20 * rows, 80, 20 * rows);
+            } else if (dir == Direction.NORTH) {
+                ret = Bounds.create(-40, 0, 80, 20 * rows);
+            }
+        }
         if (ret == null) {
             // should never happen
             ret = Bounds.create(0, -10, 20, 20);
@@ -9,6 +9,7 @@ import java.awt.Graphics2D;
 
 import javax.swing.Icon;
 
+import com.cburch.logisim.circuit.VectorComputer;
 import com.cburch.logisim.data.Attribute;
 import com.cburch.logisim.data.AttributeOption;
 import com.cburch.logisim.data.AttributeSet;
@@ -163,6 +164,12 @@ public class PullResistor extends InstanceFactory {
         }
     }
 
+    @Override
+    protected Object getInstanceFeature(Instance instance, Object key) {
+        if (key == VectorComputer.class) return VectorComputer.PASSIVE;
+        return super.getInstanceFeature(instance, key);
+    }
+
     @Override
     public void propagate(InstanceState state) {
         // nothing to do - handled by CircuitWires
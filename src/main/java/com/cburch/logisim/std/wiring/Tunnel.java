@@ -7,6 +7,7 @@ import java.awt.Color;
 import java.awt.FontMetrics;
 import java.awt.Graphics;
 
+import com.cburch.logisim.circuit.VectorComputer;
 import com.cburch.logisim.comp.TextField;
 import com.cburch.logisim.data.Attribute;
 import com.cburch.logisim.data.AttributeSet;
@@ -164,6 +165,12 @@ public class Tunnel extends InstanceFactory {
         }
     }
 
+    @Override
+    protected Object getInstanceFeature(Instance instance, Object key) {
+        if (key == VectorComputer.class) return VectorComputer.PASSIVE;
+        return super.getInstanceFeature(instance, key);
+    }
+
     @Override
     public void propagate(InstanceState state) {
         // nothing to do - handled by circuit
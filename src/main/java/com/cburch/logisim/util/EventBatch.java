@@ -0,0 +1,115 @@
+/* Copyright (c) 2010, Carl Burch. License information is located in the
+ * com.cburch.logisim.Main source code and at www.cburch.com/logisim/. */
+
+package com.cburch.logisim.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A span of work on one thread, such as a propagation, during which event
+ * sources may hold back their events and deliver them together once the
+ * span ends. Spans nest, and the events are delivered at the end of the
+ * outermost one. A source outside any span delivers its events at once.
+ * Work that one thread does for another, as in a parallel propagation,
+ * hands the sources it defers over to that thread with beginHandOff and
+ * endHandOff.
+ */
+public class EventBatch {
+    /** An event source that can hold back its events. */
+    public interface Source {
+        /** Delivers the events held back since the source was deferred. */
+        public void flushEvents();
+    }
+
+    private static final ThreadLocal<EventBatch> current
+        = new ThreadLocal<EventBatch>() {
+            @Override
+            protected EventBatch initialValue() {
+                return new EventBatch();
+            }
+        };
+
+    private int depth = 0;
+    private ArrayList<Source> deferred = new ArrayList<Source>();
+
+    private EventBatch() { }
+
+    public static void begin() {
+        current.get().depth++;
+    }
+
+    public static void end() {
+        EventBatch batch = current.get();
+        batch.depth--;
+        if (batch.depth == 0) {
+            // nothing is deferred while flushing, as the span has ended
+            ArrayList<Source> sources = batch.deferred;
+            try {
+                for (int i = 0; i < sources.size(); i++) {
+                    sources.get(i).flushEvents();
+                }
+            } finally {
+                sources.clear();
+            }
+        }
+    }
+
+    /**
+     * Begins a span for work done on this thread on behalf of another,
+     * returning a mark to pass to endHandOff.
+     */
+    public static int beginHandOff() {
+        EventBatch batch = current.get();
+        batch.depth++;
+        return batch.deferred.size();
+    }
+
+    /**
+     * Ends a span begun by beginHandOff, returning the sources deferred
+     * during it rather than delivering their events. The thread for which
+     * the work was done is to pass them to deferAll.
+     */
+    public static List<Source> endHandOff(int mark) {
+        EventBatch batch = current.get();
+        batch.depth--;
+        ArrayList<Source> sources = batch.deferred;
+        if (sources.size() == mark) {
+            return Collections.emptyList();
+        }
+        List<Source> added = sources.subList(mark, sources.size());
+        List<Source> ret = new ArrayList<Source>(added);
+        added.clear();
+        return ret;
+    }
+
+    /**
+     * Holds back the events of sources handed over by endHandOff until
+     * the current span ends, or delivers them at once if this thread is
+     * in no span.
+     */
+    public static void deferAll(List<Source> sources) {
+        for (int i = 0; i < sources.size(); i++) {
+            Source source = sources.get(i);
+            if (!defer(source)) {
+                source.flushEvents();
+            }
+        }
+    }
+
+    /**
+     * Asks to hold back the source's events until the current span ends,
+     * returning false if this thread is in no span, in which case the
+     * source should deliver them at once. A source is to be deferred only
+     * once until it is flushed.
+     */
+    public static boolean defer(Source source) {
+        EventBatch batch = current.get();
+        if (batch.depth == 0) {
+            return false;
+        }
+        batch.deferred.add(source);
+        return true;
+    }
+}
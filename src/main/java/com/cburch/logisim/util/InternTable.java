@@ -0,0 +1,135 @@
+/* Copyright (c) 2010, Carl Burch. License information is located in the
+ * com.cburch.logisim.Main source code and at www.cburch.com/logisim/. */
+
+package com.cburch.logisim.util;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Keeps one copy of each immutable object recently created, so that
+ * creating an equal object again can return the existing one.
+ *
+ * <p>The table is open addressed: an object may sit in any of a few slots
+ * following the one its hash code selects. The caller looks through those
+ * slots with {@link #find}, comparing each candidate against the fields
+ * of the object it wants, and only creates the object and {@link #add}s
+ * it when none matches. Once the slots are all taken, a new object
+ * replaces one of them, so the table never grows past its capacity.</p>
+ *
+ * <p>No locking is done. This is safe as long as the objects keep their
+ * state in final fields, since another thread then either sees an object
+ * completely or not at all. Two threads may occasionally add equal
+ * objects; both copies then work, as they are equal.</p>
+ *
+ * <p>Lookups and misses are counted only when COUNT is set, as every
+ * thread creating values would otherwise contend for the counters. The
+ * counts are not synchronized, and are only approximate when several
+ * threads use the table.</p>
+ */
+public class InternTable<E> {
+    private static final int PROBE_LIMIT = 8;
+    // whether to count lookups and misses, for tuning the table sizes
+    private static final boolean COUNT = false;
+    private static final List<InternTable<?>> tables
+        = new ArrayList<InternTable<?>>();
+
+    /** Returns all tables created so far, for reporting statistics. */
+    public static synchronized List<InternTable<?>> getTables() {
+        return new ArrayList<InternTable<?>>(tables);
+    }
+
+    private final String name;
+    private final Object[] data;
+    private final int mask;
+    private long lookups = 0;
+    private long misses = 0;
+
+    /** Creates a table of 2<sup>logSize</sup> slots. */
+    public InternTable(String name, int logSize) {
+        this.name = name;
+        this.data = new Object[1 << logSize];
+        this.mask = data.length - 1;
+        synchronized (InternTable.class) {
+            tables.add(this);
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getCapacity() {
+        return data.length;
+    }
+
+    /**
+     * Returns the object in the given slot among those where an object
+     * with the hash code may be, or <code>null</code> if there are no
+     * objects in this slot or the ones after it. The caller should try
+     * <code>step</code> 0, 1, 2, and so on until it finds a match or
+     * <code>null</code>.
+     */
+    public E find(int hashCode, int step) {
+        if (step == 0) {
+            if (COUNT) {
+                lookups++;
+            }
+        } else if (step >= PROBE_LIMIT) {
+            return null;
+        }
+        @SuppressWarnings("unchecked")
+        E ret = (E) data[(spread(hashCode) + step) & mask];
+        return ret;
+    }
+
+    /** Adds an object that {@link #find} did not turn up, returning it. */
+    public E add(int hashCode, E value) {
+        if (COUNT) {
+            misses++;
+        }
+        int start = spread(hashCode);
+        for (int step = 0; step < PROBE_LIMIT; step++) {
+            int index = (start + step) & mask;
+            if (data[index] == null) {
+                data[index] = value;
+                return value;
+            }
+        }
+        // all taken, so replace one, varying which
+        int victim = System.identityHashCode(value) & (PROBE_LIMIT - 1);
+        data[(start + victim) & mask] = value;
+        return value;
+    }
+
+    /** Returns the number of lookups, each one creation requested, or 0
+     * if lookups are not counted. */
+    public long getLookupCount() {
+        return lookups;
+    }
+
+    /** Returns the number of lookups that had to create a new object, or
+     * 0 if lookups are not counted. */
+    public long getMissCount() {
+        return misses;
+    }
+
+    public void resetCounts() {
+        lookups = 0;
+        misses = 0;
+    }
+
+    @Override
+    public String toString() {
+        long hits = lookups - misses;
+        return name + ": " + lookups + " lookups, " + hits + " hits ("
+            + (lookups == 0 ? 0 : 100 * hits / lookups) + "%), "
+            + misses + " created, " + data.length + " slots";
+    }
+
+    // mixes the bits so that nearby hash codes spread over the table
+    private static int spread(int hashCode) {
+        int h = hashCode * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
@@ -36,6 +36,21 @@ public class StringUtil {
         return ret;
     }
     
+    public static String toHexString(int bits, long value) {
+        if (bits < 64) {
+            value &= (1L << bits) - 1;
+        }
+        String ret = Long.toHexString(value);
+        int len = (bits + 3) / 4;
+        while (ret.length() < len) {
+            ret = "0" + ret;
+        }
+        if (ret.length() > len) {
+            ret = ret.substring(ret.length() - len);
+        }
+        return ret;
+    }
+
     /**
      * Joins all elements of an array into a string with a separator starting where the iterator is
      * It can be useful for not starting at a given element